@@ -1,5 +1,7 @@
 package net.fornwall.jelf;
 
+import java.nio.ByteBuffer;
+
 public interface BackingFile {
 
     void seek(long offset);
@@ -9,4 +11,25 @@ public interface BackingFile {
     short readUnsignedByte();
 
     int read(byte[] data);
+
+    /**
+     * Returns a buffer with the {@code length} bytes starting at {@code offset}, positioned at zero.
+     * <p>
+     * Implementations backed by memory should return a view sharing the underlying memory instead of a copy. The
+     * default implementation copies the bytes into a new heap buffer.
+     *
+     * @param offset the file offset of the first byte
+     * @param length the number of bytes
+     * @return a buffer containing the requested bytes
+     */
+    default ByteBuffer slice(long offset, int length) {
+        byte[] data = new byte[length];
+        seek(offset);
+        int bytesRead = read(data);
+        if (bytesRead != length) {
+            throw new ElfException("Error reading " + length + " bytes at offset " + offset + " (read " + bytesRead
+                    + " bytes)");
+        }
+        return ByteBuffer.wrap(data);
+    }
 }
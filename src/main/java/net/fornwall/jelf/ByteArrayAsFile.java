@@ -2,16 +2,21 @@ package net.fornwall.jelf;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 class ByteArrayAsFile implements BackingFile {
     private final ByteArrayInputStream byteArray;
+    /** The whole file content, if known, allowing {@link #slice(long, int)} without copying. */
+    private final byte[] buffer;
 
     public ByteArrayAsFile(byte[] buffer) {
-        this(new ByteArrayInputStream(buffer));
+        this.byteArray = new ByteArrayInputStream(buffer);
+        this.buffer = buffer;
     }
 
     public ByteArrayAsFile(ByteArrayInputStream byteArray) {
         this.byteArray = byteArray;
+        this.buffer = null;
     }
 
     public void seek(long offset) {
@@ -40,4 +45,14 @@ class ByteArrayAsFile implements BackingFile {
             throw new RuntimeException("Error reading " + data.length + " bytes", e);
         }
     }
+
+    @Override
+    public ByteBuffer slice(long offset, int length) {
+        if (buffer == null) return BackingFile.super.slice(offset, length);
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new ElfException("Slice out of range (offset=" + offset + ", length=" + length + ", size="
+                    + buffer.length + ")");
+        }
+        return ByteBuffer.wrap(buffer, (int) offset, length).slice();
+    }
 }
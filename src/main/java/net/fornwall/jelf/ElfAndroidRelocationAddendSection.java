@@ -0,0 +1,56 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link ElfSectionHeader#SHT_ANDROID_RELA} section, holding relocations with explicit addends packed in the Android
+ * APS2 format, as produced by the Android relocation packer and by lld with {@code --pack-dyn-relocs=android}.
+ * <p>
+ * As in an {@link ElfAndroidRelocationSection} the relocations are decoded while iterating over this section, instead
+ * of being held in an array as in an {@link ElfRelocationAddendSection}.
+ */
+public final class ElfAndroidRelocationAddendSection extends ElfSection implements Iterable<ElfRelocationAddend> {
+
+    private final ByteBuffer contents;
+    private final int size;
+
+    ElfAndroidRelocationAddendSection(ElfParser parser, ElfSectionHeader header) throws ElfException {
+        super(parser, header);
+        contents = ElfAndroidRelocationSection.sliceContents(parser, header);
+        size = ElfAndroidRelocationSection.countRelocations(decoder());
+    }
+
+    ElfPackedRelocationDecoder decoder() throws ElfException {
+        return new ElfPackedRelocationDecoder(contents, parser.elfFile.is32Bits(), true);
+    }
+
+    /** The number of relocations in this section, which is stored at its start. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes the relocations of this section in order.
+     *
+     * @throws ElfException from the methods of the iterator if the section is malformed
+     */
+    @Override
+    public Iterator<ElfRelocationAddend> iterator() {
+        ElfPackedRelocationDecoder decoder = decoder();
+        return new Iterator<ElfRelocationAddend>() {
+            @Override
+            public boolean hasNext() {
+                return decoder.hasNext();
+            }
+
+            @Override
+            public ElfRelocationAddend next() {
+                if (!decoder.next()) throw new NoSuchElementException();
+                return new ElfRelocationAddend(
+                        parser.elfFile, decoder.offset, decoder.info, decoder.addend, header.sh_link);
+            }
+        };
+    }
+}
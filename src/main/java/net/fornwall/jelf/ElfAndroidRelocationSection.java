@@ -0,0 +1,70 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link ElfSectionHeader#SHT_ANDROID_REL} section, holding relocations without explicit addends packed in the
+ * Android APS2 format, as produced by the Android relocation packer and by lld with {@code --pack-dyn-relocs=android}.
+ * <p>
+ * The packed format stores the relocations as groups of SLEB128 encoded deltas, so they can only be read in order.
+ * Instead of an array of relocations, as in an {@link ElfRelocationSection}, the relocations are decoded while
+ * iterating over this section, creating each {@link ElfRelocation} as it is returned.
+ *
+ * @see ElfAndroidRelocationAddendSection
+ */
+public final class ElfAndroidRelocationSection extends ElfSection implements Iterable<ElfRelocation> {
+
+    private final ByteBuffer contents;
+    private final int size;
+
+    ElfAndroidRelocationSection(ElfParser parser, ElfSectionHeader header) throws ElfException {
+        super(parser, header);
+        contents = sliceContents(parser, header);
+        size = countRelocations(decoder());
+    }
+
+    static ByteBuffer sliceContents(ElfParser parser, ElfSectionHeader header) throws ElfException {
+        if (header.sh_size > Integer.MAX_VALUE) throw new ElfException("Too big section: " + header.sh_size);
+        ByteOrder order = (parser.elfFile.ei_data == ElfFile.DATA_LSB) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        return parser.slice(header.sh_offset, (int) header.sh_size).order(order);
+    }
+
+    static int countRelocations(ElfPackedRelocationDecoder decoder) throws ElfException {
+        if (decoder.count > Integer.MAX_VALUE) throw new ElfException("Too many relocations: " + decoder.count);
+        return (int) decoder.count;
+    }
+
+    ElfPackedRelocationDecoder decoder() throws ElfException {
+        return new ElfPackedRelocationDecoder(contents, parser.elfFile.is32Bits(), false);
+    }
+
+    /** The number of relocations in this section, which is stored at its start. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes the relocations of this section in order.
+     *
+     * @throws ElfException from the methods of the iterator if the section is malformed
+     */
+    @Override
+    public Iterator<ElfRelocation> iterator() {
+        ElfPackedRelocationDecoder decoder = decoder();
+        return new Iterator<ElfRelocation>() {
+            @Override
+            public boolean hasNext() {
+                return decoder.hasNext();
+            }
+
+            @Override
+            public ElfRelocation next() {
+                if (!decoder.next()) throw new NoSuchElementException();
+                return new ElfRelocation(parser.elfFile, decoder.offset, decoder.info, header.sh_link);
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package net.fornwall.jelf;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Demangler for symbol names mangled according to the Itanium C++ ABI (names starting with "_Z") or one of the Rust
+ * mangling schemes (legacy names ending with a hash, and v0 names starting with "_R").
+ * <p>
+ * Demangled names are cached, keyed by the mangled name, as the same names tend to be demangled over and over when
+ * symbolizing addresses. The cache is bounded and safe to use from multiple threads. It is split into two
+ * generations: new names go into the young generation, and when it is full the old generation is discarded and the
+ * young generation takes its place, so that names in use survive while rarely used names are dropped.
+ */
+public final class ElfDemangler {
+
+    private static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+    private static final ElfDemangler DEFAULT = new ElfDemangler(DEFAULT_CACHE_SIZE);
+
+    private final int generationSize;
+    private volatile Map<String, String> young;
+    private volatile Map<String, String> old;
+
+    /**
+     * Creates a demangler caching up to about {@code cacheSize} names.
+     *
+     * @param cacheSize the number of demangled names to keep, or 0 to not cache names
+     */
+    public ElfDemangler(int cacheSize) {
+        if (cacheSize < 0) throw new IllegalArgumentException("Negative cache size: " + cacheSize);
+        this.generationSize = cacheSize / 2;
+        this.young = new ConcurrentHashMap<>();
+        this.old = new ConcurrentHashMap<>();
+    }
+
+    /** Returns the shared demangler used by {@link ElfSymbol#getDemangledName()}. */
+    public static ElfDemangler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Demangles a symbol name.
+     *
+     * @param name the possibly mangled name
+     * @return the demangled name, or the name itself if it is not mangled or could not be demangled
+     */
+    public String demangle(String name) {
+        if (name == null) return null;
+        if (!isMangled(name)) return name;
+        if (generationSize == 0) return demangleUncached(name);
+
+        String demangled = young.get(name);
+        if (demangled != null) return demangled;
+        demangled = old.get(name);
+        if (demangled == null) demangled = demangleUncached(name);
+
+        Map<String, String> generation = young;
+        generation.put(name, demangled);
+        if (generation.size() >= generationSize) {
+            synchronized (this) {
+                if (young == generation) {
+                    old = generation;
+                    young = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        return demangled;
+    }
+
+    /**
+     * Checks if a symbol name looks like a mangled name, without checking that it can be demangled.
+     *
+     * @param name the symbol name
+     * @return true if the name starts with the prefix of a supported mangling scheme
+     */
+    public static boolean isMangled(String name) {
+        return name.length() > 2 && name.charAt(0) == '_' && (name.charAt(1) == 'Z' || name.charAt(1) == 'R');
+    }
+
+    private static String demangleUncached(String name) {
+        String demangled;
+        if (name.charAt(1) == 'R') {
+            demangled = RustDemangler.demangleV0(name);
+        } else {
+            demangled = RustDemangler.demangleLegacy(name);
+            if (demangled == null) demangled = ItaniumDemangler.demangle(name);
+        }
+        return (demangled == null) ? name : demangled;
+    }
+}
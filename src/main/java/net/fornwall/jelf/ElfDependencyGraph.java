@@ -0,0 +1,212 @@
+package net.fornwall.jelf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The graph of {@link ElfDynamicSection#getNeededLibraries() DT_NEEDED} dependencies between an executable and the
+ * shared libraries loaded for it, as created by {@link ElfSymbolResolver#loadGraph(java.nio.file.Path, Executor)}.
+ * <p>
+ * The graph is built one breadth-first level at a time. The libraries needed by the objects of a level are searched
+ * for and parsed concurrently on the given executor, after which the results are merged in order, so the graph is the
+ * same as when loaded sequentially. A library is loaded once even if reached through several names or hard links, as
+ * libraries are identified by device and inode, and files already parsed by the resolver are reused.
+ */
+public final class ElfDependencyGraph {
+
+    private final List<ElfSymbolResolver.LoadedObject> objects = new ArrayList<>();
+    private final Map<ElfSymbolResolver.LoadedObject, List<ElfSymbolResolver.LoadedObject>> dependencies =
+            new IdentityHashMap<>();
+    private final Map<ElfSymbolResolver.LoadedObject, List<String>> missingLibraries = new IdentityHashMap<>();
+    private final List<List<ElfSymbolResolver.LoadedObject>> cycles = new ArrayList<>();
+
+    ElfDependencyGraph(ElfSymbolResolver resolver, ElfSymbolResolver.LoadedObject root, Executor executor)
+            throws IOException {
+        Map<Object, ElfSymbolResolver.LoadedObject> byIdentity = new HashMap<>();
+        Map<String, ElfSymbolResolver.LoadedObject> byName = new HashMap<>();
+        objects.add(root);
+        byIdentity.put(root.identity, root);
+
+        List<ElfSymbolResolver.LoadedObject> level = Collections.singletonList(root);
+        while (!level.isEmpty()) {
+            // The maps are only read by the tasks, and only updated after all tasks of the level have completed.
+            List<CompletableFuture<ElfSymbolResolver.LoadedObject[]>> tasks = new ArrayList<>();
+            for (ElfSymbolResolver.LoadedObject requester : level) {
+                tasks.add(CompletableFuture.supplyAsync(
+                        () -> findLibraries(resolver, requester, byName, root), executor));
+            }
+            List<ElfSymbolResolver.LoadedObject[]> found = new ArrayList<>();
+            for (CompletableFuture<ElfSymbolResolver.LoadedObject[]> task : tasks) found.add(join(task));
+
+            List<ElfSymbolResolver.LoadedObject> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                ElfSymbolResolver.LoadedObject requester = level.get(i);
+                List<ElfSymbolResolver.LoadedObject> edges = new ArrayList<>();
+                List<String> missing = new ArrayList<>();
+                for (int j = 0; j < requester.neededLibraries.size(); j++) {
+                    String name = requester.neededLibraries.get(j);
+                    // As with ld.so, a name already loaded is not searched for again.
+                    ElfSymbolResolver.LoadedObject library = byName.get(name);
+                    ElfSymbolResolver.LoadedObject candidate = found.get(i)[j];
+                    if (library == null && candidate != null) {
+                        library = byIdentity.putIfAbsent(candidate.identity, candidate);
+                        if (library == null) {
+                            library = candidate;
+                            objects.add(library);
+                            nextLevel.add(library);
+                        }
+                        byName.put(name, library);
+                    }
+                    if (library == null) {
+                        missing.add(name);
+                    } else if (!edges.contains(library)) {
+                        edges.add(library);
+                    }
+                }
+                dependencies.put(requester, edges);
+                if (!missing.isEmpty()) missingLibraries.put(requester, missing);
+            }
+            level = nextLevel;
+        }
+
+        findCycles();
+    }
+
+    private static ElfSymbolResolver.LoadedObject[] findLibraries(
+            ElfSymbolResolver resolver,
+            ElfSymbolResolver.LoadedObject requester,
+            Map<String, ElfSymbolResolver.LoadedObject> byName,
+            ElfSymbolResolver.LoadedObject root) {
+        ElfSymbolResolver.LoadedObject[] found = new ElfSymbolResolver.LoadedObject[requester.neededLibraries.size()];
+        for (int i = 0; i < found.length; i++) {
+            String name = requester.neededLibraries.get(i);
+            if (byName.containsKey(name)) continue;
+            try {
+                found[i] = resolver.findLibrary(name, requester, root.getFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return found;
+    }
+
+    private static <T> T join(CompletableFuture<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /** Finds the strongly connected components with more than one object, or depending on itself, using Tarjan. */
+    private void findCycles() {
+        Map<ElfSymbolResolver.LoadedObject, Integer> indices = new IdentityHashMap<>();
+        for (ElfSymbolResolver.LoadedObject object : objects) indices.put(object, indices.size());
+        new Object() {
+            final int[] order = new int[objects.size()];
+            final int[] lowLink = new int[objects.size()];
+            final boolean[] onStack = new boolean[objects.size()];
+            final int[] stack = new int[objects.size()];
+            int stackSize;
+            int counter;
+
+            void run() {
+                for (int v = 0; v < objects.size(); v++) {
+                    if (order[v] == 0) strongConnect(v);
+                }
+            }
+
+            void strongConnect(int v) {
+                order[v] = lowLink[v] = ++counter;
+                stack[stackSize++] = v;
+                onStack[v] = true;
+                boolean selfDependency = false;
+                for (ElfSymbolResolver.LoadedObject dependency : dependencies.get(objects.get(v))) {
+                    int w = indices.get(dependency);
+                    if (w == v) selfDependency = true;
+                    if (order[w] == 0) {
+                        strongConnect(w);
+                        lowLink[v] = Math.min(lowLink[v], lowLink[w]);
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], order[w]);
+                    }
+                }
+                if (lowLink[v] != order[v]) return;
+
+                List<ElfSymbolResolver.LoadedObject> component = new ArrayList<>();
+                int w;
+                do {
+                    w = stack[--stackSize];
+                    onStack[w] = false;
+                    component.add(objects.get(w));
+                } while (w != v);
+                if (component.size() > 1 || selfDependency) {
+                    component.sort((a, b) -> Integer.compare(indices.get(a), indices.get(b)));
+                    cycles.add(Collections.unmodifiableList(component));
+                }
+            }
+        }.run();
+        cycles.sort((a, b) -> Integer.compare(indices.get(a.get(0)), indices.get(b.get(0))));
+    }
+
+    /** The executable, followed by the libraries loaded for it in the breadth-first load order used by ld.so. */
+    public List<ElfSymbolResolver.LoadedObject> getObjects() {
+        return Collections.unmodifiableList(objects);
+    }
+
+    /**
+     * Returns the libraries an object of this graph depends on.
+     *
+     * @param object an object of this graph
+     * @return the libraries found for the DT_NEEDED entries of the object, in the order of the entries
+     */
+    public List<ElfSymbolResolver.LoadedObject> getDependencies(ElfSymbolResolver.LoadedObject object) {
+        List<ElfSymbolResolver.LoadedObject> result = dependencies.get(object);
+        if (result == null) throw new IllegalArgumentException("Not an object of this graph: " + object);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the libraries needed by an object of this graph which could not be found.
+     *
+     * @param object an object of this graph
+     * @return the DT_NEEDED names of the missing libraries
+     */
+    public List<String> getMissingLibraries(ElfSymbolResolver.LoadedObject object) {
+        return missingLibraries.getOrDefault(object, Collections.emptyList());
+    }
+
+    /**
+     * Returns the dependency cycles in this graph, as sets of objects which all depend on each other directly or
+     * indirectly. Such cycles are allowed by ld.so, but leave the order of running initializers undefined.
+     *
+     * @return the objects of each cycle in load order, with the cycles ordered by their first object
+     */
+    public List<List<ElfSymbolResolver.LoadedObject>> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    /** Returns the symbol scope formed by the objects of this graph, for resolving symbols in load order. */
+    public ElfSymbolResolver.Scope getScope() {
+        List<String> missing = new ArrayList<>();
+        for (ElfSymbolResolver.LoadedObject object : objects) {
+            for (String name : getMissingLibraries(object)) {
+                if (!missing.contains(name)) missing.add(name);
+            }
+        }
+        return new ElfSymbolResolver.Scope(getObjects(), Collections.unmodifiableList(missing));
+    }
+}
@@ -1,6 +1,8 @@
 package net.fornwall.jelf;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -113,7 +115,9 @@ public class ElfDynamicSection extends ElfSection {
     public static final int DT_RUNPATH = 29;
     public static final int DT_FLAGS = 30;
     public static final int DT_PREINIT_ARRAY = 32;
+    public static final int DT_PREINIT_ARRAYSZ = 33;
     public static final int DT_GNU_HASH = 0x6ffffef5;
+    public static final int DT_VERSYM = 0x6ffffff0; /* Address of the symbol version table */
     public static final int DT_FLAGS_1 = 0x6ffffffb;
     public static final int DT_VERDEF = 0x6ffffffc; /* Address of version definition */
     public static final int DT_VERDEFNUM = 0x6ffffffd; /* Number of version definitions */
@@ -186,7 +190,46 @@ public class ElfDynamicSection extends ElfSection {
     public int dt_strtab_size;
 
     private MemoizedObject<ElfStringTable> dtStringTable;
-    public final List<ElfDynamicStructure> entries = new ArrayList<>();
+
+    /** The tags and values of the entries, up to and including the terminating {@link #DT_NULL} entry. */
+    private final long[] tags;
+    private final long[] values;
+
+    /**
+     * The index of the tags, built on first use. As its fields are final, threads racing to build it may each publish
+     * their own copy, but never see one partially built.
+     */
+    private TagIndex tagIndex;
+
+    /** The distinct tags in ascending order, with the index of the first entry having each tag. */
+    private static final class TagIndex {
+        final long[] sortedTags;
+        final int[] firstIndices;
+
+        TagIndex(long[] sortedTags, int[] firstIndices) {
+            this.sortedTags = sortedTags;
+            this.firstIndices = firstIndices;
+        }
+    }
+
+    /**
+     * The entries of this section, up to and including the terminating {@link #DT_NULL} entry.
+     * <p>
+     * This is an unmodifiable view creating {@link ElfDynamicStructure} objects on access. Use {@link #size()},
+     * {@link #getTag(int)} and {@link #getValue(int)} to read entries without allocating, or the typed accessors
+     * such as {@link #getSoName()} to look up entries by tag.
+     */
+    public final List<ElfDynamicStructure> entries = new AbstractList<ElfDynamicStructure>() {
+        @Override
+        public ElfDynamicStructure get(int index) {
+            return new ElfDynamicStructure(getTag(index), getValue(index));
+        }
+
+        @Override
+        public int size() {
+            return tags.length;
+        }
+    };
 
     /**
      * An entry in the {@link #entries} of a {@link ElfDynamicSection}.
@@ -258,16 +301,25 @@ public class ElfDynamicSection extends ElfSection {
         super(parser, header);
 
         parser.seek(header.sh_offset);
-        int numEntries = (int) (header.sh_size / 8);
+        int entrySize = (parser.elfFile.ei_class == ElfFile.CLASS_32) ? 8 : 16;
+        long numEntries = header.sh_size / entrySize;
+        long[] tags = new long[(int) Math.min(numEntries, 64)];
+        long[] values = new long[tags.length];
+        int count = 0;
 
         // Except for the DT_NULL element at the end of the array, and the relative order of DT_NEEDED elements, entries
         // may appear in any order. So important to use lazy evaluation to only evaluating e.g. DT_STRTAB after the
         // necessary DT_STRSZ is read.
         loop:
-        for (int i = 0; i < numEntries; i++) {
+        for (long i = 0; i < numEntries; i++) {
             long d_tag = parser.readIntOrLong();
             final long d_val_or_ptr = parser.readIntOrLong();
-            entries.add(new ElfDynamicStructure(d_tag, d_val_or_ptr));
+            if (count == tags.length) {
+                tags = Arrays.copyOf(tags, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            tags[count] = d_tag;
+            values[count++] = d_val_or_ptr;
             switch ((int) d_tag) {
                 case DT_NULL:
                     // A DT_NULL element ends the array (may be following DT_NULL values, but no need to look at them).
@@ -291,37 +343,240 @@ public class ElfDynamicSection extends ElfSection {
                     break;
             }
         }
+        this.tags = Arrays.copyOf(tags, count);
+        this.values = Arrays.copyOf(values, count);
+    }
+
+    /** The number of entries, including the terminating {@link #DT_NULL} entry. */
+    public int size() {
+        return tags.length;
+    }
+
+    /**
+     * Returns the tag of an entry.
+     *
+     * @param index the index of the entry
+     * @return the {@link ElfDynamicStructure#d_tag} of the entry
+     */
+    public long getTag(int index) {
+        return tags[index];
     }
 
-    private ElfDynamicStructure firstEntryWithTag(long desiredTag) {
-        for (ElfDynamicStructure entry : this.entries) {
-            if (entry.d_tag == desiredTag) return entry;
+    /**
+     * Returns the value of an entry.
+     *
+     * @param index the index of the entry
+     * @return the {@link ElfDynamicStructure#d_val_or_ptr} of the entry
+     */
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the index of the first entry with a tag, using an index of the tags built on first use.
+     *
+     * @param tag one of the DT_* constants
+     * @return the index of the first entry with the tag, or -1 if there is none
+     */
+    public int indexOf(long tag) {
+        TagIndex index = tagIndex;
+        if (index == null) {
+            long[] sorted = tags.clone();
+            Arrays.sort(sorted);
+            int count = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) sorted[count++] = sorted[i];
+            }
+            long[] distinctTags = Arrays.copyOf(sorted, count);
+            int[] indices = new int[count];
+            // Iterate backwards so that the first entry with each tag is stored last.
+            for (int i = tags.length - 1; i >= 0; i--) indices[Arrays.binarySearch(distinctTags, tags[i])] = i;
+            index = new TagIndex(distinctTags, indices);
+            tagIndex = index;
         }
-        return null;
+        int position = Arrays.binarySearch(index.sortedTags, tag);
+        return (position < 0) ? -1 : index.firstIndices[position];
+    }
+
+    /**
+     * Checks if there is an entry with a tag.
+     *
+     * @param tag one of the DT_* constants
+     * @return true if there is an entry with the tag
+     */
+    public boolean hasTag(long tag) {
+        return indexOf(tag) >= 0;
+    }
+
+    /**
+     * Returns the value of the first entry with a tag.
+     *
+     * @param tag one of the DT_* constants
+     * @param defaultValue the value to return if there is no entry with the tag
+     * @return the value of the first entry with the tag, or the default value
+     */
+    public long getValueOfTag(long tag, long defaultValue) {
+        int index = indexOf(tag);
+        return (index < 0) ? defaultValue : values[index];
+    }
+
+    private String getStringOfTag(long tag) {
+        int index = indexOf(tag);
+        return (index < 0) ? null : dtStringTable.getValue().get((int) values[index]);
     }
 
     public List<String> getNeededLibraries() throws ElfException {
         ElfStringTable stringTable = dtStringTable.getValue();
         List<String> result = new ArrayList<>();
-        for (ElfDynamicStructure entry : this.entries) {
-            if (entry.d_tag == DT_NEEDED) result.add(stringTable.get((int) entry.d_val_or_ptr));
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == DT_NEEDED) result.add(stringTable.get((int) values[i]));
         }
         return result;
     }
 
+    /** Returns the {@link #DT_SONAME} of a shared library, the name other objects need it by, if any. */
+    public String getSoName() {
+        return getStringOfTag(DT_SONAME);
+    }
+
     public String getRunPath() {
-        ElfDynamicStructure runPathEntry = firstEntryWithTag(DT_RUNPATH);
-        return runPathEntry == null ? null : dtStringTable.getValue().get((int) runPathEntry.d_val_or_ptr);
+        return getStringOfTag(DT_RUNPATH);
+    }
+
+    /**
+     * Returns the {@link #DT_RPATH} library search path. It is deprecated in favour of {@link #DT_RUNPATH}, and the
+     * dynamic linker ignores it in objects having a run path.
+     */
+    public String getRPath() {
+        return getStringOfTag(DT_RPATH);
     }
 
     public long getFlags() {
-        ElfDynamicStructure flagsEntry = firstEntryWithTag(DT_FLAGS);
-        return flagsEntry == null ? 0 : flagsEntry.d_val_or_ptr;
+        return getValueOfTag(DT_FLAGS, 0);
     }
 
     public long getFlags1() {
-        ElfDynamicStructure flagsEntry = firstEntryWithTag(DT_FLAGS_1);
-        return flagsEntry == null ? 0 : flagsEntry.d_val_or_ptr;
+        return getValueOfTag(DT_FLAGS_1, 0);
+    }
+
+    /** The address of the {@link #DT_HASH} table, or 0 if there is none. */
+    public long getHashTableAddress() {
+        return getValueOfTag(DT_HASH, 0);
+    }
+
+    /** The address of the {@link #DT_GNU_HASH} table, or 0 if there is none. */
+    public long getGnuHashTableAddress() {
+        return getValueOfTag(DT_GNU_HASH, 0);
+    }
+
+    /** The address of the {@link #DT_SYMTAB} dynamic symbol table, or 0 if there is none. */
+    public long getSymbolTableAddress() {
+        return getValueOfTag(DT_SYMTAB, 0);
+    }
+
+    /** The {@link #DT_SYMENT} size of a dynamic symbol table entry, or 0 if not given. */
+    public long getSymbolEntrySize() {
+        return getValueOfTag(DT_SYMENT, 0);
+    }
+
+    /** The address of the {@link #DT_VERSYM} symbol version table, or 0 if there is none. */
+    public long getVersionSymbolTableAddress() {
+        return getValueOfTag(DT_VERSYM, 0);
+    }
+
+    /** The address of the {@link #DT_VERDEF} version definitions, or 0 if there are none. */
+    public long getVersionDefinitionAddress() {
+        return getValueOfTag(DT_VERDEF, 0);
+    }
+
+    /** The {@link #DT_VERDEFNUM} number of version definitions. */
+    public long getVersionDefinitionCount() {
+        return getValueOfTag(DT_VERDEFNUM, 0);
+    }
+
+    /** The address of the {@link #DT_VERNEEDED} version requirements, or 0 if there are none. */
+    public long getVersionRequirementAddress() {
+        return getValueOfTag(DT_VERNEEDED, 0);
+    }
+
+    /** The {@link #DT_VERNEEDNUM} number of version requirements. */
+    public long getVersionRequirementCount() {
+        return getValueOfTag(DT_VERNEEDNUM, 0);
+    }
+
+    /** The address of the {@link #DT_RELA} relocations, or 0 if there are none. */
+    public long getRelaAddress() {
+        return getValueOfTag(DT_RELA, 0);
+    }
+
+    /** The {@link #DT_RELASZ} total size in bytes of the {@link #DT_RELA} relocations. */
+    public long getRelaSize() {
+        return getValueOfTag(DT_RELASZ, 0);
+    }
+
+    /** The {@link #DT_RELAENT} size in bytes of a {@link #DT_RELA} relocation, or 0 if not given. */
+    public long getRelaEntrySize() {
+        return getValueOfTag(DT_RELAENT, 0);
+    }
+
+    /** The address of the {@link #DT_REL} relocations, or 0 if there are none. */
+    public long getRelAddress() {
+        return getValueOfTag(DT_REL, 0);
+    }
+
+    /** The {@link #DT_RELSZ} total size in bytes of the {@link #DT_REL} relocations. */
+    public long getRelSize() {
+        return getValueOfTag(DT_RELSZ, 0);
+    }
+
+    /** The {@link #DT_RELENT} size in bytes of a {@link #DT_REL} relocation, or 0 if not given. */
+    public long getRelEntrySize() {
+        return getValueOfTag(DT_RELENT, 0);
+    }
+
+    /** The address of the {@link #DT_JMPREL} PLT relocations, or 0 if there are none. */
+    public long getPltRelocationAddress() {
+        return getValueOfTag(DT_JMPREL, 0);
+    }
+
+    /** The {@link #DT_PLTRELSZ} total size in bytes of the {@link #DT_JMPREL} PLT relocations. */
+    public long getPltRelocationSize() {
+        return getValueOfTag(DT_PLTRELSZ, 0);
+    }
+
+    /** The {@link #DT_PLTREL} type of the PLT relocations, {@link #DT_REL} or {@link #DT_RELA}, or 0 if not given. */
+    public long getPltRelocationType() {
+        return getValueOfTag(DT_PLTREL, 0);
+    }
+
+    /** The address of the {@link #DT_INIT_ARRAY} of initializer addresses, or 0 if there is none. */
+    public long getInitArrayAddress() {
+        return getValueOfTag(DT_INIT_ARRAY, 0);
+    }
+
+    /** The {@link #DT_INIT_ARRAYSZ} size in bytes of the {@link #DT_INIT_ARRAY}. */
+    public long getInitArraySize() {
+        return getValueOfTag(DT_INIT_ARRAYSZ, 0);
+    }
+
+    /** The address of the {@link #DT_FINI_ARRAY} of finalizer addresses, or 0 if there is none. */
+    public long getFiniArrayAddress() {
+        return getValueOfTag(DT_FINI_ARRAY, 0);
+    }
+
+    /** The {@link #DT_FINI_ARRAYSZ} size in bytes of the {@link #DT_FINI_ARRAY}. */
+    public long getFiniArraySize() {
+        return getValueOfTag(DT_FINI_ARRAYSZ, 0);
+    }
+
+    /** The address of the {@link #DT_PREINIT_ARRAY} of pre-initializer addresses, or 0 if there is none. */
+    public long getPreinitArrayAddress() {
+        return getValueOfTag(DT_PREINIT_ARRAY, 0);
+    }
+
+    /** The {@link #DT_PREINIT_ARRAYSZ} size in bytes of the {@link #DT_PREINIT_ARRAY}. */
+    public long getPreinitArraySize() {
+        return getValueOfTag(DT_PREINIT_ARRAYSZ, 0);
     }
 
     @Override
@@ -0,0 +1,160 @@
+package net.fornwall.jelf;
+
+/**
+ * The sections used for dynamic linking, reconstructed from the {@link ElfSegment#PT_DYNAMIC} segment for files
+ * without a section header table, such as files processed by sstrip and some Android binaries.
+ * <p>
+ * The dynamic section is located by its program header, and the tables it points to by their addresses, which are
+ * translated to file offsets using the {@link ElfSegment#PT_LOAD} segments. The size of the dynamic symbol table is
+ * not recorded in the dynamic section, so it is computed from the hash tables: {@link ElfDynamicSection#DT_HASH} holds
+ * the number of symbols, while the last symbol of a {@link ElfDynamicSection#DT_GNU_HASH} table ends the chain of the
+ * highest bucket.
+ * <p>
+ * The reconstructed sections have unnamed headers, with a {@link ElfSectionHeader#sh_link} of 0 as there is no
+ * section header table to link to.
+ */
+final class ElfDynamicSegmentSections {
+
+    private final ElfFile file;
+    private final ElfParser parser;
+    private final ElfDynamicSection dynamicSection;
+
+    private ElfStringTable dynamicStringTable;
+    private ElfSymbolTableSection dynamicSymbolTableSection;
+    private ElfGnuHashTable gnuHashTable;
+    private ElfHashTable hashTable;
+    private ElfSymbolVersionSection symbolVersionSection;
+    private ElfVersionDefinitionSection versionDefinitionSection;
+    private ElfVersionRequirementSection versionRequirementSection;
+
+    private ElfDynamicSegmentSections(ElfFile file, ElfSegment segment) {
+        this.file = file;
+        this.parser = file.parser;
+        int entrySize = (file.ei_class == ElfFile.CLASS_32) ? 8 : 16;
+        dynamicSection = new ElfDynamicSection(
+                parser,
+                new ElfSectionHeader(
+                        file,
+                        ElfSectionHeader.SHT_DYNAMIC,
+                        segment.p_vaddr,
+                        segment.p_offset,
+                        segment.p_filesz,
+                        0,
+                        entrySize));
+    }
+
+    /**
+     * Reads the dynamic section of a file.
+     *
+     * @return the sections of the file, or null if the file has no {@link ElfSegment#PT_DYNAMIC} segment
+     */
+    static ElfDynamicSegmentSections read(ElfFile file) throws ElfException {
+        ElfSegment segment = file.firstSegmentByType(ElfSegment.PT_DYNAMIC);
+        return (segment == null) ? null : new ElfDynamicSegmentSections(file, segment);
+    }
+
+    ElfDynamicSection getDynamicSection() {
+        return dynamicSection;
+    }
+
+    ElfStringTable getDynamicStringTable() throws ElfException {
+        if (dynamicStringTable != null) return dynamicStringTable;
+        long address = dynamicSection.getValueOfTag(ElfDynamicSection.DT_STRTAB, 0);
+        if (address == 0) return null;
+        long size = dynamicSection.getValueOfTag(ElfDynamicSection.DT_STRSZ, 0);
+        if (size > Integer.MAX_VALUE) throw new ElfException("Too large DT_STRSZ: " + size);
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        return dynamicStringTable = new ElfStringTable(
+                parser,
+                offset,
+                (int) size,
+                header(ElfSectionHeader.SHT_STRTAB, address, offset, size, 0, 0));
+    }
+
+    ElfSymbolTableSection getDynamicSymbolTableSection() throws ElfException {
+        if (dynamicSymbolTableSection != null) return dynamicSymbolTableSection;
+        long address = dynamicSection.getSymbolTableAddress();
+        if (address == 0) return null;
+        long entrySize = dynamicSection.getSymbolEntrySize();
+        if (entrySize == 0) entrySize = (file.ei_class == ElfFile.CLASS_32) ? 16 : 24;
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        long size = countSymbols(address, entrySize) * entrySize;
+        return dynamicSymbolTableSection = new ElfSymbolTableSection(
+                parser, header(ElfSectionHeader.SHT_DYNSYM, address, offset, size, 0, entrySize));
+    }
+
+    private long countSymbols(long symbolTableAddress, long entrySize) throws ElfException {
+        ElfHashTable hashTable = getHashTable();
+        if (hashTable != null) return hashTable.countSymbols();
+        ElfGnuHashTable gnuHashTable = getGnuHashTable();
+        if (gnuHashTable != null) return gnuHashTable.countSymbols();
+        // Without hash tables, assume that the string table follows the symbol table, as laid out by the linkers.
+        long stringTableAddress = dynamicSection.getValueOfTag(ElfDynamicSection.DT_STRTAB, 0);
+        return (stringTableAddress > symbolTableAddress) ? (stringTableAddress - symbolTableAddress) / entrySize : 0;
+    }
+
+    ElfGnuHashTable getGnuHashTable() throws ElfException {
+        if (gnuHashTable != null) return gnuHashTable;
+        long address = dynamicSection.getGnuHashTableAddress();
+        if (address == 0) return null;
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        // The size of the chain is not known, but is not needed to read the table.
+        return gnuHashTable = new ElfGnuHashTable(
+                parser, header(ElfSectionHeader.SHT_GNU_HASH, address, offset, bytesAvailable(address), 0, 4));
+    }
+
+    ElfHashTable getHashTable() throws ElfException {
+        if (hashTable != null) return hashTable;
+        long address = dynamicSection.getHashTableAddress();
+        if (address == 0) return null;
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        parser.seek(offset);
+        long numberOfBuckets = parser.readInt() & 0xffffffffL;
+        long numberOfChains = parser.readInt() & 0xffffffffL;
+        long size = 8 + 4 * (numberOfBuckets + numberOfChains);
+        return hashTable = new ElfHashTable(parser, header(ElfSectionHeader.SHT_HASH, address, offset, size, 0, 4));
+    }
+
+    ElfSymbolVersionSection getSymbolVersionSection() throws ElfException {
+        if (symbolVersionSection != null) return symbolVersionSection;
+        long address = dynamicSection.getVersionSymbolTableAddress();
+        ElfSymbolTableSection symbolTable = getDynamicSymbolTableSection();
+        if (address == 0 || symbolTable == null) return null;
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        long size = 2L * symbolTable.symbols.length;
+        return symbolVersionSection = new ElfSymbolVersionSection(
+                parser, header(ElfSectionHeader.SHT_GNU_versym, address, offset, size, 0, 2));
+    }
+
+    ElfVersionDefinitionSection getVersionDefinitionSection() throws ElfException {
+        if (versionDefinitionSection != null) return versionDefinitionSection;
+        long address = dynamicSection.getVersionDefinitionAddress();
+        if (address == 0) return null;
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        int count = (int) dynamicSection.getVersionDefinitionCount();
+        return versionDefinitionSection = new ElfVersionDefinitionSection(
+                parser, header(ElfSectionHeader.SHT_GNU_verdef, address, offset, bytesAvailable(address), count, 0));
+    }
+
+    ElfVersionRequirementSection getVersionRequirementSection() throws ElfException {
+        if (versionRequirementSection != null) return versionRequirementSection;
+        long address = dynamicSection.getVersionRequirementAddress();
+        if (address == 0) return null;
+        long offset = parser.virtualMemoryAddrToFileOffset(address);
+        int count = (int) dynamicSection.getVersionRequirementCount();
+        return versionRequirementSection = new ElfVersionRequirementSection(
+                parser, header(ElfSectionHeader.SHT_GNU_verneed, address, offset, bytesAvailable(address), count, 0));
+    }
+
+    private ElfSectionHeader header(int type, long address, long offset, long size, int info, long entrySize) {
+        return new ElfSectionHeader(file, type, address, offset, size, info, entrySize);
+    }
+
+    /** The number of bytes from an address to the end of the file contents of its segment, for tables of any size. */
+    private long bytesAvailable(long address) throws ElfException {
+        ElfLoadSegmentIndex segments = file.getLoadSegmentIndex();
+        long offset = segments.toFileOffset(address);
+        ElfSegment segment = segments.getSegment(segments.indexOfAddress(address));
+        return segment.p_offset + segment.p_filesz - offset;
+    }
+}
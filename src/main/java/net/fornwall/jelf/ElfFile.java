@@ -12,8 +12,11 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An ELF (Executable and Linkable Format) file that can be a relocatable, executable, shared or core file.
@@ -981,6 +984,20 @@ public final class ElfFile {
      * MemoizedObject array of program headers associated with this ELF file.
      */
     private final MemoizedObject<ElfSegment>[] programHeaders;
+    /**
+     * MemoizedObject array of the relocation tables of the sections, which are null for other sections.
+     */
+    private final MemoizedObject<ElfRelocationTable>[] relocationTables;
+    /**
+     * The sections used for dynamic linking, reconstructed from the dynamic segment without a section header table.
+     */
+    private final MemoizedObject<ElfDynamicSegmentSections> segmentSections =
+            new MemoizedObject<ElfDynamicSegmentSections>() {
+                @Override
+                protected ElfDynamicSegmentSections computeValue() throws ElfException {
+                    return (e_shnum < 2) ? ElfDynamicSegmentSections.read(ElfFile.this) : null;
+                }
+            };
 
     /**
      * Used to cache symbol table lookup.
@@ -993,6 +1010,49 @@ public final class ElfFile {
 
     private ElfDynamicSection dynamicSection;
 
+    /**
+     * Used to cache symbol versioning section lookups.
+     */
+    private ElfSymbolVersionSection symbolVersionSection;
+
+    private ElfVersionDefinitionSection versionDefinitionSection;
+    private ElfVersionRequirementSection versionRequirementSection;
+
+    /**
+     * Used to cache string table lookup.
+     */
+    private ElfStringTable stringTable;
+    /**
+     * Used to cache dynamic string table lookup.
+     */
+    private ElfStringTable dynamicStringTable;
+
+    private ElfStringPool stringPool;
+
+    /** The parser reading this file, shared by all its sections. */
+    final ElfParser parser;
+
+    private ElfSymbolAddressIndex symbolAddressIndex;
+    private ElfLoadSegmentIndex loadSegmentIndex;
+    private ElfMemoryImage memoryImage;
+    private ElfRelocationIndex relocationIndex;
+    private ElfSymbolAddressIndex sizeInferringSymbolAddressIndex;
+
+    /**
+     * Sets a pool to intern strings decoded from the string tables of this file into, allowing names to be shared with
+     * other files using the same pool.
+     *
+     * @param stringPool the pool to use, or null to not pool strings
+     * @see ElfStringTable#setStringPool(ElfStringPool)
+     */
+    public void setStringPool(ElfStringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    public ElfStringPool getStringPool() {
+        return stringPool;
+    }
+
     public boolean is32Bits() {
         return ei_class == CLASS_32;
     }
@@ -1051,16 +1111,24 @@ public final class ElfFile {
      * @return the string table for this file
      */
     public ElfStringTable getStringTable() throws ElfException {
-        return findStringTableWithName(ElfSectionHeader.NAME_STRTAB);
+        return (stringTable != null)
+                ? stringTable
+                : (stringTable = findStringTableWithName(ElfSectionHeader.NAME_STRTAB));
     }
 
     /**
      * Returns the dynamic symbol table associated with this ELF file, or null if one does not exist.
+     * <p>
+     * For files without a section header table it is located by the {@link ElfDynamicSection#DT_STRTAB} entry.
      *
      * @return the dynamic symbol table for this file, if any
      */
     public ElfStringTable getDynamicStringTable() throws ElfException {
-        return findStringTableWithName(ElfSectionHeader.NAME_DYNSTR);
+        return (dynamicStringTable != null)
+                ? dynamicStringTable
+                : (dynamicStringTable = (segmentSections.getValue() == null)
+                        ? findStringTableWithName(ElfSectionHeader.NAME_DYNSTR)
+                        : segmentSections.getValue().getDynamicStringTable());
     }
 
     private ElfStringTable findStringTableWithName(String tableName) throws ElfException {
@@ -1083,24 +1151,94 @@ public final class ElfFile {
 
     /**
      * The {@link ElfSectionHeader#SHT_DYNSYM} section (of which there may be only one), if any.
+     * <p>
+     * For files without a section header table it is located by the {@link ElfDynamicSection#DT_SYMTAB} entry, with
+     * the number of symbols taken from the {@link ElfHashTable} or {@link ElfGnuHashTable}.
      *
      * @return the dynamic symbol table section for this file, if any
      */
     public ElfSymbolTableSection getDynamicSymbolTableSection() throws ElfException {
         return (dynamicSymbolTableSection != null)
                 ? dynamicSymbolTableSection
-                : (dynamicSymbolTableSection = (ElfSymbolTableSection) firstSectionByType(ElfSectionHeader.SHT_DYNSYM));
+                : (dynamicSymbolTableSection = (segmentSections.getValue() == null)
+                        ? (ElfSymbolTableSection) firstSectionByType(ElfSectionHeader.SHT_DYNSYM)
+                        : segmentSections.getValue().getDynamicSymbolTableSection());
     }
 
     /**
      * The {@link ElfSectionHeader#SHT_DYNAMIC} section (of which there may be only one). Named ".dynamic".
+     * <p>
+     * For files without a section header table it is read from the {@link ElfSegment#PT_DYNAMIC} segment.
      *
      * @return the dynamic section for this file, if any
      */
     public ElfDynamicSection getDynamicSection() {
         return (dynamicSection != null)
                 ? dynamicSection
-                : (dynamicSection = (ElfDynamicSection) firstSectionByType(ElfSectionHeader.SHT_DYNAMIC));
+                : (dynamicSection = (segmentSections.getValue() == null)
+                        ? (ElfDynamicSection) firstSectionByType(ElfSectionHeader.SHT_DYNAMIC)
+                        : segmentSections.getValue().getDynamicSection());
+    }
+
+    /**
+     * The {@link ElfSectionHeader#SHT_GNU_versym} section, holding the version of each dynamic symbol, if any. Named
+     * ".gnu.version".
+     * <p>
+     * For files without a section header table it is located by the {@link ElfDynamicSection#DT_VERSYM} entry.
+     *
+     * @return the symbol version section for this file, if any
+     */
+    public ElfSymbolVersionSection getSymbolVersionSection() throws ElfException {
+        return (symbolVersionSection != null)
+                ? symbolVersionSection
+                : (symbolVersionSection = (segmentSections.getValue() == null)
+                        ? firstSectionByType(ElfSymbolVersionSection.class)
+                        : segmentSections.getValue().getSymbolVersionSection());
+    }
+
+    /**
+     * The {@link ElfSectionHeader#SHT_GNU_verdef} section, holding the symbol versions defined by this file, if any.
+     * Named ".gnu.version_d".
+     * <p>
+     * For files without a section header table it is located by the {@link ElfDynamicSection#DT_VERDEF} entry.
+     *
+     * @return the version definition section for this file, if any
+     */
+    public ElfVersionDefinitionSection getVersionDefinitionSection() throws ElfException {
+        return (versionDefinitionSection != null)
+                ? versionDefinitionSection
+                : (versionDefinitionSection = (segmentSections.getValue() == null)
+                        ? firstSectionByType(ElfVersionDefinitionSection.class)
+                        : segmentSections.getValue().getVersionDefinitionSection());
+    }
+
+    /**
+     * The {@link ElfSectionHeader#SHT_GNU_verneed} section, holding the symbol versions this file requires from other
+     * files, if any. Named ".gnu.version_r".
+     * <p>
+     * For files without a section header table it is located by the {@link ElfDynamicSection#DT_VERNEEDED} entry.
+     *
+     * @return the version requirement section for this file, if any
+     */
+    public ElfVersionRequirementSection getVersionRequirementSection() throws ElfException {
+        return (versionRequirementSection != null)
+                ? versionRequirementSection
+                : (versionRequirementSection = (segmentSections.getValue() == null)
+                        ? firstSectionByType(ElfVersionRequirementSection.class)
+                        : segmentSections.getValue().getVersionRequirementSection());
+    }
+
+    /**
+     * The {@link ElfGnuHashTable} of the dynamic symbol table, if any.
+     *
+     * @return the GNU hash table for the dynamic symbols of this file, if any
+     */
+    ElfGnuHashTable getDynamicGnuHashTable() throws ElfException {
+        if (segmentSections.getValue() != null) return segmentSections.getValue().getGnuHashTable();
+        ElfGnuHashTable gnuHashTable = firstSectionByType(ElfGnuHashTable.class);
+        return (gnuHashTable != null && getSection(gnuHashTable.header.sh_link) == getDynamicSymbolTableSection())
+                ? gnuHashTable
+                : null;
     }
 
     public ElfSection firstSectionByType(int type) throws ElfException {
@@ -1122,39 +1260,81 @@ public final class ElfFile {
     public ElfSection firstSectionByName(String sectionName) throws ElfException {
         for (int i = 1; i < e_shnum; i++) {
             ElfSection sh = getSection(i);
-            if (sectionName.equals(sh.header.getName())) return sh;
+            if (sh.header.nameEquals(sectionName)) return sh;
         }
         return null;
     }
 
     /**
      * Returns the elf symbol with the specified name or null if one is not found.
+     * <p>
+     * If several dynamic symbols have the name, as with memcpy@GLIBC_2.2.5 and memcpy@@GLIBC_2.14, the default version
+     * is returned. A {@link ElfSymbolVersionSection#VERSYM_HIDDEN hidden} version is only returned if the name has no
+     * default version.
      *
      * @param symbolName the name of the symbol to fetch
      * @return information about the specified symbol
+     * @see #getELFSymbol(String, String) to fetch a specific version of a symbol
      */
     public ElfSymbol getELFSymbol(String symbolName) throws ElfException {
         if (symbolName == null) return null;
+        ElfSymbol symbol = getELFSymbol(symbolName, null);
+        if (symbol != null) return symbol;
+
+        // Fall back to hidden versions, which getELFSymbol(symbolName, null) skips.
+        ElfSymbolTableSection sh = getDynamicSymbolTableSection();
+        if (sh != null && getSymbolVersionSection() != null) {
+            for (ElfSymbol candidate : sh.symbols) {
+                if (candidate.nameEquals(symbolName)) return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the elf symbol with the specified name and version, as the dynamic linker would resolve a versioned
+     * reference to it, or null if one is not found.
+     * <p>
+     * Dynamic symbols are matched using the {@link ElfSymbolVersionSection}, using the {@link ElfGnuHashTable} if there
+     * is one. Symbols in the {@link ElfSectionHeader#SHT_SYMTAB} section have no version information, but are named
+     * like "memcpy@GLIBC_2.2.5" or "memcpy@@GLIBC_2.14" by the linker and are matched by those names.
+     *
+     * @param symbolName the name of the symbol to fetch
+     * @param version the name of the version, such as "GLIBC_2.14", or null to only match the default version
+     * @return information about the specified symbol
+     */
+    public ElfSymbol getELFSymbol(String symbolName, String version) throws ElfException {
+        if (symbolName == null) return null;
 
         // Check dynamic symbol table for symbol name.
         ElfSymbolTableSection sh = getDynamicSymbolTableSection();
         if (sh != null) {
-            final int numSymbols = sh.symbols.length;
-            for (int i = 0; i < numSymbols; i++) {
+            ElfSymbolVersionSection versions = getSymbolVersionSection();
+            ElfGnuHashTable gnuHashTable = getDynamicGnuHashTable();
+            boolean hashed = gnuHashTable != null;
+            // Symbols before symoffset, typically undefined ones, are not in the hash table.
+            int linearTo = hashed ? Math.min(gnuHashTable.symoffset, sh.symbols.length) : sh.symbols.length;
+            for (int i = 0; i < linearTo; i++) {
                 ElfSymbol symbol = sh.symbols[i];
-                if (symbolName.equals(symbol.getName())) {
+                if (symbol.nameEquals(symbolName)
+                        && (versions == null ? version == null : versions.matches(i, version))) {
                     return symbol;
                 }
             }
+            if (hashed && (versions != null || version == null)) {
+                ElfSymbol symbol = gnuHashTable.lookupSymbol(symbolName, sh, versions, version);
+                if (symbol != null) return symbol;
+            }
         }
 
         // Check symbol table for symbol name.
         sh = getSymbolTableSection();
         if (sh != null) {
-            final int numSymbols = sh.symbols.length;
-            for (int i = 0; i < numSymbols; i++) {
-                ElfSymbol symbol = sh.symbols[i];
-                if (symbolName.equals(symbol.getName())) {
+            for (ElfSymbol symbol : sh.symbols) {
+                if (version == null
+                        ? symbol.nameEquals(symbolName)
+                        : symbol.nameEquals(symbolName + "@" + version)
+                                || symbol.nameEquals(symbolName + "@@" + version)) {
                     return symbol;
                 }
             }
@@ -1162,12 +1342,76 @@ public final class ElfFile {
         return null;
     }
 
+    /**
+     * Looks up many symbols by name at once, returning the same symbols as calling {@link #getELFSymbol(String)} for
+     * each name.
+     *
+     * @param symbolNames the names of the symbols to fetch
+     * @return the symbols found, keyed by name, without entries for names not found
+     * @see #getELFSymbols(ElfSymbolNames)
+     */
+    public Map<String, ElfSymbol> getELFSymbols(Collection<String> symbolNames) throws ElfException {
+        return getELFSymbols(new ElfSymbolNames(symbolNames));
+    }
+
+    /**
+     * Looks up many symbols by name at once, returning the same symbols as calling {@link #getELFSymbol(String)} for
+     * each name.
+     * <p>
+     * Each symbol table is only traversed once for all names, comparing hashes computed directly from the string
+     * table bytes instead of decoding each symbol name. If the dynamic symbol table has a {@link ElfGnuHashTable} the
+     * hashed part of it is not traversed at all: its bloom filter rejects most missing names, and the remaining names
+     * are looked up in bucket order.
+     * <p>
+     * As with {@link #getELFSymbol(String)}, default versions of dynamic symbols are preferred over hidden ones.
+     *
+     * @param symbolNames the names of the symbols to fetch, which may be reused for other files
+     * @return the symbols found, keyed by name, without entries for names not found
+     */
+    public Map<String, ElfSymbol> getELFSymbols(ElfSymbolNames symbolNames) throws ElfException {
+        ElfSymbol[] found = new ElfSymbol[symbolNames.size()];
+        int remaining = found.length;
+
+        // Check dynamic symbol table for symbol names.
+        ElfSymbolTableSection dynsym = getDynamicSymbolTableSection();
+        ElfSymbolVersionSection versions = (dynsym == null) ? null : getSymbolVersionSection();
+        if (dynsym != null && remaining > 0) {
+            ElfGnuHashTable gnuHashTable = getDynamicGnuHashTable();
+            if (gnuHashTable != null) {
+                // Symbols before symoffset, typically undefined ones, are not in the hash table.
+                int hashedFrom = Math.min(gnuHashTable.symoffset, dynsym.symbols.length);
+                remaining -= symbolNames.findSymbols(dynsym, 0, hashedFrom, versions, found);
+                if (remaining > 0) remaining -= gnuHashTable.lookupSymbols(symbolNames, dynsym, versions, found);
+            } else {
+                remaining -= symbolNames.findSymbols(dynsym, 0, dynsym.symbols.length, versions, found);
+            }
+        }
+
+        // Check symbol table for symbol names.
+        ElfSymbolTableSection sh = getSymbolTableSection();
+        if (sh != null && remaining > 0) {
+            remaining -= symbolNames.findSymbols(sh, 0, sh.symbols.length, null, found);
+        }
+
+        // Fall back to hidden versions of dynamic symbols, which were skipped above.
+        if (versions != null && remaining > 0) {
+            symbolNames.findSymbols(dynsym, 0, dynsym.symbols.length, null, found);
+        }
+
+        Map<String, ElfSymbol> result = new HashMap<>();
+        for (int i = 0; i < found.length; i++) {
+            if (found[i] != null) result.put(symbolNames.names[i], found[i]);
+        }
+        return result;
+    }
+
     /**
      * Returns the elf symbol with the specified address or null if one is not found. 'address' is relative to base of
      * shared object for .so's.
      *
      * @param address the address of the symbol to fetch
      * @return the symbol at the specified address, if any
+     * @see ElfSymbolAddressIndex#symbolsContaining(long) to get all symbols containing an address
      */
     public ElfSymbol getELFSymbol(long address) throws ElfException {
         // Check dynamic symbol table for address.
@@ -1197,6 +1441,80 @@ public final class ElfFile {
         return null;
     }
 
+    /**
+     * Returns an index of the symbols of this file by address, built on first use. Many addresses can be resolved at
+     * once with its {@link ElfSymbolAddressIndex#lookup(long[], int[], long[])}.
+     *
+     * @return the symbol address index for this file
+     */
+    public ElfSymbolAddressIndex getSymbolAddressIndex() throws ElfException {
+        return getSymbolAddressIndex(false);
+    }
+
+    /**
+     * Returns an index of the symbols of this file by address, built on first use.
+     * <p>
+     * If {@code inferSizes} is true, defined functions, objects and untyped symbols with a zero
+     * {@link ElfSymbol#st_size} are taken to extend up to the next symbol in the same section, clamped to the end of
+     * the section, instead of being left out of the index.
+     *
+     * @param inferSizes whether to infer the size of symbols without one
+     * @return the symbol address index for this file
+     */
+    public ElfSymbolAddressIndex getSymbolAddressIndex(boolean inferSizes) throws ElfException {
+        if (inferSizes) {
+            return (sizeInferringSymbolAddressIndex != null)
+                    ? sizeInferringSymbolAddressIndex
+                    : (sizeInferringSymbolAddressIndex = new ElfSymbolAddressIndex(this, true));
+        }
+        return (symbolAddressIndex != null)
+                ? symbolAddressIndex
+                : (symbolAddressIndex = new ElfSymbolAddressIndex(this, false));
+    }
+
+    /**
+     * Returns an index of the {@link ElfSegment#PT_LOAD} segments of this file, for translating between virtual
+     * addresses and file offsets, built on first use.
+     *
+     * @return the load segment index for this file
+     */
+    public ElfLoadSegmentIndex getLoadSegmentIndex() throws ElfException {
+        return (loadSegmentIndex != null) ? loadSegmentIndex : (loadSegmentIndex = new ElfLoadSegmentIndex(this));
+    }
+
+    /**
+     * Returns a view of the memory of this file as loaded, for reading data at virtual addresses, created on first
+     * use.
+     *
+     * @return the memory image of this file
+     */
+    public ElfMemoryImage getMemoryImage() throws ElfException {
+        return (memoryImage != null) ? memoryImage : (memoryImage = new ElfMemoryImage(this));
+    }
+
+    /**
+     * Returns an index of the relocations of all relocation sections of this file by offset and by symbol, built on
+     * first use.
+     *
+     * @return the relocation index for this file
+     */
+    public ElfRelocationIndex getRelocationIndex() throws ElfException {
+        return (relocationIndex != null) ? relocationIndex : (relocationIndex = new ElfRelocationIndex(this));
+    }
+
+    /**
+     * Returns a columnar view of the relocations of a section, created on first use. Unlike the
+     * {@link ElfRelocationSection} and {@link ElfRelocationAddendSection} sections it does not create an object per
+     * relocation, and it also reads the {@link ElfAndroidRelocationSection packed} and {@link ElfRelrSection RELR}
+     * relocation sections.
+     *
+     * @param index the index of the section
+     * @return the relocation table of the section, or null if the section does not hold relocations
+     */
+    public ElfRelocationTable getRelocationTable(int index) throws ElfException {
+        return relocationTables[index].getValue();
+    }
+
     public ElfSegment getProgramHeader(int index) {
         return programHeaders[index].getValue();
     }
@@ -1310,6 +1628,7 @@ public final class ElfFile {
 
     ElfFile(BackingFile backingFile) throws ElfException {
         final ElfParser parser = new ElfParser(this, backingFile);
+        this.parser = parser;
 
         byte[] ident = new byte[16];
         int bytesRead = parser.read(ident);
@@ -1380,8 +1699,21 @@ public final class ElfFile {
                             return new ElfRelocationAddendSection(parser, elfSectionHeader);
                         case ElfSectionHeader.SHT_REL:
                             return new ElfRelocationSection(parser, elfSectionHeader);
+                        case ElfSectionHeader.SHT_RELR:
+                        case ElfSectionHeader.SHT_ANDROID_RELR:
+                            return new ElfRelrSection(parser, elfSectionHeader);
+                        case ElfSectionHeader.SHT_ANDROID_REL:
+                            return new ElfAndroidRelocationSection(parser, elfSectionHeader);
+                        case ElfSectionHeader.SHT_ANDROID_RELA:
+                            return new ElfAndroidRelocationAddendSection(parser, elfSectionHeader);
                         case ElfSectionHeader.SHT_GNU_HASH:
                             return new ElfGnuHashTable(parser, elfSectionHeader);
+                        case ElfSectionHeader.SHT_GNU_versym:
+                            return new ElfSymbolVersionSection(parser, elfSectionHeader);
+                        case ElfSectionHeader.SHT_GNU_verdef:
+                            return new ElfVersionDefinitionSection(parser, elfSectionHeader);
+                        case ElfSectionHeader.SHT_GNU_verneed:
+                            return new ElfVersionRequirementSection(parser, elfSectionHeader);
                         default:
                             return new ElfSection(parser, elfSectionHeader);
                     }
@@ -1389,6 +1721,18 @@ public final class ElfFile {
             };
         }
 
+        relocationTables = MemoizedObject.uncheckedArray(e_shnum);
+        for (int i = 0; i < e_shnum; i++) {
+            final int sectionIndex = i;
+            final long sectionHeaderOffset = e_shoff + (i * e_shentsize);
+            relocationTables[i] = new MemoizedObject<ElfRelocationTable>() {
+                @Override
+                protected ElfRelocationTable computeValue() throws ElfException {
+                    return ElfRelocationTable.read(ElfFile.this, sectionIndex, sectionHeaderOffset);
+                }
+            };
+        }
+
         programHeaders = MemoizedObject.uncheckedArray(e_phnum);
         for (int i = 0; i < e_phnum; i++) {
             final long programHeaderOffset = e_phoff + (i * e_phentsize);
@@ -1401,6 +1745,23 @@ public final class ElfFile {
         }
     }
 
+    /**
+     * The build id of this file, from its {@link ElfNoteSection#NT_GNU_BUILD_ID} note. The build id identifies the
+     * contents of the file, and is typically a 20 byte SHA-1 hash.
+     *
+     * @return the build id of this file, or null if it has none
+     */
+    public byte[] getBuildId() throws ElfException {
+        for (ElfNoteSection noteSection : sectionsOfType(ElfNoteSection.class)) {
+            for (ElfNoteSection.ElfNote note : noteSection.notes()) {
+                if (note.type == ElfNoteSection.NT_GNU_BUILD_ID && "GNU".equals(note.name)) {
+                    return note.descriptorBytes();
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * The interpreter specified by the {@link ElfSegment#PT_INTERP} program header, if any.
      *
@@ -1,5 +1,7 @@
 package net.fornwall.jelf;
 
+import java.util.Arrays;
+
 /**
  * An ELF section containing a hash table for lookup of dynamic symbols.
  *
@@ -42,24 +44,21 @@ public class ElfGnuHashTable extends ElfSection {
     }
 
     ElfSymbol lookupSymbol(String symbolName, ElfSymbolTableSection symbolTable) {
-        if (chain == null) {
-            int chainSize = symbolTable.symbols.length - symoffset;
-            chain = new int[chainSize];
-            parser.seek(
-                    header.sh_offset + 4 * 4 + (long) bloom.length * (ELFCLASS_BITS / 8) + (long) buckets.length * 4);
-            for (int i = 0; i < chainSize; i++) {
-                chain[i] = parser.readInt();
-            }
-        }
-
-        final int nameHash = gnuHash(symbolName);
+        return lookupSymbol(symbolName, symbolTable, null, null);
+    }
 
-        long word = bloom[(Integer.remainderUnsigned(Integer.divideUnsigned(nameHash, ELFCLASS_BITS), bloom.length))];
-        long mask = 1L << (long) (Integer.remainderUnsigned(nameHash, ELFCLASS_BITS))
-                | 1L << (long) (Integer.remainderUnsigned((nameHash >>> bloom_shift), ELFCLASS_BITS));
+    /**
+     * Looks up a symbol by name and version.
+     *
+     * @param versions the version of each symbol, or null to return the first symbol with the name
+     * @param version the version name, or null to only match the default version of the symbol
+     */
+    ElfSymbol lookupSymbol(
+            String symbolName, ElfSymbolTableSection symbolTable, ElfSymbolVersionSection versions, String version) {
+        ensureChain(symbolTable);
 
-        if ((word & mask) != mask) {
-            // If at least one bit is not set, a symbol is surely missing.
+        final int nameHash = gnuHash(symbolName);
+        if (!bloomMayContain(nameHash)) {
             return null;
         }
 
@@ -74,10 +73,12 @@ public class ElfGnuHashTable extends ElfSection {
             if ((((long) nameHash) | 1L) == (((long) hash) | 1L)) {
                 // The chain contains contiguous sequences of hashes for symbols hashing to the same index,
                 // with the lowest bit discarded (used to signal end of chain).
+                // Symbols with the same name but different versions follow each other in the chain.
                 ElfSymbol symbol = symbolTable.symbols[symix];
-                if (symbolName.equals(symbol.getName())) return symbol;
+                if (symbol.nameEquals(symbolName) && (versions == null || versions.matches(symix, version))) {
+                    return symbol;
+                }
             }
-            ElfSymbol symbol = symbolTable.symbols[symix];
 
             if ((hash & 1) != 0) {
                 // Chain ends with an element with the lowest bit set to 1.
@@ -90,6 +91,123 @@ public class ElfGnuHashTable extends ElfSection {
         return null;
     }
 
+    /**
+     * Returns the indices of all symbols with the given name, such as the different versions of a symbol, in the order
+     * they appear in the chain.
+     */
+    int[] lookupSymbolIndices(String symbolName, ElfSymbolTableSection symbolTable) {
+        ensureChain(symbolTable);
+
+        final int nameHash = gnuHash(symbolName);
+        if (!bloomMayContain(nameHash)) return new int[0];
+        int symix = buckets[Integer.remainderUnsigned(nameHash, buckets.length)];
+        if (symix < symoffset) return new int[0];
+
+        int[] result = new int[0];
+        while (true) {
+            int hash = chain[symix - symoffset];
+            if ((nameHash | 1) == (hash | 1) && symbolTable.symbols[symix].nameEquals(symbolName)) {
+                result = Arrays.copyOf(result, result.length + 1);
+                result[result.length - 1] = symix;
+            }
+            if ((hash & 1) != 0) break;
+            symix++;
+        }
+        return result;
+    }
+
+    /**
+     * Looks up all the given names, storing each symbol found at the index of its name in {@code found}. Names which
+     * already have a symbol in {@code found} are skipped.
+     * <p>
+     * The names are visited in bucket order, so that the buckets and chains are traversed from front to back, and
+     * names rejected by the bloom filter never touch the buckets at all. If {@code versions} is given, symbols which
+     * are not the default version of their name are skipped.
+     *
+     * @return the number of symbols found
+     */
+    int lookupSymbols(
+            ElfSymbolNames names,
+            ElfSymbolTableSection symbolTable,
+            ElfSymbolVersionSection versions,
+            ElfSymbol[] found) {
+        ensureChain(symbolTable);
+        ElfStringTable stringTable = symbolTable.getStringTable();
+        if (stringTable == null) return 0;
+
+        int[] hashes = names.gnuHashes;
+        long[] bucketOrder = new long[hashes.length];
+        int candidates = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (found[i] == null && bloomMayContain(hashes[i])) {
+                long bucket = Integer.remainderUnsigned(hashes[i], buckets.length);
+                bucketOrder[candidates++] = (bucket << 32) | i;
+            }
+        }
+        Arrays.sort(bucketOrder, 0, candidates);
+
+        int foundCount = 0;
+        for (int c = 0; c < candidates; c++) {
+            int nameIndex = (int) bucketOrder[c];
+            int nameHash = hashes[nameIndex];
+            int symix = buckets[(int) (bucketOrder[c] >>> 32)];
+            if (symix < symoffset) continue;
+            while (true) {
+                int hash = chain[symix - symoffset];
+                if ((nameHash | 1) == (hash | 1)) {
+                    ElfSymbol symbol = symbolTable.symbols[symix];
+                    if (symbol.st_name != 0
+                            && (versions == null || !versions.isHidden(symix))
+                            && stringTable.contentEquals(symbol.st_name, names.names[nameIndex])) {
+                        found[nameIndex] = symbol;
+                        foundCount++;
+                        break;
+                    }
+                }
+                if ((hash & 1) != 0) break;
+                symix++;
+            }
+        }
+        return foundCount;
+    }
+
+    private void ensureChain(ElfSymbolTableSection symbolTable) {
+        if (chain == null) {
+            int chainSize = symbolTable.symbols.length - symoffset;
+            chain = new int[chainSize];
+            parser.seek(chainOffset());
+            for (int i = 0; i < chainSize; i++) {
+                chain[i] = parser.readInt();
+            }
+        }
+    }
+
+    private long chainOffset() {
+        return header.sh_offset + 4 * 4 + (long) bloom.length * (ELFCLASS_BITS / 8) + (long) buckets.length * 4;
+    }
+
+    /**
+     * Counts the dynamic symbols, for files without a section header giving the size of the dynamic symbol table. The
+     * chain starting at the highest bucket index is followed to its end, marked by the lowest bit of the hash being
+     * set, which is the last symbol of the table.
+     */
+    int countSymbols() {
+        int last = 0;
+        for (int bucket : buckets) last = Math.max(last, bucket);
+        if (last < symoffset) return symoffset;
+        parser.seek(chainOffset() + 4L * (last - symoffset));
+        while ((parser.readInt() & 1) == 0) last++;
+        return last + 1;
+    }
+
+    /** If at least one bit is not set in the bloom filter, a symbol with the hash is surely missing. */
+    private boolean bloomMayContain(int nameHash) {
+        long word = bloom[(Integer.remainderUnsigned(Integer.divideUnsigned(nameHash, ELFCLASS_BITS), bloom.length))];
+        long mask = 1L << (long) (Integer.remainderUnsigned(nameHash, ELFCLASS_BITS))
+                | 1L << (long) (Integer.remainderUnsigned((nameHash >>> bloom_shift), ELFCLASS_BITS));
+        return (word & mask) == mask;
+    }
+
     static int gnuHash(String name) {
         int h = 5381;
         int nameLength = name.length();
@@ -99,4 +217,13 @@ public class ElfGnuHashTable extends ElfSection {
         }
         return h;
     }
+
+    /** The hash of the encoded bytes of a name, as computed by the linker. */
+    static int gnuHash(byte[] name) {
+        int h = 5381;
+        for (byte b : name) {
+            h = (h << 5) + h + (b & 0xFF);
+        }
+        return h;
+    }
 }
@@ -39,13 +39,18 @@ public class ElfHashTable extends ElfSection {
         }
     }
 
+    /** The number of dynamic symbols, which is the number of chain entries. */
+    int countSymbols() {
+        return chain.length;
+    }
+
     public ElfSymbol lookupSymbol(String name, ElfSymbolTableSection symbolTable) {
         long hashValue = elfHash(name);
         int index = buckets[(int) (hashValue % buckets.length)];
         while (true) {
             if (index == 0) return null;
             ElfSymbol symbol = symbolTable.symbols[index];
-            if (name.equals(symbol.getName())) return symbol;
+            if (symbol.nameEquals(name)) return symbol;
             index = chain[index];
         }
     }
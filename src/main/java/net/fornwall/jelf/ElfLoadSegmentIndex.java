@@ -0,0 +1,202 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An index over the {@link ElfSegment#PT_LOAD} segments of an {@link ElfFile}, for translating between virtual
+ * addresses and file offsets.
+ * <p>
+ * Obtain it with {@link ElfFile#getLoadSegmentIndex()}. The segments are sorted by virtual address, and separately by
+ * file offset, so that each translation is a binary search instead of a scan over all program headers. Addresses and
+ * offsets are compared as unsigned values.
+ * <p>
+ * A virtual address only has a file offset if it is within the {@link ElfSegment#p_filesz file size} of its segment,
+ * as the rest of the {@link ElfSegment#p_memsz memory size} is zero-filled when loaded. The segments of a valid file
+ * do not overlap in memory, but may share file contents, in which case a file offset is translated using the segment
+ * with the greatest file offset containing it.
+ */
+public final class ElfLoadSegmentIndex {
+
+    /** The segments in ascending order of virtual address. */
+    private final ElfSegment[] segments;
+    private final long[] addresses;
+    private final long[] memorySizes;
+    private final long[] fileSizes;
+    private final long[] offsets;
+
+    /** The indices of the segments in ascending order of file offset, with their file offsets. */
+    private final int[] byOffset;
+    private final long[] sortedOffsets;
+
+    ElfLoadSegmentIndex(ElfFile file) throws ElfException {
+        List<ElfSegment> loadSegments = new ArrayList<>();
+        for (int i = 0; i < file.e_phnum; i++) {
+            ElfSegment segment = file.getProgramHeader(i);
+            if (segment.p_type == ElfSegment.PT_LOAD) loadSegments.add(segment);
+        }
+        loadSegments.sort((a, b) -> Long.compareUnsigned(a.p_vaddr, b.p_vaddr));
+
+        int count = loadSegments.size();
+        segments = loadSegments.toArray(new ElfSegment[0]);
+        addresses = new long[count];
+        memorySizes = new long[count];
+        fileSizes = new long[count];
+        offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = segments[i].p_vaddr;
+            memorySizes[i] = segments[i].p_memsz;
+            fileSizes[i] = segments[i].p_filesz;
+            offsets[i] = segments[i].p_offset;
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) order.add(i);
+        order.sort((a, b) -> Long.compareUnsigned(offsets[a], offsets[b]));
+        byOffset = new int[count];
+        sortedOffsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            byOffset[i] = order.get(i);
+            sortedOffsets[i] = offsets[byOffset[i]];
+        }
+    }
+
+    /** The number of {@link ElfSegment#PT_LOAD} segments. */
+    public int size() {
+        return segments.length;
+    }
+
+    /**
+     * Returns a segment of this index.
+     *
+     * @param index the index of the segment, in ascending order of virtual address
+     * @return the segment
+     */
+    public ElfSegment getSegment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Finds the segment containing a virtual address in its memory.
+     *
+     * @param address the virtual address
+     * @return the index of the segment containing the address, or -1 if none does
+     */
+    public int indexOfAddress(long address) {
+        int index = lastAtOrBelow(addresses, address);
+        return (index >= 0 && Long.compareUnsigned(address - addresses[index], memorySizes[index]) < 0) ? index : -1;
+    }
+
+    /**
+     * Finds the segment containing a file offset in its file contents.
+     *
+     * @param offset the file offset
+     * @return the index of the segment containing the offset, or -1 if none does
+     */
+    public int indexOfFileOffset(long offset) {
+        int position = positionOfFileOffset(offset);
+        return (position < 0) ? -1 : byOffset[position];
+    }
+
+    /** The position in {@link #byOffset} of the segment containing a file offset, or -1 if none does. */
+    private int positionOfFileOffset(long offset) {
+        // Segments may share file contents, so a segment starting before the one found may also contain the offset.
+        for (int i = lastAtOrBelow(sortedOffsets, offset); i >= 0; i--) {
+            int index = byOffset[i];
+            if (Long.compareUnsigned(offset - offsets[index], fileSizes[index]) < 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Translates a virtual address to the file offset holding its initial contents.
+     *
+     * @param address the virtual address
+     * @return the file offset
+     * @throws ElfException if the address is not in any segment, or in the zero-filled part of it
+     */
+    public long toFileOffset(long address) throws ElfException {
+        int index = indexOfAddress(address);
+        if (index < 0) throw new ElfException("Cannot find segment for address " + Long.toHexString(address));
+        long relativeOffset = address - addresses[index];
+        if (Long.compareUnsigned(relativeOffset, fileSizes[index]) >= 0) {
+            throw new ElfException("Can not convert virtual memory address " + Long.toHexString(address)
+                    + " to file offset - found segment " + segments[index]
+                    + " but address maps to memory outside file range");
+        }
+        return offsets[index] + relativeOffset;
+    }
+
+    /**
+     * Translates a file offset to the virtual address it is loaded at.
+     *
+     * @param offset the file offset
+     * @return the virtual address
+     * @throws ElfException if the offset is not in the file contents of any segment
+     */
+    public long toVirtualAddress(long offset) throws ElfException {
+        int index = indexOfFileOffset(offset);
+        if (index < 0) throw new ElfException("Cannot find segment for file offset " + Long.toHexString(offset));
+        return addresses[index] + (offset - offsets[index]);
+    }
+
+    /**
+     * Translates many virtual addresses to file offsets at once. Consecutive addresses in the same segment, as when
+     * walking a table, are translated without searching.
+     *
+     * @param addresses the virtual addresses, in any order
+     * @param result receives, at the index of each address, its file offset or -1 if it has none
+     */
+    public void toFileOffsets(long[] addresses, long[] result) {
+        int index = -1;
+        for (int i = 0; i < addresses.length; i++) {
+            long address = addresses[i];
+            if (index < 0 || Long.compareUnsigned(address - this.addresses[index], memorySizes[index]) >= 0) {
+                index = indexOfAddress(address);
+            }
+            long relativeOffset = (index < 0) ? -1 : address - this.addresses[index];
+            result[i] = (index < 0 || Long.compareUnsigned(relativeOffset, fileSizes[index]) >= 0)
+                    ? -1
+                    : offsets[index] + relativeOffset;
+        }
+    }
+
+    /**
+     * Translates many file offsets to virtual addresses at once. Consecutive offsets in the same segment are
+     * translated without searching.
+     *
+     * @param offsets the file offsets, in any order
+     * @param result receives, at the index of each offset, its virtual address or -1 if it is not loaded
+     */
+    public void toVirtualAddresses(long[] offsets, long[] result) {
+        int position = -1;
+        for (int i = 0; i < offsets.length; i++) {
+            long offset = offsets[i];
+            int index = (position < 0) ? -1 : byOffset[position];
+            // The previous segment is only reused if no segment starting after it also contains the offset.
+            if (index < 0
+                    || Long.compareUnsigned(offset - this.offsets[index], fileSizes[index]) >= 0
+                    || (position + 1 < sortedOffsets.length
+                            && Long.compareUnsigned(sortedOffsets[position + 1], offset) <= 0)) {
+                position = positionOfFileOffset(offset);
+                index = (position < 0) ? -1 : byOffset[position];
+            }
+            result[i] = (index < 0) ? -1 : addresses[index] + (offset - this.offsets[index]);
+        }
+    }
+
+    /** The index of the last of the unsigned ascending values which is at or below the key, or -1 if none is. */
+    private static int lastAtOrBelow(long[] values, long key) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(values[mid], key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+}
@@ -0,0 +1,216 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * A read-only view of the address space of an {@link ElfFile} as loaded into memory, for reading data such as
+ * pointers and strings at virtual addresses.
+ * <p>
+ * Obtain it with {@link ElfFile#getMemoryImage()}. The address space consists of the {@link ElfSegment#PT_LOAD}
+ * segments, each covering {@link ElfSegment#p_memsz} bytes from its {@link ElfSegment#p_vaddr}. The first
+ * {@link ElfSegment#p_filesz} of those bytes are read from the file, while the rest, such as the .bss section, reads as
+ * zeros. Addresses outside of all segments are not mapped, and reading them throws an {@link ElfException}.
+ * <p>
+ * The file contents of each segment are sliced from the backing file on first use, sharing memory with it if the file
+ * is memory mapped. Values are read in the byte order of the file, without the relocations applied by a dynamic
+ * linker.
+ */
+public final class ElfMemoryImage {
+
+    private final ElfFile file;
+    private final ElfLoadSegmentIndex segments;
+    private final MemoizedObject<ByteBuffer>[] contents;
+    private final ByteOrder order;
+    final boolean is32Bit;
+
+    ElfMemoryImage(final ElfFile file) throws ElfException {
+        this.file = file;
+        segments = file.getLoadSegmentIndex();
+        order = (file.ei_data == ElfFile.DATA_LSB) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        is32Bit = file.ei_class == ElfFile.CLASS_32;
+        contents = MemoizedObject.uncheckedArray(segments.size());
+        for (int i = 0; i < contents.length; i++) {
+            final ElfSegment segment = segments.getSegment(i);
+            contents[i] = new MemoizedObject<ByteBuffer>() {
+                @Override
+                protected ByteBuffer computeValue() throws ElfException {
+                    long size = Math.min(segment.p_filesz, segment.p_memsz);
+                    if (size > Integer.MAX_VALUE) throw new ElfException("Too large segment: " + segment);
+                    return file.parser.slice(segment.p_offset, (int) size).order(order);
+                }
+            };
+        }
+    }
+
+    /** Slices the contents of all segments from the backing file, after which this image may be read concurrently. */
+    void loadContents() throws ElfException {
+        for (MemoizedObject<ByteBuffer> segmentContents : contents) segmentContents.getValue();
+    }
+
+    /**
+     * Applies the dynamic relocations of the file to a copy-on-write overlay of this image.
+     *
+     * @param loadBase the address the file is loaded at, which is added to its virtual addresses
+     * @param undefinedSymbols gives the address of each undefined symbol referenced by the relocations, such as
+     *     {@code symbol -> 0} to leave them unresolved; called once per symbol on the calling thread
+     * @param executor the executor relocating the pages in parallel, such as {@code Runnable::run} to relocate them on
+     *     the calling thread
+     * @return the relocated image
+     * @see ElfRelocatedImage
+     */
+    public ElfRelocatedImage relocate(long loadBase, ToLongFunction<ElfSymbol> undefinedSymbols, Executor executor)
+            throws ElfException {
+        return new ElfRelocatedImage(file, this, loadBase, undefinedSymbols, executor);
+    }
+
+    /**
+     * Checks if an address is mapped.
+     *
+     * @param address the virtual address
+     * @return whether the address is within a {@link ElfSegment#PT_LOAD} segment
+     */
+    public boolean isMapped(long address) {
+        return segments.indexOfAddress(address) >= 0;
+    }
+
+    public byte readByte(long address) throws ElfException {
+        int index = fileContentsIndex(address, 1);
+        return (index < 0) ? readSpanning(address, 1).get() : contents[index].getValue().get(relative(index, address));
+    }
+
+    public short readShort(long address) throws ElfException {
+        int index = fileContentsIndex(address, 2);
+        return (index < 0)
+                ? readSpanning(address, 2).getShort()
+                : contents[index].getValue().getShort(relative(index, address));
+    }
+
+    public int readInt(long address) throws ElfException {
+        int index = fileContentsIndex(address, 4);
+        return (index < 0)
+                ? readSpanning(address, 4).getInt()
+                : contents[index].getValue().getInt(relative(index, address));
+    }
+
+    public long readLong(long address) throws ElfException {
+        int index = fileContentsIndex(address, 8);
+        return (index < 0)
+                ? readSpanning(address, 8).getLong()
+                : contents[index].getValue().getLong(relative(index, address));
+    }
+
+    /**
+     * Reads a pointer, which is four bytes in 32-bit files and eight bytes in 64-bit files.
+     * <p>
+     * As with the address fields of the ELF structures of this library, a 32-bit pointer is widened as a signed value.
+     *
+     * @param address the virtual address of the pointer
+     * @return the value of the pointer
+     */
+    public long readPointer(long address) throws ElfException {
+        return is32Bit ? readInt(address) : readLong(address);
+    }
+
+    /**
+     * Reads a null-terminated string, decoded in the same way as the strings of a {@link ElfStringTable}.
+     *
+     * @param address the virtual address of the first character
+     * @return the string, without the terminating null byte
+     * @throws ElfException if the string is not terminated within mapped memory
+     */
+    public String readCString(long address) throws ElfException {
+        long end = address;
+        search:
+        while (true) {
+            int index = segments.indexOfAddress(end);
+            if (index < 0) throw new ElfException("Unterminated string at 0x" + Long.toHexString(address));
+            ElfSegment segment = segments.getSegment(index);
+            ByteBuffer buffer = contents[index].getValue();
+            for (long relative = end - segment.p_vaddr; ; relative++) {
+                if (relative >= buffer.limit()) {
+                    // The zero-filled part of the segment terminates the string, if there is one.
+                    end = segment.p_vaddr + relative;
+                    if (relative < segment.p_memsz) break search;
+                    continue search;
+                }
+                if (buffer.get((int) relative) == 0) {
+                    end = segment.p_vaddr + relative;
+                    break search;
+                }
+            }
+        }
+        if (end - address > Integer.MAX_VALUE) {
+            throw new ElfException("Too long string at 0x" + Long.toHexString(address));
+        }
+        byte[] bytes = new byte[(int) (end - address)];
+        read(address, bytes, 0, bytes.length);
+        return new String(bytes);
+    }
+
+    /**
+     * Reads bytes, which may span segments if they are adjacent in memory.
+     *
+     * @param address the virtual address of the first byte
+     * @param destination the array receiving the bytes
+     * @param offset the index in the array of the first byte
+     * @param length the number of bytes to read
+     * @throws ElfException if any of the bytes are not mapped
+     */
+    public void read(long address, byte[] destination, int offset, int length) throws ElfException {
+        while (length > 0) {
+            int index = segments.indexOfAddress(address);
+            if (index < 0) throw new ElfException("Address not mapped: 0x" + Long.toHexString(address));
+            ElfSegment segment = segments.getSegment(index);
+            ByteBuffer buffer = contents[index].getValue();
+            long relative = address - segment.p_vaddr;
+            int count = (int) Math.min(length, segment.p_memsz - relative);
+            int fromFile = (int) Math.max(0, Math.min(count, buffer.limit() - relative));
+            if (fromFile > 0) buffer.get((int) relative, destination, offset, fromFile);
+            Arrays.fill(destination, offset + fromFile, offset + count, (byte) 0);
+            address += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Returns a read-only buffer with the bytes of a range of addresses, in the byte order of the file.
+     * <p>
+     * If the range is within the file contents of a segment the buffer shares memory with the backing file, otherwise
+     * the bytes are copied.
+     *
+     * @param address the virtual address of the first byte
+     * @param length the number of bytes
+     * @return a buffer containing the bytes, positioned at zero
+     * @throws ElfException if any of the bytes are not mapped
+     */
+    public ByteBuffer slice(long address, int length) throws ElfException {
+        int index = fileContentsIndex(address, length);
+        ByteBuffer result = (index < 0)
+                ? readSpanning(address, length)
+                : contents[index].getValue().slice(relative(index, address), length);
+        return result.asReadOnlyBuffer().order(order);
+    }
+
+    /** The index of the segment with the range of addresses within its file contents, or -1 if there is none. */
+    private int fileContentsIndex(long address, int length) {
+        int index = segments.indexOfAddress(address);
+        if (index < 0) return -1;
+        long relative = address - segments.getSegment(index).p_vaddr;
+        return (relative + length <= contents[index].getValue().limit()) ? index : -1;
+    }
+
+    private int relative(int index, long address) {
+        return (int) (address - segments.getSegment(index).p_vaddr);
+    }
+
+    private ByteBuffer readSpanning(long address, int length) throws ElfException {
+        byte[] bytes = new byte[length];
+        read(address, bytes, 0, length);
+        return ByteBuffer.wrap(bytes).order(order);
+    }
+}
@@ -0,0 +1,116 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the relocations of an Android APS2 packed relocation section one at a time, in the same way as the Android
+ * linker.
+ * <p>
+ * After the "APS2" magic the section holds SLEB128 numbers: the number of relocations and the initial offset, followed
+ * by groups of relocations. Each group starts with its size and flags, followed by the fields shared by all relocations
+ * of the group and then the remaining fields of each relocation. Offsets, and addends, are stored as deltas from those
+ * of the previous relocation.
+ */
+final class ElfPackedRelocationDecoder {
+
+    private static final int RELOCATION_GROUPED_BY_INFO_FLAG = 1;
+    private static final int RELOCATION_GROUPED_BY_OFFSET_DELTA_FLAG = 2;
+    private static final int RELOCATION_GROUPED_BY_ADDEND_FLAG = 4;
+    private static final int RELOCATION_GROUP_HAS_ADDEND_FLAG = 8;
+
+    private final ByteBuffer buffer;
+    private final boolean is32Bit;
+    private final boolean hasAddends;
+
+    /** The number of relocations in the section. */
+    final long count;
+
+    private long remaining;
+    private long groupRemaining;
+    private long groupFlags;
+    private long groupOffsetDelta;
+
+    /** The fields of the current relocation, after a call to {@link #next()} returning true. */
+    long offset;
+    long info;
+    long addend;
+
+    ElfPackedRelocationDecoder(ByteBuffer contents, boolean is32Bit, boolean hasAddends) throws ElfException {
+        this.buffer = contents.duplicate();
+        this.is32Bit = is32Bit;
+        this.hasAddends = hasAddends;
+        if (buffer.remaining() < 4
+                || buffer.get() != 'A'
+                || buffer.get() != 'P'
+                || buffer.get() != 'S'
+                || buffer.get() != '2') {
+            throw new ElfException("Packed relocation section does not start with APS2");
+        }
+        count = readSleb128();
+        if (count < 0) throw new ElfException("Invalid packed relocation count: " + count);
+        remaining = count;
+        offset = readSleb128();
+    }
+
+    /** Whether there are relocations left to decode. */
+    boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * Decodes the next relocation.
+     *
+     * @return false if all relocations have been decoded
+     */
+    boolean next() throws ElfException {
+        if (remaining == 0) return false;
+        while (groupRemaining == 0) readGroup();
+
+        if ((groupFlags & RELOCATION_GROUPED_BY_OFFSET_DELTA_FLAG) != 0) {
+            offset = widen(offset + groupOffsetDelta);
+        } else {
+            offset = widen(offset + readSleb128());
+        }
+        if ((groupFlags & RELOCATION_GROUPED_BY_INFO_FLAG) == 0) info = widen(readSleb128());
+        if ((groupFlags & RELOCATION_GROUP_HAS_ADDEND_FLAG) != 0
+                && (groupFlags & RELOCATION_GROUPED_BY_ADDEND_FLAG) == 0) {
+            addend = widen(addend + readSleb128());
+        }
+        remaining--;
+        groupRemaining--;
+        return true;
+    }
+
+    private void readGroup() throws ElfException {
+        groupRemaining = readSleb128();
+        if (groupRemaining < 0) throw new ElfException("Invalid packed relocation group size: " + groupRemaining);
+        groupFlags = readSleb128();
+        if ((groupFlags & RELOCATION_GROUPED_BY_OFFSET_DELTA_FLAG) != 0) groupOffsetDelta = readSleb128();
+        if ((groupFlags & RELOCATION_GROUPED_BY_INFO_FLAG) != 0) info = widen(readSleb128());
+        if ((groupFlags & RELOCATION_GROUP_HAS_ADDEND_FLAG) != 0) {
+            if (!hasAddends) throw new ElfException("Unexpected addend in packed relocation section without addends");
+            if ((groupFlags & RELOCATION_GROUPED_BY_ADDEND_FLAG) != 0) addend = widen(addend + readSleb128());
+        } else {
+            addend = 0;
+        }
+    }
+
+    /** Wraps a value to the word size of the file, sign-extending 32-bit values as done when reading them. */
+    private long widen(long value) {
+        return is32Bit ? (int) value : value;
+    }
+
+    private long readSleb128() throws ElfException {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (!buffer.hasRemaining()) throw new ElfException("Truncated packed relocation section");
+            b = buffer.get();
+            if (shift < 64) result |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (shift < 64 && (b & 0x40) != 0) result |= -1L << shift;
+        return result;
+    }
+}
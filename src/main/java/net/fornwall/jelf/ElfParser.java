@@ -1,5 +1,7 @@
 package net.fornwall.jelf;
 
+import java.nio.ByteBuffer;
+
 /** Package internal class used for parsing ELF files. */
 class ElfParser {
 
@@ -95,23 +97,19 @@ class ElfParser {
     /**
      * Find the file offset from a virtual address by looking up the {@link ElfSegment} segment containing the
      * address and computing the resulting file offset.
+     *
+     * @see ElfLoadSegmentIndex#toFileOffset(long)
      */
     long virtualMemoryAddrToFileOffset(long address) {
-        for (int i = 0; i < elfFile.e_phnum; i++) {
-            ElfSegment ph = elfFile.getProgramHeader(i);
-            if (address >= ph.p_vaddr && address < (ph.p_vaddr + ph.p_memsz)) {
-                long relativeOffset = address - ph.p_vaddr;
-                if (relativeOffset >= ph.p_filesz)
-                    throw new ElfException(
-                            "Can not convert virtual memory address " + Long.toHexString(address) + " to file offset -"
-                                    + " found segment " + ph + " but address maps to memory outside file range");
-                return ph.p_offset + relativeOffset;
-            }
-        }
-        throw new ElfException("Cannot find segment for address " + Long.toHexString(address));
+        return elfFile.getLoadSegmentIndex().toFileOffset(address);
     }
 
     public int read(byte[] data) {
         return backingFile.read(data);
     }
+
+    /** Returns the bytes at [offset, offset + length), sharing memory with the backing file when possible. */
+    ByteBuffer slice(long offset, int length) {
+        return backingFile.slice(offset, length);
+    }
 }
@@ -0,0 +1,482 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * The {@link ElfMemoryImage memory image} of an {@link ElfFile} with its dynamic relocations applied, holding the
+ * values the dynamic linker would write when loading the file at a given base address, such as the pointers of
+ * vtables and .init_array.
+ * <p>
+ * Create it with {@link ElfMemoryImage#relocate(long, ToLongFunction, Executor)}. Addresses are the virtual addresses
+ * of the file, as in the memory image, while the values written are those for the load base: a relative relocation
+ * writes the load base plus the addend, and a symbol defined by the file has the load base plus its value.
+ * <p>
+ * The relocations of the allocated {@link ElfRelocationSection}, {@link ElfRelocationAddendSection},
+ * {@link ElfAndroidRelocationSection}, {@link ElfAndroidRelocationAddendSection} and {@link ElfRelrSection} sections
+ * are applied to copies of the pages they write to, while all other pages are read from the memory image. The pages are
+ * relocated in parallel, in batches of pages, with the relocations of each page applied in the order of the tables.
+ * <p>
+ * The supported relocation types are:
+ * <ul>
+ *     <li>x86-64: R_X86_64_64, R_X86_64_PC32, R_X86_64_32, R_X86_64_32S, R_X86_64_GLOB_DAT, R_X86_64_JUMP_SLOT,
+ *     R_X86_64_RELATIVE and R_X86_64_IRELATIVE.</li>
+ *     <li>AArch64: R_AARCH64_ABS64, R_AARCH64_ABS32, R_AARCH64_PREL64, R_AARCH64_PREL32, R_AARCH64_GLOB_DAT,
+ *     R_AARCH64_JUMP_SLOT, R_AARCH64_RELATIVE and R_AARCH64_IRELATIVE.</li>
+ *     <li>ARM: R_ARM_ABS32, R_ARM_REL32, R_ARM_GLOB_DAT, R_ARM_JUMP_SLOT, R_ARM_RELATIVE and R_ARM_IRELATIVE.</li>
+ *     <li>Intel 80386: R_386_32, R_386_PC32, R_386_GLOB_DAT, R_386_JMP_SLOT, R_386_RELATIVE and R_386_IRELATIVE.</li>
+ * </ul>
+ * As the resolver function of an IRELATIVE relocation can not be run, its address is written instead of the address
+ * it would return. Other relocations, such as copy and thread-local relocations, are skipped and counted by
+ * {@link #getSkippedCount()}, as are relocations writing outside of the {@link ElfSegment#PT_LOAD} segments.
+ */
+public final class ElfRelocatedImage {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGES_PER_TASK = 64;
+
+    /** The value written: the symbol, the symbol plus the addend, the load base plus the addend or PC relative. */
+    private static final byte KIND_SKIP = 0;
+    private static final byte KIND_SYMBOL = 1;
+    private static final byte KIND_SYMBOL_ADDEND = 2;
+    private static final byte KIND_BASE_ADDEND = 3;
+    private static final byte KIND_PC_RELATIVE = 4;
+
+    /** Section index of absolute symbols, whose values are not relocated. */
+    private static final short SHN_ABS = (short) 0xfff1;
+
+    private final ElfMemoryImage image;
+    private final ElfLoadSegmentIndex segments;
+    private final ByteOrder order;
+    private final long loadBase;
+    private final Map<Long, ByteBuffer> pages = new HashMap<>();
+    private int appliedCount;
+    private int skippedCount;
+
+    /** The relocations in table order, with the symbol values resolved. */
+    private long[] offsets = new long[256];
+    private long[] addends = new long[256];
+    private long[] symbolValues = new long[256];
+    private byte[] kinds = new byte[256];
+    private byte[] widths = new byte[256];
+    private boolean[] implicitAddends = new boolean[256];
+    private int count;
+
+    ElfRelocatedImage(
+            ElfFile file,
+            ElfMemoryImage image,
+            long loadBase,
+            ToLongFunction<ElfSymbol> undefinedSymbols,
+            Executor executor) {
+        this.image = image;
+        this.segments = file.getLoadSegmentIndex();
+        this.order = (file.ei_data == ElfFile.DATA_LSB) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        this.loadBase = loadBase;
+
+        // Everything using the parser or the symbol function is done before relocating in parallel.
+        Map<ElfSymbolTableSection, SymbolValues> symbolValues = new IdentityHashMap<>();
+        for (int i = 1; i < file.e_shnum; i++) {
+            ElfRelocationTable table = file.getRelocationTable(i);
+            if (table == null || (table.header.sh_flags & ElfSectionHeader.FLAG_ALLOC) == 0) continue;
+            // Tables linking the same symbol table, such as .rela.dyn and .rela.plt, share the resolved values.
+            SymbolValues symbols = symbolValues.computeIfAbsent(
+                    table.getSymbolTable(), symbolTable -> new SymbolValues(symbolTable, undefinedSymbols));
+            for (int j = 0; j < table.size(); j++) {
+                add(file, table.getOffset(j), table.getType(j), table.getSymbolIndex(j), symbols);
+                addends[count - 1] = table.getAddend(j);
+                implicitAddends[count - 1] = !table.hasAddends();
+            }
+        }
+        image.loadContents();
+
+        relocate(executor);
+    }
+
+    /** The values of the symbols of a symbol table, resolved on first use. */
+    private static final class SymbolValues {
+        final ElfSymbolTableSection symbolTable;
+        final ToLongFunction<ElfSymbol> undefinedSymbols;
+        long[] values;
+        boolean[] resolved;
+
+        SymbolValues(ElfSymbolTableSection symbolTable, ToLongFunction<ElfSymbol> undefinedSymbols) {
+            this.symbolTable = symbolTable;
+            this.undefinedSymbols = undefinedSymbols;
+        }
+
+        long get(int symbolIndex, long base) {
+            if (symbolIndex == 0 || symbolTable == null || symbolIndex >= symbolTable.symbols.length) return 0;
+            if (values == null) {
+                values = new long[symbolTable.symbols.length];
+                resolved = new boolean[values.length];
+            }
+            if (!resolved[symbolIndex]) {
+                ElfSymbol symbol = symbolTable.symbols[symbolIndex];
+                if (symbol.st_shndx == 0) {
+                    values[symbolIndex] = undefinedSymbols.applyAsLong(symbol);
+                } else {
+                    values[symbolIndex] = (symbol.st_shndx == SHN_ABS) ? symbol.st_value : base + symbol.st_value;
+                }
+                resolved[symbolIndex] = true;
+            }
+            return values[symbolIndex];
+        }
+    }
+
+    private void add(ElfFile file, long offset, long type, int symbolIndex, SymbolValues symbols) {
+        if (count == offsets.length) {
+            int capacity = count * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            addends = Arrays.copyOf(addends, capacity);
+            symbolValues = Arrays.copyOf(symbolValues, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            implicitAddends = Arrays.copyOf(implicitAddends, capacity);
+        }
+        byte kind = KIND_SKIP;
+        byte width = 0;
+        switch (file.e_machine) {
+            case ElfFile.ARCH_X86_64:
+                switch ((int) type) {
+                    case ElfRelocationTypes.R_X86_64_64:
+                        kind = KIND_SYMBOL_ADDEND;
+                        width = 8;
+                        break;
+                    case ElfRelocationTypes.R_X86_64_PC32:
+                        kind = KIND_PC_RELATIVE;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_X86_64_32:
+                    case ElfRelocationTypes.R_X86_64_32S:
+                        kind = KIND_SYMBOL_ADDEND;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_X86_64_GLOB_DAT:
+                    case ElfRelocationTypes.R_X86_64_JUMP_SLOT:
+                        kind = KIND_SYMBOL;
+                        width = 8;
+                        break;
+                    case ElfRelocationTypes.R_X86_64_RELATIVE:
+                    case ElfRelocationTypes.R_X86_64_IRELATIVE:
+                        kind = KIND_BASE_ADDEND;
+                        width = 8;
+                        break;
+                }
+                break;
+            case ElfFile.ARCH_AARCH64:
+                switch ((int) type) {
+                    case ElfRelocationTypes.R_AARCH64_ABS64:
+                    case ElfRelocationTypes.R_AARCH64_GLOB_DAT:
+                    case ElfRelocationTypes.R_AARCH64_JUMP_SLOT:
+                        kind = KIND_SYMBOL_ADDEND;
+                        width = 8;
+                        break;
+                    case ElfRelocationTypes.R_AARCH64_ABS32:
+                        kind = KIND_SYMBOL_ADDEND;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_AARCH64_PREL64:
+                        kind = KIND_PC_RELATIVE;
+                        width = 8;
+                        break;
+                    case ElfRelocationTypes.R_AARCH64_PREL32:
+                        kind = KIND_PC_RELATIVE;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_AARCH64_RELATIVE:
+                    case ElfRelocationTypes.R_AARCH64_IRELATIVE:
+                        kind = KIND_BASE_ADDEND;
+                        width = 8;
+                        break;
+                }
+                break;
+            case ElfFile.ARCH_ARM:
+                switch ((int) type) {
+                    case ElfRelocationTypes.R_ARM_ABS32:
+                        kind = KIND_SYMBOL_ADDEND;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_ARM_REL32:
+                        kind = KIND_PC_RELATIVE;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_ARM_GLOB_DAT:
+                    case ElfRelocationTypes.R_ARM_JUMP_SLOT:
+                        kind = KIND_SYMBOL;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_ARM_RELATIVE:
+                    case ElfRelocationTypes.R_ARM_IRELATIVE:
+                        kind = KIND_BASE_ADDEND;
+                        width = 4;
+                        break;
+                }
+                break;
+            case ElfFile.ARCH_i386:
+                switch ((int) type) {
+                    case ElfRelocationTypes.R_386_32:
+                        kind = KIND_SYMBOL_ADDEND;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_386_PC32:
+                        kind = KIND_PC_RELATIVE;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_386_GLOB_DAT:
+                    case ElfRelocationTypes.R_386_JMP_SLOT:
+                        kind = KIND_SYMBOL;
+                        width = 4;
+                        break;
+                    case ElfRelocationTypes.R_386_RELATIVE:
+                    case ElfRelocationTypes.R_386_IRELATIVE:
+                        kind = KIND_BASE_ADDEND;
+                        width = 4;
+                        break;
+                }
+                break;
+        }
+
+        // The written bytes must be in a single segment, but may span pages.
+        int segment = segments.indexOfAddress(offset);
+        if (kind == KIND_SKIP || segment < 0 || segment != segments.indexOfAddress(offset + width - 1)) {
+            kind = KIND_SKIP;
+            skippedCount++;
+        } else {
+            appliedCount++;
+        }
+        offsets[count] = offset;
+        addends[count] = 0;
+        symbolValues[count] = (kind == KIND_SYMBOL || kind == KIND_SYMBOL_ADDEND || kind == KIND_PC_RELATIVE)
+                ? symbols.get(symbolIndex, loadBase)
+                : 0;
+        kinds[count] = kind;
+        widths[count] = width;
+        implicitAddends[count] = false;
+        count++;
+    }
+
+    private void relocate(Executor executor) {
+        // The relocations to apply, grouped by page in table order. Relocation tables are normally sorted already.
+        List<Integer> order = new ArrayList<>();
+        List<Integer> spanning = new ArrayList<>();
+        boolean sorted = true;
+        long previousPage = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (kinds[i] == KIND_SKIP) continue;
+            if ((offsets[i] & (PAGE_SIZE - 1)) + widths[i] > PAGE_SIZE) {
+                spanning.add(i);
+                continue;
+            }
+            long page = offsets[i] >>> PAGE_SHIFT;
+            if (page < previousPage) sorted = false;
+            previousPage = page;
+            order.add(i);
+        }
+        if (!sorted) order.sort((a, b) -> Long.compare(offsets[a] >>> PAGE_SHIFT, offsets[b] >>> PAGE_SHIFT));
+
+        List<CompletableFuture<Map<Long, ByteBuffer>>> tasks = new ArrayList<>();
+        int start = 0;
+        while (start < order.size()) {
+            int end = start;
+            int pagesInTask = 0;
+            while (end < order.size() && pagesInTask < PAGES_PER_TASK) {
+                long page = offsets[order.get(end)] >>> PAGE_SHIFT;
+                pagesInTask++;
+                while (end < order.size() && (offsets[order.get(end)] >>> PAGE_SHIFT) == page) end++;
+            }
+            int[] batch = order.subList(start, end).stream().mapToInt(Integer::intValue).toArray();
+            tasks.add(CompletableFuture.supplyAsync(() -> relocatePages(batch), executor));
+            start = end;
+        }
+        for (CompletableFuture<Map<Long, ByteBuffer>> task : tasks) {
+            try {
+                pages.putAll(task.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        for (int i : spanning) {
+            ByteBuffer value = ByteBuffer.allocate(widths[i]).order(this.order);
+            read(offsets[i], value.array(), 0, widths[i]);
+            long result = compute(i, (widths[i] == 8) ? value.getLong(0) : value.getInt(0));
+            if (widths[i] == 8) {
+                value.putLong(0, result);
+            } else {
+                value.putInt(0, (int) result);
+            }
+            for (int j = 0; j < widths[i]; j++) {
+                long address = offsets[i] + j;
+                ByteBuffer page = pages.computeIfAbsent(address >>> PAGE_SHIFT, this::copyPage);
+                page.put((int) (address & (PAGE_SIZE - 1)), value.get(j));
+            }
+        }
+        offsets = null;
+        addends = null;
+        symbolValues = null;
+        kinds = null;
+        widths = null;
+        implicitAddends = null;
+    }
+
+    /** Relocates the pages written by a batch of relocations, sorted by page, returning the relocated pages. */
+    private Map<Long, ByteBuffer> relocatePages(int[] batch) {
+        Map<Long, ByteBuffer> result = new HashMap<>();
+        ByteBuffer page = null;
+        long currentPage = 0;
+        for (int i : batch) {
+            long pageNumber = offsets[i] >>> PAGE_SHIFT;
+            if (page == null || currentPage != pageNumber) {
+                page = copyPage(pageNumber);
+                currentPage = pageNumber;
+                result.put(pageNumber, page);
+            }
+            int position = (int) (offsets[i] & (PAGE_SIZE - 1));
+            if (widths[i] == 8) {
+                page.putLong(position, compute(i, page.getLong(position)));
+            } else {
+                page.putInt(position, (int) compute(i, page.getInt(position)));
+            }
+        }
+        return result;
+    }
+
+    /** Computes the value written by a relocation, given the current value at its offset. */
+    private long compute(int i, long current) {
+        long addend = implicitAddends[i] ? current : addends[i];
+        switch (kinds[i]) {
+            case KIND_SYMBOL:
+                return symbolValues[i];
+            case KIND_SYMBOL_ADDEND:
+                return symbolValues[i] + addend;
+            case KIND_BASE_ADDEND:
+                return loadBase + addend;
+            case KIND_PC_RELATIVE:
+                return symbolValues[i] + addend - (loadBase + offsets[i]);
+            default:
+                throw new IllegalStateException("Unexpected relocation kind: " + kinds[i]);
+        }
+    }
+
+    /** Copies a page from the memory image, with unmapped bytes left as zeros. */
+    private ByteBuffer copyPage(long pageNumber) {
+        byte[] bytes = new byte[PAGE_SIZE];
+        long start = pageNumber << PAGE_SHIFT;
+        for (int i = 0; i < segments.size(); i++) {
+            ElfSegment segment = segments.getSegment(i);
+            long from = Math.max(start, segment.p_vaddr);
+            long to = Math.min(start + PAGE_SIZE, segment.p_vaddr + segment.p_memsz);
+            if (from < to) image.read(from, bytes, (int) (from - start), (int) (to - from));
+        }
+        return ByteBuffer.wrap(bytes).order(order);
+    }
+
+    /** The load base the relocations were applied for. */
+    public long getLoadBase() {
+        return loadBase;
+    }
+
+    /** The number of relocations applied. */
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    /** The number of relocations skipped, as they have an unsupported type or write outside of the segments. */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /** The number of pages written by relocations, which are copied from the memory image. */
+    public int getRelocatedPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Checks if an address is mapped.
+     *
+     * @param address the virtual address
+     * @return whether the address is within a {@link ElfSegment#PT_LOAD} segment
+     */
+    public boolean isMapped(long address) {
+        return image.isMapped(address);
+    }
+
+    public byte readByte(long address) throws ElfException {
+        ByteBuffer page = pages.get(address >>> PAGE_SHIFT);
+        return (page == null || !image.isMapped(address))
+                ? image.readByte(address)
+                : page.get((int) (address & (PAGE_SIZE - 1)));
+    }
+
+    public short readShort(long address) throws ElfException {
+        return read(address, 2).getShort(0);
+    }
+
+    public int readInt(long address) throws ElfException {
+        return read(address, 4).getInt(0);
+    }
+
+    public long readLong(long address) throws ElfException {
+        return read(address, 8).getLong(0);
+    }
+
+    /**
+     * Reads a pointer, which is four bytes in 32-bit files and eight bytes in 64-bit files.
+     *
+     * @param address the virtual address of the pointer
+     * @return the value of the pointer, widened as by {@link ElfMemoryImage#readPointer(long)}
+     */
+    public long readPointer(long address) throws ElfException {
+        return image.is32Bit ? readInt(address) : readLong(address);
+    }
+
+    /**
+     * Reads bytes, which may span segments if they are adjacent in memory.
+     *
+     * @param address the virtual address of the first byte
+     * @param destination the array receiving the bytes
+     * @param offset the index in the array of the first byte
+     * @param length the number of bytes to read
+     * @throws ElfException if any of the bytes are not mapped
+     */
+    public void read(long address, byte[] destination, int offset, int length) throws ElfException {
+        while (length > 0) {
+            int index = segments.indexOfAddress(address);
+            if (index < 0) throw new ElfException("Address not mapped: 0x" + Long.toHexString(address));
+            ElfSegment segment = segments.getSegment(index);
+            long pageEnd = ((address >>> PAGE_SHIFT) + 1) << PAGE_SHIFT;
+            int chunk = (int) Math.min(length, Math.min(pageEnd, segment.p_vaddr + segment.p_memsz) - address);
+            ByteBuffer page = pages.get(address >>> PAGE_SHIFT);
+            if (page == null) {
+                image.read(address, destination, offset, chunk);
+            } else {
+                page.get((int) (address & (PAGE_SIZE - 1)), destination, offset, chunk);
+            }
+            address += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private ByteBuffer read(long address, int length) throws ElfException {
+        ByteBuffer page = pages.get(address >>> PAGE_SHIFT);
+        if (page == null && pages.get((address + length - 1) >>> PAGE_SHIFT) == null) {
+            return image.slice(address, length);
+        }
+        byte[] bytes = new byte[length];
+        read(address, bytes, 0, length);
+        return ByteBuffer.wrap(bytes).order(order);
+    }
+}
@@ -40,13 +40,24 @@ public final class ElfRelocation {
     public final long r_info; // Elf32_Word or Elf64_Xword
 
     private final ElfFile elfFile;
+    /** The section index of the symbol table, from the {@link ElfSectionHeader#sh_link} of the relocation section. */
+    private final int symbolTableIndex;
 
-    ElfRelocation(ElfParser parser, long offset) {
+    ElfRelocation(ElfParser parser, long offset, int symbolTableIndex) {
         parser.seek(offset);
 
         r_offset = parser.readIntOrLong();
         r_info = parser.readIntOrLong();
         elfFile = parser.elfFile;
+        this.symbolTableIndex = symbolTableIndex;
+    }
+
+    /** Creates a relocation decoded from a packed relocation section. */
+    ElfRelocation(ElfFile elfFile, long r_offset, long r_info, int symbolTableIndex) {
+        this.r_offset = r_offset;
+        this.r_info = r_info;
+        this.elfFile = elfFile;
+        this.symbolTableIndex = symbolTableIndex;
     }
 
     /**
@@ -73,7 +84,8 @@ public final class ElfRelocation {
      * Use {@link #getSymbolIndex()}} to get the resolved {@link ElfSymbol} from this index.
      */
     public ElfSymbol getSymbol() {
-        return elfFile.getSymbolTableSection().symbols[getSymbolIndex()];
+        ElfSymbolTableSection symbolTable = ElfRelocationTable.linkedSymbolTable(elfFile, symbolTableIndex);
+        return (symbolTable == null) ? null : symbolTable.symbols[getSymbolIndex()];
     }
 
     @Override
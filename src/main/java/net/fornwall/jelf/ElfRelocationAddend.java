@@ -56,14 +56,26 @@ public final class ElfRelocationAddend {
     public final long r_addend; // int32_t or int64_t
 
     private final ElfFile elfFile;
+    /** The section index of the symbol table, from the {@link ElfSectionHeader#sh_link} of the relocation section. */
+    private final int symbolTableIndex;
 
-    ElfRelocationAddend(ElfParser parser, long offset) {
+    ElfRelocationAddend(ElfParser parser, long offset, int symbolTableIndex) {
         parser.seek(offset);
 
         r_offset = parser.readIntOrLong();
         r_info = parser.readIntOrLong();
         r_addend = parser.readIntOrLong();
         elfFile = parser.elfFile;
+        this.symbolTableIndex = symbolTableIndex;
+    }
+
+    /** Creates a relocation decoded from a packed relocation section. */
+    ElfRelocationAddend(ElfFile elfFile, long r_offset, long r_info, long r_addend, int symbolTableIndex) {
+        this.r_offset = r_offset;
+        this.r_info = r_info;
+        this.r_addend = r_addend;
+        this.elfFile = elfFile;
+        this.symbolTableIndex = symbolTableIndex;
     }
 
     /**
@@ -90,7 +102,8 @@ public final class ElfRelocationAddend {
      * Use {@link #getSymbolIndex()}} to get the resolved {@link ElfSymbol} from this index.
      */
     public ElfSymbol getSymbol() {
-        return elfFile.getSymbolTableSection().symbols[getSymbolIndex()];
+        ElfSymbolTableSection symbolTable = ElfRelocationTable.linkedSymbolTable(elfFile, symbolTableIndex);
+        return (symbolTable == null) ? null : symbolTable.symbols[getSymbolIndex()];
     }
 
     @Override
@@ -10,7 +10,7 @@ public final class ElfRelocationAddendSection extends ElfSection {
         relocations = new ElfRelocationAddend[num_entries];
         for (int i = 0; i < num_entries; i++) {
             final long relOffset = header.sh_offset + (i * header.sh_entsize);
-            relocations[i] = new ElfRelocationAddend(parser, relOffset);
+            relocations[i] = new ElfRelocationAddend(parser, relOffset, header.sh_link);
         }
     }
 }
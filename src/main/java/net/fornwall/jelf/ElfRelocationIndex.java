@@ -0,0 +1,243 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over the relocations of all relocation sections of an {@link ElfFile}, for finding the relocations writing
+ * to an offset and the relocations referencing a symbol without scanning every relocation.
+ * <p>
+ * Obtain it with {@link ElfFile#getRelocationIndex()}. The relocations of every {@link ElfRelocationTable} of the file
+ * are sorted by {@link ElfRelocation#r_offset}, compared as unsigned values, with relocations at the same offset kept
+ * in section order. Each relocation is identified by its position in that order, and {@link #getTable(int)} and
+ * {@link #getEntry(int)} give the table and entry holding it.
+ * <p>
+ * The index of relocations by symbol is built on the first lookup by symbol. It maps each symbol of each symbol table
+ * linked by a relocation section to the positions of the relocations referencing it, in ascending order of offset.
+ * <p>
+ * The offsets of executables and shared objects are virtual addresses. In relocatable object files they are offsets
+ * into the section given by the {@link ElfSectionHeader#sh_info} of the relocation section, so relocations of
+ * different sections may have the same offset.
+ */
+public final class ElfRelocationIndex {
+
+    private final ElfRelocationTable[] tables;
+
+    /** The relocations in ascending order of offset, with the index in {@link #tables} and the entry in the table. */
+    private final long[] offsets;
+    private final int[] tableIndices;
+    private final int[] entries;
+
+    /** The relocations referencing each symbol of each symbol table, built on first use. */
+    private Map<ElfSymbolTableSection, SymbolRelocations> bySymbol;
+
+    /** The positions of the relocations of symbol {@code i} are {@code positions[starts[i]..starts[i + 1]]}. */
+    private static final class SymbolRelocations {
+        final int[] starts;
+        final int[] positions;
+
+        SymbolRelocations(int[] starts, int[] positions) {
+            this.starts = starts;
+            this.positions = positions;
+        }
+    }
+
+    ElfRelocationIndex(ElfFile file) throws ElfException {
+        List<ElfRelocationTable> tableList = new ArrayList<>();
+        long count = 0;
+        for (int i = 1; i < file.e_shnum; i++) {
+            ElfRelocationTable table = file.getRelocationTable(i);
+            if (table == null) continue;
+            tableList.add(table);
+            count += table.size();
+        }
+        if (count > Integer.MAX_VALUE) throw new ElfException("Too many relocations: " + count);
+        tables = tableList.toArray(new ElfRelocationTable[0]);
+
+        long[] unsortedOffsets = new long[(int) count];
+        int[] unsortedTableIndices = new int[unsortedOffsets.length];
+        int[] unsortedEntries = new int[unsortedOffsets.length];
+        int position = 0;
+        for (int i = 0; i < tables.length; i++) {
+            int size = tables[i].size();
+            long[] tableOffsets = new long[size];
+            tables[i].getColumns(0, size, tableOffsets, null, null);
+            System.arraycopy(tableOffsets, 0, unsortedOffsets, position, size);
+            for (int entry = 0; entry < size; entry++) {
+                unsortedTableIndices[position] = i;
+                unsortedEntries[position] = entry;
+                position++;
+            }
+        }
+
+        int[] order = sortByOffset(unsortedOffsets);
+        offsets = new long[order.length];
+        tableIndices = new int[order.length];
+        entries = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            offsets[i] = unsortedOffsets[order[i]];
+            tableIndices[i] = unsortedTableIndices[order[i]];
+            entries[i] = unsortedEntries[order[i]];
+        }
+    }
+
+    /**
+     * Sorts the indices of offsets by unsigned offset, keeping the order of equal offsets. Relocation tables are
+     * normally sorted already, so the sorted runs of the input are merged.
+     */
+    private static int[] sortByOffset(long[] offsets) {
+        int[] order = new int[offsets.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        int[] buffer = new int[order.length];
+        // The start of each sorted run, followed by the end of the last one.
+        List<Integer> runs = new ArrayList<>();
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || Long.compareUnsigned(offsets[i - 1], offsets[i]) > 0) runs.add(i);
+        }
+        runs.add(order.length);
+        while (runs.size() > 2) {
+            List<Integer> merged = new ArrayList<>();
+            for (int r = 0; r + 1 < runs.size(); r += 2) {
+                int low = runs.get(r);
+                int middle = runs.get(r + 1);
+                int high = (r + 2 < runs.size()) ? runs.get(r + 2) : middle;
+                merged.add(low);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    boolean takeLeft = right >= high
+                            || (left < middle
+                                    && Long.compareUnsigned(offsets[order[left]], offsets[order[right]]) <= 0);
+                    buffer[i] = takeLeft ? order[left++] : order[right++];
+                }
+            }
+            merged.add(order.length);
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+            runs = merged;
+        }
+        return order;
+    }
+
+    /** The number of relocations. */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Finds the first relocation at an offset.
+     *
+     * @param offset the offset, which is a virtual address for executables and shared objects
+     * @return the position of the first relocation at the offset, or -1 if there is none
+     */
+    public int indexOf(long offset) {
+        int position = firstAtOrAfter(offset);
+        return (position < offsets.length && offsets[position] == offset) ? position : -1;
+    }
+
+    /**
+     * Finds the first relocation at or after an offset, for iterating over the relocations in a range of offsets.
+     *
+     * @param offset the offset, compared as an unsigned value
+     * @return the position of the first relocation at an offset at or above the given one, or {@link #size()} if
+     *     there is none
+     */
+    public int firstAtOrAfter(long offset) {
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(offsets[mid], offset) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** The offset of the relocation at a position. */
+    public long getOffset(int position) {
+        return offsets[position];
+    }
+
+    /** The table holding the relocation at a position. */
+    public ElfRelocationTable getTable(int position) {
+        return tables[tableIndices[position]];
+    }
+
+    /** The index in its {@link #getTable(int) table} of the relocation at a position. */
+    public int getEntry(int position) {
+        return entries[position];
+    }
+
+    /**
+     * Finds the relocations referencing a symbol.
+     *
+     * @param symbol a symbol of a symbol table linked by a relocation section, such as a symbol of
+     *     {@link ElfFile#getDynamicSymbolTableSection()}
+     * @return the positions of the relocations referencing the symbol in ascending order, which is empty if there are
+     *     none
+     */
+    public int[] getRelocationsOf(ElfSymbol symbol) throws ElfException {
+        for (ElfSymbolTableSection symbolTable : getBySymbol().keySet()) {
+            long relative = symbol.offset - symbolTable.header.sh_offset;
+            if (relative >= 0 && relative < symbolTable.header.sh_size) {
+                return getRelocationsOf(symbolTable, symbolTable.indexOf(symbol));
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Finds the relocations referencing a symbol.
+     *
+     * @param symbolTable the symbol table of the symbol
+     * @param symbolIndex the index of the symbol in the symbol table
+     * @return the positions of the relocations referencing the symbol in ascending order, which is empty if there are
+     *     none
+     */
+    public int[] getRelocationsOf(ElfSymbolTableSection symbolTable, int symbolIndex) throws ElfException {
+        SymbolRelocations relocations = getBySymbol().get(symbolTable);
+        if (relocations == null || symbolIndex <= 0 || symbolIndex >= relocations.starts.length - 1) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(
+                relocations.positions, relocations.starts[symbolIndex], relocations.starts[symbolIndex + 1]);
+    }
+
+    private Map<ElfSymbolTableSection, SymbolRelocations> getBySymbol() throws ElfException {
+        if (bySymbol != null) return bySymbol;
+        Map<ElfSymbolTableSection, SymbolRelocations> result = new IdentityHashMap<>();
+        ElfSymbolTableSection[] symbolTables = new ElfSymbolTableSection[tables.length];
+        for (int i = 0; i < tables.length; i++) symbolTables[i] = tables[i].getSymbolTable();
+
+        // Count the relocations of each symbol, then place their positions, for each symbol table in turn.
+        int[] symbolIndices = new int[offsets.length];
+        for (int position = 0; position < offsets.length; position++) {
+            symbolIndices[position] = getTable(position).getSymbolIndex(entries[position]);
+        }
+        for (ElfSymbolTableSection symbolTable : symbolTables) {
+            if (symbolTable == null || result.containsKey(symbolTable)) continue;
+            int symbolCount = symbolTable.symbols.length;
+            int[] starts = new int[symbolCount + 1];
+            for (int position = 0; position < offsets.length; position++) {
+                int symbolIndex = (symbolTables[tableIndices[position]] == symbolTable) ? symbolIndices[position] : 0;
+                if (symbolIndex > 0 && symbolIndex < symbolCount) starts[symbolIndex + 1]++;
+            }
+            for (int i = 1; i < starts.length; i++) starts[i] += starts[i - 1];
+            int[] positions = new int[starts[symbolCount]];
+            int[] next = Arrays.copyOf(starts, symbolCount);
+            for (int position = 0; position < offsets.length; position++) {
+                int symbolIndex = (symbolTables[tableIndices[position]] == symbolTable) ? symbolIndices[position] : 0;
+                if (symbolIndex > 0 && symbolIndex < symbolCount) positions[next[symbolIndex]++] = position;
+            }
+            result.put(symbolTable, new SymbolRelocations(starts, positions));
+        }
+        return bySymbol = result;
+    }
+}
@@ -10,7 +10,7 @@ public final class ElfRelocationSection extends ElfSection {
         relocations = new ElfRelocation[num_entries];
         for (int i = 0; i < num_entries; i++) {
             final long relOffset = header.sh_offset + (i * header.sh_entsize);
-            relocations[i] = new ElfRelocation(parser, relOffset);
+            relocations[i] = new ElfRelocation(parser, relOffset, header.sh_link);
         }
     }
 }
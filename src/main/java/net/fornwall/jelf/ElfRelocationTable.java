@@ -0,0 +1,238 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A columnar view of the relocations of a relocation section, reading the fields of each relocation on demand without
+ * creating an {@link ElfRelocation} or {@link ElfRelocationAddend} object per entry.
+ * <p>
+ * Obtain it with {@link ElfFile#getRelocationTable(int)}. The entries of {@link ElfSectionHeader#SHT_REL} and
+ * {@link ElfSectionHeader#SHT_RELA} sections have a fixed size, so each field is read from the section when requested.
+ * The entries of {@link ElfAndroidRelocationSection packed} and {@link ElfRelrSection RELR} sections can only be
+ * decoded in order, so they are decoded into {@code long[]} columns of offsets, infos and addends on first use.
+ * <p>
+ * Symbols are resolved through the symbol table linked by the {@link ElfSectionHeader#sh_link} of the section, which
+ * is the .dynsym section for dynamic relocations and the .symtab section for the relocations of an object file.
+ */
+public final class ElfRelocationTable {
+
+    /** The header of the relocation section. */
+    public final ElfSectionHeader header;
+
+    private final ElfFile file;
+    private final boolean is32Bit;
+    private final boolean hasAddends;
+    private final int size;
+
+    /** The contents of a section of fixed size entries, with the size of the entries, or null if packed. */
+    private final ByteBuffer contents;
+    private final int entrySize;
+
+    /** The relocations of a packed section, decoded into the columns on first use. */
+    private final Iterable<?> packed;
+
+    private long[] offsets;
+    private long[] infos;
+    private long[] addends;
+    private ElfSymbolTableSection symbolTable;
+
+    private ElfRelocationTable(ElfFile file, ElfSectionHeader header, boolean hasAddends) throws ElfException {
+        this.header = header;
+        this.file = file;
+        this.is32Bit = file.is32Bits();
+        this.hasAddends = hasAddends;
+        this.contents = ElfAndroidRelocationSection.sliceContents(file.parser, header);
+        int wordSize = is32Bit ? 4 : 8;
+        this.entrySize = (header.sh_entsize >= (hasAddends ? 3 : 2) * wordSize)
+                ? (int) header.sh_entsize
+                : (hasAddends ? 3 : 2) * wordSize;
+        this.size = contents.limit() / entrySize;
+        this.packed = null;
+    }
+
+    private ElfRelocationTable(
+            ElfFile file, ElfSectionHeader header, Iterable<?> packed, int size, boolean hasAddends) {
+        this.header = header;
+        this.file = file;
+        this.is32Bit = file.is32Bits();
+        this.hasAddends = hasAddends;
+        this.contents = null;
+        this.entrySize = 0;
+        this.size = size;
+        this.packed = packed;
+    }
+
+    /**
+     * Creates the relocation table of a section.
+     *
+     * @return the relocation table, or null if the section does not hold relocations
+     */
+    static ElfRelocationTable read(ElfFile file, int sectionIndex, long sectionHeaderOffset) throws ElfException {
+        ElfSectionHeader header = new ElfSectionHeader(file.parser, sectionHeaderOffset);
+        switch (header.sh_type) {
+            case ElfSectionHeader.SHT_REL:
+                return new ElfRelocationTable(file, header, false);
+            case ElfSectionHeader.SHT_RELA:
+                return new ElfRelocationTable(file, header, true);
+            case ElfSectionHeader.SHT_ANDROID_REL:
+                ElfAndroidRelocationSection android = (ElfAndroidRelocationSection) file.getSection(sectionIndex);
+                return new ElfRelocationTable(file, header, android, android.size(), false);
+            case ElfSectionHeader.SHT_ANDROID_RELA:
+                ElfAndroidRelocationAddendSection androidAddend =
+                        (ElfAndroidRelocationAddendSection) file.getSection(sectionIndex);
+                return new ElfRelocationTable(file, header, androidAddend, androidAddend.size(), true);
+            case ElfSectionHeader.SHT_RELR:
+            case ElfSectionHeader.SHT_ANDROID_RELR:
+                ElfRelrSection relr = (ElfRelrSection) file.getSection(sectionIndex);
+                return new ElfRelocationTable(file, header, relr, relr.size(), false);
+            default:
+                return null;
+        }
+    }
+
+    /** Decodes a packed section into the columns. */
+    private void decode() throws ElfException {
+        long[] offsets = new long[size];
+        long[] infos = new long[size];
+        long[] addends = new long[size];
+        int i = 0;
+        for (Object relocation : packed) {
+            if (i == size) throw new ElfException("More relocations than the " + size + " expected");
+            if (relocation instanceof ElfRelocationAddend) {
+                ElfRelocationAddend relocationAddend = (ElfRelocationAddend) relocation;
+                offsets[i] = relocationAddend.r_offset;
+                infos[i] = relocationAddend.r_info;
+                addends[i] = relocationAddend.r_addend;
+            } else {
+                offsets[i] = ((ElfRelocation) relocation).r_offset;
+                infos[i] = ((ElfRelocation) relocation).r_info;
+            }
+            i++;
+        }
+        if (i != size) throw new ElfException("Expected " + size + " relocations, found " + i);
+        this.infos = infos;
+        this.addends = addends;
+        this.offsets = offsets;
+    }
+
+    /** Reads a word of a fixed size entry, sign-extending 32-bit values as done by {@link ElfParser}. */
+    private long readWord(int index, int word) {
+        int position = index * entrySize + word * (is32Bit ? 4 : 8);
+        return is32Bit ? contents.getInt(position) : contents.getLong(position);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Relocation index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /** The number of relocations. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether the relocations have explicit addends, as in a {@link ElfSectionHeader#SHT_RELA} section. Relocations
+     * without explicit addends add the value stored at their offset, and have an {@link #getAddend(int) addend} of 0.
+     */
+    public boolean hasAddends() {
+        return hasAddends;
+    }
+
+    /** The {@link ElfRelocation#r_offset} of a relocation. */
+    public long getOffset(int index) throws ElfException {
+        checkIndex(index);
+        if (contents != null) return readWord(index, 0);
+        if (offsets == null) decode();
+        return offsets[index];
+    }
+
+    /** The {@link ElfRelocation#r_info} of a relocation. */
+    public long getInfo(int index) throws ElfException {
+        checkIndex(index);
+        if (contents != null) return readWord(index, 1);
+        if (offsets == null) decode();
+        return infos[index];
+    }
+
+    /** The {@link ElfRelocationAddend#r_addend} of a relocation, or 0 if the relocations have no explicit addends. */
+    public long getAddend(int index) throws ElfException {
+        checkIndex(index);
+        if (!hasAddends) return 0;
+        if (contents != null) return readWord(index, 2);
+        if (offsets == null) decode();
+        return addends[index];
+    }
+
+    /**
+     * The type of a relocation, as by {@link ElfRelocation#getType()}.
+     *
+     * @see ElfRelocationTypes
+     */
+    public long getType(int index) throws ElfException {
+        long info = getInfo(index);
+        return is32Bit ? (info & 0xFF) : ((int) info);
+    }
+
+    /** The index in the {@link #getSymbolTable() symbol table} of the symbol of a relocation, or 0 if it has none. */
+    public int getSymbolIndex(int index) throws ElfException {
+        return (int) (getInfo(index) >> (is32Bit ? 8 : 32));
+    }
+
+    /**
+     * The symbol of a relocation.
+     *
+     * @return the symbol, or null if the relocation has no symbol or there is no symbol table
+     */
+    public ElfSymbol getSymbol(int index) throws ElfException {
+        int symbolIndex = getSymbolIndex(index);
+        ElfSymbolTableSection symbolTable = getSymbolTable();
+        return (symbolIndex == 0 || symbolTable == null) ? null : symbolTable.symbols[symbolIndex];
+    }
+
+    /**
+     * The symbol table of the relocations, which is the section linked by the {@link ElfSectionHeader#sh_link} of the
+     * relocation section, or the {@link ElfFile#getDynamicSymbolTableSection() dynamic symbol table} if the section
+     * does not link to a symbol table, as for {@link ElfRelrSection RELR} sections.
+     *
+     * @return the symbol table, or null if there is none
+     */
+    public ElfSymbolTableSection getSymbolTable() throws ElfException {
+        return (symbolTable != null) ? symbolTable : (symbolTable = linkedSymbolTable(file, header.sh_link));
+    }
+
+    static ElfSymbolTableSection linkedSymbolTable(ElfFile file, int link) throws ElfException {
+        ElfSection linked = (link > 0 && link < file.e_shnum) ? file.getSection(link) : null;
+        return (linked instanceof ElfSymbolTableSection)
+                ? (ElfSymbolTableSection) linked
+                : file.getDynamicSymbolTableSection();
+    }
+
+    /**
+     * Copies the fields of a range of relocations into arrays, one per field.
+     *
+     * @param from the index of the first relocation
+     * @param count the number of relocations
+     * @param offsets receives the {@link #getOffset(int) offsets} from index 0, or null if not wanted
+     * @param infos receives the {@link #getInfo(int) infos} from index 0, or null if not wanted
+     * @param addends receives the {@link #getAddend(int) addends} from index 0, or null if not wanted
+     */
+    public void getColumns(int from, int count, long[] offsets, long[] infos, long[] addends) throws ElfException {
+        if (count == 0) return;
+        checkIndex(from);
+        checkIndex(from + count - 1);
+        if (contents == null) {
+            if (this.offsets == null) decode();
+            if (offsets != null) System.arraycopy(this.offsets, from, offsets, 0, count);
+            if (infos != null) System.arraycopy(this.infos, from, infos, 0, count);
+            if (addends != null) System.arraycopy(this.addends, from, addends, 0, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (offsets != null) offsets[i] = readWord(from + i, 0);
+            if (infos != null) infos[i] = readWord(from + i, 1);
+            if (addends != null) addends[i] = hasAddends ? readWord(from + i, 2) : 0;
+        }
+    }
+}
@@ -179,6 +179,13 @@ public final class ElfRelocationTypes {
     public static final int R_ARM_ABS32 = 2;
     public static final int R_ARM_REL32 = 3;
     public static final int R_ARM_THM_CALL = 10;
+    public static final int R_ARM_TLS_DTPMOD32 = 17;
+    public static final int R_ARM_TLS_DTPOFF32 = 18;
+    public static final int R_ARM_TLS_TPOFF32 = 19;
+    public static final int R_ARM_COPY = 20;
+    public static final int R_ARM_GLOB_DAT = 21;
+    public static final int R_ARM_JUMP_SLOT = 22;
+    public static final int R_ARM_RELATIVE = 23;
     public static final int R_ARM_CALL = 28;
     public static final int R_ARM_JUMP24 = 29;
     public static final int R_ARM_THM_JUMP24 = 30;
@@ -193,4 +200,123 @@ public final class ElfRelocationTypes {
     public static final int R_ARM_THM_MOVT_ABS = 48;
     public static final int R_ARM_THM_MOVW_PREL_NC = 49;
     public static final int R_ARM_THM_MOVT_PREL = 50;
+    public static final int R_ARM_IRELATIVE = 160;
+
+    /**
+     * AArch64: No reloc.
+     */
+    public static final int R_AARCH64_NONE = 0;
+    /**
+     * AArch64: Direct 64 bit.
+     */
+    public static final int R_AARCH64_ABS64 = 257;
+    /**
+     * AArch64: Direct 32 bit.
+     */
+    public static final int R_AARCH64_ABS32 = 258;
+    /**
+     * AArch64: PC relative 64 bit.
+     */
+    public static final int R_AARCH64_PREL64 = 260;
+    /**
+     * AArch64: PC relative 32 bit.
+     */
+    public static final int R_AARCH64_PREL32 = 261;
+    /**
+     * AArch64: Copy symbol at runtime.
+     */
+    public static final int R_AARCH64_COPY = 1024;
+    /**
+     * AArch64: Create GOT entry.
+     */
+    public static final int R_AARCH64_GLOB_DAT = 1025;
+    /**
+     * AArch64: Create PLT entry.
+     */
+    public static final int R_AARCH64_JUMP_SLOT = 1026;
+    /**
+     * AArch64: Adjust by program base.
+     */
+    public static final int R_AARCH64_RELATIVE = 1027;
+    /**
+     * AArch64: Module number of thread-local symbol.
+     */
+    public static final int R_AARCH64_TLS_DTPMOD = 1028;
+    /**
+     * AArch64: Module-relative offset of thread-local symbol.
+     */
+    public static final int R_AARCH64_TLS_DTPREL = 1029;
+    /**
+     * AArch64: TP-relative offset of thread-local symbol.
+     */
+    public static final int R_AARCH64_TLS_TPREL = 1030;
+    /**
+     * AArch64: TLS descriptor.
+     */
+    public static final int R_AARCH64_TLSDESC = 1031;
+    /**
+     * AArch64: STT_GNU_IFUNC relocation.
+     */
+    public static final int R_AARCH64_IRELATIVE = 1032;
+
+    /**
+     * Intel 80386: No reloc.
+     */
+    public static final int R_386_NONE = 0;
+    /**
+     * Intel 80386: Direct 32 bit.
+     */
+    public static final int R_386_32 = 1;
+    /**
+     * Intel 80386: PC relative 32 bit.
+     */
+    public static final int R_386_PC32 = 2;
+    /**
+     * Intel 80386: 32 bit GOT entry.
+     */
+    public static final int R_386_GOT32 = 3;
+    /**
+     * Intel 80386: 32 bit PLT address.
+     */
+    public static final int R_386_PLT32 = 4;
+    /**
+     * Intel 80386: Copy symbol at runtime.
+     */
+    public static final int R_386_COPY = 5;
+    /**
+     * Intel 80386: Create GOT entry.
+     */
+    public static final int R_386_GLOB_DAT = 6;
+    /**
+     * Intel 80386: Create PLT entry.
+     */
+    public static final int R_386_JMP_SLOT = 7;
+    /**
+     * Intel 80386: Adjust by program base.
+     */
+    public static final int R_386_RELATIVE = 8;
+    /**
+     * Intel 80386: 32 bit offset to GOT.
+     */
+    public static final int R_386_GOTOFF = 9;
+    /**
+     * Intel 80386: 32 bit PC relative offset to GOT.
+     */
+    public static final int R_386_GOTPC = 10;
+    /**
+     * Intel 80386: Module number of thread-local symbol.
+     */
+    public static final int R_386_TLS_DTPMOD32 = 35;
+    /**
+     * Intel 80386: Offset in module's TLS block.
+     */
+    public static final int R_386_TLS_DTPOFF32 = 36;
+    /**
+     * Intel 80386: Negated offset in static TLS block.
+     */
+    public static final int R_386_TLS_TPOFF32 = 37;
+    /**
+     * Intel 80386: Adjust indirectly by program base.
+     */
+    public static final int R_386_IRELATIVE = 42;
 }
@@ -0,0 +1,110 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link ElfSectionHeader#SHT_RELR} or {@link ElfSectionHeader#SHT_ANDROID_RELR} section, holding relative
+ * relocations in a compact bitmap encoding, as produced by lld and GNU ld with {@code -z pack-relative-relocs}.
+ * <p>
+ * The section is an array of words. A word with its lowest bit clear is the offset of a relocation, and a word with
+ * its lowest bit set is a bitmap of relocations at the following words: bit {@code i} of the bitmap, for {@code i}
+ * from 1 to 31 or 63, sets a relocation {@code i - 1} words after the last offset or bitmap. The relocations are
+ * decoded while iterating over this section, as an {@link ElfRelocation} with the relative relocation type of the
+ * machine, such as {@link ElfRelocationTypes#R_X86_64_RELATIVE}, no symbol and the addend stored at its offset.
+ */
+public final class ElfRelrSection extends ElfSection implements Iterable<ElfRelocation> {
+
+    private final ByteBuffer contents;
+    private final int wordSize;
+    private final long relativeInfo;
+    private int size = -1;
+
+    ElfRelrSection(ElfParser parser, ElfSectionHeader header) throws ElfException {
+        super(parser, header);
+        contents = ElfAndroidRelocationSection.sliceContents(parser, header);
+        wordSize = parser.elfFile.is32Bits() ? 4 : 8;
+        if (contents.remaining() % wordSize != 0) {
+            throw new ElfException("Invalid size of RELR section: " + header.sh_size);
+        }
+        relativeInfo = relativeType(parser.elfFile.e_machine);
+    }
+
+    /** The relative relocation type of a machine, or 0 (the none type of all machines) if not known. */
+    private static int relativeType(short machine) {
+        switch (machine) {
+            case ElfFile.ARCH_X86_64:
+                return ElfRelocationTypes.R_X86_64_RELATIVE;
+            case ElfFile.ARCH_AARCH64:
+                return ElfRelocationTypes.R_AARCH64_RELATIVE;
+            case ElfFile.ARCH_ARM:
+                return ElfRelocationTypes.R_ARM_RELATIVE;
+            case ElfFile.ARCH_i386:
+                return ElfRelocationTypes.R_386_RELATIVE;
+            default:
+                return 0;
+        }
+    }
+
+    /** The number of relocations in this section, counted from the bitmaps without decoding them. */
+    public int size() {
+        if (size >= 0) return size;
+        long count = 0;
+        ByteBuffer buffer = contents.duplicate().order(contents.order());
+        while (buffer.hasRemaining()) {
+            long entry = readWord(buffer);
+            count += ((entry & 1) == 0) ? 1 : Long.bitCount(entry >>> 1);
+        }
+        if (count > Integer.MAX_VALUE) throw new ElfException("Too many relocations: " + count);
+        return size = (int) count;
+    }
+
+    /** Decodes the offsets of the relocations of this section in order. */
+    @Override
+    public Iterator<ElfRelocation> iterator() {
+        ByteBuffer buffer = contents.duplicate().order(contents.order());
+        return new Iterator<ElfRelocation>() {
+            /** The address of the word after the last offset, or after those covered by the last bitmap. */
+            long base;
+            /** The remaining bits of the current bitmap, with bit 0 at {@code address}. */
+            long bitmap;
+            long address;
+
+            @Override
+            public boolean hasNext() {
+                while (bitmap == 0) {
+                    if (!buffer.hasRemaining()) return false;
+                    long entry = readWord(buffer);
+                    if ((entry & 1) == 0) {
+                        // Keep the offset as a bitmap with a single bit.
+                        address = entry;
+                        bitmap = 1;
+                        base = entry + wordSize;
+                    } else {
+                        address = base;
+                        bitmap = entry >>> 1;
+                        base += (wordSize * 8L - 1) * wordSize;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public ElfRelocation next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int skipped = Long.numberOfTrailingZeros(bitmap);
+                long offset = address + (long) skipped * wordSize;
+                address = offset + wordSize;
+                bitmap >>>= skipped + 1;
+                if (wordSize == 4) offset = (int) offset;
+                return new ElfRelocation(parser.elfFile, offset, relativeInfo, header.sh_link);
+            }
+        };
+    }
+
+    /** Reads a word as an unsigned value. */
+    private long readWord(ByteBuffer buffer) {
+        return (wordSize == 4) ? (buffer.getInt() & 0xffffffffL) : buffer.getLong();
+    }
+}
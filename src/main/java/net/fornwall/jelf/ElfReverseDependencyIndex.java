@@ -0,0 +1,364 @@
+package net.fornwall.jelf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * An index from shared library names to the files in a directory tree needing them, for finding every executable and
+ * library in for example a container image affected by a vulnerable library.
+ * <p>
+ * {@link #scan(Path, Executor)} walks a directory tree and reads the dynamic linking information of each ELF file
+ * with a dynamic segment: its {@link ElfDynamicSection#DT_NEEDED} libraries, {@link ElfDynamicSection#DT_SONAME},
+ * {@link ElfDynamicSection#DT_RUNPATH} and {@link ElfDynamicSection#DT_RPATH}. Only the ELF header, the program
+ * headers, the {@link ElfSegment#PT_DYNAMIC} segment and the referenced strings are read, without parsing the file
+ * with {@link ElfFile}, as that would read the section headers and more. Files are read concurrently on the given
+ * executor, and the time taken is recorded for measuring the scan rate.
+ */
+public final class ElfReverseDependencyIndex {
+
+    /** The number of files read by each task. */
+    private static final int BATCH_SIZE = 64;
+    /** Limits on the sizes read, guarding against corrupt files. */
+    private static final int MAX_HEADERS_SIZE = 1 << 16;
+    private static final int MAX_DYNAMIC_SIZE = 1 << 20;
+    private static final int MAX_STRING_LENGTH = 1 << 12;
+
+    /** The dynamic linking information of a file. */
+    public static final class Entry {
+        /** The path of the file. */
+        public final Path path;
+        /** The {@link ElfDynamicSection#DT_SONAME} of the file, or null if it has none. */
+        public final String soname;
+        /** The {@link ElfDynamicSection#DT_NEEDED} names, in order. */
+        public final List<String> neededLibraries;
+        /** The {@link ElfDynamicSection#DT_RUNPATH} of the file, or null if it has none. */
+        public final String runPath;
+        /** The {@link ElfDynamicSection#DT_RPATH} of the file, or null if it has none. */
+        public final String rPath;
+
+        Entry(Path path, String soname, List<String> neededLibraries, String runPath, String rPath) {
+            this.path = path;
+            this.soname = soname;
+            this.neededLibraries = Collections.unmodifiableList(neededLibraries);
+            this.runPath = runPath;
+            this.rPath = rPath;
+        }
+
+        /** The name other files need this one by, which is the DT_SONAME or else the file name. */
+        public String getLibraryName() {
+            return (soname != null) ? soname : path.getFileName().toString();
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{path=" + path + ", soname=" + soname + ", neededLibraries=" + neededLibraries + "}";
+        }
+    }
+
+    private final Map<Path, Entry> entries = new TreeMap<>();
+    private final Map<String, List<Path>> dependents = new HashMap<>();
+    private final Map<String, List<Path>> providers = new HashMap<>();
+    private final int filesScanned;
+    private final long elapsedNanos;
+
+    private ElfReverseDependencyIndex(List<Entry> entries, int filesScanned, long elapsedNanos) {
+        for (Entry entry : entries) this.entries.put(entry.path, entry);
+        for (Entry entry : this.entries.values()) {
+            for (String name : new TreeSet<>(entry.neededLibraries)) {
+                dependents.computeIfAbsent(name, k -> new ArrayList<>()).add(entry.path);
+            }
+            providers.computeIfAbsent(entry.getLibraryName(), k -> new ArrayList<>()).add(entry.path);
+        }
+        this.filesScanned = filesScanned;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Scans a directory tree. Symbolic links are not followed, and directories and files which cannot be read, as well
+     * as corrupt ELF files, are skipped.
+     *
+     * @param root the root directory of the tree
+     * @param executor the executor to read files with, such as a fixed size thread pool
+     * @return the index of the ELF files in the tree
+     */
+    public static ElfReverseDependencyIndex scan(Path root, Executor executor) throws IOException {
+        long start = System.nanoTime();
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // The attributes are those of a symbolic link itself, not of its target.
+                if (attrs.isRegularFile()) files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        List<CompletableFuture<List<Entry>>> tasks = new ArrayList<>();
+        for (int from = 0; from < files.size(); from += BATCH_SIZE) {
+            List<Path> batch = files.subList(from, Math.min(files.size(), from + BATCH_SIZE));
+            tasks.add(CompletableFuture.supplyAsync(() -> readBatch(batch), executor));
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (CompletableFuture<List<Entry>> task : tasks) {
+            try {
+                entries.addAll(task.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        return new ElfReverseDependencyIndex(entries, files.size(), System.nanoTime() - start);
+    }
+
+    private static List<Entry> readBatch(List<Path> batch) {
+        List<Entry> result = new ArrayList<>();
+        for (Path path : batch) {
+            try {
+                Entry entry = read(path);
+                if (entry != null) result.add(entry);
+            } catch (IOException | RuntimeException e) {
+                // Unreadable files, such as ones without read permission, and corrupt files are skipped.
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the dynamic linking information of a file.
+     *
+     * @param path the path of the file
+     * @return the information, or null if the file is not an ELF file with a dynamic segment
+     * @throws ElfException if the file is a corrupt ELF file
+     */
+    public static Entry read(Path path) throws ElfException, IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = readFully(channel, 0, 64, false);
+            if (header == null
+                    || header.get(0) != 0x7f
+                    || header.get(1) != 'E'
+                    || header.get(2) != 'L'
+                    || header.get(3) != 'F') {
+                return null;
+            }
+            boolean is64 = header.get(4) == ElfFile.CLASS_64;
+            header.order(header.get(5) == ElfFile.DATA_MSB ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            ByteOrder order = header.order();
+            long phoff = is64 ? header.getLong(32) : Integer.toUnsignedLong(header.getInt(28));
+            int phentsize = Short.toUnsignedInt(header.getShort(is64 ? 54 : 42));
+            int phnum = Short.toUnsignedInt(header.getShort(is64 ? 56 : 44));
+            if (phnum == 0) return null;
+            if (phentsize < (is64 ? 56 : 32) || (long) phentsize * phnum > MAX_HEADERS_SIZE) {
+                throw new ElfException("Invalid program headers in " + path);
+            }
+            if (phoff < 0 || phoff >= size) throw new ElfException("Invalid e_phoff in " + path + ": " + phoff);
+
+            ByteBuffer headers = readFully(channel, phoff, phentsize * phnum, true).order(order);
+            boolean hasDynamic = false;
+            long dynamicOffset = 0;
+            long dynamicSize = 0;
+            List<long[]> loads = new ArrayList<>();
+            for (int i = 0; i < phnum; i++) {
+                int base = i * phentsize;
+                int type = headers.getInt(base);
+                long offset = is64 ? headers.getLong(base + 8) : Integer.toUnsignedLong(headers.getInt(base + 4));
+                long vaddr = is64 ? headers.getLong(base + 16) : Integer.toUnsignedLong(headers.getInt(base + 8));
+                long fileSize = is64 ? headers.getLong(base + 32) : Integer.toUnsignedLong(headers.getInt(base + 16));
+                if (type == ElfSegment.PT_DYNAMIC) {
+                    hasDynamic = true;
+                    dynamicOffset = offset;
+                    dynamicSize = fileSize;
+                } else if (type == ElfSegment.PT_LOAD) {
+                    loads.add(new long[] {vaddr, offset, fileSize});
+                }
+            }
+            if (!hasDynamic) return null;
+            if (dynamicOffset < 0 || dynamicOffset >= size) {
+                throw new ElfException("Invalid PT_DYNAMIC offset in " + path + ": " + dynamicOffset);
+            }
+
+            int entrySize = is64 ? 16 : 8;
+            int count = (int) (Math.min(dynamicSize, MAX_DYNAMIC_SIZE) / entrySize);
+            ByteBuffer dynamic = readFully(channel, dynamicOffset, count * entrySize, true).order(order);
+            long stringTableAddress = -1;
+            long soname = -1;
+            long runPath = -1;
+            long rPath = -1;
+            List<Long> needed = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long tag = is64 ? dynamic.getLong(i * entrySize) : dynamic.getInt(i * entrySize);
+                long value = is64
+                        ? dynamic.getLong(i * entrySize + 8)
+                        : Integer.toUnsignedLong(dynamic.getInt(i * entrySize + 4));
+                if (tag == ElfDynamicSection.DT_NULL) break;
+                if (tag == ElfDynamicSection.DT_NEEDED) {
+                    needed.add(value);
+                } else if (tag == ElfDynamicSection.DT_STRTAB) {
+                    stringTableAddress = value;
+                } else if (tag == ElfDynamicSection.DT_SONAME) {
+                    soname = value;
+                } else if (tag == ElfDynamicSection.DT_RUNPATH) {
+                    runPath = value;
+                } else if (tag == ElfDynamicSection.DT_RPATH) {
+                    rPath = value;
+                }
+            }
+
+            long stringTableOffset = -1;
+            for (long[] load : loads) {
+                if (stringTableAddress >= load[0] && stringTableAddress - load[0] < load[2]) {
+                    stringTableOffset = load[1] + (stringTableAddress - load[0]);
+                    break;
+                }
+            }
+            if (stringTableOffset < 0) {
+                if (needed.isEmpty() && soname < 0) return new Entry(path, null, new ArrayList<>(), null, null);
+                throw new ElfException("DT_STRTAB outside of loadable segments in " + path);
+            }
+
+            List<String> neededLibraries = new ArrayList<>();
+            for (long offset : needed) {
+                if (offset == -1) throw new ElfException("Invalid DT_NEEDED in " + path);
+                neededLibraries.add(readString(channel, size, stringTableOffset, offset));
+            }
+            return new Entry(
+                    path,
+                    readString(channel, size, stringTableOffset, soname),
+                    neededLibraries,
+                    readString(channel, size, stringTableOffset, runPath),
+                    readString(channel, size, stringTableOffset, rPath));
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int size, boolean required)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                if (required) throw new ElfException("Unexpected end of file reading " + size + " bytes");
+                return null;
+            }
+        }
+        return buffer;
+    }
+
+    /** Reads a string at an offset into the string table, or returns null for the absent offset -1. */
+    private static String readString(FileChannel channel, long fileSize, long stringTableOffset, long offset)
+            throws IOException {
+        if (offset == -1) return null;
+        long position = stringTableOffset + offset;
+        if (offset < 0 || position < stringTableOffset || position >= fileSize) {
+            throw new ElfException("String offset out of range: " + offset);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        while (true) {
+            int read = channel.read(buffer, position + buffer.position());
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == 0) return new String(buffer.array(), 0, i, StandardCharsets.UTF_8);
+            }
+            if (read < 0 || (!buffer.hasRemaining() && buffer.capacity() >= MAX_STRING_LENGTH)) {
+                throw new ElfException("Unterminated string at offset " + position);
+            }
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+        }
+    }
+
+    /** The ELF files with a dynamic segment found, keyed and ordered by path. */
+    public Map<Path, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Returns the files directly needing a library.
+     *
+     * @param libraryName the DT_NEEDED name of the library, normally its DT_SONAME such as "libfoo.so.3"
+     * @return the paths of the files needing the library, ordered by path
+     */
+    public List<Path> getDependents(String libraryName) {
+        return Collections.unmodifiableList(dependents.getOrDefault(libraryName, Collections.emptyList()));
+    }
+
+    /**
+     * Returns the files directly or indirectly needing a library. A file needs a library indirectly if it needs a
+     * file in the tree whose {@link Entry#getLibraryName() library name} names a file needing the library.
+     *
+     * @param libraryName the DT_NEEDED name of the library
+     * @return the paths of the files needing the library, ordered by path
+     */
+    public List<Path> getTransitiveDependents(String libraryName) {
+        Set<Path> result = new TreeSet<>();
+        Set<String> visitedNames = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(libraryName);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (!visitedNames.add(name)) continue;
+            for (Path dependent : getDependents(name)) {
+                if (result.add(dependent)) queue.add(entries.get(dependent).getLibraryName());
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Returns the files in the tree providing a library.
+     *
+     * @param libraryName the DT_NEEDED name of the library
+     * @return the paths of the files with the name as {@link Entry#getLibraryName() library name}, ordered by path
+     */
+    public List<Path> getProviders(String libraryName) {
+        return Collections.unmodifiableList(providers.getOrDefault(libraryName, Collections.emptyList()));
+    }
+
+    /** The number of regular files visited by the scan, ELF files or not. */
+    public int getFilesScanned() {
+        return filesScanned;
+    }
+
+    /** The time the scan took, in nanoseconds. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** The number of regular files visited per second of the scan. */
+    public double getFilesPerSecond() {
+        return (elapsedNanos == 0) ? 0 : filesScanned * 1e9 / elapsedNanos;
+    }
+}
@@ -85,6 +85,29 @@ public class ElfSectionHeader {
     public static final int SHT_PREINIT_ARRAY = 16;
     public static final int SHT_GROUP = 17;
     public static final int SHT_SYMTAB_SHNDX = 18;
+    /**
+     * Section holds relative relocations in a compact bitmap encoding.
+     * <p>
+     * See {@link ElfRelrSection}, which is the class representing sections of this type, for more information.
+     */
+    public static final int SHT_RELR = 19;
+
+    /**
+     * Section holds relocation entries without explicit addends, packed in the Android APS2 format.
+     * <p>
+     * See {@link ElfAndroidRelocationSection}, which is the class representing sections of this type.
+     */
+    public static final int SHT_ANDROID_REL = 0x60000001;
+    /**
+     * Section holds relocation entries with explicit addends, packed in the Android APS2 format.
+     * <p>
+     * See {@link ElfAndroidRelocationAddendSection}, which is the class representing sections of this type.
+     */
+    public static final int SHT_ANDROID_RELA = 0x60000002;
+    /**
+     * The Android section type used for {@link #SHT_RELR} sections before that type was standardized.
+     */
+    public static final int SHT_ANDROID_RELR = 0x6fffff00;
 
     /**
      * Object attributes.
@@ -97,8 +120,17 @@ public class ElfSectionHeader {
      */
     public static final int SHT_GNU_HASH = 0x6ffffff6;
 
+    /**
+     * Section holding the symbol versions defined by the file. See {@link ElfVersionDefinitionSection}.
+     */
     public static final int SHT_GNU_verdef = 0x6ffffffd;
+    /**
+     * Section holding the symbol versions required from other files. See {@link ElfVersionRequirementSection}.
+     */
     public static final int SHT_GNU_verneed = 0x6ffffffe;
+    /**
+     * Section holding the version of each dynamic symbol. See {@link ElfSymbolVersionSection}.
+     */
     public static final int SHT_GNU_versym = 0x6fffffff;
 
     /**
@@ -222,6 +254,24 @@ public class ElfSectionHeader {
         sh_entsize = parser.readIntOrLong();
     }
 
+    /**
+     * Creates an unnamed header for an allocated section located through the dynamic section, for files without a
+     * section header table. See {@link ElfDynamicSegmentSections}.
+     */
+    ElfSectionHeader(ElfFile elfHeader, int type, long address, long offset, long size, int info, long entrySize) {
+        this.elfHeader = elfHeader;
+        sh_name = 0;
+        sh_type = type;
+        sh_flags = FLAG_ALLOC;
+        sh_addr = address;
+        sh_offset = offset;
+        sh_size = size;
+        sh_link = 0;
+        sh_info = info;
+        sh_addralign = 0;
+        sh_entsize = entrySize;
+    }
+
     /**
      * Returns the name of the section or null if the section has no name.
      *
@@ -233,6 +283,38 @@ public class ElfSectionHeader {
         return tbl.get(sh_name);
     }
 
+    /**
+     * Returns a view of the name of the section, or null if the section has no name.
+     * <p>
+     * Unlike {@link #getName()} this does not decode the name into a {@link String}.
+     *
+     * @return a view of the name of the section, if any
+     */
+    public ElfStringTable.ElfString getNameView() {
+        if (sh_name == 0) return null;
+        return elfHeader.getSectionNameStringTable().getView(sh_name);
+    }
+
+    /**
+     * Checks if the name of this section starts with the given prefix, without decoding the name.
+     *
+     * @param prefix the prefix to check for
+     * @return true if this section has a name starting with the prefix
+     */
+    public boolean nameStartsWith(String prefix) {
+        return sh_name != 0 && elfHeader.getSectionNameStringTable().startsWith(sh_name, prefix);
+    }
+
+    /**
+     * Checks if the name of this section equals the given name, without decoding the name.
+     *
+     * @param name the name to compare with
+     * @return true if this section has the given name
+     */
+    public boolean nameEquals(String name) {
+        return sh_name != 0 && elfHeader.getSectionNameStringTable().contentEquals(sh_name, name);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -0,0 +1,137 @@
+package net.fornwall.jelf;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of strings which may be shared between {@link ElfStringTable}:s, possibly of different {@link ElfFile}:s, so
+ * that equal names decoded from different tables end up as a single {@link String} instance.
+ * <p>
+ * The pool only holds weak references to its strings, so it does not keep names alive which are no longer used
+ * elsewhere. It is safe to use from multiple threads.
+ * <p>
+ * Configure a table to use a pool with {@link ElfStringTable#setStringPool(ElfStringPool)}, or all tables of a file
+ * with {@link ElfFile#setStringPool(ElfStringPool)}.
+ */
+public final class ElfStringPool {
+
+    /**
+     * Approximate heap overhead of a {@link String} besides its characters: the object header and fields of the string
+     * itself and the header of its backing array, on a 64-bit JVM with compressed references.
+     */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final ConcurrentHashMap<Object, PooledString> strings = new ConcurrentHashMap<>();
+    private final ReferenceQueue<String> collected = new ReferenceQueue<>();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Creates a new, empty, pool. */
+    public ElfStringPool() {}
+
+    /**
+     * Returns the pooled string equal to the given one, adding it to the pool if no such string exists.
+     *
+     * @param value the string to intern
+     * @return a string equal to {@code value}, which is the same instance for all equal strings in the pool
+     */
+    public String intern(String value) {
+        expungeCollected();
+        LookupKey lookupKey = new LookupKey(value);
+        while (true) {
+            PooledString pooled = strings.get(lookupKey);
+            if (pooled == null) {
+                PooledString added = new PooledString(value, collected);
+                pooled = strings.putIfAbsent(added, added);
+                if (pooled == null) return value;
+            }
+            String existing = pooled.get();
+            if (existing != null) {
+                if (existing != value) {
+                    hits.incrementAndGet();
+                    bytesSaved.addAndGet(STRING_OVERHEAD_BYTES + (long) value.length());
+                }
+                return existing;
+            }
+            // Collected but not yet expunged - replace it.
+            strings.remove(pooled, pooled);
+        }
+    }
+
+    /**
+     * The number of strings currently in the pool, including strings which have been garbage collected but not yet
+     * removed.
+     */
+    public int size() {
+        expungeCollected();
+        return strings.size();
+    }
+
+    /**
+     * The number of {@link #intern(String)} calls which returned an already pooled instance instead of the given one.
+     */
+    public long getDuplicatesRemoved() {
+        return hits.get();
+    }
+
+    /**
+     * An estimate of the heap bytes saved by returning pooled instances instead of duplicates. The estimate assumes
+     * compact (one byte per character) strings and counts every removed duplicate, even if it was only short-lived.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    private void expungeCollected() {
+        Object reference;
+        while ((reference = collected.poll()) != null) {
+            strings.remove(reference, reference);
+        }
+    }
+
+    private static final class PooledString extends WeakReference<String> {
+        private final int hash;
+
+        PooledString(String value, ReferenceQueue<String> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o instanceof LookupKey) return ((LookupKey) o).equals(this);
+            if (!(o instanceof PooledString)) return false;
+            PooledString other = (PooledString) o;
+            String value = get();
+            return value != null && hash == other.hash && value.equals(other.get());
+        }
+    }
+
+    /** Used to look up pooled strings without creating a weak reference. */
+    private static final class LookupKey {
+        private final String value;
+
+        LookupKey(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof PooledString) return value.equals(((PooledString) o).get());
+            return o instanceof LookupKey && value.equals(((LookupKey) o).value);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package net.fornwall.jelf;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * String table sections hold null-terminated character sequences, commonly called strings.
  *
@@ -9,30 +12,440 @@ package net.fornwall.jelf;
  */
 public final class ElfStringTable extends ElfSection {
 
-    /** The string table data. */
-    private final byte[] data;
+    /** The low seven bits of each byte in a long, used when searching for null bytes eight bytes at a time. */
+    private static final long LOW_SEVEN_BITS = 0x7F7F_7F7F_7F7F_7F7FL;
+
+    /**
+     * The string table data. For memory mapped files this is a view of the mapping, so that the table is not copied
+     * onto the heap.
+     */
+    private final ByteBuffer data;
+
+    /** Little-endian view of {@link #data}, so that the byte at index i of a long read is in bits [8i, 8i+8). */
+    private final ByteBuffer words;
+
+    /** The number of strings in the table, or -1 if not counted yet. */
+    private int numStrings = -1;
+
+    /**
+     * Decoded strings, at the slot determined by {@link #cacheSlot(int, int)} for their offset. Null if caching is
+     * disabled.
+     */
+    private volatile CacheEntry[] cache;
 
-    public final int numStrings;
+    /** Pool used for decoded strings, overriding the pool of the file if set. */
+    private ElfStringPool stringPool;
 
-    /** Reads all the strings from [offset, length]. */
+    /**
+     * A decoded string together with its offset. Entries are immutable, so threads reading and replacing a slot
+     * concurrently see either the whole old entry or the whole new one.
+     */
+    private static final class CacheEntry {
+        final int offset;
+        final String string;
+
+        CacheEntry(int offset, String string) {
+            this.offset = offset;
+            this.string = string;
+        }
+    }
+
+    /** Refers to the strings in [offset, length], which are read lazily. */
     ElfStringTable(ElfParser parser, long offset, int length, ElfSectionHeader header) throws ElfException {
         super(parser, header);
 
-        parser.seek(offset);
-        data = new byte[length];
-        int bytesRead = parser.read(data);
-        if (bytesRead != length)
-            throw new ElfException("Error reading string table (read " + bytesRead + "bytes - expected to " + "read "
-                    + data.length + "bytes)");
+        data = parser.slice(offset, length);
+        words = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
 
-        int stringsCount = 0;
-        for (byte datum : data) if (datum == '\0') stringsCount++;
-        numStrings = stringsCount;
+    /**
+     * The number of strings in this table, counted as the number of null bytes. As this requires a pass over the whole
+     * table the count is computed on first request.
+     *
+     * @return the number of strings in this table
+     */
+    public int getNumStrings() {
+        if (numStrings < 0) {
+            int stringsCount = 0;
+            int length = data.limit();
+            int i = 0;
+            for (; i + Long.BYTES <= length; i += Long.BYTES) {
+                stringsCount += Long.bitCount(zeroBytes(words.getLong(i)));
+            }
+            for (; i < length; i++) if (data.get(i) == '\0') stringsCount++;
+            numStrings = stringsCount;
+        }
+        return numStrings;
+    }
+
+    /**
+     * Enables (or disables, if {@code maxEntries} is zero) a cache of decoded strings.
+     * <p>
+     * The cache is keyed by string offset and holds at most {@code maxEntries} strings (rounded up to a power of
+     * two), so repeated lookups of the same names, as done by {@link ElfSymbol#getName()} and
+     * {@link ElfSectionHeader#getName()}, return the same {@link String} instance instead of decoding it again. When
+     * two offsets compete for the same slot the most recently decoded string wins. The cache may be used by several
+     * threads at once.
+     *
+     * @param maxEntries the maximum number of strings to keep, or zero to disable caching
+     */
+    public void setCacheSize(int maxEntries) {
+        if (maxEntries < 0) throw new IllegalArgumentException("Negative cache size: " + maxEntries);
+        if (maxEntries == 0) {
+            cache = null;
+        } else {
+            int capacity = 1;
+            while (capacity < maxEntries && capacity < (1 << 30)) capacity <<= 1;
+            cache = new CacheEntry[capacity];
+        }
+    }
+
+    /**
+     * The maximum number of cached strings, or zero if caching is disabled.
+     *
+     * @see #setCacheSize(int)
+     */
+    public int getCacheSize() {
+        CacheEntry[] entries = cache;
+        return entries == null ? 0 : entries.length;
+    }
+
+    /**
+     * Sets a pool to intern decoded strings into, so that equal strings decoded from different tables are shared.
+     * <p>
+     * Overrides the pool set for the whole file with {@link ElfFile#setStringPool(ElfStringPool)}. Strings already
+     * held in the cache of this table (see {@link #setCacheSize(int)}) are not affected.
+     *
+     * @param stringPool the pool to use, or null to use the pool of the file, if any
+     */
+    public void setStringPool(ElfStringPool stringPool) {
+        this.stringPool = stringPool;
     }
 
     public String get(int index) {
+        CacheEntry[] entries = cache;
+        if (entries == null) return decode(index);
+
+        int slot = cacheSlot(index, entries.length);
+        CacheEntry entry = entries[slot];
+        if (entry != null && entry.offset == index) return entry.string;
+
+        String result = decode(index);
+        entries[slot] = new CacheEntry(index, result);
+        return result;
+    }
+
+    /**
+     * Returns a view of the string at the specified index, which allows inspecting the string without decoding it into
+     * a {@link String}.
+     *
+     * @param index the index of the string in this table
+     * @return a view of the string bytes
+     */
+    public ElfString getView(int index) {
+        return new ElfString(this, index, endOfString(index) - index);
+    }
+
+    /**
+     * Checks if the string at the specified index starts with the given prefix, by comparing bytes without decoding
+     * the string.
+     *
+     * @param index the index of the string in this table
+     * @param prefix the prefix to check for
+     * @return true if the string starts with the prefix
+     */
+    public boolean startsWith(int index, String prefix) {
+        return regionMatches(index, prefix, false);
+    }
+
+    /**
+     * Checks if the string at the specified index starts with the given bytes.
+     *
+     * @param index the index of the string in this table
+     * @param prefix the bytes to check for
+     * @return true if the string starts with the prefix
+     */
+    public boolean startsWith(int index, byte[] prefix) {
+        return regionMatches(index, prefix, false);
+    }
+
+    /**
+     * Checks if the string at the specified index equals the given string, by comparing bytes without decoding the
+     * string.
+     *
+     * @param index the index of the string in this table
+     * @param value the string to compare to
+     * @return true if the string equals the value
+     */
+    public boolean contentEquals(int index, String value) {
+        return regionMatches(index, value, true);
+    }
+
+    /**
+     * Checks if the string at the specified index consists of exactly the given bytes.
+     *
+     * @param index the index of the string in this table
+     * @param value the bytes to compare to
+     * @return true if the string equals the value
+     */
+    public boolean contentEquals(int index, byte[] value) {
+        return regionMatches(index, value, true);
+    }
+
+    /**
+     * Compares the string bytes at {@code index} with {@code value}, requiring a null byte after the match if
+     * {@code wholeString} is set.
+     */
+    private boolean regionMatches(int index, String value, boolean wholeString) {
+        int length = value.length();
+        int limit = data.limit();
+        if (index < 0 || index + length >= limit + (wholeString ? 0 : 1)) return false;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            // Non-ASCII characters are compared in their encoded form, as used when decoding.
+            if (c >= 0x80) return regionMatches(index, value.getBytes(), wholeString);
+            if (c == '\0' || data.get(index + i) != c) return false;
+        }
+        return !wholeString || data.get(index + length) == '\0';
+    }
+
+    private boolean regionMatches(int index, byte[] value, boolean wholeString) {
+        int length = value.length;
+        int limit = data.limit();
+        if (index < 0 || index + length >= limit + (wholeString ? 0 : 1)) return false;
+        for (int i = 0; i < length; i++) {
+            byte b = value[i];
+            if (b == '\0' || data.get(index + i) != b) return false;
+        }
+        return !wholeString || data.get(index + length) == '\0';
+    }
+
+    private String decode(int index) {
+        return decode(index, endOfString(index) - index);
+    }
+
+    private String decode(int index, int length) {
+        String result;
+        if (data.hasArray()) {
+            result = new String(data.array(), data.arrayOffset() + index, length);
+        } else {
+            byte[] bytes = new byte[length];
+            data.get(index, bytes);
+            result = new String(bytes);
+        }
+        ElfStringPool pool = (stringPool != null) ? stringPool : parser.elfFile.getStringPool();
+        return (pool == null) ? result : pool.intern(result);
+    }
+
+    /** Returns the index of the null byte terminating the string starting at {@code index}. */
+    private int endOfString(int index) {
+        int limit = data.limit();
+        if (index < 0 || index >= limit) {
+            throw new ElfException("String table index out of range (index=" + index + ", size=" + limit + ")");
+        }
         int endPtr = index;
-        while (data[endPtr] != '\0') endPtr++;
-        return new String(data, index, endPtr - index);
+        for (; endPtr + Long.BYTES <= limit; endPtr += Long.BYTES) {
+            long zeros = zeroBytes(words.getLong(endPtr));
+            if (zeros != 0) return endPtr + (Long.numberOfTrailingZeros(zeros) >>> 3);
+        }
+        for (; endPtr < limit; endPtr++) {
+            if (data.get(endPtr) == '\0') return endPtr;
+        }
+        throw new ElfException("Unterminated string at index " + index);
+    }
+
+    /**
+     * Returns a long with the high bit set in each byte which is zero in {@code word}, and all other bits cleared.
+     * <p>
+     * Unlike the common {@code (word - 0x01..01) & ~word & 0x80..80} test this never marks a non-zero byte, so the
+     * result can be used to count null bytes and to locate the first one.
+     */
+    static long zeroBytes(long word) {
+        long t = (word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(t | word | LOW_SEVEN_BITS);
+    }
+
+    /** Returns a copy of the bytes of the string at the specified index, without the terminating null byte. */
+    byte[] getBytes(int index) {
+        byte[] bytes = new byte[endOfString(index) - index];
+        data.get(index, bytes);
+        return bytes;
+    }
+
+    /**
+     * Computes the {@link ElfGnuHashTable GNU hash} of the string at the specified index directly from the table bytes.
+     *
+     * @param index the index of the string in this table
+     * @return the same value as {@code ElfGnuHashTable.gnuHash(get(index))} for ASCII strings
+     */
+    int gnuHash(int index) {
+        int limit = data.limit();
+        int h = 5381;
+        for (int i = index; i < limit; i++) {
+            int b = data.get(i) & 0xFF;
+            if (b == 0) return h;
+            h = (h << 5) + h + b;
+        }
+        throw new ElfException("Unterminated string at index " + index);
+    }
+
+    /**
+     * Computes the {@link ElfHashTable ELF hash} of the string at the specified index directly from the table bytes.
+     *
+     * @param index the index of the string in this table
+     * @return the same value as {@code ElfHashTable.elfHash(get(index))} for ASCII strings
+     */
+    long elfHash(int index) {
+        int limit = data.limit();
+        long hash = 0;
+        for (int i = index; i < limit; i++) {
+            int b = data.get(i) & 0xFF;
+            if (b == 0) return hash;
+            hash = (hash << 4) + b;
+            long x = hash & 0xF0000000L;
+            if (x != 0) hash ^= (x >> 24);
+            hash &= ~x;
+        }
+        throw new ElfException("Unterminated string at index " + index);
+    }
+
+    /**
+     * Returns the first eight bytes of the string at the specified index as a big-endian long, padded with zero bytes
+     * if the string is shorter. Comparing these keys as unsigned longs orders strings as {@link #compare(int, int)}
+     * does, apart from strings sharing their first eight bytes.
+     */
+    long prefixKey(int index) {
+        int limit = data.limit();
+        long key = 0;
+        for (int i = 0; i < Long.BYTES && index + i < limit; i++) {
+            int b = data.get(index + i) & 0xFF;
+            if (b == 0) break;
+            key |= (long) b << (56 - 8 * i);
+        }
+        return key;
+    }
+
+    /** Compares the strings at two indices of this table by their unsigned bytes. */
+    int compare(int index, int otherIndex) {
+        int limit = data.limit();
+        for (int i = 0; ; i++) {
+            int a = (index + i < limit) ? data.get(index + i) & 0xFF : 0;
+            int b = (otherIndex + i < limit) ? data.get(otherIndex + i) & 0xFF : 0;
+            if (a != b) return (a < b) ? -1 : 1;
+            if (a == 0) return 0;
+        }
+    }
+
+    /**
+     * Compares the string at the specified index with the given bytes by their unsigned values. If {@code prefixOnly}
+     * is set, a string starting with the bytes compares as equal to them.
+     */
+    int compare(int index, byte[] key, boolean prefixOnly) {
+        int limit = data.limit();
+        for (int i = 0; i < key.length; i++) {
+            int a = (index + i < limit) ? data.get(index + i) & 0xFF : 0;
+            int b = key[i] & 0xFF;
+            if (a != b) return (a < b) ? -1 : 1;
+        }
+        if (prefixOnly || index + key.length >= limit) return 0;
+        return (data.get(index + key.length) == '\0') ? 0 : 1;
+    }
+
+    private static int cacheSlot(int index, int capacity) {
+        // Spread the offset bits, as string offsets of neighbouring symbols are clustered.
+        int h = index * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    /**
+     * A view of a string in an {@link ElfStringTable}, which reads the string bytes on demand instead of decoding
+     * them into a {@link String}.
+     * <p>
+     * Each byte is presented as one char, so the view matches the decoded string for the ASCII names found in
+     * practice. Use {@link #toString()} to decode the string.
+     */
+    public static final class ElfString implements CharSequence {
+        private final ElfStringTable table;
+        private final int start;
+        private final int length;
+
+        ElfString(ElfStringTable table, int start, int length) {
+            this.table = table;
+            this.start = start;
+            this.length = length;
+        }
+
+        /** The index of the first byte of this string in the string table. */
+        public int getIndex() {
+            return start;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (byteAt(index) & 0xFF);
+        }
+
+        /** Returns the byte at the given index of this string. */
+        public byte byteAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+            }
+            return table.data.get(start + index);
+        }
+
+        @Override
+        public ElfString subSequence(int startIndex, int endIndex) {
+            if (startIndex < 0 || endIndex > length || startIndex > endIndex) {
+                throw new IndexOutOfBoundsException("start=" + startIndex + ", end=" + endIndex + ", length=" + length);
+            }
+            return new ElfString(table, start + startIndex, endIndex - startIndex);
+        }
+
+        public boolean startsWith(String prefix) {
+            return prefix.length() <= length && table.startsWith(start, prefix);
+        }
+
+        public boolean startsWith(byte[] prefix) {
+            return prefix.length <= length && table.startsWith(start, prefix);
+        }
+
+        public boolean contentEquals(String value) {
+            return isTerminated() ? table.contentEquals(start, value) : toString().equals(value);
+        }
+
+        /** Whether this view extends to the terminating null byte, as opposed to being a shorter sub sequence. */
+        private boolean isTerminated() {
+            return table.data.get(start + length) == '\0';
+        }
+
+        /** Decodes this string, using the cache and string pool of the table for whole strings. */
+        @Override
+        public String toString() {
+            return isTerminated() ? table.get(start) : table.decode(start, length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ElfString)) return false;
+            ElfString other = (ElfString) o;
+            if (length != other.length) return false;
+            for (int i = 0; i < length; i++) {
+                if (table.data.get(start + i) != other.table.data.get(other.start + i)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 1;
+            for (int i = 0; i < length; i++) result = 31 * result + table.data.get(start + i);
+            return result;
+        }
     }
 }
@@ -232,13 +232,114 @@ public final class ElfSymbol {
         if (st_name == 0) return null;
 
         // Retrieve the name of the symbol from the correct string table.
-        String symbol_name = null;
+        ElfStringTable stringTable = getStringTable();
+        return (stringTable == null) ? null : stringTable.get(st_name);
+    }
+
+    /**
+     * Returns the demangled name of the symbol, or null if the symbol has no name.
+     * <p>
+     * Names mangled as C++ or Rust names are demangled using {@link ElfDemangler#getDefault()}, while other names are
+     * returned as is.
+     *
+     * @return the demangled name of this symbol, if any
+     */
+    public String getDemangledName() throws ElfException {
+        return ElfDemangler.getDefault().demangle(getName());
+    }
+
+    /**
+     * Returns the name of the version of this symbol, such as "GLIBC_2.14", from the {@link ElfSymbolVersionSection}.
+     * <p>
+     * For defined symbols this is a version defined by the file, for undefined symbols a version required from another
+     * file.
+     *
+     * @return the version name, or null if this is not a versioned dynamic symbol
+     */
+    public String getVersionName() throws ElfException {
+        ElfSymbolVersionSection versions = getVersions();
+        return (versions == null) ? null : versions.getVersionName(versions.getVersionIndex(getDynamicIndex()));
+    }
+
+    /**
+     * Checks if this symbol is a non-default version of its name, such as memcpy@GLIBC_2.2.5 next to the default
+     * memcpy@@GLIBC_2.14. Such symbols only resolve references to that exact version.
+     *
+     * @return true if the {@link ElfSymbolVersionSection#VERSYM_HIDDEN} bit is set for this symbol
+     */
+    public boolean isHiddenVersion() throws ElfException {
+        ElfSymbolVersionSection versions = getVersions();
+        return versions != null && versions.isHidden(getDynamicIndex());
+    }
+
+    /**
+     * Returns the name of the symbol together with its version, in the format used by readelf and the linker:
+     * "name@@version" for the default version of a defined symbol, and "name@version" for hidden versions and for
+     * undefined symbols.
+     *
+     * @return the versioned name of this symbol, or {@link #getName()} if it is not versioned
+     */
+    public String getVersionedName() throws ElfException {
+        String name = getName();
+        String version = (name == null) ? null : getVersionName();
+        if (version == null) return name;
+        boolean defaultVersion = st_shndx != 0 && !isHiddenVersion();
+        return name + (defaultVersion ? "@@" : "@") + version;
+    }
+
+    private ElfSymbolVersionSection getVersions() throws ElfException {
+        return (section_type == ElfSectionHeader.SHT_DYNSYM) ? elfHeader.getSymbolVersionSection() : null;
+    }
+
+    private int getDynamicIndex() throws ElfException {
+        return elfHeader.getDynamicSymbolTableSection().indexOf(this);
+    }
+
+    /**
+     * Returns a view of the name of the symbol, or null if the symbol has no name.
+     * <p>
+     * Unlike {@link #getName()} this does not decode the name into a {@link String}.
+     *
+     * @return a view of the name of this symbol, if any
+     */
+    public ElfStringTable.ElfString getNameView() throws ElfException {
+        if (st_name == 0) return null;
+        ElfStringTable stringTable = getStringTable();
+        return (stringTable == null) ? null : stringTable.getView(st_name);
+    }
+
+    /**
+     * Checks if the name of this symbol starts with the given prefix, without decoding the name.
+     *
+     * @param prefix the prefix to check for
+     * @return true if this symbol has a name starting with the prefix
+     */
+    public boolean nameStartsWith(String prefix) throws ElfException {
+        if (st_name == 0) return false;
+        ElfStringTable stringTable = getStringTable();
+        return stringTable != null && stringTable.startsWith(st_name, prefix);
+    }
+
+    /**
+     * Checks if the name of this symbol equals the given name, without decoding the name.
+     *
+     * @param name the name to compare with
+     * @return true if this symbol has the given name
+     */
+    public boolean nameEquals(String name) throws ElfException {
+        if (st_name == 0) return false;
+        ElfStringTable stringTable = getStringTable();
+        return stringTable != null && stringTable.contentEquals(st_name, name);
+    }
+
+    /** The string table containing the name of this symbol, if any. */
+    ElfStringTable getStringTable() {
         if (section_type == ElfSectionHeader.SHT_SYMTAB) {
-            symbol_name = elfHeader.getStringTable().get(st_name);
+            return elfHeader.getStringTable();
         } else if (section_type == ElfSectionHeader.SHT_DYNSYM) {
-            symbol_name = elfHeader.getDynamicStringTable().get(st_name);
+            return elfHeader.getDynamicStringTable();
         }
-        return symbol_name;
+        return null;
     }
 
     public Visibility getVisibility() {
@@ -0,0 +1,448 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * An index over the addresses of the symbols in the {@link ElfSectionHeader#SHT_DYNSYM} and
+ * {@link ElfSectionHeader#SHT_SYMTAB} sections of an {@link ElfFile}, for fast lookup of the symbol containing an
+ * address.
+ * <p>
+ * Obtain it with {@link ElfFile#getSymbolAddressIndex()}. Each symbol of the two tables has an id, which is its index
+ * in the dynamic symbol table, or the index in the symbol table offset by the size of the dynamic symbol table.
+ * <p>
+ * Only defined symbols with a non-zero size which are not thread-local are indexed, as other symbols do not cover any
+ * address range of the file. When symbols overlap the address is attributed to the innermost one: the symbol with the
+ * greatest start address, then the smallest size and then, as in {@link ElfFile#getELFSymbol(long)}, preferring the
+ * dynamic symbol table.
+ * <p>
+ * Symbols without a size, common in hand-written assembly and stripped dynamic symbol tables, can optionally be given
+ * an inferred size with {@link ElfFile#getSymbolAddressIndex(boolean)}, in the same way as tools such as perf and
+ * addr2line do.
+ */
+public final class ElfSymbolAddressIndex {
+
+    /** Section indices from this value up are reserved, for instance for absolute and common symbols. */
+    private static final int SHN_LORESERVE = 0xff00;
+    /** The names of ARM and AArch64 mapping symbols, and the prefixes of their names with a suffix. */
+    private static final String[] MAPPING_SYMBOLS = {"$a", "$d", "$t", "$x"};
+    private static final String[] MAPPING_SYMBOL_PREFIXES = {"$a.", "$d.", "$t.", "$x."};
+
+    private final ElfSymbol[] symbols;
+    private final boolean inferSizes;
+    /** The end address (exclusive) of each symbol by id, which may be inferred. */
+    private final long[] symbolEnds;
+
+    /** Start address of each indexed symbol, in ascending unsigned order. */
+    final long[] starts;
+    /** End address (exclusive) of each indexed symbol, in the order of {@link #starts}. */
+    final long[] ends;
+    /** Id of each indexed symbol, in the order of {@link #starts}. */
+    final int[] ids;
+
+    /**
+     * Start addresses of the non-overlapping segments the address space is divided into, in ascending unsigned
+     * order.
+     */
+    final long[] segmentStarts;
+    /** The id of the innermost symbol covering each segment, or -1 if no symbol covers it. */
+    final int[] segmentIds;
+
+    /**
+     * Every symbol start and end address, in ascending unsigned order, each starting a segment covered by the same
+     * symbols.
+     */
+    private final long[] coverStarts;
+    /**
+     * The positions, in the order of {@link #starts}, of all symbols covering each segment of {@link #coverStarts}:
+     * those of segment {@code i} are {@code coverPositions[coverOffsets[i]..coverOffsets[i + 1]]}.
+     */
+    private final int[] coverPositions;
+    private final int[] coverOffsets;
+
+    ElfSymbolAddressIndex(ElfFile file, boolean inferSizes) {
+        this.inferSizes = inferSizes;
+        ElfSymbolTableSection dynsym = file.getDynamicSymbolTableSection();
+        ElfSymbolTableSection symtab = file.getSymbolTableSection();
+        int dynsymCount = (dynsym == null) ? 0 : dynsym.symbols.length;
+        int symtabCount = (symtab == null) ? 0 : symtab.symbols.length;
+        symbols = new ElfSymbol[dynsymCount + symtabCount];
+        if (dynsym != null) System.arraycopy(dynsym.symbols, 0, symbols, 0, dynsymCount);
+        if (symtab != null) System.arraycopy(symtab.symbols, 0, symbols, dynsymCount, symtabCount);
+
+        symbolEnds = new long[symbols.length];
+        for (int id = 0; id < symbols.length; id++) {
+            symbolEnds[id] = symbols[id].st_value + symbols[id].st_size;
+        }
+        if (inferSizes) inferEnds(file);
+
+        List<Integer> indexed = new ArrayList<>();
+        for (int id = 0; id < symbols.length; id++) {
+            ElfSymbol symbol = symbols[id];
+            if (Long.compareUnsigned(symbolEnds[id], symbol.st_value) > 0
+                    && symbol.st_shndx != 0
+                    && symbol.getType() != ElfSymbol.STT_TLS) {
+                indexed.add(id);
+            }
+        }
+
+        indexed.sort((a, b) -> {
+            int startOrder = Long.compareUnsigned(symbols[a].st_value, symbols[b].st_value);
+            return (startOrder != 0) ? startOrder : Long.compareUnsigned(symbolEnds[a], symbolEnds[b]);
+        });
+        long[] startsBuilder = new long[indexed.size()];
+        long[] endsBuilder = new long[indexed.size()];
+        int[] idsBuilder = new int[indexed.size()];
+        int count = 0;
+        for (int id : indexed) {
+            // A symbol with the same range and name as one with a lower id, typically a dynamic symbol repeated in
+            // the symbol table, is left out as lookups would never return it.
+            long start = symbols[id].st_value;
+            long end = symbolEnds[id];
+            boolean duplicate = false;
+            for (int i = count - 1; i >= 0 && startsBuilder[i] == start && endsBuilder[i] == end; i--) {
+                if (Objects.equals(symbols[idsBuilder[i]].getName(), symbols[id].getName())) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (duplicate) continue;
+            startsBuilder[count] = start;
+            endsBuilder[count] = end;
+            idsBuilder[count] = id;
+            count++;
+        }
+        starts = Arrays.copyOf(startsBuilder, count);
+        ends = Arrays.copyOf(endsBuilder, count);
+        ids = Arrays.copyOf(idsBuilder, count);
+
+        // Divide the address space at every symbol start and end, attributing each resulting segment to the innermost
+        // symbol covering it. Active symbols are kept in a queue with the innermost first, from which ended symbols
+        // are removed once they reach the head, and in start order in a list from which ended symbols are removed at
+        // every boundary.
+        long[] boundaries = new long[2 * ids.length];
+        System.arraycopy(starts, 0, boundaries, 0, starts.length);
+        System.arraycopy(ends, 0, boundaries, starts.length, ends.length);
+        // Sort the addresses as unsigned values, by flipping their sign bits around a signed sort.
+        for (int b = 0; b < boundaries.length; b++) boundaries[b] ^= Long.MIN_VALUE;
+        Arrays.sort(boundaries);
+        for (int b = 0; b < boundaries.length; b++) boundaries[b] ^= Long.MIN_VALUE;
+        int boundaryCount = 0;
+        for (int b = 0; b < boundaries.length; b++) {
+            if (b == 0 || boundaries[b - 1] != boundaries[b]) boundaries[boundaryCount++] = boundaries[b];
+        }
+
+        PriorityQueue<Integer> active = new PriorityQueue<>((a, b) -> {
+            if (starts[a] != starts[b]) return Long.compareUnsigned(starts[b], starts[a]);
+            if (ends[a] != ends[b]) return Long.compareUnsigned(ends[a], ends[b]);
+            return Integer.compare(ids[a], ids[b]);
+        });
+        int[] covering = new int[ids.length];
+        int coveringCount = 0;
+        long[] segmentStartsBuilder = new long[boundaryCount];
+        int[] segmentIdsBuilder = new int[boundaryCount];
+        int segmentCount = 0;
+        int[] coverPositionsBuilder = new int[ids.length];
+        coverOffsets = new int[boundaryCount + 1];
+        int nextStart = 0;
+        for (int b = 0; b < boundaryCount; b++) {
+            long boundary = boundaries[b];
+            while (nextStart < starts.length && starts[nextStart] == boundary) {
+                covering[coveringCount++] = nextStart;
+                active.add(nextStart++);
+            }
+            while (!active.isEmpty() && Long.compareUnsigned(ends[active.peek()], boundary) <= 0) active.poll();
+            int id = active.isEmpty() ? -1 : ids[active.peek()];
+            if (segmentCount == 0 || segmentIdsBuilder[segmentCount - 1] != id) {
+                segmentStartsBuilder[segmentCount] = boundary;
+                segmentIdsBuilder[segmentCount] = id;
+                segmentCount++;
+            }
+
+            int kept = 0;
+            for (int i = 0; i < coveringCount; i++) {
+                if (Long.compareUnsigned(ends[covering[i]], boundary) > 0) covering[kept++] = covering[i];
+            }
+            coveringCount = kept;
+            int offset = coverOffsets[b];
+            if (offset + coveringCount > coverPositionsBuilder.length) {
+                coverPositionsBuilder = Arrays.copyOf(
+                        coverPositionsBuilder, Math.max(offset + coveringCount, 2 * coverPositionsBuilder.length));
+            }
+            System.arraycopy(covering, 0, coverPositionsBuilder, offset, coveringCount);
+            coverOffsets[b + 1] = offset + coveringCount;
+        }
+        segmentStarts = Arrays.copyOf(segmentStartsBuilder, segmentCount);
+        segmentIds = Arrays.copyOf(segmentIdsBuilder, segmentCount);
+        coverStarts = Arrays.copyOf(boundaries, boundaryCount);
+        coverPositions = Arrays.copyOf(coverPositionsBuilder, coverOffsets[boundaryCount]);
+    }
+
+    /**
+     * Lets each defined code or data symbol without a size extend to the start of the next symbol in the same section,
+     * or to the end of the section if there is no such symbol.
+     */
+    private void inferEnds(ElfFile file) {
+        // Sort the symbols defined in regular sections by section index and then address.
+        long[] addresses = new long[symbols.length];
+        Integer[] bySection = new Integer[symbols.length];
+        int defined = 0;
+        for (int id = 0; id < symbols.length; id++) {
+            int shndx = symbols[id].st_shndx & 0xFFFF;
+            if (shndx != 0 && shndx < SHN_LORESERVE) bySection[defined++] = id;
+        }
+        Arrays.sort(bySection, 0, defined, (a, b) -> {
+            int sectionOrder = Integer.compare(symbols[a].st_shndx & 0xFFFF, symbols[b].st_shndx & 0xFFFF);
+            return (sectionOrder != 0) ? sectionOrder : Long.compareUnsigned(symbols[a].st_value, symbols[b].st_value);
+        });
+        for (int i = 0; i < defined; i++) {
+            addresses[i] = symbols[bySection[i]].st_value;
+        }
+
+        int next = 0;
+        for (int i = 0; i < defined; i++) {
+            int id = bySection[i];
+            ElfSymbol symbol = symbols[id];
+            int shndx = symbol.st_shndx & 0xFFFF;
+            if (symbol.st_size != 0 || !mayInferSize(symbol) || shndx >= file.e_shnum) continue;
+
+            ElfSectionHeader section = file.getSection(shndx).header;
+            long sectionEnd = section.sh_addr + section.sh_size;
+            if (Long.compareUnsigned(symbol.st_value - section.sh_addr, section.sh_size) >= 0) continue;
+
+            if (next <= i) next = i + 1;
+            while (next < defined
+                    && (symbols[bySection[next]].st_shndx & 0xFFFF) == shndx
+                    && Long.compareUnsigned(addresses[next], symbol.st_value) <= 0) {
+                next++;
+            }
+            boolean sameSection = next < defined && (symbols[bySection[next]].st_shndx & 0xFFFF) == shndx;
+            symbolEnds[id] = (sameSection && Long.compareUnsigned(addresses[next], sectionEnd) < 0)
+                    ? addresses[next]
+                    : sectionEnd;
+        }
+    }
+
+    private static boolean mayInferSize(ElfSymbol symbol) {
+        switch (symbol.getType()) {
+            case ElfSymbol.STT_NOTYPE:
+            case ElfSymbol.STT_OBJECT:
+            case ElfSymbol.STT_FUNC:
+                return symbol.st_name != 0 && !isMappingSymbol(symbol);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if a symbol is an ARM or AArch64 mapping symbol, named $a, $d, $t or $x and optionally followed by a dot
+     * and a suffix, which only marks the kind of code or data following it.
+     */
+    static boolean isMappingSymbol(ElfSymbol symbol) {
+        if (!symbol.nameStartsWith("$")) return false;
+        for (int i = 0; i < MAPPING_SYMBOLS.length; i++) {
+            if (symbol.nameEquals(MAPPING_SYMBOLS[i]) || symbol.nameStartsWith(MAPPING_SYMBOL_PREFIXES[i])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether this index gives symbols without a size an inferred size.
+     *
+     * @return true if sizes are inferred
+     * @see ElfFile#getSymbolAddressIndex(boolean)
+     */
+    public boolean isInferringSizes() {
+        return inferSizes;
+    }
+
+    /**
+     * The number of symbol ids, that is the combined size of the dynamic symbol table and the symbol table.
+     *
+     * @return the number of symbol ids
+     */
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * Returns the symbol with the given id.
+     *
+     * @param symbolId the id of the symbol, as returned by {@link #lookup(long[], int[], long[])}
+     * @return the symbol with the given id
+     */
+    public ElfSymbol getSymbol(int symbolId) {
+        return symbols[symbolId];
+    }
+
+    /**
+     * Returns the end address (exclusive) of the symbol with the given id, which is its value plus its size or, for a
+     * symbol without a size in an index {@link #isInferringSizes() inferring sizes}, the inferred end of the symbol.
+     *
+     * @param symbolId the id of the symbol
+     * @return the end address of the symbol
+     */
+    public long getSymbolEnd(int symbolId) {
+        return symbolEnds[symbolId];
+    }
+
+    /**
+     * Returns the innermost symbol containing the specified address, or null if no symbol does.
+     *
+     * @param address the address to look up
+     * @return the symbol containing the address, if any
+     */
+    public ElfSymbol lookup(long address) {
+        int id = lookupId(address);
+        return (id < 0) ? null : symbols[id];
+    }
+
+    /**
+     * Returns the id of the innermost symbol containing the specified address, or -1 if no symbol does.
+     *
+     * @param address the address to look up
+     * @return the id of the symbol containing the address, or -1
+     */
+    public int lookupId(long address) {
+        int segment = lastAtOrBelow(segmentStarts, address);
+        return (segment < 0) ? -1 : segmentIds[segment];
+    }
+
+    /**
+     * Looks up the symbols containing many addresses at once.
+     * <p>
+     * The addresses are sorted internally together with their positions in the array, then resolved in a single merge
+     * pass over the symbols in address order with each result stored at the position of its address. Apart from the
+     * sorted copy of the addresses, their positions and the buffers to sort them nothing is allocated, so this is
+     * suitable for resolving large batches of sampled addresses.
+     *
+     * @param addresses the addresses to look up, in any order
+     * @param symbolIds receives, at the index of each address, the id of the symbol containing it or -1 if none does
+     * @param offsets receives, at the index of each address, the offset of the address from the start of its symbol,
+     *     or zero if no symbol contains it; may be null if the offsets are not needed
+     */
+    public void lookup(long[] addresses, int[] symbolIds, long[] offsets) {
+        if (symbolIds.length < addresses.length || (offsets != null && offsets.length < addresses.length)) {
+            throw new IllegalArgumentException("Result arrays shorter than the " + addresses.length + " addresses");
+        }
+
+        long[] sorted = addresses.clone();
+        int[] positions = new int[sorted.length];
+        for (int i = 0; i < positions.length; i++) positions[i] = i;
+        sort(sorted, positions, new long[sorted.length], new int[sorted.length], 0, sorted.length);
+
+        int segment = -1;
+        for (int i = 0; i < sorted.length; i++) {
+            long address = sorted[i];
+            while (segment + 1 < segmentStarts.length
+                    && Long.compareUnsigned(segmentStarts[segment + 1], address) <= 0) {
+                segment++;
+            }
+            int id = (segment < 0) ? -1 : segmentIds[segment];
+            int position = positions[i];
+            symbolIds[position] = id;
+            if (offsets != null) offsets[position] = (id < 0) ? 0 : address - symbols[id].st_value;
+        }
+    }
+
+    /** Merge sorts the values in [from, to) in ascending unsigned order, permuting the positions in the same way. */
+    private static void sort(
+            long[] values, int[] positions, long[] valueBuffer, int[] positionBuffer, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort(values, positions, valueBuffer, positionBuffer, from, mid);
+        sort(values, positions, valueBuffer, positionBuffer, mid, to);
+        if (Long.compareUnsigned(values[mid - 1], values[mid]) <= 0) return;
+
+        System.arraycopy(values, from, valueBuffer, from, to - from);
+        System.arraycopy(positions, from, positionBuffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right == to || (left < mid && Long.compareUnsigned(valueBuffer[left], valueBuffer[right]) <= 0)) {
+                values[i] = valueBuffer[left];
+                positions[i] = positionBuffer[left++];
+            } else {
+                values[i] = valueBuffer[right];
+                positions[i] = positionBuffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns all symbols containing the specified address, for instance aliases sharing the same range or objects
+     * nested inside others, ordered by start address.
+     *
+     * @param address the address to look up
+     * @return the symbols containing the address, which may be empty
+     */
+    public List<ElfSymbol> symbolsContaining(long address) {
+        return (address == -1) ? Collections.emptyList() : symbolsIntersecting(address, address + 1);
+    }
+
+    /**
+     * Returns all symbols whose range intersects the range [from, to), ordered by start address. A symbol with the
+     * same address, size and name as a symbol with a lower id, such as a dynamic symbol repeated in the symbol table,
+     * is only returned once, as the symbol {@link #lookup(long)} would return.
+     * <p>
+     * The symbols starting before the range are those covering the segment containing its start, and the others are
+     * the consecutive symbols starting inside the range. This runs in O(log n + k) time for k matching symbols.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the symbols intersecting the range, which may be empty
+     */
+    public List<ElfSymbol> symbolsIntersecting(long from, long to) {
+        List<ElfSymbol> result = new ArrayList<>();
+        if (Long.compareUnsigned(from, to) >= 0) return result;
+
+        int segment = lastAtOrBelow(coverStarts, from);
+        if (segment >= 0) {
+            for (int i = coverOffsets[segment]; i < coverOffsets[segment + 1]; i++) {
+                int position = coverPositions[i];
+                if (Long.compareUnsigned(starts[position], from) >= 0) break;
+                result.add(symbols[ids[position]]);
+            }
+        }
+        for (int position = firstAtOrAbove(starts, from); position < starts.length; position++) {
+            if (Long.compareUnsigned(starts[position], to) >= 0) break;
+            result.add(symbols[ids[position]]);
+        }
+        return result;
+    }
+
+    /** The index of the last of the unsigned ascending values which is at or below the key, or -1 if none is. */
+    private static int lastAtOrBelow(long[] values, long key) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(values[mid], key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /** The index of the first of the unsigned ascending values which is at or above the key, or the length if none. */
+    private static int firstAtOrAbove(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(values[mid], key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,460 @@
+package net.fornwall.jelf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index from dynamic symbol names to the ELF files exporting or importing them, for answering which of
+ * many files define or use a symbol without opening any of them.
+ * <p>
+ * The index lives in a directory of immutable, memory-mapped segment files. Each call to {@link #addFiles(Collection)}
+ * parses the given files with {@link ElfFile} and writes one new segment, so files can be added incrementally while
+ * existing segments are never rewritten. Every file gets a file id, in the order files were added.
+ * <p>
+ * A file exports the defined global and weak symbols of its {@link ElfSectionHeader#SHT_DYNSYM dynamic symbol table}
+ * and imports the undefined ones. Within a segment the names are kept sorted by their {@link ElfGnuHashTable GNU
+ * hash}, each with a sorted list of file ids. A blocked bloom filter, split into 512 bit shards of which a name only
+ * touches one, lets queries skip most segments not containing a name with a single cache line read.
+ * <p>
+ * Instances are safe for concurrent queries, while {@link #addFiles(Collection)} must not be called concurrently for
+ * the same directory.
+ */
+public final class ElfSymbolFleetIndex {
+
+    /** The version of the segment file format, incremented on incompatible changes. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final long MAGIC = 0x58544c46464c454aL; // "JELFFLTX" in little-endian byte order.
+    private static final int HEADER_SIZE = 32;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+
+    /** The number of 64 bit words in a bloom filter shard, making a shard one 64 byte cache line. */
+    private static final int SHARD_WORDS = 8;
+    /** The number of bits set per name in its shard. */
+    private static final int BLOOM_BITS = 3;
+    /**
+     * The number of names per bloom filter shard, giving a false positive rate of (1 - e^(-3 * 64 / 512))^3, which is
+     * about 3.1%.
+     */
+    private static final int NAMES_PER_SHARD = 64;
+
+    /** Posting flag marking a file importing, rather than exporting, a name. */
+    private static final int IMPORT_FLAG = 1;
+
+    private final Path directory;
+    private volatile Segment[] segments;
+    private final Set<String> indexedPaths = new HashSet<>();
+
+    private ElfSymbolFleetIndex(Path directory, Segment[] segments) {
+        this.directory = directory;
+        this.segments = segments;
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.fileCount; i++) indexedPaths.add(segment.getPath(i).toString());
+        }
+    }
+
+    /**
+     * Opens the index in a directory, creating the directory if it does not exist.
+     *
+     * @param directory the directory holding the segment files
+     * @return the index
+     * @throws ElfException if a segment file is corrupt or of another format version
+     */
+    public static ElfSymbolFleetIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segmentPaths = new TreeMap<>();
+        String glob = SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                String number =
+                        fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length());
+                try {
+                    segmentPaths.put(Long.parseLong(number), path);
+                } catch (NumberFormatException e) {
+                    // Not a segment written by this class.
+                }
+            }
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        int fileCount = 0;
+        for (Map.Entry<Long, Path> entry : segmentPaths.entrySet()) {
+            Segment segment = new Segment(entry.getKey(), map(entry.getValue()), fileCount);
+            segments.add(segment);
+            fileCount += segment.fileCount;
+        }
+        return new ElfSymbolFleetIndex(directory, segments.toArray(new Segment[0]));
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /** The number of files in the index. */
+    public int getFileCount() {
+        Segment[] current = segments;
+        if (current.length == 0) return 0;
+        Segment last = current[current.length - 1];
+        return last.baseFileId + last.fileCount;
+    }
+
+    /**
+     * Returns the path of the file with the given id, made absolute and normalized by {@link #addFiles(Collection)}.
+     *
+     * @param fileId the id of the file
+     * @return the path of the file
+     */
+    public Path getFile(int fileId) {
+        for (Segment segment : segments) {
+            if (fileId >= segment.baseFileId && fileId < segment.baseFileId + segment.fileCount) {
+                return segment.getPath(fileId - segment.baseFileId);
+            }
+        }
+        throw new IndexOutOfBoundsException("File id " + fileId + " out of range [0, " + getFileCount() + ")");
+    }
+
+    /**
+     * Parses the given files and adds their dynamic symbols to the index as a new segment. Files already in the index,
+     * files which are not ELF files and files which cannot be read or parsed are skipped. Paths are made absolute and
+     * normalized before checking if they are already indexed, so different spellings of a path only add it once.
+     *
+     * @param paths the files to add
+     * @return the number of files added
+     */
+    public synchronized int addFiles(Collection<Path> paths) throws IOException {
+        Set<String> addedPaths = new LinkedHashSet<>();
+        Map<String, List<Integer>> postingsByName = new HashMap<>();
+        for (Path path : paths) {
+            path = path.toAbsolutePath().normalize();
+            String pathString = path.toString();
+            if (indexedPaths.contains(pathString) || addedPaths.contains(pathString)) continue;
+            Map<String, Boolean> symbols;
+            try {
+                symbols = readSymbols(ElfFile.from(path));
+            } catch (IOException | RuntimeException e) {
+                // Unreadable files, such as ones without read permission, and corrupt files are skipped.
+                continue;
+            }
+            int localId = addedPaths.size();
+            symbols.forEach((name, imported) -> postingsByName
+                    .computeIfAbsent(name, k -> new ArrayList<>())
+                    .add((localId << 1) | (imported ? IMPORT_FLAG : 0)));
+            addedPaths.add(pathString);
+        }
+        if (addedPaths.isEmpty()) return 0;
+        List<String> added = new ArrayList<>(addedPaths);
+
+        Segment[] current = segments;
+        long number = (current.length == 0) ? 0 : current[current.length - 1].number + 1;
+        Path segmentPath = directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        writeAtomically(segmentPath, encode(added, postingsByName));
+
+        Segment[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = new Segment(number, map(segmentPath), getFileCount());
+        segments = updated;
+        indexedPaths.addAll(added);
+        return added.size();
+    }
+
+    /** Returns the exported and imported dynamic symbol names of a file, mapped to whether they are imported. */
+    private static Map<String, Boolean> readSymbols(ElfFile file) {
+        Map<String, Boolean> symbols = new HashMap<>();
+        ElfSymbolTableSection dynsym = file.getDynamicSymbolTableSection();
+        ElfStringTable stringTable = (dynsym == null) ? null : dynsym.getStringTable();
+        if (stringTable == null) return symbols;
+        for (ElfSymbol symbol : dynsym.symbols) {
+            int binding = symbol.getBinding();
+            if (symbol.st_name == 0 || (binding != ElfSymbol.BINDING_GLOBAL && binding != ElfSymbol.BINDING_WEAK)) {
+                continue;
+            }
+            // Versioned names may occur several times in one file, in which case a definition wins.
+            symbols.merge(stringTable.get(symbol.st_name), symbol.st_shndx == 0, Boolean::logicalAnd);
+        }
+        return symbols;
+    }
+
+    private static void writeAtomically(Path path, ByteBuffer buffer) throws IOException {
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Encodes a segment. After the header follow, in this order: the bloom filter shards, the offsets of the paths in
+     * the path bytes, the GNU hashes of the names in ascending order, the offsets of the names in the name bytes, the
+     * start of the postings of each name, the postings, the path bytes and the null-terminated name bytes.
+     */
+    private static ByteBuffer encode(List<String> paths, Map<String, List<Integer>> postingsByName) {
+        byte[][] pathBytes = new byte[paths.size()][];
+        int pathBytesLength = 0;
+        for (int i = 0; i < pathBytes.length; i++) {
+            pathBytes[i] = paths.get(i).getBytes(StandardCharsets.UTF_8);
+            pathBytesLength += pathBytes[i].length;
+        }
+
+        String[] names = postingsByName.keySet().toArray(new String[0]);
+        byte[][] nameBytes = new byte[names.length][];
+        long[] hashOrder = new long[names.length];
+        int nameBytesLength = 0;
+        int postingCount = 0;
+        for (int i = 0; i < names.length; i++) {
+            nameBytes[i] = names[i].getBytes();
+            nameBytesLength += nameBytes[i].length + 1;
+            postingCount += postingsByName.get(names[i]).size();
+            hashOrder[i] = ((long) ElfGnuHashTable.gnuHash(nameBytes[i]) << 32) | i;
+        }
+        // Sort by the hash as an unsigned number, keeping the sort stable for equal hashes.
+        for (int i = 0; i < hashOrder.length; i++) hashOrder[i] ^= Long.MIN_VALUE;
+        Arrays.sort(hashOrder);
+        for (int i = 0; i < hashOrder.length; i++) hashOrder[i] ^= Long.MIN_VALUE;
+
+        int shardCount = Math.max(1, (names.length + NAMES_PER_SHARD - 1) / NAMES_PER_SHARD);
+        long[] bloom = new long[shardCount * SHARD_WORDS];
+        for (long entry : hashOrder) addToBloom(bloom, shardCount, (int) (entry >>> 32));
+
+        long size = HEADER_SIZE
+                + 4L * (paths.size() + 1)
+                + 8L * bloom.length
+                + 4L * (3L * names.length + 1 + postingCount)
+                + pathBytesLength
+                + nameBytesLength;
+        if (size > Integer.MAX_VALUE) throw new ElfException("Too many symbols for one segment");
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+        out.putLong(MAGIC);
+        out.putInt(FORMAT_VERSION);
+        out.putInt(paths.size());
+        out.putInt(names.length);
+        out.putInt(shardCount);
+        out.putInt(postingCount);
+        out.putInt(0);
+
+        // The bloom filter comes first after the header, keeping its shards aligned to 8 bytes.
+        for (long word : bloom) out.putLong(word);
+        for (int i = 0, offset = 0; i <= pathBytes.length; i++) {
+            out.putInt(offset);
+            if (i < pathBytes.length) offset += pathBytes[i].length;
+        }
+        for (long entry : hashOrder) out.putInt((int) (entry >>> 32));
+        for (int i = 0, offset = 0; i < hashOrder.length; i++) {
+            out.putInt(offset);
+            offset += nameBytes[(int) hashOrder[i]].length + 1;
+        }
+        for (int i = 0, start = 0; i <= hashOrder.length; i++) {
+            out.putInt(start);
+            if (i < hashOrder.length) start += postingsByName.get(names[(int) hashOrder[i]]).size();
+        }
+        for (long entry : hashOrder) {
+            for (int posting : postingsByName.get(names[(int) entry])) out.putInt(posting);
+        }
+        for (byte[] bytes : pathBytes) out.put(bytes);
+        for (long entry : hashOrder) out.put(nameBytes[(int) entry]).put((byte) 0);
+
+        out.flip();
+        return out;
+    }
+
+    private static int shardOf(int hash, int shardCount) {
+        return Integer.remainderUnsigned(hash, shardCount);
+    }
+
+    /** Derives the bit positions of a name within its shard from its hash, scrambled to be independent of the shard. */
+    private static int bloomBits(int hash) {
+        return Integer.reverse(hash * 0x9e3779b9);
+    }
+
+    private static void addToBloom(long[] bloom, int shardCount, int hash) {
+        int base = shardOf(hash, shardCount) * SHARD_WORDS;
+        int bits = bloomBits(hash);
+        for (int i = 0; i < BLOOM_BITS; i++, bits >>>= 9) {
+            bloom[base + ((bits >>> 6) & 7)] |= 1L << (bits & 63);
+        }
+    }
+
+    /**
+     * Returns the ids of the files exporting a symbol, that is defining it in their dynamic symbol table.
+     *
+     * @param name the name of the symbol
+     * @return the ids of the files, in ascending order
+     */
+    public int[] findExporters(String name) {
+        return find(name, false);
+    }
+
+    /**
+     * Returns the ids of the files importing a symbol, that is referencing it as an undefined dynamic symbol.
+     *
+     * @param name the name of the symbol
+     * @return the ids of the files, in ascending order
+     */
+    public int[] findImporters(String name) {
+        return find(name, true);
+    }
+
+    private int[] find(String name, boolean imports) {
+        byte[] bytes = name.getBytes();
+        int hash = ElfGnuHashTable.gnuHash(bytes);
+        int[] result = new int[16];
+        int count = 0;
+        for (Segment segment : segments) {
+            int nameIndex = segment.indexOf(hash, bytes);
+            if (nameIndex < 0) continue;
+            int end = segment.postingStart(nameIndex + 1);
+            for (int p = segment.postingStart(nameIndex); p < end; p++) {
+                int posting = segment.posting(p);
+                if (((posting & IMPORT_FLAG) != 0) != imports) continue;
+                if (count == result.length) result = Arrays.copyOf(result, count * 2);
+                result[count++] = segment.baseFileId + (posting >>> 1);
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** A memory-mapped segment file. */
+    private static final class Segment {
+        final long number;
+        final ByteBuffer buffer;
+        final int baseFileId;
+        final int fileCount;
+        final int nameCount;
+        final int shardCount;
+
+        final int bloomOffset;
+        final int pathOffsetsOffset;
+        final int hashesOffset;
+        final int nameOffsetsOffset;
+        final int postingStartsOffset;
+        final int postingsOffset;
+        final int pathBytesOffset;
+        final int nameBytesOffset;
+
+        Segment(long number, ByteBuffer buffer, int baseFileId) {
+            this.number = number;
+            this.buffer = buffer;
+            this.baseFileId = baseFileId;
+            if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+                throw new ElfException("Not a symbol index segment: " + SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+            }
+            if (buffer.getInt(8) != FORMAT_VERSION) {
+                throw new ElfException("Unsupported symbol index segment version: " + buffer.getInt(8));
+            }
+            fileCount = buffer.getInt(12);
+            nameCount = buffer.getInt(16);
+            shardCount = buffer.getInt(20);
+            int postingCount = buffer.getInt(24);
+            if ((fileCount | nameCount | postingCount) < 0 || shardCount <= 0) {
+                throw new ElfException("Corrupt symbol index segment header");
+            }
+
+            long offset = HEADER_SIZE;
+            bloomOffset = (int) offset;
+            offset += 8L * shardCount * SHARD_WORDS;
+            pathOffsetsOffset = checkedOffset(offset);
+            offset += 4L * (fileCount + 1L);
+            hashesOffset = checkedOffset(offset);
+            offset += 4L * nameCount;
+            nameOffsetsOffset = checkedOffset(offset);
+            offset += 4L * nameCount;
+            postingStartsOffset = checkedOffset(offset);
+            offset += 4L * (nameCount + 1L);
+            postingsOffset = checkedOffset(offset);
+            offset += 4L * postingCount;
+            pathBytesOffset = checkedOffset(offset);
+            if (offset > buffer.capacity()) throw new ElfException("Truncated symbol index segment");
+            offset += buffer.getInt(pathOffsetsOffset + 4 * fileCount);
+            nameBytesOffset = checkedOffset(offset);
+            if (offset > buffer.capacity()) throw new ElfException("Truncated symbol index segment");
+        }
+
+        private static int checkedOffset(long offset) {
+            if (offset > Integer.MAX_VALUE) throw new ElfException("Corrupt symbol index segment");
+            return (int) offset;
+        }
+
+        Path getPath(int localId) {
+            int start = buffer.getInt(pathOffsetsOffset + 4 * localId);
+            int end = buffer.getInt(pathOffsetsOffset + 4 * (localId + 1));
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(pathBytesOffset + start + i);
+            return Paths.get(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        boolean bloomMayContain(int hash) {
+            int base = bloomOffset + 8 * shardOf(hash, shardCount) * SHARD_WORDS;
+            int bits = bloomBits(hash);
+            for (int i = 0; i < BLOOM_BITS; i++, bits >>>= 9) {
+                if ((buffer.getLong(base + 8 * ((bits >>> 6) & 7)) & (1L << (bits & 63))) == 0) return false;
+            }
+            return true;
+        }
+
+        /** Returns the index of a name among the names of this segment, or -1 if it is not in this segment. */
+        int indexOf(int hash, byte[] name) {
+            if (!bloomMayContain(hash)) return -1;
+            int low = 0;
+            int high = nameCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Integer.compareUnsigned(buffer.getInt(hashesOffset + 4 * mid), hash) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < nameCount && buffer.getInt(hashesOffset + 4 * i) == hash; i++) {
+                if (nameEquals(buffer.getInt(nameOffsetsOffset + 4 * i), name)) return i;
+            }
+            return -1;
+        }
+
+        private boolean nameEquals(int nameOffset, byte[] name) {
+            int position = nameBytesOffset + nameOffset;
+            for (byte b : name) {
+                if (buffer.get(position++) != b) return false;
+            }
+            return buffer.get(position) == 0;
+        }
+
+        int postingStart(int nameIndex) {
+            return buffer.getInt(postingStartsOffset + 4 * nameIndex);
+        }
+
+        int posting(int index) {
+            return buffer.getInt(postingsOffset + 4 * index);
+        }
+    }
+}
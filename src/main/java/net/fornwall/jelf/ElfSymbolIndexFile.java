@@ -0,0 +1,473 @@
+package net.fornwall.jelf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A symbol index of an ELF file persisted in a sidecar file, which can be memory mapped to look up symbols by address
+ * and by name without parsing the symbol tables of the ELF file again.
+ * <p>
+ * The index is written with {@link #write(ElfFile, Path, Path, boolean)} and opened with {@link #open(Path, Path)},
+ * which returns null if the index is missing, was written in another format version or is stale, i.e. the size or the
+ * modification time of the ELF file has changed since the index was written. The {@link ElfFile#getBuildId() build
+ * id} of the file is stored as well, and can be checked with {@link #matches(ElfFile)} when the file is opened anyway.
+ * {@link #openOrCreate(Path, Path, boolean)} combines the two for warm starts.
+ * <p>
+ * Symbol ids are the same as those of {@link ElfSymbolAddressIndex}: the index in the dynamic symbol table, or the
+ * index in the symbol table offset by the size of the dynamic symbol table. The index file holds the address range,
+ * file offset and name of each symbol, the segments of the address index and a hash table of the names, all in
+ * little-endian byte order:
+ *
+ * <pre>
+ * header        magic "JELFSYMX", format version, flags, ELF file size and modification time, counts
+ * build id      the build id bytes, padded to 8 bytes
+ * long[n]       start address of each symbol
+ * long[n]       end address (exclusive) of each symbol
+ * long[n]       file offset of each symbol table entry
+ * long[s]       start address of each address segment
+ * int[n]        offset of the name of each symbol in the name bytes, or -1
+ * int[s]        innermost symbol id of each address segment, or -1
+ * int[b + 1]    start of each hash bucket in the hash entries
+ * int[h]        GNU hash of the name of each hash entry
+ * int[h]        symbol id of each hash entry
+ * byte[]        null-terminated names
+ * </pre>
+ */
+public final class ElfSymbolIndexFile {
+
+    /** The version of the index file format, incremented on incompatible changes. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final long MAGIC = 0x584d5953464c454aL; // "JELFSYMX" in little-endian byte order.
+    private static final int HEADER_SIZE = 64;
+    private static final int FLAG_INFERRED_SIZES = 0x1;
+
+    private final ByteBuffer buffer;
+    private final int flags;
+    private final long fileSize;
+    private final long lastModified;
+    private final int symbolCount;
+    private final int dynamicSymbolCount;
+    private final int segmentCount;
+    private final int bucketCount;
+    private final byte[] buildId;
+
+    private final int startsOffset;
+    private final int endsOffset;
+    private final int symbolOffsetsOffset;
+    private final int segmentStartsOffset;
+    private final int nameOffsetsOffset;
+    private final int segmentIdsOffset;
+    private final int bucketStartsOffset;
+    private final int entryHashesOffset;
+    private final int entryIdsOffset;
+    private final int namesOffset;
+
+    private ElfSymbolIndexFile(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE) throw new ElfException("Truncated symbol index header");
+        flags = buffer.getInt(12);
+        fileSize = buffer.getLong(16);
+        lastModified = buffer.getLong(24);
+        symbolCount = buffer.getInt(32);
+        dynamicSymbolCount = buffer.getInt(36);
+        segmentCount = buffer.getInt(40);
+        bucketCount = buffer.getInt(44);
+        int namesLength = buffer.getInt(48);
+        int buildIdLength = buffer.getInt(52);
+        int entryCount = buffer.getInt(56);
+        int counts = symbolCount | dynamicSymbolCount | segmentCount | bucketCount | namesLength | buildIdLength;
+        if ((counts | entryCount) < 0 || dynamicSymbolCount > symbolCount || Integer.bitCount(bucketCount) != 1) {
+            throw new ElfException("Corrupt symbol index header");
+        }
+
+        long offset = HEADER_SIZE;
+        int buildIdOffset = (int) offset;
+        offset += align8(buildIdLength);
+        startsOffset = checkedOffset(offset);
+        offset += 8L * symbolCount;
+        endsOffset = checkedOffset(offset);
+        offset += 8L * symbolCount;
+        symbolOffsetsOffset = checkedOffset(offset);
+        offset += 8L * symbolCount;
+        segmentStartsOffset = checkedOffset(offset);
+        offset += 8L * segmentCount;
+        nameOffsetsOffset = checkedOffset(offset);
+        offset += 4L * symbolCount;
+        segmentIdsOffset = checkedOffset(offset);
+        offset += 4L * segmentCount;
+        bucketStartsOffset = checkedOffset(offset);
+        offset += 4L * (bucketCount + 1L);
+        entryHashesOffset = checkedOffset(offset);
+        offset += 4L * entryCount;
+        entryIdsOffset = checkedOffset(offset);
+        offset += 4L * entryCount;
+        namesOffset = checkedOffset(offset);
+        offset += namesLength;
+        if (offset > buffer.capacity()) {
+            throw new ElfException("Truncated symbol index (size=" + buffer.capacity() + ", expected=" + offset + ")");
+        }
+
+        buildId = (buildIdLength == 0) ? null : new byte[buildIdLength];
+        if (buildId != null) {
+            for (int i = 0; i < buildIdLength; i++) buildId[i] = buffer.get(buildIdOffset + i);
+        }
+    }
+
+    private static int checkedOffset(long offset) {
+        if (offset > Integer.MAX_VALUE) throw new ElfException("Symbol index too large");
+        return (int) offset;
+    }
+
+    private static long align8(long n) {
+        return (n + 7) & -8L;
+    }
+
+    /**
+     * Opens the index file for an ELF file by memory mapping it, if it is up to date.
+     *
+     * @param indexPath the path of the index file
+     * @param elfPath the path of the ELF file the index was written for
+     * @return the index, or null if the index file does not exist, is of another format version or was written for
+     *     another version of the ELF file
+     * @throws ElfException if the index file is corrupt
+     */
+    public static ElfSymbolIndexFile open(Path indexPath, Path elfPath) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != FORMAT_VERSION) return null;
+        if (buffer.getLong(16) != Files.size(elfPath)
+                || buffer.getLong(24) != Files.getLastModifiedTime(elfPath).toMillis()) {
+            return null;
+        }
+        return new ElfSymbolIndexFile(buffer);
+    }
+
+    /**
+     * Opens the index file for an ELF file, first writing it if it is missing, stale or was written with another
+     * {@code inferSizes} setting.
+     *
+     * @param indexPath the path of the index file
+     * @param elfPath the path of the ELF file
+     * @param inferSizes whether the index should infer the size of symbols without one, as with
+     *     {@link ElfFile#getSymbolAddressIndex(boolean)}
+     * @return the index
+     */
+    public static ElfSymbolIndexFile openOrCreate(Path indexPath, Path elfPath, boolean inferSizes)
+            throws IOException {
+        ElfSymbolIndexFile index = open(indexPath, elfPath);
+        if (index == null || index.isInferringSizes() != inferSizes) {
+            // Read the size and modification time before parsing, so that a file replaced meanwhile is detected.
+            long fileSize = Files.size(elfPath);
+            long lastModified = Files.getLastModifiedTime(elfPath).toMillis();
+            write(ElfFile.from(elfPath), elfPath, fileSize, lastModified, indexPath, inferSizes);
+            index = open(indexPath, elfPath);
+            if (index == null || index.isInferringSizes() != inferSizes) {
+                throw new IOException(elfPath + " or " + indexPath + " was modified while writing the index");
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes an index file for an ELF file. The index is written to a temporary file which then replaces the index
+     * file, so that concurrent readers never see a partially written index.
+     * <p>
+     * The size and modification time of the ELF file are read when this method is called, so the file must not have
+     * been modified since it was parsed. {@link #openOrCreate(Path, Path, boolean)} reads them before parsing.
+     *
+     * @param file the parsed ELF file
+     * @param elfPath the path the ELF file was parsed from, whose size and modification time are recorded
+     * @param indexPath the path of the index file
+     * @param inferSizes whether to infer the size of symbols without one, as with
+     *     {@link ElfFile#getSymbolAddressIndex(boolean)}
+     * @throws IOException if the ELF file is modified while the index is written
+     */
+    public static void write(ElfFile file, Path elfPath, Path indexPath, boolean inferSizes) throws IOException {
+        long fileSize = Files.size(elfPath);
+        long lastModified = Files.getLastModifiedTime(elfPath).toMillis();
+        write(file, elfPath, fileSize, lastModified, indexPath, inferSizes);
+    }
+
+    private static void write(
+            ElfFile file, Path elfPath, long fileSize, long lastModified, Path indexPath, boolean inferSizes)
+            throws IOException {
+        ByteBuffer buffer = encode(file, inferSizes, fileSize, lastModified);
+        if (Files.size(elfPath) != fileSize || Files.getLastModifiedTime(elfPath).toMillis() != lastModified) {
+            throw new IOException(elfPath + " was modified while writing " + indexPath);
+        }
+
+        Path parent = indexPath.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(parent, indexPath.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            try {
+                Files.move(temporary, indexPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static ByteBuffer encode(ElfFile file, boolean inferSizes, long fileSize, long lastModified) {
+        ElfSymbolAddressIndex addressIndex = file.getSymbolAddressIndex(inferSizes);
+        ElfSymbolTableSection dynsym = file.getDynamicSymbolTableSection();
+        int symbolCount = addressIndex.getSymbolCount();
+        int dynamicSymbolCount = (dynsym == null) ? 0 : dynsym.symbols.length;
+        byte[] buildId = file.getBuildId();
+        if (buildId == null) buildId = new byte[0];
+
+        // Collect the distinct names, and hash the named symbols into buckets ordered by id within each bucket.
+        int[] nameOffsets = new int[symbolCount];
+        Map<String, Integer> nameOffsetByName = new HashMap<>();
+        ByteBuffer names = ByteBuffer.allocate(1024);
+        int[] hashes = new int[symbolCount];
+        int entryCount = 0;
+        for (int id = 0; id < symbolCount; id++) {
+            ElfSymbol symbol = addressIndex.getSymbol(id);
+            ElfStringTable stringTable = (symbol.st_name == 0) ? null : symbol.getStringTable();
+            if (stringTable == null) {
+                nameOffsets[id] = -1;
+                continue;
+            }
+            String name = stringTable.get(symbol.st_name);
+            Integer nameOffset = nameOffsetByName.get(name);
+            if (nameOffset == null) {
+                byte[] bytes = stringTable.getBytes(symbol.st_name);
+                if (names.remaining() < bytes.length + 1) {
+                    int capacity = Math.max(names.capacity() * 2, names.position() + bytes.length + 1);
+                    names = ByteBuffer.allocate(capacity).put(names.flip());
+                }
+                nameOffset = names.position();
+                names.put(bytes).put((byte) 0);
+                nameOffsetByName.put(name, nameOffset);
+            }
+            nameOffsets[id] = nameOffset;
+            hashes[id] = stringTable.gnuHash(symbol.st_name);
+            entryCount++;
+        }
+
+        int bucketCount = Integer.highestOneBit(Math.max(1, entryCount));
+        if (bucketCount < entryCount) bucketCount <<= 1;
+        long[] bucketOrder = new long[entryCount];
+        for (int id = 0, entry = 0; id < symbolCount; id++) {
+            if (nameOffsets[id] >= 0) bucketOrder[entry++] = ((long) (hashes[id] & (bucketCount - 1)) << 32) | id;
+        }
+        Arrays.sort(bucketOrder);
+
+        long[] segmentStarts = addressIndex.segmentStarts;
+        int[] segmentIds = addressIndex.segmentIds;
+        int namesLength = names.position();
+        long size = HEADER_SIZE
+                + align8(buildId.length)
+                + 8L * (3L * symbolCount + segmentStarts.length)
+                + 4L * (symbolCount + segmentIds.length + bucketCount + 1L + 2L * entryCount)
+                + namesLength;
+        ByteBuffer out = ByteBuffer.allocate(checkedOffset(size)).order(ByteOrder.LITTLE_ENDIAN);
+
+        out.putLong(MAGIC);
+        out.putInt(FORMAT_VERSION);
+        out.putInt(inferSizes ? FLAG_INFERRED_SIZES : 0);
+        out.putLong(fileSize);
+        out.putLong(lastModified);
+        out.putInt(symbolCount);
+        out.putInt(dynamicSymbolCount);
+        out.putInt(segmentStarts.length);
+        out.putInt(bucketCount);
+        out.putInt(namesLength);
+        out.putInt(buildId.length);
+        out.putInt(entryCount);
+        out.putInt(0);
+
+        out.put(buildId);
+        out.position(checkedOffset(HEADER_SIZE + align8(buildId.length)));
+        for (int id = 0; id < symbolCount; id++) out.putLong(addressIndex.getSymbol(id).st_value);
+        for (int id = 0; id < symbolCount; id++) out.putLong(addressIndex.getSymbolEnd(id));
+        for (int id = 0; id < symbolCount; id++) out.putLong(addressIndex.getSymbol(id).offset);
+        for (long segmentStart : segmentStarts) out.putLong(segmentStart);
+        for (int nameOffset : nameOffsets) out.putInt(nameOffset);
+        for (int segmentId : segmentIds) out.putInt(segmentId);
+        for (int bucket = 0, entry = 0; bucket <= bucketCount; bucket++) {
+            while (entry < entryCount && (bucketOrder[entry] >>> 32) < bucket) entry++;
+            out.putInt(entry);
+        }
+        for (long entry : bucketOrder) out.putInt(hashes[(int) entry]);
+        for (long entry : bucketOrder) out.putInt((int) entry);
+        out.put(names.array(), 0, namesLength);
+
+        out.flip();
+        return out;
+    }
+
+    /**
+     * The build id of the ELF file this index was written for.
+     *
+     * @return the build id, or null if the ELF file has none
+     */
+    public byte[] getBuildId() {
+        return (buildId == null) ? null : buildId.clone();
+    }
+
+    /**
+     * Checks if this index was written for the given ELF file, by comparing {@link ElfFile#getBuildId() build ids}.
+     *
+     * @param file the ELF file
+     * @return true if both have the same build id, or if neither has one
+     */
+    public boolean matches(ElfFile file) throws ElfException {
+        return Arrays.equals(buildId, file.getBuildId());
+    }
+
+    /** The size of the ELF file when this index was written. */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /** The modification time of the ELF file in milliseconds since the epoch, when this index was written. */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /** Whether the sizes of symbols without one were inferred, see {@link ElfSymbolAddressIndex#isInferringSizes()}. */
+    public boolean isInferringSizes() {
+        return (flags & FLAG_INFERRED_SIZES) != 0;
+    }
+
+    /** The number of symbol ids, that is the combined size of the dynamic symbol table and the symbol table. */
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    /** The number of symbols in the dynamic symbol table, which come first among the symbol ids. */
+    public int getDynamicSymbolCount() {
+        return dynamicSymbolCount;
+    }
+
+    /**
+     * Returns the id of the innermost symbol containing the specified address, or -1 if no symbol does, as
+     * {@link ElfSymbolAddressIndex#lookupId(long)} does.
+     *
+     * @param address the address to look up
+     * @return the id of the symbol containing the address, or -1
+     */
+    public int lookupId(long address) {
+        int low = 0;
+        int high = segmentCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(buffer.getLong(segmentStartsOffset + 8 * mid), address) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (low == 0) ? -1 : buffer.getInt(segmentIdsOffset + 4 * (low - 1));
+    }
+
+    /**
+     * Returns the id of a symbol with the specified name, or -1 if there is none. If several symbols have the name the
+     * lowest id is returned, so dynamic symbols are preferred.
+     *
+     * @param name the name to look up
+     * @return the id of a symbol with the name, or -1
+     */
+    public int findId(String name) {
+        byte[] bytes = name.getBytes();
+        int hash = ElfGnuHashTable.gnuHash(bytes);
+        int bucket = hash & (bucketCount - 1);
+        int end = buffer.getInt(bucketStartsOffset + 4 * (bucket + 1));
+        for (int entry = buffer.getInt(bucketStartsOffset + 4 * bucket); entry < end; entry++) {
+            if (buffer.getInt(entryHashesOffset + 4 * entry) != hash) continue;
+            int id = buffer.getInt(entryIdsOffset + 4 * entry);
+            if (nameEquals(buffer.getInt(nameOffsetsOffset + 4 * id), bytes)) return id;
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int nameOffset, byte[] bytes) {
+        int position = namesOffset + nameOffset;
+        for (byte b : bytes) {
+            if (buffer.get(position++) != b) return false;
+        }
+        return buffer.get(position) == 0;
+    }
+
+    /**
+     * Returns the name of the symbol with the given id.
+     *
+     * @param symbolId the id of the symbol
+     * @return the name of the symbol, or null if it has none
+     */
+    public String getName(int symbolId) {
+        int nameOffset = buffer.getInt(nameOffsetsOffset + 4 * checkId(symbolId));
+        if (nameOffset < 0) return null;
+        int start = namesOffset + nameOffset;
+        int end = start;
+        while (buffer.get(end) != 0) end++;
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(start + i);
+        return new String(bytes);
+    }
+
+    /**
+     * Returns the start address of the symbol with the given id, which is its {@link ElfSymbol#st_value}.
+     *
+     * @param symbolId the id of the symbol
+     * @return the start address of the symbol
+     */
+    public long getStart(int symbolId) {
+        return buffer.getLong(startsOffset + 8 * checkId(symbolId));
+    }
+
+    /**
+     * Returns the end address (exclusive) of the symbol with the given id, as by
+     * {@link ElfSymbolAddressIndex#getSymbolEnd(int)}.
+     *
+     * @param symbolId the id of the symbol
+     * @return the end address of the symbol
+     */
+    public long getEnd(int symbolId) {
+        return buffer.getLong(endsOffset + 8 * checkId(symbolId));
+    }
+
+    /**
+     * Reads the full symbol with the given id from the ELF file, without parsing the rest of its symbol table.
+     *
+     * @param file the ELF file this index was written for
+     * @param symbolId the id of the symbol
+     * @return the symbol
+     */
+    public ElfSymbol getSymbol(ElfFile file, int symbolId) throws ElfException {
+        long offset = buffer.getLong(symbolOffsetsOffset + 8 * checkId(symbolId));
+        int sectionType = (symbolId < dynamicSymbolCount) ? ElfSectionHeader.SHT_DYNSYM : ElfSectionHeader.SHT_SYMTAB;
+        return new ElfSymbol(file.parser, offset, sectionType);
+    }
+
+    private int checkId(int symbolId) {
+        if (symbolId < 0 || symbolId >= symbolCount) {
+            throw new IndexOutOfBoundsException("Symbol id " + symbolId + " out of range [0, " + symbolCount + ")");
+        }
+        return symbolId;
+    }
+}
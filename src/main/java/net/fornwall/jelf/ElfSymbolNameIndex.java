@@ -0,0 +1,190 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the symbols in an {@link ElfSymbolTableSection} sorted by name, for listing symbols by name prefix, name
+ * range or glob pattern without decoding the names of all symbols.
+ * <p>
+ * Obtain it with {@link ElfSymbolTableSection#getNameIndex()}. Names are ordered by their unsigned bytes, which for
+ * ASCII names is the same as {@link String#compareTo(String)}. Symbols without a name are not indexed.
+ */
+public final class ElfSymbolNameIndex {
+
+    private final ElfSymbolTableSection symbolTable;
+    private final ElfStringTable stringTable;
+    /** Indices of the named symbols in the symbol table, ordered by name. */
+    private final int[] sorted;
+
+    ElfSymbolNameIndex(ElfSymbolTableSection symbolTable) {
+        this.symbolTable = symbolTable;
+        this.stringTable = symbolTable.getStringTable();
+        ElfSymbol[] symbols = symbolTable.symbols;
+
+        int named = 0;
+        if (stringTable != null) {
+            for (ElfSymbol symbol : symbols) if (symbol.st_name != 0) named++;
+        }
+        // Sort by the leading bytes of the names first, so that most comparisons do not touch the string table.
+        long[] keys = new long[symbols.length];
+        Integer[] order = new Integer[named];
+        for (int i = 0, n = 0; n < named; i++) {
+            if (symbols[i].st_name == 0) continue;
+            keys[i] = stringTable.prefixKey(symbols[i].st_name);
+            order[n++] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int keyOrder = Long.compareUnsigned(keys[a], keys[b]);
+            if (keyOrder != 0) return keyOrder;
+            int nameOrder = stringTable.compare(symbols[a].st_name, symbols[b].st_name);
+            return (nameOrder != 0) ? nameOrder : Integer.compare(a, b);
+        });
+        sorted = new int[named];
+        for (int i = 0; i < named; i++) sorted[i] = order[i];
+    }
+
+    /**
+     * The number of named symbols in the index.
+     *
+     * @return the number of indexed symbols
+     */
+    public int size() {
+        return sorted.length;
+    }
+
+    /**
+     * Returns the symbol at the given position in name order.
+     *
+     * @param position the position of the symbol, from 0 to {@link #size()} (exclusive)
+     * @return the symbol at the position
+     */
+    public ElfSymbol getSymbol(int position) {
+        return symbolTable.symbols[sorted[position]];
+    }
+
+    /**
+     * Returns the symbols whose name starts with the given prefix, ordered by name.
+     *
+     * @param prefix the prefix of the names to find
+     * @return the symbols with the prefix, which may be empty
+     */
+    public List<ElfSymbol> symbolsWithPrefix(String prefix) {
+        byte[] key = encode(prefix);
+        return symbols(lowerBound(key, false), lowerBoundAfterPrefix(key));
+    }
+
+    /**
+     * Returns the symbols whose name is in the range [from, to), ordered by name.
+     *
+     * @param from the lowest name to include, or null for no lower bound
+     * @param to the name to stop at, which is not included, or null for no upper bound
+     * @return the symbols in the range, which may be empty
+     */
+    public List<ElfSymbol> symbolsInRange(String from, String to) {
+        int start = (from == null) ? 0 : lowerBound(encode(from), false);
+        int end = (to == null) ? sorted.length : lowerBound(encode(to), false);
+        return symbols(start, end);
+    }
+
+    /**
+     * Returns the symbols whose name matches the given glob pattern, ordered by name. In the pattern {@code *} matches
+     * any sequence of bytes, {@code ?} matches a single byte and all other characters match themselves.
+     * <p>
+     * Only the names starting with the literal prefix of the pattern, up to its first wildcard, are examined. So
+     * patterns such as {@code _ZN4absl*Hash*} are answered in time proportional to the symbols with the prefix, while a
+     * pattern starting with a wildcard examines all names.
+     *
+     * @param glob the pattern to match
+     * @return the matching symbols, which may be empty
+     */
+    public List<ElfSymbol> symbolsMatching(String glob) {
+        byte[] pattern = encode(glob);
+        int literalLength = 0;
+        while (literalLength < pattern.length && pattern[literalLength] != '*' && pattern[literalLength] != '?') {
+            literalLength++;
+        }
+        byte[] prefix = Arrays.copyOf(pattern, literalLength);
+        if (literalLength == pattern.length) return symbols(lowerBound(prefix, false), lowerBoundAfter(prefix));
+
+        int end = lowerBoundAfterPrefix(prefix);
+        List<ElfSymbol> result = new ArrayList<>();
+        for (int i = lowerBound(prefix, false); i < end; i++) {
+            ElfSymbol symbol = getSymbol(i);
+            if (globMatches(pattern, literalLength, stringTable.getView(symbol.st_name), literalLength)) {
+                result.add(symbol);
+            }
+        }
+        return result;
+    }
+
+    private List<ElfSymbol> symbols(int start, int end) {
+        if (start >= end) return Collections.emptyList();
+        List<ElfSymbol> result = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) result.add(getSymbol(i));
+        return result;
+    }
+
+    /**
+     * Returns the first position whose name is not less than {@code key}, or, if {@code orEqual} is set, the first
+     * position whose name is greater than {@code key}. With {@code prefixOnly} comparisons names starting with the key
+     * count as equal to it.
+     */
+    private int lowerBound(byte[] key, boolean prefixOnly, boolean orEqual) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int order = stringTable.compare(getSymbol(mid).st_name, key, prefixOnly);
+            if (order < 0 || (orEqual && order == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int lowerBound(byte[] key, boolean prefixOnly) {
+        return lowerBound(key, prefixOnly, false);
+    }
+
+    /** The first position whose name does not start with {@code prefix} after those that do. */
+    private int lowerBoundAfterPrefix(byte[] prefix) {
+        return lowerBound(prefix, true, true);
+    }
+
+    /** The first position whose name is greater than {@code key}. */
+    private int lowerBoundAfter(byte[] key) {
+        return lowerBound(key, false, true);
+    }
+
+    /** Matches {@code name} from {@code n} against {@code pattern} from {@code p}, backtracking to the last star. */
+    private static boolean globMatches(byte[] pattern, int p, ElfStringTable.ElfString name, int n) {
+        int starPattern = -1;
+        int starName = -1;
+        int nameLength = name.length();
+        while (n < nameLength) {
+            if (p < pattern.length && pattern[p] == '*') {
+                starPattern = p++;
+                starName = n;
+            } else if (p < pattern.length && (pattern[p] == '?' || pattern[p] == name.byteAt(n))) {
+                p++;
+                n++;
+            } else if (starPattern >= 0) {
+                p = starPattern + 1;
+                n = ++starName;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length && pattern[p] == '*') p++;
+        return p == pattern.length;
+    }
+
+    private static byte[] encode(String value) {
+        return value.getBytes();
+    }
+}
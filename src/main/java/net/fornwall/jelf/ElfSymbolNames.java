@@ -0,0 +1,100 @@
+package net.fornwall.jelf;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A set of symbol names to look up together with {@link ElfFile#getELFSymbols(ElfSymbolNames)}.
+ * <p>
+ * The hashes of the names are computed once when the set is created, so the same set can be resolved against many
+ * files without rehashing the names.
+ */
+public final class ElfSymbolNames {
+
+    /** The names, sorted by {@link #gnuHashes}. */
+    final String[] names;
+    /** The GNU hash of the encoded bytes of each name, sorted in ascending order. */
+    final int[] gnuHashes;
+
+    /**
+     * Creates a set of the given names. Duplicate and null names are ignored.
+     *
+     * @param names the names to look up
+     */
+    public ElfSymbolNames(Collection<String> names) {
+        Set<String> unique = new LinkedHashSet<>(names);
+        unique.remove(null);
+
+        long[] hashOrder = new long[unique.size()];
+        String[] unsorted = unique.toArray(new String[0]);
+        for (int i = 0; i < unsorted.length; i++) {
+            long hash = ElfGnuHashTable.gnuHash(unsorted[i].getBytes());
+            hashOrder[i] = (hash << 32) | i;
+        }
+        Arrays.sort(hashOrder);
+
+        this.names = new String[unsorted.length];
+        this.gnuHashes = new int[unsorted.length];
+        for (int i = 0; i < hashOrder.length; i++) {
+            this.gnuHashes[i] = (int) (hashOrder[i] >> 32);
+            this.names[i] = unsorted[(int) hashOrder[i]];
+        }
+    }
+
+    /** The number of distinct names in this set. */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the index in {@link #names} of the name stored at {@code stringIndex} in the string table, or -1 if the
+     * string is not in this set. Hashes the string table bytes directly, so no string is decoded.
+     */
+    int indexOf(ElfStringTable stringTable, int stringIndex) {
+        int hash = stringTable.gnuHash(stringIndex);
+        int low = 0;
+        int high = gnuHashes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (gnuHashes[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < gnuHashes.length && gnuHashes[i] == hash; i++) {
+            if (stringTable.contentEquals(stringIndex, names[i])) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the names of this set among the symbols in [fromIndex, toIndex) of the symbol table, storing the first
+     * symbol found for a name at the index of the name in {@code found}. If {@code versions} is given, symbols which
+     * are not the default version of their name are skipped.
+     *
+     * @return the number of names found which were not already in {@code found}
+     */
+    int findSymbols(
+            ElfSymbolTableSection symbolTable,
+            int fromIndex,
+            int toIndex,
+            ElfSymbolVersionSection versions,
+            ElfSymbol[] found) {
+        ElfStringTable stringTable = symbolTable.getStringTable();
+        if (stringTable == null) return 0;
+        int foundCount = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            ElfSymbol symbol = symbolTable.symbols[i];
+            if (symbol.st_name == 0 || (versions != null && versions.isHidden(i))) continue;
+            int nameIndex = indexOf(stringTable, symbol.st_name);
+            if (nameIndex >= 0 && found[nameIndex] == null) {
+                found[nameIndex] = symbol;
+                foundCount++;
+            }
+        }
+        return foundCount;
+    }
+}
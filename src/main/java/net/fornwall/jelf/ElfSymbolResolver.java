@@ -0,0 +1,372 @@
+package net.fornwall.jelf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves symbols across an executable and the shared libraries it depends on, the way the dynamic linker ld.so
+ * does when running the executable.
+ * <p>
+ * {@link #load(Path)} maps out the libraries loaded for an executable: starting with the executable, the
+ * {@link ElfDynamicSection#getNeededLibraries() DT_NEEDED} entries of each object are loaded in breadth-first order,
+ * each library only once. A library is searched for in the {@link ElfDynamicSection#getRPath() DT_RPATH} of the object
+ * needing it and of the objects that loaded that one (unless the object has a {@link ElfDynamicSection#getRunPath()
+ * DT_RUNPATH}), then in the library path given to the resolver, as with LD_LIBRARY_PATH, and finally in the DT_RUNPATH
+ * of the object needing it. "$ORIGIN" in these paths expands to the directory of the object. Files of another ELF
+ * class or machine than the executable are skipped, as ld.so does.
+ * <p>
+ * A symbol then resolves to the first definition in that load order, matching symbol versions the way ld.so does, and
+ * looking symbols up in the {@link ElfGnuHashTable} of each object. Parsed files are cached by the resolver, so loading
+ * many executables sharing libraries only parses each library once.
+ */
+public final class ElfSymbolResolver {
+
+    /** The symbol types ld.so considers as definitions, as a bit set indexed by type. */
+    private static final int DEFINITION_TYPES = (1 << ElfSymbol.STT_NOTYPE)
+            | (1 << ElfSymbol.STT_OBJECT)
+            | (1 << ElfSymbol.STT_FUNC)
+            | (1 << ElfSymbol.STT_COMMON)
+            | (1 << ElfSymbol.STT_TLS)
+            | (1 << 10 /* STT_GNU_IFUNC */);
+
+    private final List<Path> libraryPath;
+    /** Parsed files keyed by {@link #identityOf(Path) file identity}, empty for files which are not ELF files. */
+    private final Map<Object, Optional<ElfFile>> files = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a resolver searching for libraries in the given directories.
+     *
+     * @param libraryPath the directories to search for libraries not found through DT_RPATH, in order
+     */
+    public ElfSymbolResolver(List<Path> libraryPath) {
+        this.libraryPath = new ArrayList<>(libraryPath);
+    }
+
+    /**
+     * Loads an executable and the libraries it needs.
+     *
+     * @param executable the path of the executable
+     * @return the executable and its libraries, in load order
+     * @throws ElfException if the executable is not an ELF file
+     */
+    public Scope load(Path executable) throws ElfException, IOException {
+        return loadGraph(executable, Runnable::run).getScope();
+    }
+
+    /**
+     * Loads an executable and the libraries it needs into a dependency graph, finding and parsing the libraries needed
+     * by the objects of each level of the graph concurrently.
+     *
+     * @param executable the path of the executable
+     * @param executor the executor to find and parse libraries with, such as a fixed size thread pool
+     * @return the dependency graph of the executable
+     * @throws ElfException if the executable is not an ELF file
+     */
+    public ElfDependencyGraph loadGraph(Path executable, Executor executor) throws ElfException, IOException {
+        Path realPath = executable.toRealPath();
+        Object identity = identityOf(realPath);
+        ElfFile file = parse(identity, realPath);
+        if (file == null) throw new ElfException("Unable to parse " + executable);
+        LoadedObject root = new LoadedObject(executable.toString(), realPath, identity, file, null);
+        return new ElfDependencyGraph(this, root, executor);
+    }
+
+    /** Finds the library with the given DT_NEEDED name needed by an object, or returns null if it is not found. */
+    LoadedObject findLibrary(String name, LoadedObject requester, ElfFile executable) throws IOException {
+        if (name.indexOf('/') >= 0) return open(name, Paths.get(expandOrigin(name, requester)), requester, executable);
+
+        List<Path> directories = new ArrayList<>();
+        if (requester.runPath == null) {
+            for (LoadedObject object = requester; object != null; object = object.loader) {
+                addSearchPath(directories, object.rPath, object);
+            }
+        }
+        directories.addAll(libraryPath);
+        addSearchPath(directories, requester.runPath, requester);
+
+        for (Path directory : directories) {
+            LoadedObject library = open(name, directory.resolve(name), requester, executable);
+            if (library != null) return library;
+        }
+        return null;
+    }
+
+    private static void addSearchPath(List<Path> directories, String searchPath, LoadedObject object) {
+        if (searchPath == null) return;
+        for (String directory : searchPath.split(":")) {
+            directory = expandOrigin(directory, object);
+            // Skip the current directory as well as directories with substitutions other than $ORIGIN.
+            if (!directory.isEmpty() && directory.indexOf('$') < 0) directories.add(Paths.get(directory));
+        }
+    }
+
+    private static String expandOrigin(String path, LoadedObject object) {
+        if (path.indexOf('$') < 0) return path;
+        Path parent = object.path.getParent();
+        String origin = (parent == null) ? "/" : parent.toString();
+        return path.replace("${ORIGIN}", origin).replace("$ORIGIN", origin);
+    }
+
+    private LoadedObject open(String name, Path path, LoadedObject requester, ElfFile executable) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        Path realPath = path.toRealPath();
+        Object identity = identityOf(realPath);
+        ElfFile file = parse(identity, realPath);
+        if (file == null
+                || file.e_type != ElfFile.ET_DYN
+                || file.ei_class != executable.ei_class
+                || file.ei_data != executable.ei_data
+                || file.e_machine != executable.e_machine) {
+            return null;
+        }
+        try {
+            return new LoadedObject(name, realPath, identity, file, requester);
+        } catch (ElfException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the identity of a file, which is its device and inode where the file system has them, so that a file
+     * reached through different hard links is only loaded once, and otherwise its real path.
+     */
+    private static Object identityOf(Path realPath) throws IOException {
+        Object fileKey = Files.readAttributes(realPath, BasicFileAttributes.class).fileKey();
+        return (fileKey != null) ? fileKey : realPath;
+    }
+
+    /** Returns the cached file with an identity, parsing it on first use, or null if it is not an ELF file. */
+    private ElfFile parse(Object identity, Path realPath) {
+        return files.computeIfAbsent(identity, k -> {
+                    try {
+                        return Optional.of(ElfFile.from(realPath));
+                    } catch (ElfException | IOException e) {
+                        return Optional.empty();
+                    }
+                })
+                .orElse(null);
+    }
+
+    /**
+     * An executable or shared library loaded by {@link #load(Path)}.
+     * <p>
+     * The file of an object may be shared with other threads through the cache of the resolver, so this class
+     * synchronizes on the file when reading from it.
+     */
+    public static final class LoadedObject {
+        private final String name;
+        private final Path path;
+        final Object identity;
+        private final ElfFile file;
+        private final LoadedObject loader;
+        final List<String> neededLibraries;
+        final String rPath;
+        final String runPath;
+
+        LoadedObject(String name, Path path, Object identity, ElfFile file, LoadedObject loader) throws ElfException {
+            this.name = name;
+            this.path = path;
+            this.identity = identity;
+            this.file = file;
+            this.loader = loader;
+            synchronized (file) {
+                ElfDynamicSection dynamic = file.getDynamicSection();
+                neededLibraries = (dynamic == null) ? Collections.emptyList() : dynamic.getNeededLibraries();
+                rPath = (dynamic == null) ? null : dynamic.getRPath();
+                runPath = (dynamic == null) ? null : dynamic.getRunPath();
+            }
+        }
+
+        /** The name the object was loaded by, as given in DT_NEEDED or the path of the executable. */
+        public String getName() {
+            return name;
+        }
+
+        /** The canonical path of the file of the object. */
+        public Path getPath() {
+            return path;
+        }
+
+        /** The parsed file of the object, shared by all scopes of the resolver. */
+        public ElfFile getFile() {
+            return file;
+        }
+
+        /** The object which first needed this one, or null for the executable. */
+        public LoadedObject getLoader() {
+            return loader;
+        }
+
+        /**
+         * Looks up the definition of a symbol in this object, as ld.so does.
+         * <p>
+         * A reference to a version matches a definition of that version, as well as an unversioned definition. An
+         * unversioned reference, as made by objects linked without symbol versioning, matches an unversioned definition
+         * or one of the first version defined by the object, such as foo@V1 over foo@@V2 if both are defined. A
+         * definition of a later version is only matched if it is the single non-hidden one, and hidden definitions of
+         * later versions are never matched, as in glibc's check_match.
+         *
+         * @param name the name of the symbol
+         * @param version the version referenced, or null for an unversioned reference
+         * @return the defining symbol, or null if this object does not define it
+         */
+        public ElfSymbol lookup(String name, String version) throws ElfException {
+            synchronized (file) {
+                return lookupUnsynchronized(name, version);
+            }
+        }
+
+        private ElfSymbol lookupUnsynchronized(String name, String version) {
+            ElfSymbolTableSection dynsym = file.getDynamicSymbolTableSection();
+            if (dynsym == null) return null;
+            ElfSymbolVersionSection versions = file.getSymbolVersionSection();
+
+            int[] candidates;
+            ElfGnuHashTable gnuHashTable = file.getDynamicGnuHashTable();
+            if (gnuHashTable != null) {
+                candidates = gnuHashTable.lookupSymbolIndices(name, dynsym);
+            } else {
+                candidates = new int[dynsym.symbols.length];
+                int count = 0;
+                for (int i = 0; i < dynsym.symbols.length; i++) {
+                    if (dynsym.symbols[i].nameEquals(name)) candidates[count++] = i;
+                }
+                candidates = Arrays.copyOf(candidates, count);
+            }
+
+            ElfSymbol versionedMatch = null;
+            int versionedMatches = 0;
+            for (int index : candidates) {
+                ElfSymbol symbol = dynsym.symbols[index];
+                if (!isDefinition(symbol)) continue;
+                if (versions == null) return symbol;
+                int versionIndex = versions.getVersionIndex(index);
+                boolean hidden = versions.isHidden(index);
+                if (version != null) {
+                    // Index 1 is the base version of the object, meaning the symbol is unversioned.
+                    if (versionIndex <= ElfSymbolVersionSection.VER_NDX_GLOBAL) {
+                        if (!hidden) return symbol;
+                    } else if (version.equals(versions.getVersionName(versionIndex))) {
+                        return symbol;
+                    }
+                } else if (versionIndex >= 3) {
+                    // Versions after the first one defined, at index 2, are only used if unambiguous and not hidden.
+                    if (!hidden && versionedMatches++ == 0) versionedMatch = symbol;
+                } else {
+                    return symbol;
+                }
+            }
+            return (versionedMatches == 1) ? versionedMatch : null;
+        }
+
+        private static boolean isDefinition(ElfSymbol symbol) {
+            int type = symbol.getType();
+            return symbol.st_shndx != 0
+                    && symbol.getBinding() != ElfSymbol.BINDING_LOCAL
+                    && (symbol.st_value != 0 || type == ElfSymbol.STT_TLS)
+                    && (DEFINITION_TYPES & (1 << type)) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "LoadedObject{name=" + name + ", path=" + path + "}";
+        }
+    }
+
+    /** A symbol reference together with the definition it resolves to, if any. */
+    public static final class Resolution {
+        /** The name of the referenced symbol. */
+        public final String name;
+        /** The referenced version, or null for an unversioned reference. */
+        public final String version;
+        /** The object defining the symbol, or null if the symbol could not be resolved. */
+        public final LoadedObject object;
+        /** The defining symbol in {@link #object}, or null if the symbol could not be resolved. */
+        public final ElfSymbol symbol;
+
+        Resolution(String name, String version, LoadedObject object, ElfSymbol symbol) {
+            this.name = name;
+            this.version = version;
+            this.object = object;
+            this.symbol = symbol;
+        }
+
+        /** Checks if a definition of the symbol was found. */
+        public boolean isResolved() {
+            return symbol != null;
+        }
+
+        @Override
+        public String toString() {
+            return "Resolution{name=" + name + ", version=" + version + ", object=" + object + "}";
+        }
+    }
+
+    /** The objects loaded for an executable, forming the global symbol scope used by ld.so. */
+    public static final class Scope {
+        private final List<LoadedObject> objects;
+        private final List<String> missingLibraries;
+
+        Scope(List<LoadedObject> objects, List<String> missingLibraries) {
+            this.objects = objects;
+            this.missingLibraries = missingLibraries;
+        }
+
+        /** The executable, followed by the libraries loaded for it in load order. */
+        public List<LoadedObject> getObjects() {
+            return Collections.unmodifiableList(objects);
+        }
+
+        /** The names of needed libraries which could not be found, in the order they were first needed. */
+        public List<String> getMissingLibraries() {
+            return Collections.unmodifiableList(missingLibraries);
+        }
+
+        /**
+         * Resolves a symbol to its first definition in load order.
+         *
+         * @param name the name of the symbol
+         * @param version the version referenced, or null for an unversioned reference
+         * @return the resolution, which may be unresolved
+         * @see LoadedObject#lookup(String, String) for how versions are matched
+         */
+        public Resolution resolve(String name, String version) throws ElfException {
+            for (LoadedObject object : objects) {
+                ElfSymbol symbol = object.lookup(name, version);
+                if (symbol != null) return new Resolution(name, version, object, symbol);
+            }
+            return new Resolution(name, version, null, null);
+        }
+
+        /**
+         * Resolves all the undefined dynamic symbols of the executable.
+         *
+         * @return the resolutions, in the order of the dynamic symbol table of the executable
+         */
+        public List<Resolution> resolveUndefinedSymbols() throws ElfException {
+            List<String[]> references = new ArrayList<>();
+            ElfFile executable = objects.get(0).file;
+            synchronized (executable) {
+                ElfSymbolTableSection dynsym = executable.getDynamicSymbolTableSection();
+                for (ElfSymbol symbol : (dynsym == null) ? new ElfSymbol[0] : dynsym.symbols) {
+                    if (symbol.st_shndx != 0 || symbol.st_name == 0) continue;
+                    references.add(new String[] {symbol.getName(), symbol.getVersionName()});
+                }
+            }
+            List<Resolution> result = new ArrayList<>();
+            for (String[] reference : references) result.add(resolve(reference[0], reference[1]));
+            return result;
+        }
+    }
+}
@@ -13,6 +13,8 @@ public class ElfSymbolTableSection extends ElfSection {
 
     public final ElfSymbol[] symbols;
 
+    private ElfSymbolNameIndex nameIndex;
+
     ElfSymbolTableSection(ElfParser parser, ElfSectionHeader header) {
         super(parser, header);
 
@@ -23,4 +25,25 @@ public class ElfSymbolTableSection extends ElfSection {
             symbols[i] = new ElfSymbol(parser, symbolOffset, header.sh_type);
         }
     }
+
+    /**
+     * Returns an index of the symbols in this section sorted by name, built on first use.
+     *
+     * @return the name index of this section
+     */
+    public ElfSymbolNameIndex getNameIndex() throws ElfException {
+        return (nameIndex != null) ? nameIndex : (nameIndex = new ElfSymbolNameIndex(this));
+    }
+
+    /** The index of a symbol of this section in {@link #symbols}, computed from its file offset. */
+    int indexOf(ElfSymbol symbol) {
+        return (int) ((symbol.offset - header.sh_offset) / header.sh_entsize);
+    }
+
+    /** The string table holding the names of the symbols in this section, as used by {@link ElfSymbol#getName()}. */
+    ElfStringTable getStringTable() {
+        return (header.sh_type == ElfSectionHeader.SHT_SYMTAB)
+                ? parser.elfFile.getStringTable()
+                : parser.elfFile.getDynamicStringTable();
+    }
 }
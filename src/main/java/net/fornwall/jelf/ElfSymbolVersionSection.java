@@ -0,0 +1,94 @@
+package net.fornwall.jelf;
+
+/**
+ * An ELF section holding the version of each symbol in the dynamic symbol table. Normally named ".gnu.version".
+ * <p>
+ * Has the section type {@link ElfSectionHeader#SHT_GNU_versym}. Each entry is the index of a version in the
+ * {@link ElfVersionDefinitionSection} (for defined symbols) or the {@link ElfVersionRequirementSection} (for
+ * undefined symbols), possibly with the {@link #VERSYM_HIDDEN} bit set.
+ */
+public class ElfSymbolVersionSection extends ElfSection {
+
+    /** The version index of local symbols, which are not versioned. */
+    public static final int VER_NDX_LOCAL = 0;
+    /** The version index of global symbols which are not versioned. */
+    public static final int VER_NDX_GLOBAL = 1;
+    /**
+     * Bit set for symbols which are not the default version of the symbol, such as memcpy@GLIBC_2.2.5 next to
+     * memcpy@@GLIBC_2.14. Such symbols are only used to resolve references to that exact version.
+     */
+    public static final int VERSYM_HIDDEN = 0x8000;
+
+    /** The raw versym entries, one per symbol in the dynamic symbol table. */
+    final short[] versions;
+
+    ElfSymbolVersionSection(ElfParser parser, ElfSectionHeader header) {
+        super(parser, header);
+
+        int numEntries = (int) (header.sh_size / 2);
+        versions = new short[numEntries];
+        parser.seek(header.sh_offset);
+        for (int i = 0; i < numEntries; i++) {
+            versions[i] = parser.readShort();
+        }
+    }
+
+    /** The number of entries, which should be the number of symbols in the dynamic symbol table. */
+    public int size() {
+        return versions.length;
+    }
+
+    /**
+     * Returns the version index of a symbol, without the {@link #VERSYM_HIDDEN} bit.
+     *
+     * @param symbolIndex the index of the symbol in the dynamic symbol table
+     * @return the version index, or {@link #VER_NDX_GLOBAL} if the symbol has no entry
+     */
+    public int getVersionIndex(int symbolIndex) {
+        return (symbolIndex < versions.length) ? versions[symbolIndex] & 0x7fff : VER_NDX_GLOBAL;
+    }
+
+    /**
+     * Checks if a symbol is a non-default version, i.e. has the {@link #VERSYM_HIDDEN} bit set.
+     *
+     * @param symbolIndex the index of the symbol in the dynamic symbol table
+     * @return true if the symbol is hidden
+     */
+    public boolean isHidden(int symbolIndex) {
+        return symbolIndex < versions.length && (versions[symbolIndex] & VERSYM_HIDDEN) != 0;
+    }
+
+    /**
+     * Returns the name of a version index, looked up in the version definitions and requirements of the file.
+     *
+     * @param versionIndex a version index as returned by {@link #getVersionIndex(int)}
+     * @return the version name, or null for {@link #VER_NDX_LOCAL}, {@link #VER_NDX_GLOBAL} and unknown indices
+     */
+    public String getVersionName(int versionIndex) throws ElfException {
+        if (versionIndex <= VER_NDX_GLOBAL) return null;
+        ElfVersionDefinitionSection definitions = parser.elfFile.getVersionDefinitionSection();
+        String name = (definitions == null) ? null : definitions.getVersionName(versionIndex);
+        if (name == null) {
+            ElfVersionRequirementSection requirements = parser.elfFile.getVersionRequirementSection();
+            name = (requirements == null) ? null : requirements.getVersionName(versionIndex);
+        }
+        return name;
+    }
+
+    /**
+     * Checks if a symbol matches a version, as the dynamic linker does when resolving a reference.
+     *
+     * @param symbolIndex the index of the symbol in the dynamic symbol table
+     * @param version the version name, or null to only match the default version of a symbol
+     * @return true if the symbol matches
+     */
+    boolean matches(int symbolIndex, String version) throws ElfException {
+        if (version == null) return !isHidden(symbolIndex);
+        int versionIndex = getVersionIndex(symbolIndex);
+        if (versionIndex <= VER_NDX_GLOBAL) return false;
+        ElfVersionDefinitionSection definitions = parser.elfFile.getVersionDefinitionSection();
+        if (definitions != null && definitions.nameEquals(versionIndex, version)) return true;
+        ElfVersionRequirementSection requirements = parser.elfFile.getVersionRequirementSection();
+        return requirements != null && requirements.nameEquals(versionIndex, version);
+    }
+}
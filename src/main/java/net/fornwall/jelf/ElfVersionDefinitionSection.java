@@ -0,0 +1,130 @@
+package net.fornwall.jelf;
+
+import java.util.Arrays;
+
+/**
+ * An ELF section holding the symbol versions defined by a shared object. Normally named ".gnu.version_d".
+ * <p>
+ * Has the section type {@link ElfSectionHeader#SHT_GNU_verdef}. The {@link ElfSymbolVersionSection} entries of
+ * defined symbols refer to these versions by index. The version with the {@link #VER_FLG_BASE} flag names the shared
+ * object itself and is not used by symbols.
+ */
+public class ElfVersionDefinitionSection extends ElfSection {
+
+    /** Flag of the version definition naming the file itself. */
+    public static final int VER_FLG_BASE = 0x1;
+    /** Flag of a weak version definition. */
+    public static final int VER_FLG_WEAK = 0x2;
+
+    /** Size of an Elf32_Verdef or Elf64_Verdef entry. */
+    private static final int VERDEF_SIZE = 20;
+
+    private final int[] indices;
+    private final int[] flags;
+    private final int[] nameOffsets;
+    /** Maps a version index to a position in the arrays above, or -1. */
+    private final int[] positionByIndex;
+
+    ElfVersionDefinitionSection(ElfParser parser, ElfSectionHeader header) {
+        super(parser, header);
+
+        int maxEntries = (int) Math.min(header.sh_info, header.sh_size / VERDEF_SIZE);
+        int[] indices = new int[maxEntries];
+        int[] flags = new int[maxEntries];
+        int[] nameOffsets = new int[maxEntries];
+
+        int count = 0;
+        long offset = header.sh_offset;
+        long end = header.sh_offset + header.sh_size;
+        while (count < maxEntries && offset + VERDEF_SIZE <= end) {
+            parser.seek(offset);
+            int vd_version = parser.readShort() & 0xffff;
+            if (vd_version != 1) throw new ElfException("Unsupported version definition revision: " + vd_version);
+            flags[count] = parser.readShort() & 0xffff;
+            indices[count] = parser.readShort() & 0x7fff;
+            int vd_cnt = parser.readShort() & 0xffff;
+            /* vd_hash */ parser.readInt();
+            int vd_aux = parser.readInt();
+            int vd_next = parser.readInt();
+            if (vd_cnt > 0 && vd_aux > 0) {
+                // The first auxiliary entry names this version, any following ones name its parents.
+                parser.seek(offset + vd_aux);
+                nameOffsets[count] = parser.readInt();
+            }
+            count++;
+            if (vd_next <= 0) break;
+            offset += vd_next;
+        }
+
+        this.indices = Arrays.copyOf(indices, count);
+        this.flags = Arrays.copyOf(flags, count);
+        this.nameOffsets = Arrays.copyOf(nameOffsets, count);
+
+        int maxIndex = 0;
+        for (int index : this.indices) maxIndex = Math.max(maxIndex, index);
+        positionByIndex = new int[maxIndex + 1];
+        Arrays.fill(positionByIndex, -1);
+        for (int i = count - 1; i >= 0; i--) positionByIndex[this.indices[i]] = i;
+    }
+
+    /** The number of version definitions in this section. */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * The version index of a definition, as used in the {@link ElfSymbolVersionSection}.
+     *
+     * @param position the position of the definition in this section
+     */
+    public int getIndex(int position) {
+        return indices[position];
+    }
+
+    /**
+     * The flags of a definition, such as {@link #VER_FLG_BASE}.
+     *
+     * @param position the position of the definition in this section
+     */
+    public int getFlags(int position) {
+        return flags[position];
+    }
+
+    /**
+     * The name of a definition, such as "GLIBC_2.14".
+     *
+     * @param position the position of the definition in this section
+     */
+    public String getName(int position) throws ElfException {
+        return (nameOffsets[position] == 0) ? null : getStringTable().get(nameOffsets[position]);
+    }
+
+    /**
+     * Returns the name of the version with the given index.
+     *
+     * @param versionIndex the version index, as used in the {@link ElfSymbolVersionSection}
+     * @return the name of the version, or null if it is not defined in this section
+     */
+    public String getVersionName(int versionIndex) throws ElfException {
+        int position = positionOf(versionIndex);
+        return (position < 0) ? null : getName(position);
+    }
+
+    /** Checks if the version with the given index is defined here with the given name, without decoding the name. */
+    boolean nameEquals(int versionIndex, String name) throws ElfException {
+        int position = positionOf(versionIndex);
+        return position >= 0 && nameOffsets[position] != 0
+                && getStringTable().contentEquals(nameOffsets[position], name);
+    }
+
+    private int positionOf(int versionIndex) {
+        return (versionIndex >= 0 && versionIndex < positionByIndex.length) ? positionByIndex[versionIndex] : -1;
+    }
+
+    private ElfStringTable getStringTable() throws ElfException {
+        // Sections reconstructed without a section header table have no link, but always use the dynamic strings.
+        return (header.sh_link == 0)
+                ? parser.elfFile.getDynamicStringTable()
+                : (ElfStringTable) parser.elfFile.getSection(header.sh_link);
+    }
+}
@@ -0,0 +1,156 @@
+package net.fornwall.jelf;
+
+import java.util.Arrays;
+
+/**
+ * An ELF section holding the symbol versions required from other shared objects. Normally named ".gnu.version_r".
+ * <p>
+ * Has the section type {@link ElfSectionHeader#SHT_GNU_verneed}. The {@link ElfSymbolVersionSection} entries of
+ * undefined symbols refer to these versions by index. The entries for all files are flattened here, so that each
+ * position is one required version together with the name of the file it is required from.
+ */
+public class ElfVersionRequirementSection extends ElfSection {
+
+    /** Size of an Elf32_Verneed or Elf64_Verneed entry. */
+    private static final int VERNEED_SIZE = 16;
+    /** Size of an Elf32_Vernaux or Elf64_Vernaux entry. */
+    private static final int VERNAUX_SIZE = 16;
+
+    private final int[] indices;
+    private final int[] flags;
+    private final int[] nameOffsets;
+    private final int[] fileNameOffsets;
+    /** Maps a version index to a position in the arrays above, or -1. */
+    private final int[] positionByIndex;
+
+    ElfVersionRequirementSection(ElfParser parser, ElfSectionHeader header) {
+        super(parser, header);
+
+        int maxEntries = (int) (header.sh_size / VERNAUX_SIZE);
+        int[] indices = new int[maxEntries];
+        int[] flags = new int[maxEntries];
+        int[] nameOffsets = new int[maxEntries];
+        int[] fileNameOffsets = new int[maxEntries];
+
+        int count = 0;
+        long offset = header.sh_offset;
+        long end = header.sh_offset + header.sh_size;
+        for (long file = 0; file < header.sh_info && offset + VERNEED_SIZE <= end; file++) {
+            parser.seek(offset);
+            int vn_version = parser.readShort() & 0xffff;
+            if (vn_version != 1) throw new ElfException("Unsupported version requirement revision: " + vn_version);
+            int vn_cnt = parser.readShort() & 0xffff;
+            int vn_file = parser.readInt();
+            int vn_aux = parser.readInt();
+            int vn_next = parser.readInt();
+
+            long auxOffset = offset + vn_aux;
+            for (int i = 0; i < vn_cnt && count < maxEntries && auxOffset + VERNAUX_SIZE <= end; i++) {
+                parser.seek(auxOffset);
+                /* vna_hash */ parser.readInt();
+                flags[count] = parser.readShort() & 0xffff;
+                indices[count] = parser.readShort() & 0x7fff;
+                nameOffsets[count] = parser.readInt();
+                int vna_next = parser.readInt();
+                fileNameOffsets[count] = vn_file;
+                count++;
+                if (vna_next <= 0) break;
+                auxOffset += vna_next;
+            }
+
+            if (vn_next <= 0) break;
+            offset += vn_next;
+        }
+
+        this.indices = Arrays.copyOf(indices, count);
+        this.flags = Arrays.copyOf(flags, count);
+        this.nameOffsets = Arrays.copyOf(nameOffsets, count);
+        this.fileNameOffsets = Arrays.copyOf(fileNameOffsets, count);
+
+        int maxIndex = 0;
+        for (int index : this.indices) maxIndex = Math.max(maxIndex, index);
+        positionByIndex = new int[maxIndex + 1];
+        Arrays.fill(positionByIndex, -1);
+        for (int i = count - 1; i >= 0; i--) positionByIndex[this.indices[i]] = i;
+    }
+
+    /** The number of required versions in this section, over all files. */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * The version index of a required version, as used in the {@link ElfSymbolVersionSection}.
+     *
+     * @param position the position of the required version in this section
+     */
+    public int getIndex(int position) {
+        return indices[position];
+    }
+
+    /**
+     * The flags of a required version, such as {@link ElfVersionDefinitionSection#VER_FLG_WEAK}.
+     *
+     * @param position the position of the required version in this section
+     */
+    public int getFlags(int position) {
+        return flags[position];
+    }
+
+    /**
+     * The name of a required version, such as "GLIBC_2.14".
+     *
+     * @param position the position of the required version in this section
+     */
+    public String getName(int position) throws ElfException {
+        return getStringTable().get(nameOffsets[position]);
+    }
+
+    /**
+     * The name of the file a version is required from, such as "libc.so.6".
+     *
+     * @param position the position of the required version in this section
+     */
+    public String getFileName(int position) throws ElfException {
+        return getStringTable().get(fileNameOffsets[position]);
+    }
+
+    /**
+     * Returns the name of the version with the given index.
+     *
+     * @param versionIndex the version index, as used in the {@link ElfSymbolVersionSection}
+     * @return the name of the version, or null if it is not required in this section
+     */
+    public String getVersionName(int versionIndex) throws ElfException {
+        int position = positionOf(versionIndex);
+        return (position < 0) ? null : getName(position);
+    }
+
+    /**
+     * Returns the name of the file the version with the given index is required from.
+     *
+     * @param versionIndex the version index, as used in the {@link ElfSymbolVersionSection}
+     * @return the name of the file, or null if the version is not required in this section
+     */
+    public String getVersionFileName(int versionIndex) throws ElfException {
+        int position = positionOf(versionIndex);
+        return (position < 0) ? null : getFileName(position);
+    }
+
+    /** Checks if the version with the given index is required here with the given name, without decoding the name. */
+    boolean nameEquals(int versionIndex, String name) throws ElfException {
+        int position = positionOf(versionIndex);
+        return position >= 0 && getStringTable().contentEquals(nameOffsets[position], name);
+    }
+
+    private int positionOf(int versionIndex) {
+        return (versionIndex >= 0 && versionIndex < positionByIndex.length) ? positionByIndex[versionIndex] : -1;
+    }
+
+    private ElfStringTable getStringTable() throws ElfException {
+        // Sections reconstructed without a section header table have no link, but always use the dynamic strings.
+        return (header.sh_link == 0)
+                ? parser.elfFile.getDynamicStringTable()
+                : (ElfStringTable) parser.elfFile.getSection(header.sh_link);
+    }
+}
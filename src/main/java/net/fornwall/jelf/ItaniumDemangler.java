@@ -0,0 +1,1430 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Demangler for C++ names mangled according to the Itanium C++ ABI, as used by GCC and Clang on all ELF platforms.
+ * <p>
+ * The output follows the formatting of GNU c++filt. Mangled names are parsed into a tree of nodes, which is then
+ * printed. Rarely used parts of the grammar, such as most expressions, are not supported, in which case
+ * {@link #demangle(String)} returns null.
+ *
+ * @see <a href="https://itanium-cxx-abi.github.io/cxx-abi/abi.html#mangling">Itanium C++ ABI: Mangling</a>
+ */
+final class ItaniumDemangler {
+
+    /** Limit on the nesting of names and types, guarding against stack overflows on malicious input. */
+    private static final int MAX_DEPTH = 256;
+
+    /** Limit on the length of the demangled name, as substitutions allow the output to grow exponentially. */
+    private static final int MAX_LENGTH = 1 << 16;
+
+    private static final String[] OPERATOR_CODES = {
+        "nw", "na", "dl", "da", "ps", "ng", "ad", "de", "co", "pl", "mi", "ml", "dv", "rm", "an", "or", "eo", "aS",
+        "pL", "mI", "mL", "dV", "rM", "aN", "oR", "eO", "ls", "rs", "lS", "rS", "eq", "ne", "lt", "gt", "le", "ge",
+        "ss", "nt", "aa", "oo", "pp", "mm", "cm", "pm", "pt", "cl", "ix", "qu", "aw"
+    };
+    private static final String[] OPERATOR_NAMES = {
+        " new", " new[]", " delete", " delete[]", "+", "-", "&", "*", "~", "+", "-", "*", "/", "%", "&", "|", "^", "=",
+        "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<", ">>", "<<=", ">>=", "==", "!=", "<", ">", "<=", ">=",
+        "<=>", "!", "&&", "||", "++", "--", ",", "->*", "->", "()", "[]", "?", " co_await"
+    };
+
+    private final String mangled;
+    private int pos;
+    private int depth;
+    private final List<Node> substitutions = new ArrayList<>();
+    /** The template arguments in scope for template parameter references. */
+    private final List<Node> templateParams = new ArrayList<>();
+
+    private ItaniumDemangler(String mangled) {
+        this.mangled = mangled;
+    }
+
+    /**
+     * Demangles an Itanium C++ ABI mangled name.
+     *
+     * @param mangled the mangled name, starting with "_Z"
+     * @return the demangled name, or null if the name could not be demangled
+     */
+    static String demangle(String mangled) {
+        if (!mangled.startsWith("_Z")) return null;
+        try {
+            ItaniumDemangler demangler = new ItaniumDemangler(mangled);
+            demangler.pos = 2;
+            Node encoding = demangler.parseEncoding(true);
+            Printer printer = new Printer();
+            encoding.print(printer);
+            demangler.parseCloneSuffixes(printer);
+            if (demangler.pos != mangled.length()) return null;
+            return printer.toString();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Parsing
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /** Information about the name of an encoding, needed to parse the function type following it. */
+    private static final class NameState {
+        boolean ctorDtorConversion;
+        boolean endsWithTemplateArgs;
+        int cvQualifiers;
+        String refQualifier;
+    }
+
+    private char peek() {
+        return (pos < mangled.length()) ? mangled.charAt(pos) : '\0';
+    }
+
+    private char peek(int ahead) {
+        return (pos + ahead < mangled.length()) ? mangled.charAt(pos + ahead) : '\0';
+    }
+
+    private boolean consume(char c) {
+        if (peek() != c) return false;
+        pos++;
+        return true;
+    }
+
+    private boolean consume(String s) {
+        if (!mangled.startsWith(s, pos)) return false;
+        pos += s.length();
+        return true;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) throw fail();
+    }
+
+    private IllegalArgumentException fail() {
+        return new IllegalArgumentException("Unable to demangle " + mangled + " at index " + pos);
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) throw fail();
+    }
+
+    private boolean atEncodingEnd() {
+        char c = peek();
+        return c == '\0' || c == 'E' || c == '.';
+    }
+
+    /**
+     * Parses an encoding.
+     *
+     * @param withReturnType whether to print the return type of a function, which is left out for the function
+     *     enclosing a local name, as c++filt does
+     */
+    private Node parseEncoding(boolean withReturnType) {
+        char c = peek();
+        if (c == 'G' || c == 'T') return parseSpecialName();
+
+        NameState state = new NameState();
+        Node name = parseName(state);
+        if (atEncodingEnd()) return name;
+
+        Node returnType = null;
+        if (state.endsWithTemplateArgs && !state.ctorDtorConversion) returnType = parseType();
+        if (!withReturnType) returnType = null;
+        List<Node> params = new ArrayList<>();
+        if (!consume('v')) {
+            while (!atEncodingEnd()) params.add(parseType());
+        }
+        return new FunctionEncoding(returnType, name, params, state.cvQualifiers, state.refQualifier);
+    }
+
+    /** Appends GCC clone suffixes such as ".constprop.0" or ".cold" as " [clone .constprop.0]". */
+    private void parseCloneSuffixes(Printer printer) {
+        while (peek() == '.' && (Character.isLetter(peek(1)) || peek(1) == '_' || Character.isDigit(peek(1)))) {
+            int start = pos++;
+            if (Character.isDigit(peek())) {
+                while (Character.isDigit(peek())) pos++;
+            } else {
+                while (Character.isLetter(peek()) || peek() == '_') pos++;
+            }
+            while (peek() == '.' && Character.isDigit(peek(1))) {
+                pos++;
+                while (Character.isDigit(peek())) pos++;
+            }
+            printer.append(" [clone ").append(mangled.substring(start, pos)).append("]");
+        }
+    }
+
+    private Node parseSpecialName() {
+        if (consume("TV")) return new PrefixedNode("vtable for ", parseType());
+        if (consume("TT")) return new PrefixedNode("VTT for ", parseType());
+        if (consume("TI")) return new PrefixedNode("typeinfo for ", parseType());
+        if (consume("TS")) return new PrefixedNode("typeinfo name for ", parseType());
+        if (consume("TH")) return new PrefixedNode("TLS init function for ", parseName(null));
+        if (consume("TW")) return new PrefixedNode("TLS wrapper function for ", parseName(null));
+        if (peek() == 'T' && (peek(1) == 'h' || peek(1) == 'v')) {
+            boolean virtual = peek(1) == 'v';
+            pos++;
+            parseCallOffset();
+            return new PrefixedNode(virtual ? "virtual thunk to " : "non-virtual thunk to ", parseEncoding(true));
+        }
+        if (consume("Tc")) {
+            parseCallOffset();
+            parseCallOffset();
+            return new PrefixedNode("covariant return thunk to ", parseEncoding(true));
+        }
+        if (consume("TC")) {
+            Node derived = parseType();
+            parseNumber();
+            expect('_');
+            Node base = parseType();
+            return new PrefixedNode("construction vtable for ", new JoinedNode(base, "-in-", derived));
+        }
+        if (consume("GV")) return new PrefixedNode("guard variable for ", parseName(null));
+        if (consume("GTt")) return new PrefixedNode("transaction clone for ", parseEncoding(true));
+        if (consume("GTn")) return new PrefixedNode("non-transaction clone for ", parseEncoding(true));
+        if (consume("GA")) return new PrefixedNode("hidden alias for ", parseEncoding(true));
+        throw fail();
+    }
+
+    /** Skips a call offset, either "h nv-offset _" or "v offset _ virtual-offset _". */
+    private void parseCallOffset() {
+        if (consume('h')) {
+            parseNumber();
+            expect('_');
+        } else if (consume('v')) {
+            parseNumber();
+            expect('_');
+            parseNumber();
+            expect('_');
+        } else {
+            throw fail();
+        }
+    }
+
+    private Node parseName(NameState state) {
+        enter();
+        try {
+            char c = peek();
+            if (c == 'N') return parseNestedName(state);
+            if (c == 'Z') return parseLocalName(state);
+
+            Node name;
+            if (c == 'S' && peek(1) != 't') {
+                name = parseSubstitution();
+                if (peek() != 'I') throw fail();
+            } else {
+                name = parseUnscopedName(state);
+                if (peek() != 'I') return name;
+                substitutions.add(name);
+            }
+            Node args = parseTemplateArgs(state != null);
+            if (state != null) state.endsWithTemplateArgs = true;
+            return new NameWithTemplateArgs(name, args);
+        } finally {
+            depth--;
+        }
+    }
+
+    private Node parseUnscopedName(NameState state) {
+        if (consume("St")) {
+            consume('L');
+            return new NestedName(new NameNode("std"), parseUnqualifiedName(state, null));
+        }
+        consume('L');
+        return parseUnqualifiedName(state, null);
+    }
+
+    private Node parseNestedName(NameState state) {
+        expect('N');
+        int cv = parseCvQualifiers();
+        String refQualifier = consume('R') ? "&" : consume('O') ? "&&" : null;
+        if (state != null) {
+            state.cvQualifiers = cv;
+            state.refQualifier = refQualifier;
+        }
+
+        Node soFar = null;
+        while (!consume('E')) {
+            if (state != null) state.endsWithTemplateArgs = false;
+            char c = peek();
+            if (c == 'T') {
+                if (soFar != null) throw fail();
+                soFar = parseTemplateParam();
+            } else if (c == 'I') {
+                if (soFar == null) throw fail();
+                soFar = new NameWithTemplateArgs(soFar, parseTemplateArgs(state != null));
+                if (state != null) state.endsWithTemplateArgs = true;
+            } else if (c == 'S' && peek(1) == 't') {
+                if (soFar != null) throw fail();
+                pos += 2;
+                soFar = new NameNode("std");
+                continue;
+            } else if (c == 'S') {
+                if (soFar != null) throw fail();
+                soFar = parseSubstitution();
+                continue;
+            } else if (c == 'D' && (peek(1) == 't' || peek(1) == 'T')) {
+                throw fail();
+            } else {
+                consume('L');
+                Node name = parseUnqualifiedName(state, soFar);
+                soFar = (soFar == null) ? name : new NestedName(soFar, name);
+            }
+            if (peek() != 'E') substitutions.add(soFar);
+        }
+        if (soFar == null) throw fail();
+        return soFar;
+    }
+
+    private Node parseLocalName(NameState state) {
+        expect('Z');
+        Node encoding = parseEncoding(false);
+        expect('E');
+        if (consume('s')) {
+            parseDiscriminator();
+            return new JoinedNode(encoding, "::", new NameNode("string literal"));
+        }
+        if (consume('d')) {
+            if (peek() != '_') parseNumber();
+            expect('_');
+        }
+        Node entity = parseName(state);
+        parseDiscriminator();
+        return new JoinedNode(encoding, "::", entity);
+    }
+
+    private void parseDiscriminator() {
+        if (peek() != '_') return;
+        if (Character.isDigit(peek(1))) {
+            pos += 2;
+        } else if (peek(1) == '_') {
+            pos += 2;
+            parseNumber();
+            expect('_');
+        }
+    }
+
+    private Node parseUnqualifiedName(NameState state, Node scope) {
+        Node name;
+        char c = peek();
+        if (Character.isDigit(c)) {
+            name = new NameNode(parseSourceName());
+        } else if (c == 'C' || (c == 'D' && "0124".indexOf(peek(1)) >= 0)) {
+            name = parseCtorDtorName(state, scope);
+        } else if (c == 'U') {
+            name = parseUnnamedTypeName();
+        } else if (c >= 'a' && c <= 'z') {
+            name = parseOperatorName(state);
+        } else {
+            throw fail();
+        }
+        while (consume('B')) name = new AbiTaggedName(name, parseSourceName());
+        return name;
+    }
+
+    private Node parseCtorDtorName(NameState state, Node scope) {
+        if (scope == null) throw fail();
+        String baseName = baseName(scope);
+        if (state != null) state.ctorDtorConversion = true;
+        if (consume('C')) {
+            boolean inheriting = consume('I');
+            char kind = peek();
+            if (kind < '1' || kind > '5') throw fail();
+            pos++;
+            if (inheriting) parseName(null);
+            return new NameNode(baseName);
+        }
+        expect('D');
+        pos++;
+        return new NameNode("~" + baseName);
+    }
+
+    private static String baseName(Node scope) {
+        while (true) {
+            if (scope instanceof NestedName) {
+                scope = ((NestedName) scope).name;
+            } else if (scope instanceof NameWithTemplateArgs) {
+                scope = ((NameWithTemplateArgs) scope).name;
+            } else if (scope instanceof AbiTaggedName) {
+                scope = ((AbiTaggedName) scope).name;
+            } else if (scope instanceof SpecialSubstitution) {
+                return ((SpecialSubstitution) scope).baseName;
+            } else if (scope instanceof NameNode) {
+                return ((NameNode) scope).name;
+            } else {
+                throw new IllegalArgumentException("No base name for constructor or destructor");
+            }
+        }
+    }
+
+    private Node parseUnnamedTypeName() {
+        if (consume("Ut")) {
+            String number = (peek() == '_') ? "1" : Integer.toString(parseNumber() + 2);
+            expect('_');
+            return new NameNode("{unnamed type#" + number + "}");
+        }
+        if (consume("Ul")) {
+            List<Node> params = new ArrayList<>();
+            if (!consume('v')) {
+                while (peek() != 'E') params.add(parseType());
+            }
+            expect('E');
+            String number = (peek() == '_') ? "1" : Integer.toString(parseNumber() + 2);
+            expect('_');
+            return new LambdaName(params, number);
+        }
+        throw fail();
+    }
+
+    private Node parseOperatorName(NameState state) {
+        if (consume("cv")) {
+            if (state != null) state.ctorDtorConversion = true;
+            return new PrefixedNode("operator ", parseType());
+        }
+        if (consume("li")) return new NameNode("operator\"\" " + parseSourceName());
+        if (peek() == 'v' && Character.isDigit(peek(1))) {
+            pos += 2;
+            return new NameNode("operator " + parseSourceName());
+        }
+        for (int i = 0; i < OPERATOR_CODES.length; i++) {
+            if (consume(OPERATOR_CODES[i])) return new NameNode("operator" + OPERATOR_NAMES[i]);
+        }
+        throw fail();
+    }
+
+    private String parseSourceName() {
+        int length = parseNumber();
+        if (length <= 0 || pos + length > mangled.length()) throw fail();
+        String name = mangled.substring(pos, pos + length);
+        pos += length;
+        // GCC names anonymous namespaces _GLOBAL__N_1 (with '.', '$' or '_' after _GLOBAL_).
+        if (name.startsWith("_GLOBAL_") && name.length() > 9 && name.charAt(9) == 'N') return "(anonymous namespace)";
+        return name;
+    }
+
+    private int parseNumber() {
+        boolean negative = consume('n');
+        if (!Character.isDigit(peek())) throw fail();
+        long value = 0;
+        while (Character.isDigit(peek())) {
+            value = value * 10 + (mangled.charAt(pos++) - '0');
+            if (value > Integer.MAX_VALUE) throw fail();
+        }
+        return negative ? (int) -value : (int) value;
+    }
+
+    private int parseCvQualifiers() {
+        int cv = 0;
+        if (consume('r')) cv |= QualifiedType.RESTRICT;
+        if (consume('V')) cv |= QualifiedType.VOLATILE;
+        if (consume('K')) cv |= QualifiedType.CONST;
+        return cv;
+    }
+
+    private Node parseSubstitution() {
+        expect('S');
+        switch (peek()) {
+            case 'a':
+                pos++;
+                return SpecialSubstitution.ALLOCATOR;
+            case 'b':
+                pos++;
+                return SpecialSubstitution.BASIC_STRING;
+            case 's':
+                pos++;
+                return SpecialSubstitution.STRING;
+            case 'i':
+                pos++;
+                return SpecialSubstitution.ISTREAM;
+            case 'o':
+                pos++;
+                return SpecialSubstitution.OSTREAM;
+            case 'd':
+                pos++;
+                return SpecialSubstitution.IOSTREAM;
+            default:
+                int index = consume('_') ? 0 : parseSeqId() + 1;
+                if (index >= substitutions.size()) throw fail();
+                return substitutions.get(index);
+        }
+    }
+
+    /** Parses a base 36 sequence id terminated by '_'. */
+    private int parseSeqId() {
+        int value = 0;
+        while (!consume('_')) {
+            char c = peek();
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 10;
+            } else {
+                throw fail();
+            }
+            pos++;
+            value = value * 36 + digit;
+            if (value > MAX_LENGTH) throw fail();
+        }
+        return value;
+    }
+
+    private Node parseTemplateParam() {
+        expect('T');
+        int index = consume('_') ? 0 : parseNumber() + 1;
+        if (index > 0) expect('_');
+        if (index >= templateParams.size()) throw fail();
+        Node param = templateParams.get(index);
+        return (param instanceof TemplateArgumentPack)
+                ? new ParameterPack(((TemplateArgumentPack) param).elements)
+                : param;
+    }
+
+    private Node parseTemplateArgs(boolean tagTemplates) {
+        expect('I');
+        if (tagTemplates) templateParams.clear();
+        List<Node> args = new ArrayList<>();
+        while (!consume('E')) {
+            Node arg = parseTemplateArg();
+            args.add(arg);
+            if (tagTemplates) templateParams.add(arg);
+        }
+        return new TemplateArgs(args);
+    }
+
+    private Node parseTemplateArg() {
+        enter();
+        try {
+            switch (peek()) {
+                case 'X':
+                    pos++;
+                    Node expression = parseExpression();
+                    expect('E');
+                    return expression;
+                case 'L':
+                    return parseExprPrimary();
+                case 'J':
+                    pos++;
+                    List<Node> elements = new ArrayList<>();
+                    while (!consume('E')) elements.add(parseTemplateArg());
+                    return new TemplateArgumentPack(elements);
+                default:
+                    return parseType();
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    private Node parseExpression() {
+        enter();
+        try {
+            char c = peek();
+            if (c == 'L') return parseExprPrimary();
+            if (c == 'T') return parseTemplateParam();
+            if (c == 'f' && peek(1) == 'p') {
+                pos += 2;
+                parseCvQualifiers();
+                String number = (peek() == '_') ? "1" : Integer.toString(parseNumber() + 2);
+                expect('_');
+                return new NameNode("{parm#" + number + "}");
+            }
+            for (int i = 0; i < OPERATOR_CODES.length; i++) {
+                String code = OPERATOR_CODES[i];
+                if (!mangled.startsWith(code, pos)) continue;
+                String operator = OPERATOR_NAMES[i].trim();
+                if (code.equals("ad") || code.equals("de") || code.equals("ng") || code.equals("ps")
+                        || code.equals("nt") || code.equals("co")) {
+                    pos += 2;
+                    Node operand = parseExpression();
+                    if (code.equals("ad")
+                            && operand instanceof FunctionEncoding
+                            && ((FunctionEncoding) operand).name instanceof NestedName) {
+                        // A pointer to member function is printed as just the qualified name.
+                        return new PrefixedNode(operator, ((FunctionEncoding) operand).name);
+                    }
+                    return new PrefixedNode(operator, new ParenthesizedNode(operand));
+                }
+                if (code.equals("qu") || code.equals("cl") || code.startsWith("n") || code.startsWith("d")) {
+                    throw fail();
+                }
+                pos += 2;
+                Node left = parseExpression();
+                Node right = parseExpression();
+                return new JoinedNode(new ParenthesizedNode(left), operator, new ParenthesizedNode(right));
+            }
+            throw fail();
+        } finally {
+            depth--;
+        }
+    }
+
+    private Node parseExprPrimary() {
+        expect('L');
+        if (consume("_Z") || consume('Z')) {
+            Node encoding = parseEncoding(true);
+            expect('E');
+            return encoding;
+        }
+        Node type = parseType();
+        boolean negative = consume('n');
+        int start = pos;
+        while (peek() != 'E' && peek() != '\0') pos++;
+        String value = mangled.substring(start, pos);
+        expect('E');
+        if (value.isEmpty()) {
+            if (type == BuiltinType.NULLPTR) return new NameNode("nullptr");
+            throw fail();
+        }
+
+        String sign = negative ? "-" : "";
+        if (type instanceof BuiltinType) {
+            switch (((BuiltinType) type).code) {
+                case 'b':
+                    if (value.equals("0")) return new NameNode("false");
+                    if (value.equals("1")) return new NameNode("true");
+                    break;
+                case 'i':
+                    return new NameNode(sign + value);
+                case 'j':
+                    return new NameNode(sign + value + "u");
+                case 'l':
+                    return new NameNode(sign + value + "l");
+                case 'm':
+                    return new NameNode(sign + value + "ul");
+                case 'x':
+                    return new NameNode(sign + value + "ll");
+                case 'y':
+                    return new NameNode(sign + value + "ull");
+                case 'f':
+                case 'd':
+                case 'e':
+                    return new PrefixedNode("(", new JoinedNode(type, ")[", new NameNode(value + "]")));
+                default:
+                    break;
+            }
+        }
+        return new PrefixedNode("(", new JoinedNode(type, ")", new NameNode(sign + value)));
+    }
+
+    private Node parseType() {
+        enter();
+        try {
+            Node type = parseTypeUnchecked();
+            if (type == null) throw fail();
+            return type;
+        } finally {
+            depth--;
+        }
+    }
+
+    private Node parseTypeUnchecked() {
+        char c = peek();
+        BuiltinType builtin = BuiltinType.forCode(c);
+        if (builtin != null) {
+            pos++;
+            return builtin;
+        }
+
+        Node result;
+        switch (c) {
+            case 'D':
+                builtin = BuiltinType.forExtendedCode(peek(1));
+                if (builtin != null) {
+                    pos += 2;
+                    return builtin;
+                }
+                if (consume("DF")) {
+                    int bits = parseNumber();
+                    expect('_');
+                    return new NameNode("_Float" + bits);
+                }
+                if (consume("Dp")) {
+                    result = new PackExpansion(parseType());
+                } else if (consume("Dv")) {
+                    int size = parseNumber();
+                    expect('_');
+                    result = new VectorType(parseType(), size);
+                } else if (consume("Do")) {
+                    Node function = parseType();
+                    if (!(function instanceof FunctionType)) throw fail();
+                    ((FunctionType) function).noexcept = true;
+                    return function;
+                } else {
+                    throw fail();
+                }
+                break;
+            case 'u':
+                pos++;
+                result = new NameNode(parseSourceName());
+                break;
+            case 'r':
+            case 'V':
+            case 'K':
+                int cv = parseCvQualifiers();
+                Node qualified = parseType();
+                if (qualified instanceof FunctionType) {
+                    ((FunctionType) qualified).cvQualifiers |= cv;
+                    result = qualified;
+                } else {
+                    result = new QualifiedType(qualified, cv);
+                }
+                break;
+            case 'P':
+                pos++;
+                result = new PointerType(parseType(), "*");
+                break;
+            case 'R':
+                pos++;
+                result = new PointerType(parseType(), "&");
+                break;
+            case 'O':
+                pos++;
+                result = new PointerType(parseType(), "&&");
+                break;
+            case 'C':
+                pos++;
+                result = new JoinedNode(parseType(), " _Complex", null);
+                break;
+            case 'G':
+                pos++;
+                result = new JoinedNode(parseType(), " _Imaginary", null);
+                break;
+            case 'F':
+                result = parseFunctionType();
+                break;
+            case 'A':
+                result = parseArrayType();
+                break;
+            case 'M':
+                pos++;
+                Node classType = parseType();
+                result = new PointerToMemberType(classType, parseType());
+                break;
+            case 'T':
+                result = parseTemplateParam();
+                if (peek() == 'I') {
+                    substitutions.add(result);
+                    result = new NameWithTemplateArgs(result, parseTemplateArgs(false));
+                }
+                break;
+            case 'S':
+                if (peek(1) == 't') {
+                    result = parseName(null);
+                    break;
+                }
+                Node substitution = parseSubstitution();
+                if (peek() != 'I') return substitution;
+                result = new NameWithTemplateArgs(substitution, parseTemplateArgs(false));
+                break;
+            case 'N':
+            case 'Z':
+                result = parseName(null);
+                break;
+            default:
+                if (!Character.isDigit(c)) throw fail();
+                result = parseName(null);
+                break;
+        }
+        substitutions.add(result);
+        return result;
+    }
+
+    private Node parseFunctionType() {
+        expect('F');
+        consume('Y');
+        Node returnType = parseType();
+        List<Node> params = new ArrayList<>();
+        String refQualifier = null;
+        if (!(peek() == 'v' && peek(1) == 'E' && consume('v'))) {
+            while (peek() != 'E') {
+                if (consume("RE")) {
+                    refQualifier = "&";
+                    pos--;
+                    break;
+                }
+                if (consume("OE")) {
+                    refQualifier = "&&";
+                    pos--;
+                    break;
+                }
+                params.add(parseType());
+            }
+        }
+        expect('E');
+        return new FunctionType(returnType, params, refQualifier);
+    }
+
+    private Node parseArrayType() {
+        expect('A');
+        String dimension;
+        if (peek() == '_') {
+            dimension = "";
+        } else if (Character.isDigit(peek())) {
+            dimension = Integer.toString(parseNumber());
+        } else {
+            Printer printer = new Printer();
+            parseExpression().print(printer);
+            dimension = printer.toString();
+        }
+        expect('_');
+        return new ArrayType(parseType(), dimension);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Printing
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /** Output buffer, with the state needed to expand parameter packs. */
+    private static final class Printer {
+        private final StringBuilder out = new StringBuilder();
+        /** Index of the pack element being printed, or -1 when not expanding a pack. */
+        int packIndex = -1;
+        /** Size of the pack being expanded, -1 if no pack has been found or -2 when not expanding a pack. */
+        int packSize = -2;
+
+        Printer append(String s) {
+            out.append(s);
+            if (out.length() > MAX_LENGTH) throw new IllegalArgumentException("Demangled name too long");
+            return this;
+        }
+
+        char last() {
+            return (out.length() == 0) ? '\0' : out.charAt(out.length() - 1);
+        }
+
+        int length() {
+            return out.length();
+        }
+
+        void truncate(int length) {
+            out.setLength(length);
+        }
+
+        /** Prints the nodes separated by ", ", leaving out elements printing as nothing, such as empty packs. */
+        void printList(List<Node> nodes) {
+            boolean first = true;
+            for (Node node : nodes) {
+                int mark = length();
+                if (!first) append(", ");
+                int afterSeparator = length();
+                node.print(this);
+                if (length() == afterSeparator) {
+                    truncate(mark);
+                } else {
+                    first = false;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+
+    private abstract static class Node {
+        /** Prints the part of the node before the name of a declarator, such as "int (*" of "int (*)(char)". */
+        abstract void printLeft(Printer p);
+
+        /** Prints the part of the node after the name of a declarator, such as ")(char)" of "int (*)(char)". */
+        void printRight(Printer p) {}
+
+        /** Whether {@link #printRight(Printer)} prints anything. */
+        boolean hasRightPart() {
+            return false;
+        }
+
+        boolean isArray() {
+            return false;
+        }
+
+        boolean isFunction() {
+            return false;
+        }
+
+        final void print(Printer p) {
+            printLeft(p);
+            if (hasRightPart()) printRight(p);
+        }
+    }
+
+    private static final class NameNode extends Node {
+        final String name;
+
+        NameNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.append(name);
+        }
+    }
+
+    private static final class BuiltinType extends Node {
+        static final BuiltinType NULLPTR = new BuiltinType('n', "decltype(nullptr)");
+
+        private static final BuiltinType[] SIMPLE = new BuiltinType[128];
+        private static final BuiltinType[] EXTENDED = new BuiltinType[128];
+
+        static {
+            String[] simple = {
+                "v", "void", "w", "wchar_t", "b", "bool", "c", "char", "a", "signed char", "h", "unsigned char", "s",
+                "short", "t", "unsigned short", "i", "int", "j", "unsigned int", "l", "long", "m", "unsigned long", "x",
+                "long long", "y", "unsigned long long", "n", "__int128", "o", "unsigned __int128", "f", "float", "d",
+                "double", "e", "long double", "g", "__float128", "z", "..."
+            };
+            for (int i = 0; i < simple.length; i += 2) {
+                SIMPLE[simple[i].charAt(0)] = new BuiltinType(simple[i].charAt(0), simple[i + 1]);
+            }
+            String[] extended = {
+                "d", "decimal64", "e", "decimal128", "f", "decimal32", "h", "half", "i", "char32_t", "s", "char16_t",
+                "u", "char8_t", "a", "auto", "c", "decltype(auto)"
+            };
+            for (int i = 0; i < extended.length; i += 2) {
+                EXTENDED[extended[i].charAt(0)] = new BuiltinType('D', extended[i + 1]);
+            }
+            EXTENDED['n'] = NULLPTR;
+        }
+
+        final char code;
+        final String name;
+
+        private BuiltinType(char code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        static BuiltinType forCode(char code) {
+            return (code < 128) ? SIMPLE[code] : null;
+        }
+
+        static BuiltinType forExtendedCode(char code) {
+            return (code < 128) ? EXTENDED[code] : null;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.append(name);
+        }
+    }
+
+    /** The abbreviations Sa, Sb, Ss, Si, So and Sd, which GNU c++filt prints in their expanded form. */
+    private static final class SpecialSubstitution extends Node {
+        static final SpecialSubstitution ALLOCATOR = new SpecialSubstitution("std::allocator", "allocator");
+        static final SpecialSubstitution BASIC_STRING = new SpecialSubstitution("std::basic_string", "basic_string");
+        static final SpecialSubstitution STRING = new SpecialSubstitution(
+                "std::basic_string<char, std::char_traits<char>, std::allocator<char> >", "basic_string");
+        static final SpecialSubstitution ISTREAM =
+                new SpecialSubstitution("std::basic_istream<char, std::char_traits<char> >", "basic_istream");
+        static final SpecialSubstitution OSTREAM =
+                new SpecialSubstitution("std::basic_ostream<char, std::char_traits<char> >", "basic_ostream");
+        static final SpecialSubstitution IOSTREAM =
+                new SpecialSubstitution("std::basic_iostream<char, std::char_traits<char> >", "basic_iostream");
+
+        final String expansion;
+        final String baseName;
+
+        private SpecialSubstitution(String expansion, String baseName) {
+            this.expansion = expansion;
+            this.baseName = baseName;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.append(expansion);
+        }
+    }
+
+    private static final class NestedName extends Node {
+        final Node prefix;
+        final Node name;
+
+        NestedName(Node prefix, Node name) {
+            this.prefix = prefix;
+            this.name = name;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            prefix.print(p);
+            p.append("::");
+            name.print(p);
+        }
+    }
+
+    private static final class AbiTaggedName extends Node {
+        final Node name;
+        final String tag;
+
+        AbiTaggedName(Node name, String tag) {
+            this.name = name;
+            this.tag = tag;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            name.print(p);
+            p.append("[abi:").append(tag).append("]");
+        }
+    }
+
+    private static final class NameWithTemplateArgs extends Node {
+        final Node name;
+        final Node args;
+
+        NameWithTemplateArgs(Node name, Node args) {
+            this.name = name;
+            this.args = args;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            name.print(p);
+            args.print(p);
+        }
+    }
+
+    private static final class TemplateArgs extends Node {
+        final List<Node> args;
+
+        TemplateArgs(List<Node> args) {
+            this.args = args;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            // Avoid printing "<<" for "operator<" followed by template arguments, and ">>" for nested arguments.
+            if (p.last() == '<') p.append(" ");
+            p.append("<");
+            p.printList(args);
+            if (p.last() == '>') p.append(" ");
+            p.append(">");
+        }
+    }
+
+    private static final class TemplateArgumentPack extends Node {
+        final List<Node> elements;
+
+        TemplateArgumentPack(List<Node> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.printList(elements);
+        }
+    }
+
+    /** A template parameter referring to a pack, which prints the element selected by the enclosing expansion. */
+    private static final class ParameterPack extends Node {
+        final List<Node> elements;
+
+        ParameterPack(List<Node> elements) {
+            this.elements = elements;
+        }
+
+        private Node current(Printer p) {
+            if (p.packSize == -1) {
+                p.packSize = elements.size();
+                p.packIndex = 0;
+            }
+            if (p.packIndex < 0) return new TemplateArgumentPack(elements);
+            return (p.packIndex < elements.size()) ? elements.get(p.packIndex) : null;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            Node element = current(p);
+            if (element != null) element.printLeft(p);
+        }
+
+        @Override
+        void printRight(Printer p) {
+            Node element = current(p);
+            if (element != null && element.hasRightPart()) element.printRight(p);
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return true;
+        }
+    }
+
+    /** A pack expansion, printing its pattern once for each element of the pack referenced by the pattern. */
+    private static final class PackExpansion extends Node {
+        final Node pattern;
+
+        PackExpansion(Node pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            int savedIndex = p.packIndex;
+            int savedSize = p.packSize;
+            p.packIndex = 0;
+            p.packSize = -1;
+            int start = p.length();
+            pattern.print(p);
+            if (p.packSize == -1) {
+                p.append("...");
+            } else if (p.packSize == 0) {
+                p.truncate(start);
+            } else {
+                for (int i = 1, size = p.packSize; i < size; i++) {
+                    p.append(", ");
+                    p.packIndex = i;
+                    pattern.print(p);
+                }
+            }
+            p.packIndex = savedIndex;
+            p.packSize = savedSize;
+        }
+    }
+
+    private static final class QualifiedType extends Node {
+        static final int CONST = 1;
+        static final int VOLATILE = 2;
+        static final int RESTRICT = 4;
+
+        final Node type;
+        final int qualifiers;
+
+        QualifiedType(Node type, int qualifiers) {
+            this.type = type;
+            this.qualifiers = qualifiers;
+        }
+
+        static void printQualifiers(Printer p, int qualifiers) {
+            if ((qualifiers & CONST) != 0) p.append(" const");
+            if ((qualifiers & VOLATILE) != 0) p.append(" volatile");
+            if ((qualifiers & RESTRICT) != 0) p.append(" restrict");
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            type.printLeft(p);
+            printQualifiers(p, qualifiers);
+        }
+
+        @Override
+        void printRight(Printer p) {
+            type.printRight(p);
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return type.hasRightPart();
+        }
+
+        @Override
+        boolean isArray() {
+            return type.isArray();
+        }
+
+        @Override
+        boolean isFunction() {
+            return type.isFunction();
+        }
+    }
+
+    /** A pointer, lvalue reference or rvalue reference. */
+    private static final class PointerType extends Node {
+        final Node pointee;
+        final String symbol;
+
+        PointerType(Node pointee, String symbol) {
+            this.pointee = pointee;
+            this.symbol = symbol;
+        }
+
+        private boolean needsParentheses() {
+            return pointee.isArray() || pointee.isFunction();
+        }
+
+        /**
+         * Collapses a reference to a reference, such as T&& with T = int& from a template argument or an element of a
+         * pack, into a single reference which is an rvalue reference only if both are.
+         */
+        private PointerType collapse(Printer p) {
+            if (symbol.equals("*")) return this;
+            String collapsedSymbol = symbol;
+            Node target = pointee;
+            while (true) {
+                Node resolved = (target instanceof ParameterPack) ? ((ParameterPack) target).current(p) : target;
+                if (!(resolved instanceof PointerType) || ((PointerType) resolved).symbol.equals("*")) break;
+                PointerType reference = (PointerType) resolved;
+                if (reference.symbol.equals("&")) collapsedSymbol = "&";
+                target = reference.pointee;
+            }
+            return (target == pointee) ? this : new PointerType(target, collapsedSymbol);
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            PointerType collapsed = collapse(p);
+            if (collapsed != this) {
+                collapsed.printLeft(p);
+                return;
+            }
+            pointee.printLeft(p);
+            if (pointee.isArray()) p.append(" ");
+            if (needsParentheses()) p.append("(");
+            p.append(symbol);
+        }
+
+        @Override
+        void printRight(Printer p) {
+            PointerType collapsed = collapse(p);
+            if (collapsed != this) {
+                collapsed.printRight(p);
+                return;
+            }
+            if (needsParentheses()) p.append(")");
+            pointee.printRight(p);
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return pointee.hasRightPart();
+        }
+    }
+
+    private static final class PointerToMemberType extends Node {
+        final Node classType;
+        final Node memberType;
+
+        PointerToMemberType(Node classType, Node memberType) {
+            this.classType = classType;
+            this.memberType = memberType;
+        }
+
+        private boolean needsParentheses() {
+            return memberType.isArray() || memberType.isFunction();
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            memberType.printLeft(p);
+            p.append(needsParentheses() ? "(" : " ");
+            classType.print(p);
+            p.append("::*");
+        }
+
+        @Override
+        void printRight(Printer p) {
+            if (needsParentheses()) p.append(")");
+            memberType.printRight(p);
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return memberType.hasRightPart();
+        }
+    }
+
+    private static final class ArrayType extends Node {
+        final Node elementType;
+        final String dimension;
+
+        ArrayType(Node elementType, String dimension) {
+            this.elementType = elementType;
+            this.dimension = dimension;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            elementType.printLeft(p);
+        }
+
+        @Override
+        void printRight(Printer p) {
+            if (p.last() != ']') p.append(" ");
+            p.append("[").append(dimension).append("]");
+            elementType.printRight(p);
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return true;
+        }
+
+        @Override
+        boolean isArray() {
+            return true;
+        }
+    }
+
+    private static final class VectorType extends Node {
+        final Node elementType;
+        final int size;
+
+        VectorType(Node elementType, int size) {
+            this.elementType = elementType;
+            this.size = size;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            elementType.print(p);
+            p.append(" __vector(").append(Integer.toString(size)).append(")");
+        }
+    }
+
+    private static final class FunctionType extends Node {
+        final Node returnType;
+        final List<Node> params;
+        final String refQualifier;
+        int cvQualifiers;
+        boolean noexcept;
+
+        FunctionType(Node returnType, List<Node> params, String refQualifier) {
+            this.returnType = returnType;
+            this.params = params;
+            this.refQualifier = refQualifier;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            returnType.printLeft(p);
+            if (!returnType.hasRightPart()) p.append(" ");
+        }
+
+        @Override
+        void printRight(Printer p) {
+            p.append("(");
+            p.printList(params);
+            p.append(")");
+            returnType.printRight(p);
+            QualifiedType.printQualifiers(p, cvQualifiers);
+            if (refQualifier != null) p.append(" ").append(refQualifier);
+            if (noexcept) p.append(" noexcept");
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return true;
+        }
+
+        @Override
+        boolean isFunction() {
+            return true;
+        }
+    }
+
+    private static final class FunctionEncoding extends Node {
+        final Node returnType;
+        final Node name;
+        final List<Node> params;
+        final int cvQualifiers;
+        final String refQualifier;
+
+        FunctionEncoding(Node returnType, Node name, List<Node> params, int cvQualifiers, String refQualifier) {
+            this.returnType = returnType;
+            this.name = name;
+            this.params = params;
+            this.cvQualifiers = cvQualifiers;
+            this.refQualifier = refQualifier;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            if (returnType != null) {
+                returnType.printLeft(p);
+                if (!returnType.hasRightPart()) p.append(" ");
+            }
+            name.print(p);
+        }
+
+        @Override
+        void printRight(Printer p) {
+            p.append("(");
+            p.printList(params);
+            p.append(")");
+            if (returnType != null) returnType.printRight(p);
+            QualifiedType.printQualifiers(p, cvQualifiers);
+            if (refQualifier != null) p.append(" ").append(refQualifier);
+        }
+
+        @Override
+        boolean hasRightPart() {
+            return true;
+        }
+
+        @Override
+        boolean isFunction() {
+            return true;
+        }
+    }
+
+    private static final class LambdaName extends Node {
+        final List<Node> params;
+        final String number;
+
+        LambdaName(List<Node> params, String number) {
+            this.params = params;
+            this.number = number;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.append("{lambda(");
+            p.printList(params);
+            p.append(")#").append(number).append("}");
+        }
+    }
+
+    /** A node printed after a fixed text, such as "vtable for " and the type. */
+    private static final class PrefixedNode extends Node {
+        final String prefix;
+        final Node node;
+
+        PrefixedNode(String prefix, Node node) {
+            this.prefix = prefix;
+            this.node = node;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.append(prefix);
+            node.print(p);
+        }
+    }
+
+    /** Two nodes printed with a separator between them, or a node followed by a suffix if the second node is null. */
+    private static final class JoinedNode extends Node {
+        final Node first;
+        final String separator;
+        final Node second;
+
+        JoinedNode(Node first, String separator, Node second) {
+            this.first = first;
+            this.separator = separator;
+            this.second = second;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            first.print(p);
+            p.append(separator);
+            if (second != null) second.print(p);
+        }
+    }
+
+    private static final class ParenthesizedNode extends Node {
+        final Node node;
+
+        ParenthesizedNode(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        void printLeft(Printer p) {
+            p.append("(");
+            node.print(p);
+            p.append(")");
+        }
+    }
+}
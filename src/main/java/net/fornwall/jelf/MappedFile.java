@@ -48,6 +48,15 @@ public class MappedFile implements BackingFile {
         return data.length;
     }
 
+    @Override
+    public ByteBuffer slice(long offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > mappedByteBuffer.limit()) {
+            throw new ElfException("Slice out of range (offset=" + offset + ", length=" + length + ", limit="
+                    + mappedByteBuffer.limit() + ")");
+        }
+        return mappedByteBuffer.slice((int) offset, length);
+    }
+
     public byte get() {
         return mappedByteBuffer.get();
     }
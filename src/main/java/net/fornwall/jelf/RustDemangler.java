@@ -0,0 +1,715 @@
+package net.fornwall.jelf;
+
+import java.math.BigInteger;
+
+/**
+ * Demangler for Rust symbol names, in both the legacy scheme (Itanium-like names ending with a hash) and the v0 scheme
+ * (names starting with "_R").
+ * <p>
+ * The output follows the concise form of the rustc-demangle crate, as printed by tools such as rustfilt: hashes and
+ * crate disambiguators are left out, as are the types of constant generic arguments.
+ *
+ * @see <a href="https://doc.rust-lang.org/rustc/symbol-mangling/v0.html">v0 Symbol Format</a>
+ */
+final class RustDemangler {
+
+    /** Limit on the nesting of paths and types, guarding against stack overflows on malicious input. */
+    private static final int MAX_DEPTH = 256;
+
+    /** Limit on the length of the demangled name, as back references allow the output to grow exponentially. */
+    private static final int MAX_LENGTH = 1 << 16;
+
+    private final String mangled;
+    /** Offset of the first character after "_R", from which back references are counted. */
+    private final int start;
+
+    private int pos;
+    private int depth;
+    private final StringBuilder out = new StringBuilder();
+    /** Number of lifetimes bound by the enclosing binders, used to name lifetimes. */
+    private int boundLifetimes;
+
+    private RustDemangler(String mangled, int start) {
+        this.mangled = mangled;
+        this.start = start;
+        this.pos = start;
+    }
+
+    /**
+     * Demangles a Rust v0 symbol name.
+     *
+     * @param mangled the mangled name, starting with "_R"
+     * @return the demangled name, or null if the name could not be demangled
+     */
+    static String demangleV0(String mangled) {
+        if (!mangled.startsWith("_R")) return null;
+        try {
+            RustDemangler demangler = new RustDemangler(mangled, 2);
+            // A decimal encoding version would precede the path, but no version other than the implicit one exists.
+            if (Character.isDigit(demangler.peek())) return null;
+            demangler.printPath(true);
+            // The optional instantiating crate is not printed.
+            if (Character.isUpperCase(demangler.peek())) {
+                demangler.skipping(() -> demangler.printPath(false));
+            }
+            if (demangler.pos != mangled.length() && demangler.peek() != '.') return null;
+            return demangler.out.toString();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Demangles a legacy Rust symbol name, which is an Itanium nested name whose last component is a hash such as
+     * "h0123456789abcdef".
+     *
+     * @param mangled the mangled name
+     * @return the demangled name, or null if the name is not a legacy Rust name
+     */
+    static String demangleLegacy(String mangled) {
+        if (!mangled.startsWith("_ZN")) return null;
+        int end = mangled.indexOf('E', 3);
+        while (end >= 0 && end + 1 < mangled.length() && mangled.charAt(end + 1) != '.') {
+            end = mangled.indexOf('E', end + 1);
+        }
+        if (end < 0) return null;
+
+        StringBuilder result = new StringBuilder();
+        int i = 3;
+        while (i < end) {
+            int length = 0;
+            int digitsStart = i;
+            while (i < end && Character.isDigit(mangled.charAt(i))) {
+                length = length * 10 + (mangled.charAt(i++) - '0');
+                if (length > end) return null;
+            }
+            if (i == digitsStart || length == 0 || i + length > end) return null;
+            String component = mangled.substring(i, i + length);
+            i += length;
+            if (i == end) {
+                // The last component must be the hash, which is not printed.
+                return isLegacyHash(component) && result.length() > 0 ? result.toString() : null;
+            }
+            if (result.length() > 0) result.append("::");
+            if (!appendLegacyComponent(result, component)) return null;
+        }
+        return null;
+    }
+
+    private static boolean isLegacyHash(String component) {
+        if (component.length() != 17 || component.charAt(0) != 'h') return false;
+        for (int i = 1; i < 17; i++) {
+            if (Character.digit(component.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    /** Appends a legacy path component, decoding escapes such as "$LT$" and ".." into "<" and "::". */
+    private static boolean appendLegacyComponent(StringBuilder result, String component) {
+        int i = component.startsWith("_$") ? 1 : 0;
+        while (i < component.length()) {
+            char c = component.charAt(i);
+            if (c == '.') {
+                if (component.startsWith("..", i)) {
+                    result.append("::");
+                    i += 2;
+                } else {
+                    result.append('.');
+                    i++;
+                }
+            } else if (c == '$') {
+                int escapeEnd = component.indexOf('$', i + 1);
+                if (escapeEnd < 0) return false;
+                String escape = component.substring(i + 1, escapeEnd);
+                switch (escape) {
+                    case "SP":
+                        result.append('@');
+                        break;
+                    case "BP":
+                        result.append('*');
+                        break;
+                    case "RF":
+                        result.append('&');
+                        break;
+                    case "LT":
+                        result.append('<');
+                        break;
+                    case "GT":
+                        result.append('>');
+                        break;
+                    case "LP":
+                        result.append('(');
+                        break;
+                    case "RP":
+                        result.append(')');
+                        break;
+                    case "C":
+                        result.append(',');
+                        break;
+                    default:
+                        if (escape.length() < 2 || escape.charAt(0) != 'u') return false;
+                        int codePoint;
+                        try {
+                            codePoint = Integer.parseInt(escape.substring(1), 16);
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                        if (!Character.isValidCodePoint(codePoint)) return false;
+                        result.appendCodePoint(codePoint);
+                        break;
+                }
+                i = escapeEnd + 1;
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // v0 parsing and printing
+    // ---------------------------------------------------------------------------------------------------------------
+
+    private char peek() {
+        return (pos < mangled.length()) ? mangled.charAt(pos) : '\0';
+    }
+
+    private boolean consume(char c) {
+        if (peek() != c) return false;
+        pos++;
+        return true;
+    }
+
+    private char next() {
+        if (pos >= mangled.length()) throw fail();
+        return mangled.charAt(pos++);
+    }
+
+    private IllegalArgumentException fail() {
+        return new IllegalArgumentException("Unable to demangle " + mangled + " at index " + pos);
+    }
+
+    private RustDemangler print(String s) {
+        out.append(s);
+        if (out.length() > MAX_LENGTH) throw fail();
+        return this;
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) throw fail();
+    }
+
+    /** Parses the production printed by {@code action} without keeping its output. */
+    private void skipping(Runnable action) {
+        int length = out.length();
+        action.run();
+        out.setLength(length);
+    }
+
+    /**
+     * Parses a base 62 number terminated by '_', where "_" alone is zero and other numbers are offset by one. Numbers
+     * too large for a long, such as crate hashes, saturate at {@link Long#MAX_VALUE}.
+     */
+    private long parseBase62() {
+        if (consume('_')) return 0;
+        long value = 0;
+        boolean overflow = false;
+        while (!consume('_')) {
+            char c = next();
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 36;
+            } else {
+                throw fail();
+            }
+            if (value > (Long.MAX_VALUE - 1 - digit) / 62) {
+                overflow = true;
+            } else {
+                value = value * 62 + digit;
+            }
+        }
+        return overflow ? Long.MAX_VALUE : value + 1;
+    }
+
+    private long parseDisambiguator() {
+        if (!consume('s')) return 0;
+        long value = parseBase62();
+        return (value == Long.MAX_VALUE) ? value : value + 1;
+    }
+
+    private int parseDecimal() {
+        if (!Character.isDigit(peek())) throw fail();
+        if (peek() == '0') {
+            pos++;
+            return 0;
+        }
+        long value = 0;
+        while (Character.isDigit(peek())) {
+            value = value * 10 + (next() - '0');
+            if (value > Integer.MAX_VALUE) throw fail();
+        }
+        return (int) value;
+    }
+
+    /** Parses an identifier without a disambiguator, decoding Punycode identifiers. */
+    private String parseIdentifier() {
+        boolean punycode = consume('u');
+        int length = parseDecimal();
+        consume('_');
+        if (pos + length > mangled.length()) throw fail();
+        String identifier = mangled.substring(pos, pos + length);
+        pos += length;
+        return punycode ? decodePunycode(identifier) : identifier;
+    }
+
+    /** Follows a back reference, running {@code action} at its target and then continuing after the reference. */
+    private void backref(Runnable action) {
+        int referenceStart = pos - 1;
+        long target = start + parseBase62();
+        if (target >= referenceStart) throw fail();
+        int resume = pos;
+        pos = (int) target;
+        enter();
+        try {
+            action.run();
+        } finally {
+            depth--;
+        }
+        pos = resume;
+    }
+
+    private void printPath(boolean inValue) {
+        enter();
+        try {
+            char tag = next();
+            switch (tag) {
+                case 'C':
+                    parseDisambiguator();
+                    print(parseIdentifier());
+                    break;
+                case 'N':
+                    char namespace = next();
+                    if (!Character.isLetter(namespace)) throw fail();
+                    printPath(inValue);
+                    long disambiguator = parseDisambiguator();
+                    String name = parseIdentifier();
+                    if (Character.isUpperCase(namespace)) {
+                        print("::{").print(namespace == 'C' ? "closure" : namespace == 'S' ? "shim" : "" + namespace);
+                        if (!name.isEmpty()) print(":").print(name);
+                        print("#").print(Long.toString(disambiguator)).print("}");
+                    } else if (!name.isEmpty()) {
+                        print("::").print(name);
+                    }
+                    break;
+                case 'M':
+                case 'X':
+                case 'Y':
+                    if (tag != 'Y') {
+                        parseDisambiguator();
+                        skipping(() -> printPath(false));
+                    }
+                    print("<");
+                    printType();
+                    if (tag != 'M') {
+                        print(" as ");
+                        printPath(false);
+                    }
+                    print(">");
+                    break;
+                case 'I':
+                    printPath(inValue);
+                    if (inValue) print("::");
+                    print("<");
+                    printGenericArgs();
+                    print(">");
+                    break;
+                case 'B':
+                    backref(() -> printPath(inValue));
+                    break;
+                default:
+                    throw fail();
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    /** Prints generic arguments separated by ", " up to and including the terminating 'E'. */
+    private void printGenericArgs() {
+        for (int i = 0; !consume('E'); i++) {
+            if (i > 0) print(", ");
+            printGenericArg();
+        }
+    }
+
+    private void printGenericArg() {
+        if (consume('L')) {
+            printLifetime(parseBase62());
+        } else if (consume('K')) {
+            printConst();
+        } else {
+            printType();
+        }
+    }
+
+    private void printLifetime(long index) {
+        print("'");
+        if (index == 0) {
+            print("_");
+            return;
+        }
+        long depthOfBinder = boundLifetimes - index;
+        if (depthOfBinder < 0) throw fail();
+        if (depthOfBinder < 26) {
+            print(String.valueOf((char) ('a' + depthOfBinder)));
+        } else {
+            print("_").print(Long.toString(depthOfBinder));
+        }
+    }
+
+    /** Parses an optional binder, printing "for<'a, 'b> " for the lifetimes it binds. */
+    private int parseBinder() {
+        if (!consume('G')) return 0;
+        long count = parseBase62() + 1;
+        if (count > MAX_DEPTH) throw fail();
+        print("for<");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) print(", ");
+            boundLifetimes++;
+            printLifetime(1);
+        }
+        print("> ");
+        return (int) count;
+    }
+
+    private static String basicType(char tag) {
+        switch (tag) {
+            case 'a':
+                return "i8";
+            case 'b':
+                return "bool";
+            case 'c':
+                return "char";
+            case 'd':
+                return "f64";
+            case 'e':
+                return "str";
+            case 'f':
+                return "f32";
+            case 'h':
+                return "u8";
+            case 'i':
+                return "isize";
+            case 'j':
+                return "usize";
+            case 'l':
+                return "i32";
+            case 'm':
+                return "u32";
+            case 'n':
+                return "i128";
+            case 'o':
+                return "u128";
+            case 's':
+                return "i16";
+            case 't':
+                return "u16";
+            case 'u':
+                return "()";
+            case 'v':
+                return "...";
+            case 'x':
+                return "i64";
+            case 'y':
+                return "u64";
+            case 'z':
+                return "!";
+            case 'p':
+                return "_";
+            default:
+                return null;
+        }
+    }
+
+    private void printType() {
+        enter();
+        try {
+            char tag = next();
+            String basic = basicType(tag);
+            if (basic != null) {
+                print(basic);
+                return;
+            }
+            switch (tag) {
+                case 'R':
+                case 'Q':
+                    print("&");
+                    if (consume('L')) {
+                        long lifetime = parseBase62();
+                        if (lifetime != 0) {
+                            printLifetime(lifetime);
+                            print(" ");
+                        }
+                    }
+                    if (tag == 'Q') print("mut ");
+                    printType();
+                    break;
+                case 'P':
+                    print("*const ");
+                    printType();
+                    break;
+                case 'O':
+                    print("*mut ");
+                    printType();
+                    break;
+                case 'A':
+                case 'S':
+                    print("[");
+                    printType();
+                    if (tag == 'A') {
+                        print("; ");
+                        printConst();
+                    }
+                    print("]");
+                    break;
+                case 'T':
+                    print("(");
+                    int count = 0;
+                    for (; !consume('E'); count++) {
+                        if (count > 0) print(", ");
+                        printType();
+                    }
+                    if (count == 1) print(",");
+                    print(")");
+                    break;
+                case 'F':
+                    printFnSig();
+                    break;
+                case 'D':
+                    printDynBounds();
+                    break;
+                case 'B':
+                    backref(this::printType);
+                    break;
+                default:
+                    pos--;
+                    printPath(false);
+                    break;
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    private void printFnSig() {
+        int bound = parseBinder();
+        if (consume('U')) print("unsafe ");
+        if (consume('K')) {
+            print("extern \"");
+            print(consume('C') ? "C" : parseIdentifier().replace('_', '-'));
+            print("\" ");
+        }
+        print("fn(");
+        for (int i = 0; !consume('E'); i++) {
+            if (i > 0) print(", ");
+            printType();
+        }
+        print(")");
+        if (consume('u')) {
+            // Returning the unit type is not printed.
+        } else {
+            print(" -> ");
+            printType();
+        }
+        boundLifetimes -= bound;
+    }
+
+    private void printDynBounds() {
+        print("dyn ");
+        int bound = parseBinder();
+        for (int i = 0; !consume('E'); i++) {
+            if (i > 0) print(" + ");
+            printDynTrait();
+        }
+        boundLifetimes -= bound;
+        if (!consume('L')) throw fail();
+        long lifetime = parseBase62();
+        if (lifetime != 0) {
+            print(" + ");
+            printLifetime(lifetime);
+        }
+    }
+
+    private void printDynTrait() {
+        boolean open = printPathMaybeOpenGenerics();
+        while (consume('p')) {
+            print(open ? ", " : "<");
+            open = true;
+            print(parseIdentifier()).print(" = ");
+            printType();
+        }
+        if (open) print(">");
+    }
+
+    /** Prints a path, leaving its generic arguments open so that associated type bindings can be added. */
+    private boolean printPathMaybeOpenGenerics() {
+        if (consume('B')) {
+            boolean[] open = new boolean[1];
+            backref(() -> open[0] = printPathMaybeOpenGenerics());
+            return open[0];
+        }
+        if (consume('I')) {
+            printPath(false);
+            print("<");
+            printGenericArgs();
+            return true;
+        }
+        printPath(false);
+        return false;
+    }
+
+    private void printConst() {
+        enter();
+        try {
+            if (consume('B')) {
+                backref(this::printConst);
+                return;
+            }
+            char type = next();
+            if (type == 'p') {
+                print("_");
+                return;
+            }
+            boolean negative = false;
+            switch (type) {
+                case 'a':
+                case 's':
+                case 'l':
+                case 'x':
+                case 'n':
+                case 'i':
+                    negative = consume('n');
+                    break;
+                case 'h':
+                case 't':
+                case 'm':
+                case 'y':
+                case 'o':
+                case 'j':
+                case 'b':
+                case 'c':
+                    break;
+                default:
+                    throw fail();
+            }
+            int hexStart = pos;
+            while (!consume('_')) {
+                if (Character.digit(next(), 16) < 0) throw fail();
+            }
+            String hex = mangled.substring(hexStart, pos - 1);
+            BigInteger value = hex.isEmpty() ? BigInteger.ZERO : new BigInteger(hex, 16);
+            if (type == 'b') {
+                if (value.equals(BigInteger.ZERO)) {
+                    print("false");
+                } else if (value.equals(BigInteger.ONE)) {
+                    print("true");
+                } else {
+                    throw fail();
+                }
+            } else if (type == 'c') {
+                if (value.bitLength() > 21 || !Character.isValidCodePoint(value.intValue())) throw fail();
+                print(quoteChar(value.intValue()));
+            } else if (hex.length() > 32) {
+                throw fail();
+            } else {
+                print(negative ? "-" : "").print(value.toString());
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    private static String quoteChar(int codePoint) {
+        switch (codePoint) {
+            case '\t':
+                return "'\\t'";
+            case '\n':
+                return "'\\n'";
+            case '\r':
+                return "'\\r'";
+            case '\'':
+                return "'\\''";
+            case '\\':
+                return "'\\\\'";
+            case 0:
+                return "'\\0'";
+            default:
+                if (Character.isISOControl(codePoint) || !Character.isDefined(codePoint)) {
+                    return "'\\u{" + Integer.toHexString(codePoint) + "}'";
+                }
+                return "'" + new String(Character.toChars(codePoint)) + "'";
+        }
+    }
+
+    /** Decodes a Punycode identifier as used by Rust, where '_' separates the basic code points from the deltas. */
+    private String decodePunycode(String encoded) {
+        int separator = encoded.lastIndexOf('_');
+        StringBuilder decoded = new StringBuilder();
+        int[] codePoints = new int[encoded.length()];
+        int length = 0;
+        if (separator >= 0) {
+            for (int i = 0; i < separator; i++) codePoints[length++] = encoded.charAt(i);
+        }
+
+        final int base = 36;
+        int n = 0x80;
+        int bias = 72;
+        int i = 0;
+        for (int in = separator + 1; in < encoded.length(); ) {
+            int oldI = i;
+            int weight = 1;
+            for (int k = base; ; k += base) {
+                if (in >= encoded.length()) throw fail();
+                char c = encoded.charAt(in++);
+                int digit;
+                if (c >= 'a' && c <= 'z') {
+                    digit = c - 'a';
+                } else if (c >= '0' && c <= '9') {
+                    digit = c - '0' + 26;
+                } else {
+                    throw fail();
+                }
+                if (digit > (Integer.MAX_VALUE - i) / weight) throw fail();
+                i += digit * weight;
+                int threshold = (k <= bias) ? 1 : Math.min(k - bias, 26);
+                if (digit < threshold) break;
+                if (weight > Integer.MAX_VALUE / (base - threshold)) throw fail();
+                weight *= base - threshold;
+            }
+
+            // Adapt the bias, as described in RFC 3492 section 6.1.
+            int delta = (oldI == 0) ? (i - oldI) / 700 : (i - oldI) / 2;
+            delta += delta / (length + 1);
+            int k = 0;
+            while (delta > ((base - 1) * 26) / 2) {
+                delta /= base - 1;
+                k += base;
+            }
+            bias = k + (base * delta) / (delta + 38);
+
+            n += i / (length + 1);
+            i %= length + 1;
+            if (!Character.isValidCodePoint(n) || length == codePoints.length) throw fail();
+            System.arraycopy(codePoints, i, codePoints, i + 1, length - i);
+            codePoints[i++] = n;
+            length++;
+        }
+        for (int j = 0; j < length; j++) decoded.appendCodePoint(codePoints[j]);
+        return decoded.toString();
+    }
+}
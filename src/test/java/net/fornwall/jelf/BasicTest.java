@@ -55,6 +55,37 @@ class BasicTest {
             Assertions.assertEquals(new ElfDynamicSection.ElfDynamicStructure(0x17, 0x8868), dynamic.entries.get(2));
             Assertions.assertEquals(new ElfDynamicSection.ElfDynamicStructure(0x6ffffffb, 1), dynamic.entries.get(24));
             Assertions.assertEquals(new ElfDynamicSection.ElfDynamicStructure(0, 0), dynamic.entries.get(25));
+            Assertions.assertEquals(26, dynamic.size());
+            Assertions.assertEquals(ElfDynamicSection.DT_FLAGS_1, dynamic.getTag(24));
+            Assertions.assertEquals(1, dynamic.getValue(24));
+
+            Assertions.assertEquals(13, dynamic.indexOf(ElfDynamicSection.DT_NEEDED));
+            Assertions.assertEquals(25, dynamic.indexOf(ElfDynamicSection.DT_NULL));
+            Assertions.assertEquals(-1, dynamic.indexOf(ElfDynamicSection.DT_GNU_HASH));
+            Assertions.assertFalse(dynamic.hasTag(ElfDynamicSection.DT_SONAME));
+            Assertions.assertEquals(-2, dynamic.getValueOfTag(ElfDynamicSection.DT_SONAME, -2));
+            Assertions.assertNull(dynamic.getSoName());
+            Assertions.assertNull(dynamic.getRPath());
+            Assertions.assertEquals(0x86ac, dynamic.getHashTableAddress());
+            Assertions.assertEquals(0, dynamic.getGnuHashTableAddress());
+            Assertions.assertEquals(0x8128, dynamic.getSymbolTableAddress());
+            Assertions.assertEquals(16, dynamic.getSymbolEntrySize());
+            Assertions.assertEquals(0x8828, dynamic.getRelAddress());
+            Assertions.assertEquals(64, dynamic.getRelSize());
+            Assertions.assertEquals(8, dynamic.getRelEntrySize());
+            Assertions.assertEquals(0, dynamic.getRelaAddress());
+            Assertions.assertEquals(0x8868, dynamic.getPltRelocationAddress());
+            Assertions.assertEquals(352, dynamic.getPltRelocationSize());
+            Assertions.assertEquals(ElfDynamicSection.DT_REL, dynamic.getPltRelocationType());
+            Assertions.assertEquals(0xbdfc, dynamic.getInitArrayAddress());
+            Assertions.assertEquals(16, dynamic.getInitArraySize());
+            Assertions.assertEquals(0xbdf4, dynamic.getFiniArrayAddress());
+            Assertions.assertEquals(8, dynamic.getFiniArraySize());
+            Assertions.assertEquals(0xbe0c, dynamic.getPreinitArrayAddress());
+            Assertions.assertEquals(8, dynamic.getPreinitArraySize());
+            Assertions.assertThrows(
+                    UnsupportedOperationException.class,
+                    () -> dynamic.entries.add(new ElfDynamicSection.ElfDynamicStructure(0, 0)));
 
             TestHelper.validateHashTable(file);
         });
@@ -161,6 +192,15 @@ class BasicTest {
 
             ElfDynamicSection ds = file.getDynamicSection();
             Assertions.assertEquals(Collections.singletonList("libc.so.6"), ds.getNeededLibraries());
+            Assertions.assertEquals(27, ds.size());
+            Assertions.assertEquals(0x298, ds.getGnuHashTableAddress());
+            Assertions.assertEquals(0x2098, ds.getRelaAddress());
+            Assertions.assertEquals(7224, ds.getRelaSize());
+            Assertions.assertEquals(24, ds.getRelaEntrySize());
+            Assertions.assertEquals(ElfDynamicSection.DT_RELA, ds.getPltRelocationType());
+            Assertions.assertEquals(0x1ea0, ds.getVersionSymbolTableAddress());
+            Assertions.assertEquals(0x2028, ds.getVersionRequirementAddress());
+            Assertions.assertEquals(1, ds.getVersionRequirementCount());
 
             Assertions.assertEquals("/lib64/ld-linux-x86-64.so.2", file.getInterpreter());
 
@@ -0,0 +1,132 @@
+package net.fornwall.jelf;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfDemanglerTest {
+
+    private static void assertDemangled(String[][] namesAndExpected) {
+        ElfDemangler demangler = new ElfDemangler(0);
+        for (String[] nameAndExpected : namesAndExpected) {
+            Assertions.assertEquals(nameAndExpected[1], demangler.demangle(nameAndExpected[0]), nameAndExpected[0]);
+        }
+    }
+
+    @Test
+    void itaniumNames() {
+        // Expected values as printed by GNU c++filt.
+        assertDemangled(new String[][] {
+            {"_Z1fSs", "f(std::basic_string<char, std::char_traits<char>, std::allocator<char> >)"},
+            {"_ZNKSt5ctypeIwE9do_narrowEPKwS2_cPc",
+                "std::ctype<wchar_t>::do_narrow(wchar_t const*, wchar_t const*, char, char*) const"},
+            {"_ZNSt6vectorIiSaIiEE12emplace_backIJiEEERiDpOT_",
+                "int& std::vector<int, std::allocator<int> >::emplace_back<int>(int&&)"},
+            {"_ZN13GCLogPrecious16vwrite_and_debugE15LogTargetHandlePKcP13__va_list_tag",
+                "GCLogPrecious::vwrite_and_debug(LogTargetHandle, char const*, __va_list_tag*)"},
+            {"_ZTVN10__cxxabiv120__function_type_infoE", "vtable for __cxxabiv1::__function_type_info"},
+            {"_ZThn8_N3Foo3barEv", "non-virtual thunk to Foo::bar()"},
+            {"_ZZ4mainENKUlvE_clEv", "main::{lambda()#1}::operator()() const"},
+            {"_Z1fPFPFivEvE", "f(int (*(*)())())"},
+            {"_Z1fM3FooKFviE", "f(void (Foo::*)(int) const)"},
+            {"_ZN3FooltIiEEbv", "bool Foo::operator< <int>()"},
+            {"_ZN3Foo3barB5cxx11Ev", "Foo::bar[abi:cxx11]()"},
+            {"_ZN12_GLOBAL__N_13fooEv", "(anonymous namespace)::foo()"},
+            {"_Z3foov.constprop.0.isra.0", "foo() [clone .constprop.0] [clone .isra.0]"},
+            {"_ZGVZ4mainE1x", "guard variable for main::x"},
+        });
+    }
+
+    @Test
+    void itaniumReferenceCollapsing() {
+        // Forwarding references to reference template arguments, directly and through a pack.
+        assertDemangled(new String[][] {
+            {"_ZN4absl7debian34Cord10AppendImplIRKS1_EEvOT_",
+                "void absl::debian3::Cord::AppendImpl<absl::debian3::Cord const&>(absl::debian3::Cord const&)"},
+            {"_ZSt7forwardIRiEOT_RNSt16remove_referenceIS1_E4typeE",
+                "int& std::forward<int&>(std::remove_reference<int&>::type&)"},
+            {"_ZNSt6vectorIiSaIiEE12emplace_backIJRiEEEvDpOT_",
+                "void std::vector<int, std::allocator<int> >::emplace_back<int&>(int&)"},
+            {"_Z1fIOiEvOT_", "void f<int&&>(int&&)"},
+        });
+    }
+
+    @Test
+    void itaniumLocalNamesOmitReturnType() {
+        assertDemangled(new String[][] {
+            {"_ZZNSt8__detail18__to_chars_10_implIjEEvPcjT_E8__digits",
+                "std::__detail::__to_chars_10_impl<unsigned int>(char*, unsigned int, unsigned int)::__digits"},
+            {"_ZZZ3fooIiEvvENKUlvE_clEvE1x", "foo<int>()::{lambda()#1}::operator()() const::x"},
+        });
+    }
+
+    @Test
+    void rustLegacyNames() {
+        assertDemangled(new String[][] {
+            {"_ZN4core3fmt9Formatter3pad17h1234567890abcdefE", "core::fmt::Formatter::pad"},
+            {"_ZN71_$LT$Test$u20$$u2b$$u20$$u27$static$u20$as$u20$foo..Bar$LT$Test$GT$$GT$3bar17h930b740aa94f1d3aE",
+                "<Test + 'static as foo::Bar<Test>>::bar"},
+            {"_ZN5alloc7raw_vec19RawVec$LT$T$C$A$GT$7reserve21do_reserve_and_handle17hd2b8ac2fa4a9e6a4E",
+                "alloc::raw_vec::RawVec<T,A>::reserve::do_reserve_and_handle"},
+            {"_ZN3foo3bar17h05af221e174051e9E.llvm.1234", "foo::bar"},
+        });
+    }
+
+    @Test
+    void rustV0Names() {
+        assertDemangled(new String[][] {
+            {"_RNvC6_123foo3bar", "123foo::bar"},
+            {"_RNCNCNgCs6DXkGYLi8lr_2cc5spawn00B5_", "cc::spawn::{closure#0}::{closure#0}"},
+            {"_RNCINkXs25_NgCsbmNqQUJIY6D_4core5sliceINyB9_4IterhENuNgNoBb_4iter8iterator8Iterator9rposition"
+                    + "NCNgNpB9_6memchr7memrchrs_0E0Bb_",
+                "<core::slice::Iter<u8> as core::iter::iterator::Iterator>::rposition"
+                    + "::<core::slice::memchr::memrchr::{closure#1}>::{closure#0}"},
+            {"_RINbNbCskIICzLVDPPb_5alloc5alloc8box_freeDINbNiB4_5boxed5FnBoxuEp6OutputuEL_ECs1iopQbuBiw2_3std",
+                "alloc::alloc::box_free::<dyn alloc::boxed::FnBox<(), Output = ()>>"},
+            {"_RMC0INtC8arrayvec8ArrayVechKj7b_E", "<arrayvec::ArrayVec<u8, 123>>"},
+            {"_RMCs4fqI2P2rA04_13const_genericINtB0_6SignedKanb_E", "<const_generic::Signed<-11>>"},
+            {"_RMCs4fqI2P2rA04_13const_genericINtB0_4CharKca_E", "<const_generic::Char<'\\n'>>"},
+            {"_RNqCs4fqI2P2rA04_11utf8_identsu30____7hkackfecea1cbdathfdh9hlq6y",
+                "utf8_idents::საჭმელად_გემრიელი_სადილი"},
+            {"_RINvCs7qp2U7fqm6G_6simple1fTRShRNtNtCs3gQkVPgRlkb_4core3str3strEEB2_",
+                "simple::f::<(&[u8], &core::str::str)>"},
+            {"_RINvCsfdbXJhtSPKA_6simple3fooFUKCEhEB2_", "simple::foo::<unsafe extern \"C\" fn() -> u8>"},
+            {"_RINvCsfdbXJhtSPKA_6simple3fooFG0_RL1_hRL0_hEuEB2_",
+                "simple::foo::<for<'a, 'b> fn(&'a u8, &'b u8)>"},
+            {"_RNvYNtCs1234_3foo3BarNtB4_5Trait4what", "<foo::Bar as foo::Trait>::what"},
+            {"_RINvCsfdbXJhtSPKA_6simple3fooRAyj4_EB2_", "simple::foo::<&[u64; 4]>"},
+        });
+    }
+
+    @Test
+    void invalidNamesAreReturnedAsIs() {
+        assertDemangled(new String[][] {
+            {"main", "main"},
+            {"_Z", "_Z"},
+            {"_Zfoo", "_Zfoo"},
+            {"_RNvNtCs1234_3foo3barC", "_RNvNtCs1234_3foo3barC"},
+            {"_RB_", "_RB_"},
+            {"_ZN3foo3barE", "foo::bar"},
+        });
+        Assertions.assertNull(ElfDemangler.getDefault().demangle(null));
+    }
+
+    @Test
+    void cachedNamesAreReused() {
+        ElfDemangler demangler = new ElfDemangler(4);
+        for (int i = 0; i < 10; i++) {
+            String name = "_Z1fv" + (i % 3 == 0 ? "" : ".part." + i);
+            String demangled = demangler.demangle(name);
+            Assertions.assertEquals(i % 3 == 0 ? "f()" : "f() [clone .part." + i + "]", demangled);
+        }
+        Assertions.assertSame(demangler.demangle("_Z1fv"), demangler.demangle("_Z1fv"));
+    }
+
+    @Test
+    void symbolsWithoutMangledNames() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            for (ElfSymbol symbol : file.getDynamicSymbolTableSection().symbols) {
+                Assertions.assertEquals(symbol.getName(), symbol.getDemangledName());
+            }
+        });
+    }
+}
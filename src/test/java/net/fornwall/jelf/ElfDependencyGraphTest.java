@@ -0,0 +1,94 @@
+package net.fornwall.jelf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfDependencyGraphTest {
+
+    private static Path resource(String fileName) throws Exception {
+        return Paths.get(Objects.requireNonNull(BasicTest.class.getResource('/' + fileName)).toURI());
+    }
+
+    private static void deleteDirectory(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void cyclesAreDetected() throws Exception {
+        // libcycle_a.so and libcycle_b.so need each other and have the run path $ORIGIN.
+        Path directory = Files.createTempDirectory("jelf-graph").toRealPath();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Path a = directory.resolve("libcycle_a.so");
+            Path b = directory.resolve("libcycle_b.so");
+            Files.copy(resource("linux_amd64_libcycle_a"), a);
+            Files.copy(resource("linux_amd64_libcycle_b"), b);
+            // Loaded through a hard link, libcycle_a.so is still recognized as the same file when needed again.
+            Path link = Files.createLink(directory.resolve("liblink.so"), a);
+
+            ElfSymbolResolver resolver = new ElfSymbolResolver(Collections.emptyList());
+            ElfDependencyGraph graph = resolver.loadGraph(link, executor);
+            List<ElfSymbolResolver.LoadedObject> objects = graph.getObjects();
+            Assertions.assertEquals(2, objects.size());
+            Assertions.assertEquals(link, objects.get(0).getPath());
+            Assertions.assertEquals(b, objects.get(1).getPath());
+            Assertions.assertEquals(Collections.singletonList(objects.get(1)), graph.getDependencies(objects.get(0)));
+            Assertions.assertEquals(Collections.singletonList(objects.get(0)), graph.getDependencies(objects.get(1)));
+            Assertions.assertEquals(Collections.singletonList(objects), graph.getCycles());
+            Assertions.assertEquals(Collections.emptyList(), graph.getScope().getMissingLibraries());
+
+            // Files are parsed once per resolver.
+            ElfDependencyGraph again = resolver.loadGraph(a, executor);
+            Assertions.assertEquals(a, again.getObjects().get(0).getPath());
+            Assertions.assertSame(objects.get(0).getFile(), again.getObjects().get(0).getFile());
+            Assertions.assertSame(objects.get(1).getFile(), again.getObjects().get(1).getFile());
+        } finally {
+            executor.shutdown();
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    void missingLibrariesAreReported() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-graph").toRealPath();
+        try {
+            Path executable = directory.resolve("usesversioned");
+            Files.copy(resource("linux_amd64_usesversioned"), executable);
+
+            ElfSymbolResolver resolver = new ElfSymbolResolver(Collections.emptyList());
+            ElfDependencyGraph graph = resolver.loadGraph(executable, Runnable::run);
+            ElfSymbolResolver.LoadedObject root = graph.getObjects().get(0);
+            Assertions.assertEquals(1, graph.getObjects().size());
+            Assertions.assertEquals(Collections.emptyList(), graph.getDependencies(root));
+            Assertions.assertEquals(Collections.singletonList("libversioned.so"), graph.getMissingLibraries(root));
+            Assertions.assertEquals(Collections.emptyList(), graph.getCycles());
+
+            Files.createDirectory(directory.resolve("lib"));
+            Files.copy(resource("linux_amd64_libversioned"), directory.resolve("lib/libversioned.so"));
+            graph = resolver.loadGraph(executable, Runnable::run);
+            Assertions.assertEquals(
+                    Arrays.asList("usesversioned", "libversioned.so"),
+                    Arrays.asList(
+                            graph.getObjects().get(0).getPath().getFileName().toString(),
+                            graph.getObjects().get(1).getName()));
+            Assertions.assertEquals(Collections.emptyList(), graph.getMissingLibraries(graph.getObjects().get(0)));
+            Files.delete(directory.resolve("lib/libversioned.so"));
+            Files.delete(directory.resolve("lib"));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfDynamicSegmentSectionsTest {
+
+    /** Removes the section header table from the ELF header, as done by sstrip. */
+    private static byte[] stripSectionHeaders(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.clone());
+        buffer.order(bytes[5] == ElfFile.DATA_LSB ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        if (bytes[4] == ElfFile.CLASS_32) {
+            buffer.putInt(0x20, 0).putShort(0x30, (short) 0).putShort(0x32, (short) 0);
+        } else {
+            buffer.putLong(0x28, 0).putShort(0x3C, (short) 0).putShort(0x3E, (short) 0);
+        }
+        return buffer.array();
+    }
+
+    private static void assertSameDynamicData(String fileName) throws Exception {
+        byte[] bytes = TestHelper.readResource(fileName);
+        ElfFile file = ElfFile.from(bytes);
+        ElfFile stripped = ElfFile.from(stripSectionHeaders(bytes));
+        Assertions.assertEquals(0, stripped.e_shnum);
+        Assertions.assertNull(stripped.getSymbolTableSection());
+
+        ElfDynamicSection dynamic = file.getDynamicSection();
+        ElfDynamicSection strippedDynamic = stripped.getDynamicSection();
+        Assertions.assertEquals(dynamic.size(), strippedDynamic.size());
+        for (int i = 0; i < dynamic.size(); i++) {
+            Assertions.assertEquals(dynamic.getTag(i), strippedDynamic.getTag(i));
+            Assertions.assertEquals(dynamic.getValue(i), strippedDynamic.getValue(i));
+        }
+        Assertions.assertEquals(dynamic.getNeededLibraries(), strippedDynamic.getNeededLibraries());
+
+        ElfStringTable strings = file.getDynamicStringTable();
+        ElfStringTable strippedStrings = stripped.getDynamicStringTable();
+        Assertions.assertEquals(strings.header.sh_size, strippedStrings.header.sh_size);
+        Assertions.assertEquals(strings.getNumStrings(), strippedStrings.getNumStrings());
+
+        ElfSymbol[] symbols = file.getDynamicSymbolTableSection().symbols;
+        ElfSymbol[] strippedSymbols = stripped.getDynamicSymbolTableSection().symbols;
+        Assertions.assertEquals(symbols.length, strippedSymbols.length);
+        for (int i = 0; i < symbols.length; i++) {
+            Assertions.assertEquals(symbols[i].getName(), strippedSymbols[i].getName());
+            Assertions.assertEquals(symbols[i].st_value, strippedSymbols[i].st_value);
+            if (symbols[i].st_shndx != 0 && symbols[i].getName() != null) {
+                Assertions.assertEquals(
+                        file.getELFSymbol(symbols[i].getName()).st_value,
+                        stripped.getELFSymbol(symbols[i].getName()).st_value);
+            }
+        }
+
+        ElfSymbolVersionSection versions = file.getSymbolVersionSection();
+        ElfSymbolVersionSection strippedVersions = stripped.getSymbolVersionSection();
+        Assertions.assertEquals(versions == null, strippedVersions == null);
+        if (versions != null) {
+            Assertions.assertEquals(versions.size(), strippedVersions.size());
+            for (int i = 0; i < versions.size(); i++) {
+                Assertions.assertEquals(versions.getVersionIndex(i), strippedVersions.getVersionIndex(i));
+                Assertions.assertEquals(
+                        versions.getVersionName(versions.getVersionIndex(i)),
+                        strippedVersions.getVersionName(strippedVersions.getVersionIndex(i)));
+            }
+        }
+    }
+
+    @Test
+    void gnuHashTable() throws Exception {
+        assertSameDynamicData("linux_amd64_bindash");
+        assertSameDynamicData("linux_amd64_libversioned");
+    }
+
+    @Test
+    void elfHashTable() throws Exception {
+        assertSameDynamicData("android_arm_tset");
+        assertSameDynamicData("android_arm_libncurses");
+    }
+
+    @Test
+    void versionedLookup() throws Exception {
+        ElfFile stripped = ElfFile.from(stripSectionHeaders(TestHelper.readResource("linux_amd64_libversioned")));
+        Assertions.assertEquals(0x1000, stripped.getELFSymbol("foo", "V1").st_value);
+        Assertions.assertEquals(0x1010, stripped.getELFSymbol("foo").st_value);
+        Assertions.assertEquals(0x1020, stripped.getELFSymbol("bar", "V2").st_value);
+        Assertions.assertNull(stripped.getELFSymbol("foo", "V3"));
+    }
+
+    @Test
+    void noDynamicSegment() throws Exception {
+        ElfFile stripped = ElfFile.from(stripSectionHeaders(TestHelper.readResource("go_amd64_notes")));
+        Assertions.assertNull(stripped.getDynamicSection());
+        Assertions.assertNull(stripped.getDynamicSymbolTableSection());
+        Assertions.assertNull(stripped.getDynamicStringTable());
+    }
+}
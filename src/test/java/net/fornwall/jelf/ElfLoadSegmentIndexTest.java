@@ -0,0 +1,65 @@
+package net.fornwall.jelf;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfLoadSegmentIndexTest {
+
+    @Test
+    void translation() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            ElfLoadSegmentIndex index = file.getLoadSegmentIndex();
+            Assertions.assertSame(index, file.getLoadSegmentIndex());
+            Assertions.assertEquals(2, index.size());
+            Assertions.assertEquals(0x21bda8, index.getSegment(1).p_vaddr);
+
+            Assertions.assertEquals(0x298, index.toFileOffset(0x298));
+            Assertions.assertEquals(0x1bda8, index.toFileOffset(0x21bda8));
+            Assertions.assertEquals(0x1bda8 + 0x1457, index.toFileOffset(0x21bda8 + 0x1457));
+            Assertions.assertEquals(0x21bda8, index.toVirtualAddress(0x1bda8));
+            Assertions.assertEquals(0x1b86b, index.toVirtualAddress(0x1b86b));
+
+            Assertions.assertEquals(1, index.indexOfAddress(0x21bda8 + 0x403f));
+            Assertions.assertEquals(-1, index.indexOfAddress(0x21bda8 + 0x4040));
+            Assertions.assertEquals(-1, index.indexOfAddress(0x1b86c));
+            Assertions.assertEquals(-1, index.indexOfFileOffset(0x1b86c));
+            // The zero-filled end of the data segment has no file contents.
+            Assertions.assertThrows(ElfException.class, () -> index.toFileOffset(0x21bda8 + 0x1458));
+            Assertions.assertThrows(ElfException.class, () -> index.toFileOffset(0x100000));
+            Assertions.assertThrows(ElfException.class, () -> index.toVirtualAddress(0x1bda0));
+
+            long[] addresses = {0x21bda8, 0x21bda9, 0x0, 0x21bda8 + 0x1458, 0x1b86c, 0x100};
+            long[] offsets = new long[addresses.length];
+            index.toFileOffsets(addresses, offsets);
+            Assertions.assertArrayEquals(new long[] {0x1bda8, 0x1bda9, 0x0, -1, -1, 0x100}, offsets);
+
+            long[] fileOffsets = {0x1bda8, 0x10, 0x1bda0, 0x1bda8 + 0x1457};
+            long[] virtualAddresses = new long[fileOffsets.length];
+            index.toVirtualAddresses(fileOffsets, virtualAddresses);
+            Assertions.assertArrayEquals(new long[] {0x21bda8, 0x10, -1, 0x21bda8 + 0x1457}, virtualAddresses);
+        });
+    }
+
+    @Test
+    void thirtyTwoBit() throws Exception {
+        TestHelper.parseFile("android_arm_tset", file -> {
+            ElfLoadSegmentIndex index = file.getLoadSegmentIndex();
+            Assertions.assertEquals(2, index.size());
+            Assertions.assertEquals(0x2cf0, index.toFileOffset(0xbcf0));
+            Assertions.assertEquals(0xbcf0, index.toVirtualAddress(0x2cf0));
+            long hashTableAddress = file.getDynamicSection().getHashTableAddress();
+            Assertions.assertEquals(0x86ac - 0x8000, index.toFileOffset(hashTableAddress));
+        });
+    }
+
+    @Test
+    void noLoadSegments() throws Exception {
+        TestHelper.parseFile("objectFile.o", file -> {
+            ElfLoadSegmentIndex index = file.getLoadSegmentIndex();
+            Assertions.assertEquals(0, index.size());
+            Assertions.assertEquals(-1, index.indexOfAddress(0));
+            Assertions.assertEquals(-1, index.indexOfFileOffset(0));
+            Assertions.assertThrows(ElfException.class, () -> index.toFileOffset(0));
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfMemoryImageTest {
+
+    @Test
+    void readsAtVirtualAddresses() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            ElfMemoryImage image = file.getMemoryImage();
+            Assertions.assertSame(image, file.getMemoryImage());
+            ElfDynamicSection dynamic = file.getDynamicSection();
+
+            Assertions.assertEquals("/lib64/ld-linux-x86-64.so.2", image.readCString(0x238));
+            Assertions.assertEquals(0x4f10, image.readPointer(dynamic.getInitArrayAddress()));
+            Assertions.assertEquals(0x4ed0, image.readLong(dynamic.getFiniArrayAddress()));
+            Assertions.assertEquals(0x4ed0, image.readInt(0x21bdb0));
+            Assertions.assertEquals((short) 0x4ed0, image.readShort(0x21bdb0));
+            Assertions.assertEquals((byte) 0xd0, image.readByte(0x21bdb0));
+            Assertions.assertEquals(
+                    file.getDynamicStringTable().get(1), image.readCString(dynamic.dt_strtab_offset + 1));
+
+            ByteBuffer slice = image.slice(0x21bda8, 16);
+            Assertions.assertTrue(slice.isReadOnly());
+            Assertions.assertEquals(ByteOrder.LITTLE_ENDIAN, slice.order());
+            Assertions.assertEquals(0x4f10, slice.getLong(0));
+            Assertions.assertEquals(0x4ed0, slice.getLong(8));
+        });
+    }
+
+    @Test
+    void zeroFilledMemory() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            ElfMemoryImage image = file.getMemoryImage();
+            // The data segment has 0x1458 bytes in the file, and is zero-filled up to 0x4040 bytes.
+            long fileEnd = 0x21bda8 + 0x1458;
+            Assertions.assertEquals(0, image.readLong(fileEnd));
+            Assertions.assertEquals(0, image.readByte(0x21bda8 + 0x403f));
+            Assertions.assertEquals("", image.readCString(fileEnd + 0x100));
+
+            // Reads spanning the end of the file contents combine both.
+            byte[] bytes = new byte[8];
+            image.read(fileEnd - 4, bytes, 0, 8);
+            Assertions.assertEquals(0, bytes[4] | bytes[5] | bytes[6] | bytes[7]);
+            Assertions.assertEquals(image.readInt(fileEnd - 4), image.readLong(fileEnd - 4));
+            Assertions.assertEquals(image.readInt(fileEnd - 4), image.slice(fileEnd - 4, 8).getLong());
+
+            Assertions.assertTrue(image.isMapped(0x21bda8 + 0x403f));
+            Assertions.assertFalse(image.isMapped(0x21bda8 + 0x4040));
+            Assertions.assertFalse(image.isMapped(0x1b86c));
+            Assertions.assertThrows(ElfException.class, () -> image.readLong(0x21bda8 + 0x403c));
+            Assertions.assertThrows(ElfException.class, () -> image.readInt(0x1b86c));
+        });
+    }
+
+    @Test
+    void thirtyTwoBit() throws Exception {
+        TestHelper.parseFile("android_arm_tset", file -> {
+            ElfMemoryImage image = file.getMemoryImage();
+            long initArray = file.getDynamicSection().getInitArrayAddress();
+            Assertions.assertEquals(-1, image.readInt(initArray));
+            Assertions.assertEquals(0, image.readPointer(initArray + 4));
+            Assertions.assertEquals("/system/bin/linker", image.readCString(file.getProgramHeader(1).p_vaddr));
+        });
+    }
+}
@@ -0,0 +1,276 @@
+package net.fornwall.jelf;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfPackedRelocationsTest {
+
+    /** Replaces the type, entry size and contents of a section, which must fit in the section. */
+    private static byte[] replaceSection(
+            byte[] bytes, ElfFile file, String name, int type, int entrySize, byte[] data) {
+        ElfSection section = file.firstSectionByName(name);
+        Assertions.assertTrue(data.length <= section.header.sh_size);
+        int index = 0;
+        while (file.getSection(index) != section) index++;
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        int header = (int) (file.e_shoff + index * file.e_shentsize);
+        buffer.putInt(header + 4, type);
+        if (file.is32Bits()) {
+            buffer.putInt(header + 0x14, data.length).putInt(header + 0x24, entrySize);
+        } else {
+            buffer.putLong(header + 0x20, data.length).putLong(header + 0x38, entrySize);
+        }
+        buffer.position((int) section.header.sh_offset);
+        buffer.put(data);
+        return buffer.array();
+    }
+
+    private static void writeSleb128(ByteArrayOutputStream out, long value) {
+        while (true) {
+            int b = (int) (value & 0x7f);
+            value >>= 7;
+            if ((value == 0 && (b & 0x40) == 0) || (value == -1 && (b & 0x40) != 0)) {
+                out.write(b);
+                return;
+            }
+            out.write(b | 0x80);
+        }
+    }
+
+    /**
+     * Packs relocations in the APS2 format, grouping runs with the same offset delta and info, and each other
+     * relocation in a group of its own.
+     */
+    private static byte[] packRelocations(long[] offsets, long[] infos, long[] addends) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {'A', 'P', 'S', '2'});
+        writeSleb128(out, offsets.length);
+        writeSleb128(out, 0);
+        long previousOffset = 0;
+        long previousAddend = 0;
+        int hasAddend = (addends == null) ? 0 : 8;
+        for (int i = 0; i < offsets.length; ) {
+            int end = i + 1;
+            while (end < offsets.length
+                    && infos[end] == infos[i]
+                    && offsets[end] - offsets[end - 1] == offsets[i] - previousOffset) {
+                end++;
+            }
+            writeSleb128(out, end - i);
+            if (end - i == 1) {
+                writeSleb128(out, hasAddend);
+                writeSleb128(out, offsets[i] - previousOffset);
+                writeSleb128(out, infos[i]);
+            } else {
+                writeSleb128(out, 1 | 2 | hasAddend);
+                writeSleb128(out, offsets[i] - previousOffset);
+                writeSleb128(out, infos[i]);
+            }
+            for (int j = i; j < end && addends != null; j++) {
+                // In a group of one, the addend follows the offset and info, which are written above.
+                writeSleb128(out, addends[j] - previousAddend);
+                previousAddend = addends[j];
+            }
+            previousOffset = offsets[end - 1];
+            i = end;
+        }
+        return out.toByteArray();
+    }
+
+    /** Encodes relocation offsets, which must be ascending and word aligned, in the RELR format. */
+    private static byte[] encodeRelr(List<Long> offsets, int wordSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(offsets.size() * wordSize).order(ByteOrder.LITTLE_ENDIAN);
+        int bits = wordSize * 8 - 1;
+        int i = 0;
+        while (i < offsets.size()) {
+            long base = offsets.get(i++);
+            putWord(buffer, base, wordSize);
+            base += wordSize;
+            while (true) {
+                long bitmap = 0;
+                while (i < offsets.size() && offsets.get(i) - base < (long) bits * wordSize) {
+                    bitmap |= 1L << ((offsets.get(i) - base) / wordSize);
+                    i++;
+                }
+                if (bitmap == 0) break;
+                putWord(buffer, (bitmap << 1) | 1, wordSize);
+                base += (long) bits * wordSize;
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static void putWord(ByteBuffer buffer, long value, int wordSize) {
+        if (wordSize == 4) {
+            buffer.putInt((int) value);
+        } else {
+            buffer.putLong(value);
+        }
+    }
+
+    @Test
+    void androidRelocationsWithAddends() throws Exception {
+        byte[] bytes = TestHelper.readResource("linux_amd64_bindash");
+        ElfFile file = ElfFile.from(bytes);
+        ElfRelocationAddend[] relocations =
+                ((ElfRelocationAddendSection) file.firstSectionByName(".rela.dyn")).relocations;
+        long[] offsets = new long[relocations.length];
+        long[] infos = new long[relocations.length];
+        long[] addends = new long[relocations.length];
+        for (int i = 0; i < relocations.length; i++) {
+            offsets[i] = relocations[i].r_offset;
+            infos[i] = relocations[i].r_info;
+            addends[i] = relocations[i].r_addend;
+        }
+        byte[] packed = packRelocations(offsets, infos, addends);
+        ElfFile packedFile = ElfFile.from(replaceSection(
+                bytes, file, ".rela.dyn", ElfSectionHeader.SHT_ANDROID_RELA, 1, packed));
+
+        ElfAndroidRelocationAddendSection section =
+                (ElfAndroidRelocationAddendSection) packedFile.firstSectionByName(".rela.dyn");
+        Assertions.assertEquals(relocations.length, section.size());
+        int i = 0;
+        for (ElfRelocationAddend relocation : section) {
+            Assertions.assertEquals(relocations[i], relocation);
+            Assertions.assertEquals(relocations[i].getType(), relocation.getType());
+            Assertions.assertEquals(relocations[i].getSymbolIndex(), relocation.getSymbolIndex());
+            i++;
+        }
+        Assertions.assertEquals(relocations.length, i);
+
+        int index = 0;
+        while (packedFile.getSection(index) != section) index++;
+        ElfRelocationTable table = packedFile.getRelocationTable(index);
+        Assertions.assertEquals(relocations.length, table.size());
+        for (int j = 0; j < relocations.length; j++) {
+            Assertions.assertEquals(relocations[j].r_offset, table.getOffset(j));
+            Assertions.assertEquals(relocations[j].r_info, table.getInfo(j));
+            Assertions.assertEquals(relocations[j].r_addend, table.getAddend(j));
+        }
+
+        // The packed relocations are applied as the unpacked ones.
+        ElfRelocatedImage relocated = packedFile.getMemoryImage().relocate(0x10000, symbol -> -1, Runnable::run);
+        Assertions.assertEquals(0x10000 + 0x4f10, relocated.readLong(0x21bda8));
+        Assertions.assertEquals(0x10000 + 0x21fc60, relocated.readLong(0x21c590));
+        Assertions.assertEquals(0, relocated.getSkippedCount());
+    }
+
+    @Test
+    void androidRelocationsWithoutAddends() throws Exception {
+        byte[] bytes = TestHelper.readResource("android_arm_tset");
+        ElfFile file = ElfFile.from(bytes);
+        ElfRelocation[] relocations = ((ElfRelocationSection) file.firstSectionByName(".rel.plt")).relocations;
+        long[] offsets = new long[relocations.length];
+        long[] infos = new long[relocations.length];
+        for (int i = 0; i < relocations.length; i++) {
+            offsets[i] = relocations[i].r_offset;
+            infos[i] = relocations[i].r_info;
+        }
+        byte[] packed = packRelocations(offsets, infos, null);
+        ElfFile packedFile = ElfFile.from(replaceSection(
+                bytes, file, ".rel.plt", ElfSectionHeader.SHT_ANDROID_REL, 1, packed));
+
+        ElfAndroidRelocationSection section = (ElfAndroidRelocationSection) packedFile.firstSectionByName(".rel.plt");
+        Assertions.assertEquals(relocations.length, section.size());
+        Iterator<ElfRelocation> iterator = section.iterator();
+        for (ElfRelocation expected : relocations) {
+            Assertions.assertTrue(iterator.hasNext());
+            Assertions.assertEquals(expected, iterator.next());
+        }
+        Assertions.assertFalse(iterator.hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    void groupedAddends() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {'A', 'P', 'S', '2'});
+        writeSleb128(out, 3);
+        writeSleb128(out, 0x1000);
+        // A group of three relocations with a shared offset delta, info and addend.
+        writeSleb128(out, 3);
+        writeSleb128(out, 1 | 2 | 4 | 8);
+        writeSleb128(out, 8);
+        writeSleb128(out, ElfRelocationTypes.R_AARCH64_RELATIVE);
+        writeSleb128(out, -16);
+        ElfPackedRelocationDecoder decoder =
+                new ElfPackedRelocationDecoder(ByteBuffer.wrap(out.toByteArray()), false, true);
+        Assertions.assertEquals(3, decoder.count);
+        for (long offset = 0x1008; offset <= 0x1018; offset += 8) {
+            Assertions.assertTrue(decoder.next());
+            Assertions.assertEquals(offset, decoder.offset);
+            Assertions.assertEquals(ElfRelocationTypes.R_AARCH64_RELATIVE, decoder.info);
+            Assertions.assertEquals(-16, decoder.addend);
+        }
+        Assertions.assertFalse(decoder.next());
+
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+        ElfPackedRelocationDecoder truncatedDecoder =
+                new ElfPackedRelocationDecoder(ByteBuffer.wrap(truncated), false, true);
+        Assertions.assertThrows(ElfException.class, truncatedDecoder::next);
+        Assertions.assertThrows(
+                ElfException.class,
+                () -> new ElfPackedRelocationDecoder(ByteBuffer.wrap(out.toByteArray()), false, false).next());
+        Assertions.assertThrows(
+                ElfException.class, () -> new ElfPackedRelocationDecoder(ByteBuffer.wrap(new byte[4]), false, true));
+    }
+
+    @Test
+    void relativeRelocationBitmaps() throws Exception {
+        byte[] bytes = TestHelper.readResource("linux_amd64_bindash");
+        ElfFile file = ElfFile.from(bytes);
+        List<Long> offsets = new ArrayList<>();
+        for (ElfRelocationAddend relocation :
+                ((ElfRelocationAddendSection) file.firstSectionByName(".rela.dyn")).relocations) {
+            if (relocation.getType() == ElfRelocationTypes.R_X86_64_RELATIVE) offsets.add(relocation.r_offset);
+        }
+        Assertions.assertEquals(271, offsets.size());
+        byte[] relr = encodeRelr(offsets, 8);
+        Assertions.assertTrue(relr.length < offsets.size() * 8);
+        ElfFile relrFile = ElfFile.from(replaceSection(bytes, file, ".rela.dyn", ElfSectionHeader.SHT_RELR, 8, relr));
+
+        ElfRelrSection section = (ElfRelrSection) relrFile.firstSectionByName(".rela.dyn");
+        Assertions.assertEquals(offsets.size(), section.size());
+        List<Long> decoded = new ArrayList<>();
+        for (ElfRelocation relocation : section) {
+            Assertions.assertEquals(ElfRelocationTypes.R_X86_64_RELATIVE, relocation.getType());
+            Assertions.assertEquals(0, relocation.getSymbolIndex());
+            decoded.add(relocation.r_offset);
+        }
+        Assertions.assertEquals(offsets, decoded);
+
+        // The addend of a RELR relocation is the value at its offset.
+        ElfRelocatedImage relocated = relrFile.getMemoryImage().relocate(0x10000, symbol -> -1, Runnable::run);
+        Assertions.assertEquals(offsets.size() + 97, relocated.getAppliedCount());
+        Assertions.assertEquals(0x10000 + 0x4f10, relocated.readLong(0x21bda8));
+        Assertions.assertEquals(0x10000 + 0x4ed0, relocated.readLong(0x21bdb0));
+    }
+
+    @Test
+    void relativeRelocationBitmaps32Bit() throws Exception {
+        byte[] bytes = TestHelper.readResource("android_arm_tset");
+        ElfFile file = ElfFile.from(bytes);
+        List<Long> offsets = List.of(0xbcf0L, 0xbcf4L, 0xbd00L, 0xbd7cL, 0xbd80L, 0xbf20L);
+        byte[] relr = encodeRelr(offsets, 4);
+        ElfFile relrFile = ElfFile.from(
+                replaceSection(bytes, file, ".rel.plt", ElfSectionHeader.SHT_ANDROID_RELR, 4, relr));
+
+        ElfRelrSection section = (ElfRelrSection) relrFile.firstSectionByName(".rel.plt");
+        Assertions.assertEquals(offsets.size(), section.size());
+        List<Long> decoded = new ArrayList<>();
+        for (ElfRelocation relocation : section) {
+            Assertions.assertEquals(ElfRelocationTypes.R_ARM_RELATIVE, relocation.getType());
+            decoded.add(relocation.r_offset);
+        }
+        Assertions.assertEquals(offsets, decoded);
+    }
+}
@@ -0,0 +1,94 @@
+package net.fornwall.jelf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfRelocatedImageTest {
+
+    private static final long UNDEFINED = 0x7f0000000000L;
+
+    @Test
+    void relocatesAtLoadBase() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            ElfMemoryImage image = file.getMemoryImage();
+            ElfRelocatedImage relocated = image.relocate(0x10000, symbol -> UNDEFINED, Runnable::run);
+            Assertions.assertEquals(0x10000, relocated.getLoadBase());
+            Assertions.assertEquals(301 + 97, relocated.getAppliedCount());
+            Assertions.assertEquals(0, relocated.getSkippedCount());
+
+            // R_X86_64_RELATIVE entries of .init_array and .fini_array.
+            Assertions.assertEquals(0x10000 + 0x4f10, relocated.readLong(0x21bda8));
+            Assertions.assertEquals(0x10000 + 0x4ed0, relocated.readPointer(0x21bdb0));
+            // R_X86_64_64 to the defined nullstr and the undefined isalnum.
+            Assertions.assertEquals(0x10000 + 0x21fc60, relocated.readLong(0x21c590));
+            Assertions.assertEquals(UNDEFINED, relocated.readLong(0x21c5d0));
+
+            ElfRelocationAddendSection plt = (ElfRelocationAddendSection) file.firstSectionByName(".rela.plt");
+            for (ElfRelocationAddend relocation : plt.relocations) {
+                Assertions.assertEquals(UNDEFINED, relocated.readLong(relocation.r_offset));
+            }
+
+            // Pages without relocations, and the original image, are left untouched.
+            Assertions.assertEquals("/lib64/ld-linux-x86-64.so.2", new String(readBytes(relocated, 0x238, 27)));
+            Assertions.assertEquals(0x4f10, image.readLong(0x21bda8));
+            Assertions.assertTrue(relocated.getRelocatedPageCount() > 0);
+            Assertions.assertThrows(ElfException.class, () -> relocated.readLong(0x100000));
+        });
+    }
+
+    @Test
+    void undefinedSymbolsAreResolvedOnce() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            // isalnum is referenced from both .rela.dyn and .rela.plt.
+            Map<String, Integer> calls = new HashMap<>();
+            file.getMemoryImage().relocate(0, symbol -> {
+                calls.merge(symbol.getName(), 1, Integer::sum);
+                return UNDEFINED;
+            }, Runnable::run);
+            Assertions.assertEquals(1, calls.get("isalnum").intValue());
+            Assertions.assertEquals(1, calls.get("__cxa_finalize").intValue());
+            for (Map.Entry<String, Integer> entry : calls.entrySet()) {
+                Assertions.assertEquals(1, entry.getValue().intValue(), entry.getKey());
+            }
+        });
+    }
+
+    @Test
+    void parallelMatchesSequential() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TestHelper.parseFile("linux_amd64_bindash", file -> {
+                ElfMemoryImage image = file.getMemoryImage();
+                ElfRelocatedImage sequential = image.relocate(0x555555554000L, symbol -> UNDEFINED, Runnable::run);
+                ElfRelocatedImage parallel = image.relocate(0x555555554000L, symbol -> UNDEFINED, executor);
+                Assertions.assertEquals(sequential.getRelocatedPageCount(), parallel.getRelocatedPageCount());
+                Assertions.assertArrayEquals(
+                        readBytes(sequential, 0x21bda8, 0x4040), readBytes(parallel, 0x21bda8, 0x4040));
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void implicitAddends() throws Exception {
+        TestHelper.parseFile("android_arm_tset", file -> {
+            ElfRelocatedImage relocated =
+                    file.getMemoryImage().relocate(0x40000000, symbol -> 0x12345678, Runnable::run);
+            Assertions.assertEquals(8 + 44, relocated.getAppliedCount());
+            // R_ARM_GLOB_DAT of the undefined optarg.
+            Assertions.assertEquals(0x12345678, relocated.readInt(0xbf20));
+            Assertions.assertEquals(0x12345678, relocated.readPointer(0xbf20));
+        });
+    }
+
+    private static byte[] readBytes(ElfRelocatedImage image, long address, int length) {
+        byte[] bytes = new byte[length];
+        image.read(address, bytes, 0, length);
+        return bytes;
+    }
+}
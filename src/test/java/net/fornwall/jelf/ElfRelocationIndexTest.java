@@ -0,0 +1,87 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfRelocationIndexTest {
+
+    @Test
+    void lookupByOffset() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            ElfRelocationIndex index = file.getRelocationIndex();
+            Assertions.assertSame(index, file.getRelocationIndex());
+            Assertions.assertEquals(301 + 97, index.size());
+            for (int i = 1; i < index.size(); i++) {
+                Assertions.assertTrue(Long.compareUnsigned(index.getOffset(i - 1), index.getOffset(i)) <= 0);
+            }
+
+            int position = index.indexOf(0x21c590);
+            Assertions.assertEquals(0x21c590, index.getOffset(position));
+            ElfRelocationTable table = index.getTable(position);
+            Assertions.assertTrue(table.header.nameEquals(".rela.dyn"));
+            Assertions.assertEquals(0x21c590, table.getOffset(index.getEntry(position)));
+            Assertions.assertEquals(ElfRelocationTypes.R_X86_64_64, table.getType(index.getEntry(position)));
+            Assertions.assertEquals("nullstr", table.getSymbol(index.getEntry(position)).getName());
+
+            Assertions.assertEquals(-1, index.indexOf(0x21c591));
+            Assertions.assertEquals(position + 1, index.firstAtOrAfter(0x21c591));
+            Assertions.assertEquals(0, index.firstAtOrAfter(0));
+            Assertions.assertEquals(index.size(), index.firstAtOrAfter(-1));
+
+            // Every relocation of every section is found at its offset.
+            for (int i = 1; i < file.e_shnum; i++) {
+                ElfRelocationTable relocations = file.getRelocationTable(i);
+                if (relocations == null) continue;
+                for (int entry = 0; entry < relocations.size(); entry++) {
+                    int found = index.indexOf(relocations.getOffset(entry));
+                    Assertions.assertTrue(found >= 0);
+                    Assertions.assertEquals(relocations.getOffset(entry), index.getOffset(found));
+                }
+            }
+        });
+    }
+
+    @Test
+    void lookupBySymbol() throws Exception {
+        TestHelper.parseFile("android_arm_tset", file -> {
+            ElfRelocationIndex index = file.getRelocationIndex();
+            ElfSymbolTableSection dynsym = file.getDynamicSymbolTableSection();
+            for (int symbolIndex = 1; symbolIndex < dynsym.symbols.length; symbolIndex++) {
+                List<Long> expected = new ArrayList<>();
+                for (int i = 1; i < file.e_shnum; i++) {
+                    ElfRelocationTable table = file.getRelocationTable(i);
+                    if (table == null) continue;
+                    for (int entry = 0; entry < table.size(); entry++) {
+                        if (table.getSymbolIndex(entry) == symbolIndex) expected.add(table.getOffset(entry));
+                    }
+                }
+                expected.sort(Long::compareUnsigned);
+                List<Long> actual = new ArrayList<>();
+                for (int position : index.getRelocationsOf(dynsym.symbols[symbolIndex])) {
+                    actual.add(index.getOffset(position));
+                }
+                Assertions.assertEquals(expected, actual);
+            }
+
+            int[] optarg = index.getRelocationsOf(file.getELFSymbol("optarg"));
+            Assertions.assertEquals(1, optarg.length);
+            Assertions.assertEquals(0xbf20, index.getOffset(optarg[0]));
+            Assertions.assertEquals(0, index.getRelocationsOf(dynsym, 0).length);
+            Assertions.assertEquals(0, index.getRelocationsOf(dynsym, dynsym.symbols.length).length);
+        });
+    }
+
+    @Test
+    void mergesInterleavedTables() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            // The .rela.plt relocations (0x21cc90 to 0x21cf90) lie within the range of the unsorted .rela.dyn ones.
+            ElfRelocationIndex index = file.getRelocationIndex();
+            Assertions.assertEquals(0x21bda8, index.getOffset(0));
+            Assertions.assertEquals(0x21d1d8, index.getOffset(index.size() - 1));
+            Assertions.assertTrue(index.getTable(index.size() - 1).header.nameEquals(".rela.dyn"));
+            Assertions.assertTrue(index.getTable(index.indexOf(0x21cc90)).header.nameEquals(".rela.plt"));
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package net.fornwall.jelf;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfRelocationTableTest {
+
+    private static int sectionIndex(ElfFile file, String name) {
+        for (int i = 1; i < file.e_shnum; i++) {
+            if (file.getSection(i).header.nameEquals(name)) return i;
+        }
+        throw new AssertionError("No section " + name);
+    }
+
+    @Test
+    void addendTable() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            int index = sectionIndex(file, ".rela.dyn");
+            ElfRelocationTable table = file.getRelocationTable(index);
+            Assertions.assertSame(table, file.getRelocationTable(index));
+            Assertions.assertNull(file.getRelocationTable(sectionIndex(file, ".dynsym")));
+            Assertions.assertTrue(table.hasAddends());
+            Assertions.assertSame(file.getDynamicSymbolTableSection(), table.getSymbolTable());
+
+            ElfRelocationAddend[] relocations = ((ElfRelocationAddendSection) file.getSection(index)).relocations;
+            Assertions.assertEquals(301, table.size());
+            Assertions.assertEquals(relocations.length, table.size());
+            for (int i = 0; i < relocations.length; i++) {
+                Assertions.assertEquals(relocations[i].r_offset, table.getOffset(i));
+                Assertions.assertEquals(relocations[i].r_info, table.getInfo(i));
+                Assertions.assertEquals(relocations[i].r_addend, table.getAddend(i));
+                Assertions.assertEquals(relocations[i].getType(), table.getType(i));
+                Assertions.assertEquals(relocations[i].getSymbolIndex(), table.getSymbolIndex(i));
+                if (table.getSymbolIndex(i) == 0) {
+                    Assertions.assertNull(table.getSymbol(i));
+                } else {
+                    Assertions.assertSame(relocations[i].getSymbol(), table.getSymbol(i));
+                }
+            }
+
+            long[] offsets = new long[3];
+            long[] addends = new long[3];
+            table.getColumns(0, 3, offsets, null, addends);
+            Assertions.assertArrayEquals(
+                    new long[] {relocations[0].r_offset, relocations[1].r_offset, relocations[2].r_offset}, offsets);
+            Assertions.assertArrayEquals(
+                    new long[] {relocations[0].r_addend, relocations[1].r_addend, relocations[2].r_addend}, addends);
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> table.getOffset(301));
+            Assertions.assertThrows(
+                    IndexOutOfBoundsException.class, () -> table.getColumns(300, 2, offsets, null, null));
+        });
+    }
+
+    @Test
+    void symbolsFromLinkedSymbolTable() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            // The dynamic relocations reference .dynsym, not .symtab.
+            ElfRelocationAddend[] relocations =
+                    ((ElfRelocationAddendSection) file.firstSectionByName(".rela.dyn")).relocations;
+            for (ElfRelocationAddend relocation : relocations) {
+                String name = relocation.getSymbol().getName();
+                if (relocation.r_offset == 0x21c590) Assertions.assertEquals("nullstr", name);
+                if (relocation.r_offset == 0x21c5d0) Assertions.assertEquals("isalnum", name);
+            }
+        });
+        TestHelper.parseFile("android_arm_tset", file -> {
+            ElfRelocationTable table = file.getRelocationTable(sectionIndex(file, ".rel.dyn"));
+            Assertions.assertFalse(table.hasAddends());
+            Assertions.assertEquals(8, table.size());
+            Assertions.assertEquals(0xbf20, table.getOffset(0));
+            Assertions.assertEquals(ElfRelocationTypes.R_ARM_GLOB_DAT, table.getType(0));
+            Assertions.assertEquals(0, table.getAddend(0));
+            Assertions.assertEquals("optarg", table.getSymbol(0).getName());
+            Assertions.assertEquals(
+                    "optarg", ((ElfRelocationSection) file.firstSectionByName(".rel.dyn")).relocations[0]
+                            .getSymbol()
+                            .getName());
+        });
+        TestHelper.parseFile("objectFile.o", file -> {
+            ElfRelocationTable table = file.getRelocationTable(sectionIndex(file, ".rel.text"));
+            Assertions.assertSame(file.getSymbolTableSection(), table.getSymbolTable());
+            Assertions.assertEquals(1, table.size());
+            Assertions.assertEquals(6, table.getOffset(0));
+            Assertions.assertEquals("callee", table.getSymbol(0).getName());
+        });
+    }
+}
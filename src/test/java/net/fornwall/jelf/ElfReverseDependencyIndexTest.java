@@ -0,0 +1,150 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+class ElfReverseDependencyIndexTest {
+
+    private static Path resource(String fileName) throws Exception {
+        return Paths.get(Objects.requireNonNull(BasicTest.class.getResource('/' + fileName)).toURI());
+    }
+
+    @Test
+    void scanTestResources() throws Exception {
+        Path directory = resource("usr-bin-yes").getParent();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ElfReverseDependencyIndex index;
+        try {
+            index = ElfReverseDependencyIndex.scan(directory, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertTrue(index.getFilesScanned() >= 13);
+        Assertions.assertTrue(index.getFilesPerSecond() > 0);
+        // Object files and the statically linked Go binary have no dynamic segment.
+        Assertions.assertFalse(index.getEntries().containsKey(resource("objectFile.o")));
+        Assertions.assertFalse(index.getEntries().containsKey(resource("go_amd64_notes")));
+
+        Assertions.assertEquals(
+                Arrays.asList(resource("linux_amd64_bindash"), resource("usr-bin-yes")),
+                index.getDependents("libc.so.6"));
+        Assertions.assertEquals(Collections.emptyList(), index.getDependents("libfoo.so.3"));
+        Assertions.assertEquals(
+                Collections.singletonList(resource("android_arm_libncurses")),
+                index.getProviders("libncursesw.so.6"));
+        Assertions.assertEquals(
+                Collections.singletonList(resource("android_arm_tset")), index.getDependents("libncursesw.so.6"));
+        Assertions.assertEquals(
+                Collections.singletonList(resource("android_arm_tset")),
+                index.getTransitiveDependents("libncursesw.so.6"));
+
+        // Entries match what is parsed by ElfFile.
+        for (ElfReverseDependencyIndex.Entry entry : index.getEntries().values()) {
+            ElfDynamicSection dynamic = ElfFile.from(entry.path).getDynamicSection();
+            Assertions.assertEquals(dynamic.getNeededLibraries(), entry.neededLibraries, entry.path.toString());
+            Assertions.assertEquals(dynamic.getRunPath(), entry.runPath);
+            Assertions.assertEquals(dynamic.getRPath(), entry.rPath);
+        }
+        ElfReverseDependencyIndex.Entry ncurses = index.getEntries().get(resource("android_arm_libncurses"));
+        Assertions.assertEquals("libncursesw.so.6", ncurses.soname);
+        Assertions.assertEquals("$ORIGIN", index.getEntries().get(resource("linux_amd64_libcycle_a")).runPath);
+    }
+
+    @Test
+    void transitiveDependents() throws Exception {
+        // libcycle_a.so needs libcycle_b.so, which needs libcycle_a.so, and neither has a DT_SONAME.
+        Path directory = Files.createTempDirectory("jelf-rdeps");
+        Path a = directory.resolve("libcycle_a.so");
+        Path b = directory.resolve("libcycle_b.so");
+        try {
+            Files.copy(resource("linux_amd64_libcycle_a"), a);
+            Files.copy(resource("linux_amd64_libcycle_b"), b);
+            ElfReverseDependencyIndex index = ElfReverseDependencyIndex.scan(directory, Runnable::run);
+            Assertions.assertEquals(2, index.getFilesScanned());
+            Assertions.assertEquals(Collections.singletonList(b), index.getDependents("libcycle_a.so"));
+            Assertions.assertEquals(Collections.singletonList(a), index.getProviders("libcycle_a.so"));
+            Assertions.assertEquals(Arrays.asList(a, b), index.getTransitiveDependents("libcycle_a.so"));
+        } finally {
+            Files.delete(a);
+            Files.delete(b);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void symbolicLinksAreNotFollowed() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-rdeps");
+        Path yes = directory.resolve("sub").resolve("yes");
+        Path link = directory.resolve("yes-link");
+        try {
+            Files.createDirectory(yes.getParent());
+            Files.copy(resource("usr-bin-yes"), yes);
+            Files.createSymbolicLink(link, directory.relativize(yes));
+            ElfReverseDependencyIndex index = ElfReverseDependencyIndex.scan(directory, Runnable::run);
+            Assertions.assertEquals(1, index.getFilesScanned());
+            Assertions.assertEquals(Collections.singletonList(yes), index.getDependents("libc.so.6"));
+        } finally {
+            Files.deleteIfExists(link);
+            Files.deleteIfExists(yes);
+            Files.deleteIfExists(yes.getParent());
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void corruptFilesAreSkipped() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-rdeps");
+        Path yes = directory.resolve("yes");
+        Path corrupt = directory.resolve("corrupt");
+        try {
+            Files.copy(resource("usr-bin-yes"), yes);
+            // An e_phoff of 2^63, which is negative as a signed position.
+            byte[] bytes = Files.readAllBytes(yes);
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putLong(32, Long.MIN_VALUE);
+            Files.write(corrupt, bytes);
+            Assertions.assertThrows(ElfException.class, () -> ElfReverseDependencyIndex.read(corrupt));
+
+            ElfReverseDependencyIndex index = ElfReverseDependencyIndex.scan(directory, Runnable::run);
+            Assertions.assertEquals(2, index.getFilesScanned());
+            Assertions.assertEquals(Collections.singletonList(yes), index.getDependents("libc.so.6"));
+        } finally {
+            Files.deleteIfExists(corrupt);
+            Files.deleteIfExists(yes);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void unreadableDirectoriesAreSkipped() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-rdeps");
+        Path unreadable = directory.resolve("unreadable");
+        Path yes = directory.resolve("yes");
+        try {
+            Files.copy(resource("usr-bin-yes"), yes);
+            Files.createDirectory(unreadable);
+            Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("---------"));
+            // Permissions do not apply to the root user.
+            Assumptions.assumeFalse(Files.isReadable(unreadable));
+            ElfReverseDependencyIndex index = ElfReverseDependencyIndex.scan(directory, Runnable::run);
+            Assertions.assertEquals(Collections.singletonList(yes), index.getDependents("libc.so.6"));
+        } finally {
+            Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("rwx------"));
+            Files.delete(unreadable);
+            Files.delete(yes);
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfStringTableTest {
+
+    @Test
+    void cachedStrings() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            ElfStringTable stringTable = file.getStringTable();
+            Assertions.assertNotNull(stringTable);
+            Assertions.assertSame(stringTable, file.getStringTable());
+            Assertions.assertEquals(0, stringTable.getCacheSize());
+
+            ElfSymbolTableSection symtab = file.getSymbolTableSection();
+            String[] uncachedNames = new String[symtab.symbols.length];
+            for (int i = 0; i < uncachedNames.length; i++) {
+                uncachedNames[i] = symtab.symbols[i].getName();
+            }
+
+            stringTable.setCacheSize(100);
+            Assertions.assertEquals(128, stringTable.getCacheSize());
+            for (int i = 0; i < uncachedNames.length; i++) {
+                Assertions.assertEquals(uncachedNames[i], symtab.symbols[i].getName());
+            }
+
+            ElfSymbol symbol = symtab.symbols[1];
+            Assertions.assertSame(symbol.getName(), symbol.getName());
+
+            stringTable.setCacheSize(0);
+            Assertions.assertEquals(0, stringTable.getCacheSize());
+            Assertions.assertEquals("crtbegin_so.c", symbol.getName());
+        });
+    }
+
+    @Test
+    void cachedStringsFromManyThreads() throws Exception {
+        ElfFile file = ElfFile.from(BasicTest.class.getResourceAsStream("/android_arm_libncurses"));
+        ElfSymbol[] symbols = file.getSymbolTableSection().symbols;
+        String[] expected = new String[symbols.length];
+        for (int i = 0; i < symbols.length; i++) expected[i] = symbols[i].getName();
+
+        // A small cache makes threads replace the entries of each other's slots.
+        file.getStringTable().setCacheSize(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int start = t;
+                tasks.add(executor.submit(() -> {
+                    for (int round = 0; round < 20; round++) {
+                        for (int i = start; i < symbols.length; i += 2) {
+                            Assertions.assertEquals(expected[i], symbols[i].getName());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) task.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void numStrings() throws Exception {
+        TestHelper.parseFile("android_arm_tset", file -> {
+            Assertions.assertEquals(60, file.getDynamicStringTable().getNumStrings());
+            Assertions.assertEquals(24, file.getSectionNameStringTable().getNumStrings());
+            Assertions.assertEquals("libc.so", file.getDynamicSection().getNeededLibraries().get(1));
+        });
+    }
+
+    @Test
+    void zeroBytes() {
+        Assertions.assertEquals(0, ElfStringTable.zeroBytes(0x0101_0101_0101_0101L));
+        Assertions.assertEquals(0x8080_8080_8080_8080L, ElfStringTable.zeroBytes(0));
+        // A 0x01 byte after a zero byte must not be reported, as it would with the borrow of the simpler test.
+        Assertions.assertEquals(0x0000_0000_0000_0080L, ElfStringTable.zeroBytes(0x4141_4141_4141_0100L));
+        Assertions.assertEquals(0x8000_0000_0000_0000L, ElfStringTable.zeroBytes(0x00FF_FF80_7F41_0101L));
+    }
+
+    @Test
+    void stringsAcrossWordBoundaries() {
+        byte[] data = "\0a\0abcdefg\0abcdefgh\0abcdefghijklmnopq\0xyz\0".getBytes();
+        ElfStringTable table = stringTable(data);
+        Assertions.assertEquals(6, table.getNumStrings());
+        Assertions.assertEquals("", table.get(0));
+        Assertions.assertEquals("a", table.get(1));
+        Assertions.assertEquals("abcdefg", table.get(3));
+        Assertions.assertEquals("bcdefg", table.get(4));
+        Assertions.assertEquals("abcdefgh", table.get(11));
+        Assertions.assertEquals("abcdefghijklmnopq", table.get(20));
+        Assertions.assertEquals("xyz", table.get(38));
+        Assertions.assertEquals("z", table.get(40));
+        Assertions.assertThrows(ElfException.class, () -> table.get(data.length));
+
+        ElfStringTable unterminated = stringTable("\0abcdefghijk".getBytes());
+        Assertions.assertEquals(1, unterminated.getNumStrings());
+        Assertions.assertThrows(ElfException.class, () -> unterminated.get(1));
+    }
+
+    @Test
+    void hashesFromTableBytes() throws Exception {
+        TestHelper.parseFile("linux_amd64_bindash", file -> {
+            ElfStringTable dynstr = file.getDynamicStringTable();
+            for (ElfSymbol symbol : file.getDynamicSymbolTableSection().symbols) {
+                String name = symbol.getName();
+                if (name == null) continue;
+                Assertions.assertEquals(ElfGnuHashTable.gnuHash(name), dynstr.gnuHash(symbol.st_name));
+                Assertions.assertEquals(ElfHashTable.elfHash(name), dynstr.elfHash(symbol.st_name));
+            }
+        });
+    }
+
+    /** A string table of the given data, which is placed right after a minimal ELF header. */
+    private static ElfStringTable stringTable(byte[] data) {
+        byte[] fileData = new byte[64 + data.length];
+        fileData[0] = 0x7f;
+        fileData[1] = 'E';
+        fileData[2] = 'L';
+        fileData[3] = 'F';
+        fileData[4] = ElfFile.CLASS_64;
+        fileData[5] = ElfFile.DATA_LSB;
+        fileData[6] = 1;
+        System.arraycopy(data, 0, fileData, 64, data.length);
+        ElfFile file = ElfFile.from(fileData);
+        ElfParser parser = new ElfParser(file, new ByteArrayAsFile(fileData));
+        return new ElfStringTable(parser, 64, data.length, null);
+    }
+
+    @Test
+    void nameViews() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            ElfSymbol symbol = file.getDynamicSymbolTableSection().symbols[767];
+            ElfStringTable.ElfString name = symbol.getNameView();
+            Assertions.assertEquals("_Unwind_GetTextRelBase".length(), name.length());
+            Assertions.assertEquals('_', name.charAt(0));
+            Assertions.assertEquals("_Unwind_GetTextRelBase", name.toString());
+            Assertions.assertEquals("GetTextRelBase", name.subSequence(8, name.length()).toString());
+            Assertions.assertEquals("Unwind", name.subSequence(1, 7).toString());
+            Assertions.assertTrue(name.startsWith("_Unwind_"));
+            Assertions.assertTrue(name.contentEquals("_Unwind_GetTextRelBase"));
+            Assertions.assertFalse(name.subSequence(0, 7).contentEquals("_Unwind_GetTextRelBase"));
+            Assertions.assertTrue(name.subSequence(0, 7).contentEquals("_Unwind"));
+
+            Assertions.assertTrue(symbol.nameStartsWith("_Unwind_"));
+            Assertions.assertTrue(symbol.nameStartsWith(""));
+            Assertions.assertFalse(symbol.nameStartsWith("_Unwind_GetTextRelBase_"));
+            Assertions.assertTrue(symbol.nameEquals("_Unwind_GetTextRelBase"));
+            Assertions.assertFalse(symbol.nameEquals("_Unwind_GetTextRel"));
+            Assertions.assertFalse(symbol.nameEquals("_Unwind_GetTextRelBaseX"));
+
+            ElfSymbol unnamed = file.getDynamicSymbolTableSection().symbols[0];
+            Assertions.assertNull(unnamed.getNameView());
+            Assertions.assertFalse(unnamed.nameStartsWith(""));
+
+            ElfSectionHeader dynsymHeader = file.getDynamicSymbolTableSection().header;
+            Assertions.assertTrue(dynsymHeader.nameEquals(".dynsym"));
+            Assertions.assertTrue(dynsymHeader.nameStartsWith(".dyn"));
+            Assertions.assertFalse(dynsymHeader.nameEquals(".dyn"));
+            Assertions.assertEquals(".dynsym", dynsymHeader.getNameView().toString());
+        });
+    }
+
+    @Test
+    void stringPool() throws Exception {
+        ElfStringPool pool = new ElfStringPool();
+        ElfFile first = ElfFile.from(ElfStringTableTest.class.getResourceAsStream("/android_arm_libncurses"));
+        ElfFile second = ElfFile.from(ElfStringTableTest.class.getResourceAsStream("/android_arm_libncurses"));
+        first.setStringPool(pool);
+        second.setStringPool(pool);
+
+        ElfSymbol firstSymbol = first.getELFSymbol("_Unwind_GetTextRelBase");
+        ElfSymbol secondSymbol = second.getELFSymbol("_Unwind_GetTextRelBase");
+        Assertions.assertNotNull(firstSymbol);
+        Assertions.assertNotSame(firstSymbol, secondSymbol);
+        Assertions.assertSame(firstSymbol.getName(), secondSymbol.getName());
+        Assertions.assertTrue(pool.getDuplicatesRemoved() > 0);
+        Assertions.assertTrue(pool.getBytesSaved() > 0);
+
+        String unpooled = new String("_Unwind_GetTextRelBase".toCharArray());
+        Assertions.assertSame(firstSymbol.getName(), pool.intern(unpooled));
+    }
+}
@@ -0,0 +1,251 @@
+package net.fornwall.jelf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolAddressIndexTest {
+
+    private static boolean contains(ElfSymbol symbol, long address) {
+        return address >= symbol.st_value && address < symbol.st_value + symbol.st_size;
+    }
+
+    @Test
+    void lookupFindsContainingSymbol() throws Exception {
+        for (String fileName : Arrays.asList("android_arm_libncurses", "android_arm_tset", "netbsd_amd64_yes")) {
+            TestHelper.parseFile(fileName, file -> {
+                ElfSymbolAddressIndex index = file.getSymbolAddressIndex();
+                Assertions.assertSame(index, file.getSymbolAddressIndex());
+                for (ElfSymbolTableSection section : file.sectionsOfType(ElfSymbolTableSection.class)) {
+                    for (ElfSymbol symbol : section.symbols) {
+                        if (symbol.st_size == 0 || symbol.st_shndx == 0) continue;
+                        for (long address : new long[] {symbol.st_value, symbol.st_value + symbol.st_size - 1}) {
+                            ElfSymbol found = index.lookup(address);
+                            Assertions.assertNotNull(found);
+                            Assertions.assertTrue(contains(found, address));
+                            // The innermost symbol never starts before the one we know contains the address.
+                            Assertions.assertTrue(found.st_value >= symbol.st_value);
+                        }
+                    }
+                }
+                Assertions.assertNull(index.lookup(0));
+            });
+        }
+    }
+
+    @Test
+    void batchLookup() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            ElfSymbol symbol = file.getELFSymbol("_Unwind_GetTextRelBase");
+            long[] addresses = {
+                symbol.st_value + 4, 0, symbol.st_value, Long.MAX_VALUE, symbol.st_value + 4, symbol.st_value + 8
+            };
+            int[] ids = new int[addresses.length];
+            long[] offsets = new long[addresses.length];
+            ElfSymbolAddressIndex index = file.getSymbolAddressIndex();
+            index.lookup(addresses, ids, offsets);
+
+            for (int i = 0; i < addresses.length; i++) {
+                Assertions.assertEquals(index.lookupId(addresses[i]), ids[i]);
+            }
+            Assertions.assertEquals("_Unwind_GetTextRelBase", index.getSymbol(ids[0]).getName());
+            Assertions.assertEquals(4, offsets[0]);
+            Assertions.assertEquals(-1, ids[1]);
+            Assertions.assertEquals(0, offsets[1]);
+            Assertions.assertEquals(ids[0], ids[2]);
+            Assertions.assertEquals(0, offsets[2]);
+            Assertions.assertEquals(-1, ids[3]);
+            Assertions.assertEquals(ids[0], ids[4]);
+            Assertions.assertNotEquals(ids[0], ids[5]);
+        });
+    }
+
+    @Test
+    void intervalQueries() throws Exception {
+        for (String fileName : Arrays.asList("android_arm_libncurses", "linux_amd64_bindash")) {
+            TestHelper.parseFile(fileName, file -> {
+                ElfSymbolAddressIndex index = file.getSymbolAddressIndex();
+                List<ElfSymbol> indexed = new ArrayList<>();
+                int duplicates = 0;
+                for (int id = 0; id < index.getSymbolCount(); id++) {
+                    ElfSymbol symbol = index.getSymbol(id);
+                    if (symbol.st_size > 0 && symbol.st_shndx != 0 && symbol.getType() != ElfSymbol.STT_TLS) {
+                        // Symbols of the symbol table repeating a dynamic symbol are only returned once.
+                        boolean duplicate = false;
+                        for (ElfSymbol other : indexed) {
+                            duplicate |= other.st_value == symbol.st_value && other.st_size == symbol.st_size
+                                    && other.getName().equals(symbol.getName());
+                        }
+                        if (duplicate) {
+                            duplicates++;
+                        } else {
+                            indexed.add(symbol);
+                        }
+                    }
+                }
+                Assertions.assertEquals(fileName.equals("android_arm_libncurses"), duplicates > 0);
+
+                for (ElfSymbol symbol : indexed) {
+                    long[][] ranges = {
+                        {symbol.st_value, symbol.st_value + 1},
+                        {symbol.st_value - 16, symbol.st_value + symbol.st_size + 16}
+                    };
+                    for (long[] range : ranges) {
+                        List<ElfSymbol> expected = new ArrayList<>();
+                        for (ElfSymbol candidate : indexed) {
+                            if (candidate.st_value < range[1] && candidate.st_value + candidate.st_size > range[0]) {
+                                expected.add(candidate);
+                            }
+                        }
+                        List<ElfSymbol> actual = index.symbolsIntersecting(range[0], range[1]);
+                        Assertions.assertEquals(expected.size(), actual.size());
+                        Assertions.assertTrue(actual.containsAll(expected));
+                        for (int i = 1; i < actual.size(); i++) {
+                            Assertions.assertTrue(actual.get(i - 1).st_value <= actual.get(i).st_value);
+                        }
+                    }
+                    Assertions.assertEquals(
+                            index.symbolsIntersecting(symbol.st_value, symbol.st_value + 1),
+                            index.symbolsContaining(symbol.st_value));
+                }
+                Assertions.assertTrue(index.symbolsContaining(0).isEmpty());
+                Assertions.assertTrue(index.symbolsIntersecting(100, 100).isEmpty());
+            });
+        }
+    }
+
+    @Test
+    void upperHalfAddresses() throws Exception {
+        byte[] bytes = TestHelper.readResource("linux_amd64_bindash");
+        ElfFile original = ElfFile.from(bytes);
+        ElfSymbolAddressIndex originalIndex = original.getSymbolAddressIndex();
+
+        // Moving the defined symbols so that the largest one straddles the middle of the address space, with those
+        // before it at the top of the lower half and those after it in the upper half where kernel images are mapped.
+        ElfSymbol largest = null;
+        for (ElfSymbol symbol : original.getDynamicSymbolTableSection().symbols) {
+            if (symbol.st_shndx != 0 && (largest == null || symbol.st_size > largest.st_size)) largest = symbol;
+        }
+        long delta = Long.MIN_VALUE - largest.st_value - largest.st_size / 2;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (ElfSymbol symbol : original.getDynamicSymbolTableSection().symbols) {
+            if (symbol.st_shndx != 0) buffer.putLong((int) symbol.offset + 8, symbol.st_value + delta);
+        }
+        ElfFile file = ElfFile.from(bytes);
+        ElfSymbolAddressIndex index = file.getSymbolAddressIndex();
+
+        Path directory = Files.createTempDirectory("jelf-index");
+        Path elfPath = directory.resolve("dash");
+        Path indexPath = directory.resolve("dash.symidx");
+        try {
+            Files.write(elfPath, bytes);
+            ElfSymbolIndexFile indexFile = ElfSymbolIndexFile.openOrCreate(indexPath, elfPath, false);
+
+            List<Long> addresses = new ArrayList<>();
+            for (int id = 0; id < originalIndex.getSymbolCount(); id++) {
+                ElfSymbol symbol = originalIndex.getSymbol(id);
+                if (symbol.st_size == 0 || symbol.st_shndx == 0) continue;
+                for (long address : new long[] {symbol.st_value, symbol.st_value + symbol.st_size - 1}) {
+                    int expected = originalIndex.lookupId(address);
+                    Assertions.assertEquals(expected, index.lookupId(address + delta));
+                    Assertions.assertEquals(expected, indexFile.lookupId(address + delta));
+                    Assertions.assertEquals(-1, index.lookupId(address));
+                    Assertions.assertEquals(originalIndex.symbolsContaining(address).size(),
+                            index.symbolsContaining(address + delta).size());
+                    addresses.add(address);
+                }
+            }
+            Assertions.assertFalse(addresses.isEmpty());
+            Assertions.assertTrue(index.symbolsContaining(Long.MIN_VALUE).contains(index.lookup(Long.MIN_VALUE)));
+            Assertions.assertEquals(largest.st_value, index.lookup(Long.MIN_VALUE).st_value - delta);
+            Assertions.assertEquals(originalIndex.symbolsIntersecting(0, -1).size(),
+                    index.symbolsIntersecting(0, -1).size());
+            Assertions.assertTrue(index.symbolsContaining(-1).isEmpty());
+
+            long[] batch = new long[2 * addresses.size()];
+            for (int i = 0; i < addresses.size(); i++) {
+                batch[2 * i] = addresses.get(i) + delta;
+                batch[2 * i + 1] = addresses.get(i);
+            }
+            int[] ids = new int[batch.length];
+            index.lookup(batch, ids, null);
+            for (int i = 0; i < addresses.size(); i++) {
+                Assertions.assertEquals(originalIndex.lookupId(addresses.get(i)), ids[2 * i]);
+                Assertions.assertEquals(-1, ids[2 * i + 1]);
+            }
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(elfPath);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void inferredSizes() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            // __aeabi_idiv has no size and is followed by the local .divsi3_skip_div0_test eight bytes later.
+            ElfSymbol idiv = file.getELFSymbol("__aeabi_idiv");
+            Assertions.assertEquals(0, idiv.st_size);
+            long address = idiv.st_value + 4;
+
+            ElfSymbolAddressIndex exact = file.getSymbolAddressIndex();
+            Assertions.assertFalse(exact.isInferringSizes());
+            Assertions.assertEquals("__divsi3", exact.lookup(address).getName());
+            Assertions.assertFalse(exact.symbolsContaining(address).contains(idiv));
+
+            ElfSymbolAddressIndex inferred = file.getSymbolAddressIndex(true);
+            Assertions.assertSame(inferred, file.getSymbolAddressIndex(true));
+            Assertions.assertTrue(inferred.isInferringSizes());
+            Assertions.assertTrue(inferred.symbolsContaining(address).contains(idiv));
+            Assertions.assertNull(inferred.lookup(0));
+
+            for (int id = 0; id < inferred.getSymbolCount(); id++) {
+                ElfSymbol symbol = inferred.getSymbol(id);
+                if (symbol == idiv) Assertions.assertEquals(idiv.st_value + 8, inferred.getSymbolEnd(id));
+                if (symbol.st_size != 0) {
+                    Assertions.assertEquals(symbol.st_value + symbol.st_size, inferred.getSymbolEnd(id));
+                } else if (inferred.getSymbolEnd(id) != symbol.st_value) {
+                    // Mapping symbols are never extended, and inferred ends stay within the section of the symbol.
+                    Assertions.assertFalse(ElfSymbolAddressIndex.isMappingSymbol(symbol));
+                    ElfSectionHeader section = file.getSection(symbol.st_shndx).header;
+                    Assertions.assertTrue(inferred.getSymbolEnd(id) <= section.sh_addr + section.sh_size);
+                }
+            }
+        });
+    }
+
+    @Test
+    void onlyMappingSymbolsAreExcludedFromInference() throws Exception {
+        byte[] bytes = TestHelper.readResource("android_arm_libncurses");
+        ElfFile original = ElfFile.from(bytes);
+        ElfSymbol idiv = null;
+        for (ElfSymbol symbol : original.getSymbolTableSection().symbols) {
+            if (symbol.nameEquals("__aeabi_idiv")) idiv = symbol;
+        }
+        int nameOffset = (int) (original.getStringTable().header.sh_offset + idiv.st_name);
+
+        // Renaming __aeabi_idiv in .symtab to names of the same length starting with $.
+        for (String name : new String[] {"$_aeabi_idiv", "$d.eabi_idiv"}) {
+            System.arraycopy(name.getBytes(StandardCharsets.US_ASCII), 0, bytes, nameOffset, name.length());
+            ElfFile file = ElfFile.from(bytes);
+            ElfSymbolAddressIndex index = file.getSymbolAddressIndex(true);
+            boolean found = false;
+            for (int id = 0; id < index.getSymbolCount(); id++) {
+                ElfSymbol symbol = index.getSymbol(id);
+                if (!symbol.nameEquals(name)) continue;
+                found = true;
+                boolean mapping = name.startsWith("$d.");
+                Assertions.assertEquals(mapping, ElfSymbolAddressIndex.isMappingSymbol(symbol));
+                Assertions.assertEquals(symbol.st_value + (mapping ? 0 : 8), index.getSymbolEnd(id), name);
+            }
+            Assertions.assertTrue(found, name);
+        }
+    }
+}
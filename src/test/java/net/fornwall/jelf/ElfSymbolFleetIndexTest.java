@@ -0,0 +1,98 @@
+package net.fornwall.jelf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolFleetIndexTest {
+
+    private static Path resource(String fileName) throws Exception {
+        return Paths.get(Objects.requireNonNull(BasicTest.class.getResource('/' + fileName)).toURI());
+    }
+
+    @Test
+    void filesCanBeAddedIncrementally() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-fleet");
+        try {
+            Path yes = resource("usr-bin-yes");
+            Path bindash = resource("linux_amd64_bindash");
+            Path libversioned = resource("linux_amd64_libversioned");
+            Path ncurses = resource("android_arm_libncurses");
+            Path tset = resource("android_arm_tset");
+
+            ElfSymbolFleetIndex index = ElfSymbolFleetIndex.open(directory);
+            Assertions.assertEquals(0, index.getFileCount());
+            Assertions.assertEquals(0, index.findImporters("abort").length);
+
+            Assertions.assertEquals(2, index.addFiles(Arrays.asList(yes, bindash, yes)));
+            Assertions.assertEquals(yes, index.getFile(0));
+            Assertions.assertEquals(bindash, index.getFile(1));
+            Assertions.assertArrayEquals(new int[] {0, 1}, index.findImporters("abort"));
+            Assertions.assertEquals(0, index.findExporters("abort").length);
+
+            // Files already indexed are skipped, as are files which are not ELF files.
+            Path notElf = directory.resolve("not-elf");
+            Files.write(notElf, new byte[] {1, 2, 3, 4});
+            Assertions.assertEquals(0, index.addFiles(Arrays.asList(yes, notElf)));
+            // Other spellings of an indexed path are recognized as well.
+            Path relative = Paths.get("").toAbsolutePath().relativize(yes);
+            Path unnormalized = yes.getParent().resolve(".").resolve("..").resolve(yes.getParent().getFileName())
+                    .resolve(yes.getFileName());
+            Assertions.assertEquals(0, index.addFiles(Arrays.asList(relative, unnormalized)));
+            Assertions.assertEquals(3, index.addFiles(Arrays.asList(libversioned, ncurses, tset)));
+
+            ElfSymbolFleetIndex reopened = ElfSymbolFleetIndex.open(directory);
+            Assertions.assertEquals(0, reopened.addFiles(Collections.singletonList(bindash)));
+            for (ElfSymbolFleetIndex i : Arrays.asList(index, reopened)) {
+                Assertions.assertEquals(5, i.getFileCount());
+                Assertions.assertEquals(tset, i.getFile(4));
+                Assertions.assertArrayEquals(new int[] {2}, i.findExporters("foo"));
+                Assertions.assertArrayEquals(new int[] {2}, i.findExporters("bar"));
+                Assertions.assertEquals(0, i.findImporters("foo").length);
+                Assertions.assertEquals(0, i.findExporters("no_such_symbol").length);
+                Assertions.assertThrows(IndexOutOfBoundsException.class, () -> i.getFile(5));
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void indexAgreesWithDynamicSymbols() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-fleet");
+        try {
+            Path ncurses = resource("android_arm_libncurses");
+            Path tset = resource("android_arm_tset");
+            ElfSymbolFleetIndex index = ElfSymbolFleetIndex.open(directory);
+            index.addFiles(Collections.singletonList(ncurses));
+            index.addFiles(Collections.singletonList(tset));
+
+            TestHelper.parseFile("android_arm_tset", file -> {
+                for (ElfSymbol symbol : file.getDynamicSymbolTableSection().symbols) {
+                    if (symbol.st_name == 0 || symbol.getBinding() == ElfSymbol.BINDING_LOCAL) continue;
+                    int[] ids = (symbol.st_shndx == 0)
+                            ? index.findImporters(symbol.getName())
+                            : index.findExporters(symbol.getName());
+                    Assertions.assertTrue(Arrays.binarySearch(ids, 1) >= 0, symbol.getName());
+                }
+            });
+            // tset links against libncurses, which exports what tset imports from it.
+            Assertions.assertArrayEquals(new int[] {1}, index.findImporters("_nc_basename"));
+            Assertions.assertArrayEquals(new int[] {0}, index.findExporters("_nc_basename"));
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.fornwall.jelf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolIndexFileTest {
+
+    private static Path resource(String fileName) throws Exception {
+        return Paths.get(Objects.requireNonNull(BasicTest.class.getResource('/' + fileName)).toURI());
+    }
+
+    @Test
+    void indexFileMatchesSymbolIndex() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-index");
+        Path elfPath = directory.resolve("libncurses.so");
+        Path indexPath = directory.resolve("libncurses.so.symidx");
+        try {
+            Files.copy(resource("android_arm_libncurses"), elfPath);
+            Assertions.assertNull(ElfSymbolIndexFile.open(indexPath, elfPath));
+
+            ElfFile file = ElfFile.from(elfPath);
+            ElfSymbolIndexFile.write(file, elfPath, indexPath, true);
+            ElfSymbolIndexFile indexFile = ElfSymbolIndexFile.open(indexPath, elfPath);
+            Assertions.assertNotNull(indexFile);
+            Assertions.assertTrue(indexFile.matches(file));
+            Assertions.assertTrue(indexFile.isInferringSizes());
+
+            ElfSymbolAddressIndex index = file.getSymbolAddressIndex(true);
+            Assertions.assertEquals(index.getSymbolCount(), indexFile.getSymbolCount());
+            Assertions.assertEquals(
+                    file.getDynamicSymbolTableSection().symbols.length, indexFile.getDynamicSymbolCount());
+            for (int id = 0; id < index.getSymbolCount(); id++) {
+                ElfSymbol symbol = index.getSymbol(id);
+                Assertions.assertEquals(symbol.getName(), indexFile.getName(id));
+                Assertions.assertEquals(symbol.st_value, indexFile.getStart(id));
+                Assertions.assertEquals(index.getSymbolEnd(id), indexFile.getEnd(id));
+                Assertions.assertEquals(symbol.offset, indexFile.getSymbol(file, id).offset);
+                for (long address : new long[] {symbol.st_value, index.getSymbolEnd(id) - 1, index.getSymbolEnd(id)}) {
+                    Assertions.assertEquals(index.lookupId(address), indexFile.lookupId(address));
+                }
+                if (symbol.st_name != 0) {
+                    int found = indexFile.findId(symbol.getName());
+                    Assertions.assertTrue(found >= 0 && found <= id);
+                    Assertions.assertEquals(symbol.getName(), indexFile.getName(found));
+                }
+            }
+            Assertions.assertEquals(-1, indexFile.findId("no_such_symbol"));
+            Assertions.assertEquals(-1, indexFile.lookupId(Long.MIN_VALUE));
+
+            // A modified file makes the index stale.
+            Files.setLastModifiedTime(elfPath, FileTime.fromMillis(indexFile.getLastModified() + 1000));
+            Assertions.assertNull(ElfSymbolIndexFile.open(indexPath, elfPath));
+            ElfSymbolIndexFile recreated = ElfSymbolIndexFile.openOrCreate(indexPath, elfPath, false);
+            Assertions.assertFalse(recreated.isInferringSizes());
+            Assertions.assertEquals(indexFile.getLastModified() + 1000, recreated.getLastModified());
+
+            // An up to date index written with the other setting is rewritten.
+            Assertions.assertFalse(ElfSymbolIndexFile.openOrCreate(indexPath, elfPath, false).isInferringSizes());
+            Assertions.assertTrue(ElfSymbolIndexFile.openOrCreate(indexPath, elfPath, true).isInferringSizes());
+            Assertions.assertTrue(ElfSymbolIndexFile.open(indexPath, elfPath).isInferringSizes());
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(elfPath);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void buildIdIsRecorded() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-index");
+        Path indexPath = directory.resolve("bindash.symidx");
+        try {
+            Path elfPath = resource("linux_amd64_bindash");
+            ElfSymbolIndexFile indexFile = ElfSymbolIndexFile.openOrCreate(indexPath, elfPath, false);
+            ElfFile file = ElfFile.from(elfPath);
+            Assertions.assertEquals(20, indexFile.getBuildId().length);
+            Assertions.assertArrayEquals(file.getBuildId(), indexFile.getBuildId());
+            Assertions.assertTrue(indexFile.matches(file));
+            Assertions.assertEquals(2, indexFile.findId("sigprocmask"));
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(directory);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolNameIndexTest {
+
+    private static List<String> names(List<ElfSymbol> symbols) {
+        List<String> result = new ArrayList<>();
+        for (ElfSymbol symbol : symbols) result.add(symbol.getName());
+        return result;
+    }
+
+    private static List<String> sortedNames(ElfSymbolTableSection section, Predicate<String> filter) {
+        List<String> result = new ArrayList<>();
+        for (ElfSymbol symbol : section.symbols) {
+            if (symbol.st_name != 0 && filter.test(symbol.getName())) result.add(symbol.getName());
+        }
+        result.sort(null);
+        return result;
+    }
+
+    @Test
+    void queriesMatchLinearScan() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            for (ElfSymbolTableSection section : file.sectionsOfType(ElfSymbolTableSection.class)) {
+                ElfSymbolNameIndex index = section.getNameIndex();
+                Assertions.assertSame(index, section.getNameIndex());
+                Assertions.assertEquals(sortedNames(section, name -> true), names(index.symbolsInRange(null, null)));
+                Assertions.assertEquals(index.size(), index.symbolsInRange(null, null).size());
+
+                for (String prefix : new String[] {"_nc_", "tget", "_", "$", "tigetstr", "zzz", ""}) {
+                    Assertions.assertEquals(
+                            sortedNames(section, name -> name.startsWith(prefix)),
+                            names(index.symbolsWithPrefix(prefix)),
+                            prefix);
+                }
+
+                Assertions.assertEquals(
+                        sortedNames(section, name -> name.compareTo("set") >= 0 && name.compareTo("tgetnum") < 0),
+                        names(index.symbolsInRange("set", "tgetnum")));
+                Assertions.assertTrue(index.symbolsInRange("tgetnum", "set").isEmpty());
+
+                for (String glob : new String[] {"_nc_*", "_nc_?et*", "*_sp", "*str*", "tigetstr", "tigetst", "*"}) {
+                    Pattern regex = Pattern.compile(glob.replace("?", ".").replace("*", ".*"));
+                    Assertions.assertEquals(
+                            sortedNames(section, name -> regex.matcher(name).matches()),
+                            names(index.symbolsMatching(glob)),
+                            glob);
+                }
+            }
+        });
+    }
+}
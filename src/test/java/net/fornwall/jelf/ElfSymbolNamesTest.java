@@ -0,0 +1,49 @@
+package net.fornwall.jelf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolNamesTest {
+
+    @Test
+    void batchLookupMatchesSingleLookup() throws Exception {
+        for (String fileName : Arrays.asList(
+                "android_arm_libncurses", "android_arm_tset", "linux_amd64_bindash", "usr-bin-yes", "objectFile.o")) {
+            TestHelper.parseFile(fileName, file -> {
+                List<String> names = new ArrayList<>(Arrays.asList("non_existing", "", "another_non_existing"));
+                for (ElfSymbolTableSection section : file.sectionsOfType(ElfSymbolTableSection.class)) {
+                    for (ElfSymbol symbol : section.symbols) {
+                        if (symbol.getName() != null) names.add(symbol.getName());
+                    }
+                }
+
+                Map<String, ElfSymbol> found = file.getELFSymbols(names);
+                for (String name : names) {
+                    Assertions.assertSame(file.getELFSymbol(name), found.get(name), name);
+                }
+                Assertions.assertFalse(found.containsKey("non_existing"));
+            });
+        }
+    }
+
+    @Test
+    void reuseAcrossFiles() throws Exception {
+        ElfSymbolNames names = new ElfSymbolNames(Arrays.asList("fputc_unlocked", "malloc", null, "malloc", "nope"));
+        Assertions.assertEquals(3, names.size());
+        TestHelper.parseFile("usr-bin-yes", file -> {
+            Map<String, ElfSymbol> found = file.getELFSymbols(names);
+            Assertions.assertEquals(2, found.size());
+            Assertions.assertEquals("fputc_unlocked", found.get("fputc_unlocked").getName());
+            Assertions.assertEquals("malloc", found.get("malloc").getName());
+        });
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            Map<String, ElfSymbol> found = file.getELFSymbols(names);
+            Assertions.assertEquals(1, found.size());
+            Assertions.assertSame(file.getELFSymbol("malloc"), found.get("malloc"));
+        });
+    }
+}
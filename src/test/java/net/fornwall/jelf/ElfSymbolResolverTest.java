@@ -0,0 +1,109 @@
+package net.fornwall.jelf;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolResolverTest {
+
+    private static Path resource(String fileName) throws Exception {
+        return Paths.get(Objects.requireNonNull(BasicTest.class.getResource('/' + fileName)).toURI());
+    }
+
+    @Test
+    void librariesAreFoundThroughRunPath() throws Exception {
+        // The executable needs libversioned.so and has the run path $ORIGIN/lib.
+        Path directory = Files.createTempDirectory("jelf-resolver").toRealPath();
+        Path executable = directory.resolve("usesversioned");
+        Path library = directory.resolve("lib").resolve("libversioned.so");
+        try {
+            Files.copy(resource("linux_amd64_usesversioned"), executable);
+            Files.createDirectory(library.getParent());
+            Files.copy(resource("linux_amd64_libversioned"), library);
+
+            ElfSymbolResolver resolver = new ElfSymbolResolver(Collections.emptyList());
+            ElfSymbolResolver.Scope scope = resolver.load(executable);
+            Assertions.assertEquals(Collections.emptyList(), scope.getMissingLibraries());
+            List<ElfSymbolResolver.LoadedObject> objects = scope.getObjects();
+            Assertions.assertEquals(2, objects.size());
+            Assertions.assertEquals(executable, objects.get(0).getPath());
+            Assertions.assertNull(objects.get(0).getLoader());
+            Assertions.assertEquals("libversioned.so", objects.get(1).getName());
+            Assertions.assertEquals(library, objects.get(1).getPath());
+            Assertions.assertSame(objects.get(0), objects.get(1).getLoader());
+
+            // The executable references foo@V2 and bar@V2.
+            List<ElfSymbolResolver.Resolution> resolutions = scope.resolveUndefinedSymbols();
+            Assertions.assertEquals(2, resolutions.size());
+            for (ElfSymbolResolver.Resolution resolution : resolutions) {
+                Assertions.assertTrue(resolution.isResolved(), resolution.name);
+                Assertions.assertEquals("V2", resolution.version);
+                Assertions.assertSame(objects.get(1), resolution.object);
+            }
+            Assertions.assertEquals(0x1010, resolutions.get(0).symbol.st_value);
+            Assertions.assertEquals(0x1020, resolutions.get(1).symbol.st_value);
+
+            Assertions.assertEquals(0x1000, scope.resolve("foo", "V1").symbol.st_value);
+            // Unversioned references bind to the oldest version, as ld.so does for objects linked without versions.
+            Assertions.assertEquals(0x1000, scope.resolve("foo", null).symbol.st_value);
+            Assertions.assertEquals(0x1020, scope.resolve("bar", null).symbol.st_value);
+            Assertions.assertFalse(scope.resolve("foo", "V3").isResolved());
+            Assertions.assertFalse(scope.resolve("no_such_symbol", null).isResolved());
+
+            // Parsed libraries are shared between scopes.
+            Assertions.assertSame(objects.get(1).getFile(), resolver.load(executable).getObjects().get(1).getFile());
+        } finally {
+            Files.deleteIfExists(library);
+            Files.deleteIfExists(library.getParent());
+            Files.deleteIfExists(executable);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void unversionedReferencesIgnoreHiddenLaterVersions() throws Exception {
+        // The library defines foo@@V2, then foo@V1, and baz only as the hidden baz@V3.
+        ElfSymbolResolver.Scope scope = new ElfSymbolResolver(Collections.emptyList())
+                .load(resource("linux_amd64_libhiddenversion"));
+        ElfSymbolResolver.LoadedObject library = scope.getObjects().get(0);
+        Assertions.assertEquals(0x1010, library.lookup("foo", null).st_value);
+        Assertions.assertEquals(0x1000, library.lookup("foo", "V2").st_value);
+        Assertions.assertNull(library.lookup("baz", null));
+        Assertions.assertFalse(scope.resolve("baz", null).isResolved());
+        Assertions.assertEquals(0x1020, scope.resolve("baz", "V3").symbol.st_value);
+    }
+
+    @Test
+    void librariesAreFoundInLibraryPath() throws Exception {
+        Path directory = Files.createTempDirectory("jelf-resolver").toRealPath();
+        Path library = directory.resolve("libversioned.so");
+        try {
+            Files.copy(resource("linux_amd64_libversioned"), library);
+            Path executable = resource("linux_amd64_usesversioned");
+
+            List<Path> libraryPath = Arrays.asList(directory.resolve("missing"), directory);
+            ElfSymbolResolver.Scope scope = new ElfSymbolResolver(libraryPath).load(executable);
+            Assertions.assertEquals(library, scope.getObjects().get(1).getPath());
+            Assertions.assertEquals(0x1020, scope.resolve("bar", "V2").symbol.st_value);
+
+            // A library of another machine is skipped.
+            Files.copy(resource("android_arm_libncurses"), directory.resolve("libc.so.6"));
+            scope = new ElfSymbolResolver(Collections.singletonList(directory)).load(resource("usr-bin-yes"));
+            Assertions.assertEquals(Collections.singletonList("libc.so.6"), scope.getMissingLibraries());
+            Assertions.assertEquals(1, scope.getObjects().size());
+            for (ElfSymbolResolver.Resolution resolution : scope.resolveUndefinedSymbols()) {
+                Assertions.assertFalse(resolution.isResolved(), resolution.name);
+            }
+        } finally {
+            Files.deleteIfExists(directory.resolve("libc.so.6"));
+            Files.delete(library);
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package net.fornwall.jelf;
+
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElfSymbolVersionTest {
+
+    @Test
+    void versionDefinitions() throws Exception {
+        // Built from foo@V1, foo@@V2 and bar@@V2 with a version script.
+        TestHelper.parseFile("linux_amd64_libversioned", file -> {
+            ElfVersionDefinitionSection definitions = file.getVersionDefinitionSection();
+            Assertions.assertEquals(3, definitions.size());
+            Assertions.assertEquals("libversioned.so", definitions.getName(0));
+            Assertions.assertEquals(ElfVersionDefinitionSection.VER_FLG_BASE, definitions.getFlags(0));
+            Assertions.assertEquals(2, definitions.getIndex(1));
+            Assertions.assertEquals("V1", definitions.getVersionName(2));
+            Assertions.assertEquals("V2", definitions.getVersionName(3));
+            Assertions.assertNull(definitions.getVersionName(4));
+            Assertions.assertNull(file.getVersionRequirementSection());
+
+            ElfSymbol[] symbols = file.getDynamicSymbolTableSection().symbols;
+            Assertions.assertEquals(symbols.length, file.getSymbolVersionSection().size());
+            Assertions.assertEquals("foo@V1", symbols[1].getVersionedName());
+            Assertions.assertTrue(symbols[1].isHiddenVersion());
+            Assertions.assertEquals("foo@@V2", symbols[2].getVersionedName());
+            Assertions.assertFalse(symbols[2].isHiddenVersion());
+            Assertions.assertEquals("V2", symbols[3].getVersionName());
+            Assertions.assertNull(symbols[0].getVersionName());
+        });
+    }
+
+    @Test
+    void versionedLookup() throws Exception {
+        TestHelper.parseFile("linux_amd64_libversioned", file -> {
+            Assertions.assertEquals(0x1010, file.getELFSymbol("foo").st_value);
+            Assertions.assertEquals(0x1010, file.getELFSymbol("foo", null).st_value);
+            Assertions.assertEquals(0x1000, file.getELFSymbol("foo", "V1").st_value);
+            Assertions.assertEquals(0x1010, file.getELFSymbol("foo", "V2").st_value);
+            Assertions.assertNull(file.getELFSymbol("foo", "V3"));
+            Assertions.assertNull(file.getELFSymbol("bar", "V1"));
+            Assertions.assertEquals(0x1020, file.getELFSymbol("bar", "V2").st_value);
+
+            Map<String, ElfSymbol> found = file.getELFSymbols(Arrays.asList("foo", "bar"));
+            Assertions.assertEquals(0x1010, found.get("foo").st_value);
+            Assertions.assertEquals(0x1020, found.get("bar").st_value);
+        });
+    }
+
+    @Test
+    void versionRequirements() throws Exception {
+        TestHelper.parseFile("usr-bin-yes", file -> {
+            ElfVersionRequirementSection requirements = file.getVersionRequirementSection();
+            Assertions.assertEquals(6, requirements.size());
+            Assertions.assertEquals("GLIBC_2.3", requirements.getName(0));
+            Assertions.assertEquals(7, requirements.getIndex(0));
+            Assertions.assertEquals("libc.so.6", requirements.getFileName(0));
+            Assertions.assertEquals("GLIBC_2.34", requirements.getVersionName(3));
+            Assertions.assertEquals("libc.so.6", requirements.getVersionFileName(2));
+            Assertions.assertNull(file.getVersionDefinitionSection());
+
+            ElfSymbol[] symbols = file.getDynamicSymbolTableSection().symbols;
+            Assertions.assertEquals("__libc_start_main@GLIBC_2.34", symbols[2].getVersionedName());
+            Assertions.assertEquals("abort@GLIBC_2.2.5", symbols[3].getVersionedName());
+            Assertions.assertEquals("_ITM_deregisterTMCloneTable", symbols[6].getVersionedName());
+
+            Assertions.assertSame(symbols[3], file.getELFSymbol("abort", "GLIBC_2.2.5"));
+            Assertions.assertNull(file.getELFSymbol("abort", "GLIBC_2.34"));
+            Assertions.assertSame(symbols[3], file.getELFSymbol("abort"));
+        });
+    }
+
+    @Test
+    void unversionedFile() throws Exception {
+        TestHelper.parseFile("android_arm_libncurses", file -> {
+            Assertions.assertNull(file.getSymbolVersionSection());
+            for (ElfSymbol symbol : file.getDynamicSymbolTableSection().symbols) {
+                Assertions.assertNull(symbol.getVersionName());
+                Assertions.assertEquals(symbol.getName(), symbol.getVersionedName());
+            }
+        });
+    }
+}
@@ -42,6 +42,12 @@ public class TestHelper {
         }
     }
 
+    public static byte[] readResource(String fileName) throws Exception {
+        try (InputStream stream = Objects.requireNonNull(BasicTest.class.getResourceAsStream('/' + fileName))) {
+            return stream.readAllBytes();
+        }
+    }
+
     public static void assertSectionNames(ElfFile file, String... expectedSectionNames) {
         for (int i = 0; i < expectedSectionNames.length; i++) {
             String expected = expectedSectionNames[i];